@@ -1,20 +1,55 @@
 package csv;
 
-import java.util.List;
+import csv.follow.CSVFollowers;
+import csv.intern.StringPool;
+import csv.join.HashJoin;
+import csv.jobs.LoadJobs;
 
 /**
- * This is a shared class that holds the CSV data and filepath that needs to be shared between the
- * GetCSV and LoadCSV Handlers. It uses static variables to be accessed throughout the two handlers.
+ * This is a shared class that holds the CSV data that needs to be shared between the CSV Handlers.
+ * Every loaded CSV is kept in a single registry, keyed by filepath, so that loading one file does
+ * not replace the data another user is reading.
  */
 public class CSVDataHolder {
 
   /**
-   * Public record for shared state between loadcsv and getcsv endpoints. Holds csvData in form of
-   * List<List<String>> and String filepath.
+   * The heap budget for loaded CSVs can be set with -Dcsv.budgetBytes; by default it is a quarter
+   * of the maximum heap.
    */
-  public record CSVDataHolderRecord() {
-    public static List<List<String>> csvData = null;
-    public static String filepath = null;
+  public static final CSVRegistry registry = new CSVRegistry(
+      Long.getLong("csv.budgetBytes", Runtime.getRuntime().maxMemory() / 4));
 
-  }
+  /**
+   * Cell values shared by every load, so repeated loads reuse the same Strings. Only used when
+   * -Dcsv.internPool=true is set, and bounded by -Dcsv.internPoolSize values.
+   */
+  public static final StringPool pool = Boolean.getBoolean("csv.internPool")
+      ? new StringPool(Integer.getInteger("csv.internPoolSize", 1 << 18)) : null;
+
+  /**
+   * Loads CSVs for the registry. Parsed snapshots are written next to each CSV unless
+   * -Dcsv.snapshots=false is set.
+   */
+  public static final CSVLoader loader = new CSVLoader(registry,
+      Boolean.parseBoolean(System.getProperty("csv.snapshots", "true")), pool);
+
+  /**
+   * Runs loadcsv?async=true loads in the background, -Dcsv.loadThreads at a time (2 by default).
+   */
+  public static final LoadJobs jobs = new LoadJobs(registry, loader,
+      Integer.getInteger("csv.loadThreads", 2));
+
+  /**
+   * Follows the files loaded with loadcsv?follow=true, checking them for appended records every
+   * -Dcsv.followMillis milliseconds (1000 by default).
+   */
+  public static final CSVFollowers followers = new CSVFollowers(registry, loader, pool,
+      Long.getLong("csv.followMillis", 1000));
+
+  /**
+   * Runs joincsv joins. A join whose hash table would take more than -Dcsv.joinBudgetBytes (64MB by
+   * default) spills its partitions to the temporary directory.
+   */
+  public static final HashJoin joins = new HashJoin(Long.getLong("csv.joinBudgetBytes", 64L << 20),
+      Runtime.getRuntime().availableProcessors(), null);
 }
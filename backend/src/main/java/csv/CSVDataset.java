@@ -0,0 +1,185 @@
+package csv;
+
+import csv.columnar.CSVColumns;
+import csv.intern.InternReport;
+import csv.search.CSVIndex;
+import csv.snapshot.LoadKey;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single loaded CSV: the filepath it was loaded from, its parsed rows, and everything that is
+ * derived from those rows and cached alongside them, such as the search index and columnar forms.
+ * A dataset is immutable once loaded, so it can be read by any number of requests at once.
+ *
+ * <p>The estimated size of a dataset counts its rows and also every cache built from them so far,
+ * which grows as columns are indexed, converted or sorted; the registry is told each time it does,
+ * so that it can evict other datasets to stay within its budget.
+ */
+public class CSVDataset {
+
+  // rough per-object costs on a 64-bit JVM with compressed references, used for memory budgeting
+  private static final long ROW_OVERHEAD = 56;
+  private static final long CELL_OVERHEAD = 44;
+
+  private final String filepath;
+  private final List<List<String>> rows;
+  private final long rowBytes;
+  private final AtomicLong cacheBytes;
+  private volatile Runnable onGrowth;
+  private final CSVIndex index;
+  private final CSVColumns columns;
+  private final LoadKey key;
+  private final InternReport internReport;
+
+  /**
+   * Constructor of the CSVDataset class. Estimates the heap used by the rows up front, since the
+   * registry needs it to decide what to evict.
+   *
+   * @param filepath the filepath the data was loaded from, which also names the dataset
+   * @param rows the parsed rows of the CSV
+   */
+  public CSVDataset(String filepath, List<List<String>> rows) {
+    this(filepath, rows, null);
+  }
+
+  /**
+   * Constructor of the CSVDataset class for data loaded from a file.
+   *
+   * @param filepath the filepath the data was loaded from, which also names the dataset
+   * @param rows the parsed rows of the CSV
+   * @param key identifies the file contents the rows were parsed from, or null if unknown
+   */
+  public CSVDataset(String filepath, List<List<String>> rows, LoadKey key) {
+    this(filepath, rows, key, null);
+  }
+
+  /**
+   * Constructor of the CSVDataset class for data parsed with interned cells. The heap saved by
+   * sharing cells is taken off the estimated size.
+   *
+   * @param filepath the filepath the data was loaded from, which also names the dataset
+   * @param rows the parsed rows of the CSV
+   * @param key identifies the file contents the rows were parsed from, or null if unknown
+   * @param internReport how well interning worked while parsing, or null if it was not used
+   */
+  public CSVDataset(String filepath, List<List<String>> rows, LoadKey key,
+      InternReport internReport) {
+    this(filepath, rows, key, internReport,
+        estimateBytes(rows) - (internReport == null ? 0 : internReport.bytesSaved()), null);
+  }
+
+  private CSVDataset(String filepath, List<List<String>> rows, LoadKey key,
+      InternReport internReport, long rowBytes, CSVDataset extending) {
+    this.filepath = filepath;
+    this.rows = rows;
+    this.rowBytes = rowBytes;
+    this.cacheBytes = new AtomicLong();
+    if (extending == null) {
+      this.index = new CSVIndex(rows, this::charge);
+      this.columns = new CSVColumns(rows, this::charge);
+    } else {
+      this.index = extending.index.extend(rows, this::charge);
+      this.columns = extending.columns.extend(rows, this::charge);
+    }
+    this.key = key;
+    this.internReport = internReport;
+  }
+
+  /**
+   * Makes the dataset for this file with rows appended to it. Only the added rows are measured, and
+   * the column indexes and columnar forms built so far are extended with them rather than built
+   * again from all the rows; only sort orders start over.
+   *
+   * @param allRows this dataset's rows followed by the added rows
+   * @param added the rows that were appended
+   * @param key identifies the file contents all the rows were parsed from, or null if unknown
+   * @return the dataset holding all the rows
+   */
+  public CSVDataset withAppendedRows(List<List<String>> allRows, List<List<String>> added,
+      LoadKey key) {
+    return new CSVDataset(this.filepath, allRows, key, this.internReport,
+        this.rowBytes + estimateBytes(added), this);
+  }
+
+  public String getFilepath() {
+    return this.filepath;
+  }
+
+  public List<List<String>> getRows() {
+    return this.rows;
+  }
+
+  /**
+   * Gets the search index of this dataset. Column indexes inside it are built on first use.
+   */
+  public CSVIndex getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Gets the columnar forms of this dataset, used by queries. Columns are converted on first use.
+   */
+  public CSVColumns getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * Gets the key of the file contents this dataset was loaded from, or null if it did not come
+   * from a file.
+   */
+  public LoadKey getKey() {
+    return this.key;
+  }
+
+  /**
+   * Gets how well interning worked when this dataset was parsed, or null if it was not parsed with
+   * interning (for example because it was read from a snapshot).
+   */
+  public InternReport getInternReport() {
+    return this.internReport;
+  }
+
+  /**
+   * Gets the estimated heap used by the rows and by the caches built from them so far.
+   */
+  public long getEstimatedBytes() {
+    return this.rowBytes + this.cacheBytes.get();
+  }
+
+  /**
+   * Gets the estimated heap used by the caches built from the rows so far.
+   */
+  public long getCacheBytes() {
+    return this.cacheBytes.get();
+  }
+
+  /**
+   * Sets what to run whenever a cache built from the rows makes the dataset larger, replacing what
+   * was set before.
+   *
+   * @param onGrowth run after each growth, or null to run nothing
+   */
+  public void setOnGrowth(Runnable onGrowth) {
+    this.onGrowth = onGrowth;
+  }
+
+  private void charge(long bytes) {
+    this.cacheBytes.addAndGet(bytes);
+    Runnable onGrowth = this.onGrowth;
+    if (onGrowth != null) {
+      onGrowth.run();
+    }
+  }
+
+  private static long estimateBytes(List<List<String>> rows) {
+    long bytes = 0;
+    for (List<String> row : rows) {
+      bytes += ROW_OVERHEAD + 4L * row.size();
+      for (String cell : row) {
+        bytes += CELL_OVERHEAD + cell.length();
+      }
+    }
+    return bytes;
+  }
+}
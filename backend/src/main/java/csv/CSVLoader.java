@@ -0,0 +1,249 @@
+package csv;
+
+import csv.factories.FactoryFailureException;
+import csv.factories.InterningRowFactory;
+import csv.intern.CellInterner;
+import csv.intern.StringPool;
+import csv.snapshot.LoadKey;
+import csv.snapshot.SnapshotStore;
+import csv.utility.CSVParser;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads CSV files into datasets, skipping the parse whenever the file has not changed. A file that
+ * is already loaded with the same size and modified time is returned straight from the registry. A
+ * file with a snapshot on disk (see SnapshotStore) is read from the snapshot, which also survives
+ * restarts. Only when neither matches is the file parsed, after which a new snapshot is written.
+ * Parsed cells are interned, so that repeated values in a file share one String. A snapshot that
+ * cannot be read or written only costs a parse, so the loader carries on and counts the failure in
+ * its metrics instead.
+ */
+public class CSVLoader {
+
+  // bounds of the per-load intern table
+  private static final int INTERN_ENTRIES = 1 << 16;
+  private static final int INTERN_LENGTH = 256;
+
+  private final CSVRegistry registry;
+  private final boolean snapshots;
+  private final StringPool pool;
+  private final AtomicLong snapshotReadErrors = new AtomicLong();
+  private final AtomicLong snapshotWriteErrors = new AtomicLong();
+  private volatile String lastSnapshotError;
+
+  /**
+   * Constructor of the CSVLoader class.
+   *
+   * @param registry the registry to check for already loaded datasets
+   * @param snapshots whether to read and write snapshots next to the CSV files
+   */
+  public CSVLoader(CSVRegistry registry, boolean snapshots) {
+    this(registry, snapshots, null);
+  }
+
+  /**
+   * Constructor of the CSVLoader class with a pool of values shared between loads.
+   *
+   * @param registry the registry to check for already loaded datasets
+   * @param snapshots whether to read and write snapshots next to the CSV files
+   * @param pool values shared between loads, or null to only share values within a load
+   */
+  public CSVLoader(CSVRegistry registry, boolean snapshots, StringPool pool) {
+    this.registry = registry;
+    this.snapshots = snapshots;
+    this.pool = pool;
+  }
+
+  /**
+   * Loads the CSV at the given filepath.
+   *
+   * @param csvFile filepath of the CSV
+   * @return the dataset for the file's current contents
+   * @throws FileNotFoundException if the file does not exist
+   * @throws IOException if the file cannot be read
+   * @throws FactoryFailureException if a row cannot be converted
+   */
+  public CSVDataset load(String csvFile) throws IOException, FactoryFailureException {
+    return this.load(csvFile, LoadProgress.NONE);
+  }
+
+  /**
+   * Loads the CSV at the given filepath, reporting the progress of the parse if it has to parse.
+   *
+   * @param csvFile filepath of the CSV
+   * @param progress tracks the bytes read by the parser
+   * @return the dataset for the file's current contents
+   * @throws FileNotFoundException if the file does not exist
+   * @throws IOException if the file cannot be read, or the progress stopped the load
+   * @throws FactoryFailureException if a row cannot be converted
+   */
+  public CSVDataset load(String csvFile, LoadProgress progress)
+      throws IOException, FactoryFailureException {
+    Path path = Paths.get(csvFile);
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(csvFile);
+    }
+    long size = attributes.size();
+    long modified = attributes.lastModifiedTime().toMillis();
+
+    CSVDataset loaded = this.registry.get(csvFile);
+    if (loaded != null && loaded.getKey() != null && loaded.getKey().matches(size, modified)) {
+      return loaded;
+    }
+    Path snapshot = SnapshotStore.pathFor(path);
+    LoadKey snapshotKey = this.snapshots ? SnapshotStore.readKey(snapshot) : null;
+    if (snapshotKey != null && snapshotKey.matches(size, modified)) {
+      try {
+        return new CSVDataset(csvFile, SnapshotStore.readRows(snapshot), snapshotKey);
+      } catch (IOException e) {
+        this.snapshotFailed(this.snapshotReadErrors, "Ignoring snapshot " + snapshot, e);
+        // it would fail the same way below
+        snapshotKey = null;
+      }
+    }
+    // the file was touched, so only hash it if the size says the contents could be the same
+    boolean sameSize = (loaded != null && loaded.getKey() != null && loaded.getKey().size() == size)
+        || (snapshotKey != null && snapshotKey.size() == size);
+    if (sameSize) {
+      byte[] hash = hash(path);
+      LoadKey key = new LoadKey(size, modified, hash);
+      if (loaded != null && loaded.getKey() != null && loaded.getKey().sameContents(hash)) {
+        return new CSVDataset(csvFile, loaded.getRows(), key, loaded.getInternReport());
+      }
+      if (snapshotKey != null && snapshotKey.sameContents(hash)) {
+        try {
+          List<List<String>> rows = SnapshotStore.readRows(snapshot);
+          SnapshotStore.updateModified(snapshot, modified);
+          return new CSVDataset(csvFile, rows, key);
+        } catch (IOException e) {
+          this.snapshotFailed(this.snapshotReadErrors, "Ignoring snapshot " + snapshot, e);
+        }
+      }
+    }
+    return this.parse(csvFile, path, size, modified, progress);
+  }
+
+  /**
+   * Parses the CSV, hashing its bytes as they are read and interning its cells, and snapshots the
+   * result.
+   */
+  private CSVDataset parse(String csvFile, Path path, long size, long modified,
+      LoadProgress progress) throws IOException, FactoryFailureException {
+    MessageDigest digest = newDigest();
+    // Does not account for header because the goal is to return all of the data of the CSV
+    CSVParser<List<String>> parser = new CSVParser<>(false);
+    CellInterner interner = new CellInterner(INTERN_ENTRIES, INTERN_LENGTH, this.pool);
+    try (InputStream in = new DigestInputStream(
+        progress.track(Files.newInputStream(path), size), digest)) {
+      parseRows(in, parser, interner);
+    }
+    LoadKey key = new LoadKey(size, modified, digest.digest());
+    CSVDataset dataset = new CSVDataset(csvFile, parser.getConvertedRows(), key,
+        interner.report());
+    BasicFileAttributes after = Files.readAttributes(path, BasicFileAttributes.class);
+    // a file that changed while it was being parsed is not snapshotted under the old key
+    if (this.snapshots && key.matches(after.size(), after.lastModifiedTime().toMillis())) {
+      try {
+        SnapshotStore.write(SnapshotStore.pathFor(path), key, dataset.getRows());
+      } catch (IOException e) {
+        this.snapshotFailed(this.snapshotWriteErrors, "Could not snapshot " + csvFile, e);
+      }
+    }
+    return dataset;
+  }
+
+  /**
+   * Loads a CSV from a stream, such as an upload, parsing it exactly as a file is parsed so the
+   * dataset is the same as loading the same bytes from a file. The stream is read as it arrives
+   * and is not closed. The dataset has no load key, since there is no file to compare it against
+   * later, and it is not snapshotted.
+   *
+   * @param name the filepath to register the dataset under
+   * @param in the CSV's bytes
+   * @return the dataset
+   * @throws IOException if the stream cannot be read
+   * @throws FactoryFailureException if a row cannot be converted
+   */
+  public CSVDataset load(String name, InputStream in) throws IOException, FactoryFailureException {
+    CSVParser<List<String>> parser = new CSVParser<>(false);
+    CellInterner interner = new CellInterner(INTERN_ENTRIES, INTERN_LENGTH, this.pool);
+    parseRows(in, parser, interner);
+    return new CSVDataset(name, parser.getConvertedRows(), null, interner.report());
+  }
+
+  /**
+   * Gets the loader's metrics: how many snapshots could not be read and were parsed around, how
+   * many could not be written, and the last such failure.
+   *
+   * @return the metrics
+   */
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("snapshotReadErrors", this.snapshotReadErrors.get());
+    metrics.put("snapshotWriteErrors", this.snapshotWriteErrors.get());
+    String lastError = this.lastSnapshotError;
+    if (lastError != null) {
+      metrics.put("lastSnapshotError", lastError);
+    }
+    return metrics;
+  }
+
+  private void snapshotFailed(AtomicLong errors, String action, IOException e) {
+    errors.incrementAndGet();
+    this.lastSnapshotError = action + ": " + e.getMessage();
+  }
+
+  /**
+   * Parses every row of the stream into the parser, interning the cells.
+   */
+  private static void parseRows(InputStream in, CSVParser<List<String>> parser,
+      CellInterner interner) throws IOException, FactoryFailureException {
+    try {
+      parser.setReader(new InputStreamReader(in, Charset.defaultCharset()));
+      parser.parseCSV(new InterningRowFactory(interner));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static byte[] hash(Path path) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[1 << 16];
+    try (InputStream in = Files.newInputStream(path)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package csv;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Thread-safe registry of every loaded CSV, keyed by filepath. The registry keeps the total
+ * estimated size of its datasets, caches included, under a heap budget by evicting the least
+ * recently used ones, and makes concurrent loads of the same file share a single parse. Since a
+ * dataset's caches are built after it is registered, the budget is checked again whenever one
+ * grows.
+ */
+public class CSVRegistry {
+
+  private final long budgetBytes;
+  // access-ordered, so iteration starts at the least recently used dataset
+  private final LinkedHashMap<String, CSVDataset> datasets;
+  private final Map<String, CompletableFuture<CSVDataset>> inFlight;
+  private String latest;
+
+  /**
+   * Constructor of the CSVRegistry class.
+   *
+   * @param budgetBytes the total estimated size that loaded datasets may take up
+   */
+  public CSVRegistry(long budgetBytes) {
+    this.budgetBytes = budgetBytes;
+    this.datasets = new LinkedHashMap<>(16, 0.75f, true);
+    this.inFlight = new ConcurrentHashMap<>();
+    this.latest = null;
+  }
+
+  /**
+   * Loads a dataset with the given loader and registers it. If the same filepath is already being
+   * loaded by another request, this waits for and returns that load's result instead of parsing
+   * the file a second time.
+   *
+   * @param filepath the filepath of the CSV
+   * @param loader parses the CSV into a dataset
+   * @return the loaded dataset
+   * @throws Exception whatever the loader threw
+   */
+  public CSVDataset load(String filepath, Callable<CSVDataset> loader) throws Exception {
+    CompletableFuture<CSVDataset> mine = new CompletableFuture<>();
+    CompletableFuture<CSVDataset> running = this.inFlight.putIfAbsent(filepath, mine);
+    if (running != null) {
+      try {
+        return running.get();
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof Exception cause ? cause : e;
+      }
+    }
+    try {
+      CSVDataset dataset = loader.call();
+      this.put(dataset);
+      mine.complete(dataset);
+      return dataset;
+    } catch (Exception e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.inFlight.remove(filepath, mine);
+    }
+  }
+
+  /**
+   * Registers a dataset under its filepath, replacing any dataset already loaded from there, and
+   * makes it the latest dataset. Least recently used datasets are evicted until the budget is met;
+   * the new dataset itself is always kept, even if it is larger than the whole budget.
+   *
+   * @param dataset the dataset to register
+   */
+  public synchronized void put(CSVDataset dataset) {
+    CSVDataset old = this.datasets.put(dataset.getFilepath(), dataset);
+    if (old != null && old != dataset) {
+      old.setOnGrowth(null);
+    }
+    dataset.setOnGrowth(() -> this.grown(dataset));
+    this.latest = dataset.getFilepath();
+    this.evict(dataset);
+  }
+
+  /**
+   * Evicts least recently used datasets after one of them built a cache, if it is still registered.
+   * The dataset that grew is kept, as a newly put one is.
+   */
+  private synchronized void grown(CSVDataset dataset) {
+    if (this.datasets.containsValue(dataset)) {
+      this.evict(dataset);
+    }
+  }
+
+  private void evict(CSVDataset keep) {
+    long usedBytes = this.getUsedBytes();
+    Iterator<CSVDataset> eldest = this.datasets.values().iterator();
+    while (usedBytes > this.budgetBytes && eldest.hasNext()) {
+      CSVDataset candidate = eldest.next();
+      if (candidate != keep) {
+        usedBytes -= candidate.getEstimatedBytes();
+        candidate.setOnGrowth(null);
+        eldest.remove();
+      }
+    }
+  }
+
+  /**
+   * Swaps a newer version of a dataset in for the one currently registered under its filepath,
+   * such as the same file with rows appended. Unlike put, this does not make the dataset the
+   * latest one, and does nothing if the registered dataset is no longer the expected one because
+   * the file was loaded again or evicted since.
+   *
+   * @param expected the dataset that should currently be registered
+   * @param replacement the dataset to register in its place
+   * @return whether the replacement was registered
+   */
+  public synchronized boolean replace(CSVDataset expected, CSVDataset replacement) {
+    String filepath = expected.getFilepath();
+    if (this.datasets.get(filepath) != expected) {
+      return false;
+    }
+    String latest = this.latest;
+    this.put(replacement);
+    this.latest = latest;
+    return true;
+  }
+
+  /**
+   * Gets a loaded dataset, marking it as recently used.
+   *
+   * @param filepath the filepath the dataset was loaded from, or null for the latest dataset
+   * @return the dataset, or null if it is not loaded (or was evicted)
+   */
+  public synchronized CSVDataset get(String filepath) {
+    return this.datasets.get(filepath == null ? this.latest : filepath);
+  }
+
+  /**
+   * Removes every dataset from the registry.
+   */
+  public synchronized void clear() {
+    for (CSVDataset dataset : this.datasets.values()) {
+      dataset.setOnGrowth(null);
+    }
+    this.datasets.clear();
+    this.latest = null;
+  }
+
+  public synchronized List<String> getFilepaths() {
+    return new ArrayList<>(this.datasets.keySet());
+  }
+
+  /**
+   * Gets the total estimated size of the registered datasets, caches included.
+   */
+  public synchronized long getUsedBytes() {
+    long usedBytes = 0;
+    for (CSVDataset dataset : this.datasets.values()) {
+      usedBytes += dataset.getEstimatedBytes();
+    }
+    return usedBytes;
+  }
+
+  public long getBudgetBytes() {
+    return this.budgetBytes;
+  }
+}
@@ -0,0 +1,89 @@
+package csv;
+
+import csv.stats.CSVStats;
+import csv.stats.CSVStatsCollector;
+import csv.stats.ColumnStats;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import server.Handler;
+import spark.QueryParamsMap;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with the /csvstats endpoint on our local server.
+ * It takes in the filename of a CSV in the /data folder and returns its word, character, row and
+ * column counts, along with the empty cell count, numeric min, max and mean, and approximate
+ * distinct value count of every column. The stats are computed while the file is read, in parallel
+ * over chunks of it, so the file does not need to be loaded first.
+ */
+public class CSVStatsHandler implements Handler {
+
+  /**
+   * This is the overridden handle method. It populates a HashMap from String to Object with the
+   * stats of the file then serializes it and prints it to the server in JSON format.
+   *
+   * @param request
+   * @param response
+   * @return serialized message
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    MapRecord.results.clear();
+    QueryParamsMap qm = request.queryMap();
+    String csvFile = qm.value("filename");
+    if (csvFile == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    // Only allow access to CSV files in data folder, as with loadcsv
+    Path path = Paths.get(csvFile);
+    if (!csvFile.startsWith("data/") || !Files.isRegularFile(path)) {
+      return this.failureResponse("error_datasource");
+    }
+    CSVStats stats;
+    try {
+      stats = CSVStatsCollector.collect(path, Runtime.getRuntime().availableProcessors());
+    } catch (IOException e) {
+      return this.failureResponse("error_datasource");
+    }
+    List<Map<String, Object>> columns = new ArrayList<>();
+    for (int column = 0; column < stats.getColumns(); column++) {
+      ColumnStats columnStats = stats.getColumn(column);
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("column", column);
+      entry.put("nulls", columnStats.getNulls());
+      entry.put("numeric", columnStats.getNumeric());
+      entry.put("min", columnStats.getMin());
+      entry.put("max", columnStats.getMax());
+      entry.put("mean", columnStats.getMean());
+      entry.put("distinct", columnStats.getDistinct());
+      columns.add(entry);
+    }
+    MapRecord.results.put("result", "success");
+    MapRecord.results.put("filename", csvFile);
+    MapRecord.results.put("words", stats.getWords());
+    MapRecord.results.put("characters", stats.getCharacters());
+    MapRecord.results.put("rows", stats.getRows());
+    MapRecord.results.put("columns", stats.getColumns());
+    MapRecord.results.put("columnStats", columns);
+    return this.successResponse();
+  }
+
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
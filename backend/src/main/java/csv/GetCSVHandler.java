@@ -1,42 +1,184 @@
 package csv;
 
-import csv.CSVDataHolder.CSVDataHolderRecord;
+import com.squareup.moshi.JsonWriter;
+import csv.columnar.ColumnSort;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 import responses.FailureResponse.FailureRecord;
+import responses.StreamingSerializer;
 import server.Handler;
-import responses.MapSerializer;
 import responses.MapSerializer.MapRecord;
+import spark.QueryParamsMap;
 import spark.Request;
 import spark.Response;
 
 /**
  * This is the Handler class that is instantiated with the /getCSV endpoint on our local server.
- * It will display the data of the most recently loaded CSV from the /loadCSV endpoint. If no data is
- * loaded, it will print a bad request error to the server.
+ * It will display the data of a CSV loaded by the /loadCSV endpoint, chosen with the filename
+ * parameter, or of the most recently loaded CSV if no filename is given. If that CSV is not loaded,
+ * it will print a bad request error to the server. The optional offset, limit and columns
+ * parameters select a page of rows and a subset of columns, so large files can be fetched in
+ * pieces. The rows can be sorted by a column with sort=column or sort=column:desc, and top=k keeps
+ * only the first k rows (in sorted order, if sorted) before the page is taken. With header=true the
+ * first row stays first, above the sorted rows, and top counts the rows below it.
  */
 public class GetCSVHandler implements Handler {
 
+  private static final Set<String> PARAMS =
+      Set.of("filename", "offset", "limit", "columns", "sort", "top", "header");
+
   /**
-   * This is the overridden handle method. It populates a HashMap from String to Object with the resulting
-   * data of the most recently loaded CSV then serializes it and prints it to the server in JSON format.
+   * This is the overridden handle method. It streams the requested page of the selected CSV to the
+   * server in JSON format, writing one row at a time rather than building the whole response as a
+   * String. The loaded rows are held in a random-access List, so the first row of a page is found
+   * directly by its offset. Sorted pages read the row ids of the page from the column's cached
+   * ColumnSort rather than sorting the rows themselves.
    * @param request
    * @param response
    * @return
    */
   @Override
-  public Object handle(Request request, Response response) {
-    // If the user tries to pass any parameters, it will give a bad request error
-    if(!request.queryParams().isEmpty()){
+  public Object handle(Request request, Response response) throws IOException {
+    // If the user tries to pass any other parameters, it will give a bad request error
+    if (!PARAMS.containsAll(request.queryParams())) {
       return this.failureResponse("error_bad_request");
     }
     MapRecord.results.clear();
+    QueryParamsMap qm = request.queryMap();
     // If getcsv is called before loading a valid CSV, it will give a bad request error
-    if (CSVDataHolderRecord.filepath == null || CSVDataHolderRecord.csvData == null) {
+    CSVDataset dataset = CSVDataHolder.registry.get(qm.value("filename"));
+    if (dataset == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    List<List<String>> data = dataset.getRows();
+    int offset;
+    int limit;
+    int top;
+    int[] columns;
+    ColumnSort sort = null;
+    boolean header = Boolean.parseBoolean(qm.value("header")) && !data.isEmpty();
+    try {
+      offset = parseCount(qm.value("offset"), 0);
+      limit = parseCount(qm.value("limit"), Integer.MAX_VALUE);
+      top = parseCount(qm.value("top"), Integer.MAX_VALUE);
+      columns = parseColumns(qm.value("columns"));
+      String sortParam = qm.value("sort");
+      if (sortParam != null) {
+        String[] parts = sortParam.split(":", -1);
+        if (parts.length > 2 || (parts.length == 2 && !parts[1].strip().equals("desc")
+            && !parts[1].strip().equals("asc"))) {
+          return this.failureResponse("error_bad_request");
+        }
+        boolean descending = parts.length == 2 && parts[1].strip().equals("desc");
+        int sortColumn = parseCount(parts[0], 0);
+        // a column no row has would only rank and cache an all-missing column
+        if (sortColumn >= dataset.getIndex().width()) {
+          return this.failureResponse("error_bad_request");
+        }
+        sort = dataset.getColumns().sort(sortColumn, descending);
+      }
+    } catch (NumberFormatException e) {
       return this.failureResponse("error_bad_request");
     }
-    MapRecord.results.put("filepath", CSVDataHolderRecord.filepath);
-    MapRecord.results.put("result", "success");
-    MapRecord.results.put("data", CSVDataHolderRecord.csvData);
-    return this.successResponse();
+
+    int headerRows = header ? 1 : 0;
+    int count = Math.min(top, data.size() - headerRows) + headerRows;
+    int from = Math.min(offset, count);
+    int to = (int) Math.min(count, (long) from + limit);
+    // row ids in sorted order, or null to read the rows in their loaded order
+    int[] order = null;
+    // where the header row falls in that order, since it is written first instead, or past the
+    // end if the top rows do not include it
+    int headerAt = 0;
+    if (sort != null) {
+      order = count < data.size() ? sort.top(count) : sort.permutation();
+      while (header && headerAt < order.length && order[headerAt] != 0) {
+        headerAt++;
+      }
+    }
+    JsonWriter writer = StreamingSerializer.open(response);
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("filepath").value(dataset.getFilepath());
+    writer.name("offset").value(from);
+    writer.name("total").value(data.size());
+    writer.name("data").beginArray();
+    for (int i = from; i < to; i++) {
+      writeRow(writer, data.get(rowAt(i, order, header, headerAt)), columns);
+    }
+    writer.endArray();
+    writer.endObject();
+    writer.flush();
+    return "";
+  }
+
+  /**
+   * Gets the id of the row written at a position. Without a sort order, that is the position
+   * itself. With one, the header (if any) is written first and the other rows follow in sorted
+   * order, skipping over the header's own place in it.
+   */
+  private static int rowAt(int position, int[] order, boolean header, int headerAt) {
+    if (order == null) {
+      return position;
+    }
+    if (!header) {
+      return order[position];
+    }
+    if (position == 0) {
+      return 0;
+    }
+    return position - 1 < headerAt ? order[position - 1] : order[position];
+  }
+
+  /**
+   * Writes a single row as a JSON array. If columns is null every cell is written, otherwise only
+   * the cells at the given indices; rows that are too short for a requested column get "".
+   */
+  private static void writeRow(JsonWriter writer, List<String> row, int[] columns)
+      throws IOException {
+    writer.beginArray();
+    if (columns == null) {
+      for (String cell : row) {
+        writer.value(cell);
+      }
+    } else {
+      for (int column : columns) {
+        writer.value(column < row.size() ? row.get(column) : "");
+      }
+    }
+    writer.endArray();
+  }
+
+  /**
+   * Parses a non-negative count query parameter, falling back to a default if it was not given.
+   * @throws NumberFormatException if the value is not a non-negative integer
+   */
+  private static int parseCount(String value, int fallback) {
+    if (value == null) {
+      return fallback;
+    }
+    int count = Integer.parseInt(value.strip());
+    if (count < 0) {
+      throw new NumberFormatException("negative count " + count);
+    }
+    return count;
+  }
+
+  /**
+   * Parses a comma separated list of zero-based column indices, or returns null if none was given.
+   * @throws NumberFormatException if any index is not a non-negative integer
+   */
+  private static int[] parseColumns(String value) {
+    if (value == null) {
+      return null;
+    }
+    String[] parts = value.split(",");
+    int[] columns = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      columns[i] = parseCount(parts[i], 0);
+    }
+    return columns;
   }
 
   /*
@@ -51,4 +193,4 @@ public class GetCSVHandler implements Handler {
   public String failureResponse(String errorMessage) {
     return FailureRecord.serialize(errorMessage);
   }
-}
\ No newline at end of file
+}
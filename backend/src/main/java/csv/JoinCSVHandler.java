@@ -0,0 +1,118 @@
+package csv;
+
+import com.squareup.moshi.JsonWriter;
+import csv.join.JoinType;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import responses.StreamingSerializer;
+import server.Handler;
+import spark.QueryParamsMap;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with the /joincsv endpoint on our local server.
+ * It joins two loaded CSVs, named by the left and right parameters, on a key column: on=column
+ * uses the same zero-based column of both, and on=leftColumn:rightColumn a different one of each.
+ * type=inner (the default) returns the rows whose keys match, and type=left also returns the left
+ * rows that matched nothing. Each output row is the left row's cells followed by the right row's,
+ * with nulls in place of the right row's cells for an unmatched left row.
+ */
+public class JoinCSVHandler implements Handler {
+
+  private static final Set<String> PARAMS = Set.of("left", "right", "on", "type");
+
+  /**
+   * This is the overridden handle method. It joins the two CSVs through the shared HashJoin and
+   * streams each joined row to the server in JSON format as soon as it is found.
+   *
+   * @param request
+   * @param response
+   * @return
+   */
+  @Override
+  public Object handle(Request request, Response response) throws IOException {
+    MapRecord.results.clear();
+    QueryParamsMap qm = request.queryMap();
+    String leftParam = qm.value("left");
+    String rightParam = qm.value("right");
+    String onParam = qm.value("on");
+    if (leftParam == null || rightParam == null || onParam == null
+        || !PARAMS.containsAll(request.queryParams())) {
+      return this.failureResponse("error_bad_request");
+    }
+    CSVDataset left = CSVDataHolder.registry.get(leftParam);
+    CSVDataset right = CSVDataHolder.registry.get(rightParam);
+    if (left == null || right == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    int leftColumn;
+    int rightColumn;
+    JoinType type;
+    try {
+      String[] on = onParam.split(":", -1);
+      if (on.length > 2) {
+        return this.failureResponse("error_bad_request");
+      }
+      leftColumn = Integer.parseInt(on[0].strip());
+      rightColumn = on.length == 2 ? Integer.parseInt(on[1].strip()) : leftColumn;
+      type = qm.value("type") == null ? JoinType.INNER : JoinType.parse(qm.value("type"));
+    } catch (IllegalArgumentException e) {
+      // also covers a NumberFormatException from a column that is not a number
+      return this.failureResponse("error_bad_request");
+    }
+    if (leftColumn < 0 || rightColumn < 0) {
+      return this.failureResponse("error_bad_request");
+    }
+
+    List<List<String>> leftRows = left.getRows();
+    List<List<String>> rightRows = right.getRows();
+    int rightWidth = rightRows.isEmpty() ? 0 : rightRows.get(0).size();
+    JsonWriter writer = StreamingSerializer.open(response);
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("left").value(left.getFilepath());
+    writer.name("right").value(right.getFilepath());
+    writer.name("type").value(type.name().toLowerCase(Locale.ROOT));
+    writer.name("data").beginArray();
+    long rows = CSVDataHolder.joins.run(leftRows, leftColumn, rightRows, rightColumn, type,
+        (leftRow, rightRow) -> {
+          writer.beginArray();
+          for (String cell : leftRows.get(leftRow)) {
+            writer.value(cell);
+          }
+          if (rightRow < 0) {
+            for (int i = 0; i < rightWidth; i++) {
+              writer.nullValue();
+            }
+          } else {
+            for (String cell : rightRows.get(rightRow)) {
+              writer.value(cell);
+            }
+          }
+          writer.endArray();
+        });
+    writer.endArray();
+    writer.name("rows").value(rows);
+    writer.endObject();
+    writer.flush();
+    return "";
+  }
+
+  /*
+   * Overridden interface methods
+   */
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
@@ -1,14 +1,13 @@
 package csv;
 
-import csv.CSVDataHolder.CSVDataHolderRecord;
-import csv.factories.StringFactory;
-import csv.utility.CSVParser;
 import responses.FailureResponse.FailureRecord;
 import responses.MapSerializer.MapRecord;
 import server.Handler;
+import csv.jobs.LoadJob;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import spark.QueryParamsMap;
 import spark.Request;
 import spark.Response;
@@ -17,14 +16,18 @@ import spark.Response;
  * This is the Handler class that is instantiated with the /loadCSV endpoint on our local server.
  * It takes in a filepath as a parameter, and if it is a valid CSV, it will parse it into a List of
  * List of Strings to be displayed via the /getCSV endpoint. The files that can be loaded are
- * restricted to the /data folder of this project.
+ * restricted to the /data folder of this project. Every loaded CSV is kept in the shared registry
+ * under its filepath, so loading a file does not unload the others. With follow=true the file is
+ * also followed, so records appended to it later are added to the loaded data; follow=false stops
+ * following it. Either one reports, as followError, the error that stopped the last follow, if any.
  */
 public class LoadCSVHandler implements Handler {
   /**
    * This is the overridden handle method. It populates a HashMap from String to Object with the
    * filepath and a result message then serializes it and prints it to the server in JSON format. If
    * it is a valid CSV, it also parses it and stores that data to be gotten by the /getCSV
-   * endpoint.
+   * endpoint. If async=true is given, the parse is started in the background instead and the
+   * response holds the id of its job.
    *
    * @param request
    * @param response
@@ -33,8 +36,6 @@ public class LoadCSVHandler implements Handler {
   @Override
   public Object handle(Request request, Response response) throws Exception {
     MapRecord.results.clear();
-    // Does not account for header because the goal is to return all of the data of the CSV
-    CSVParser<List<String>> parser = new CSVParser<>(new StringFactory(), false);
     QueryParamsMap qm = request.queryMap();
     String csvFile = qm.value("filename");
 
@@ -48,13 +49,42 @@ public class LoadCSVHandler implements Handler {
     } else {
       return this.failureResponse("error_datasource");
     }
+    String follow = qm.value("follow");
+    if (follow != null) {
+      // read before following again clears it
+      String followError = CSVDataHolder.followers.stopReason(csvFile);
+      try {
+        if (Boolean.parseBoolean(follow)) {
+          CSVDataHolder.followers.follow(csvFile);
+        } else {
+          CSVDataHolder.followers.unfollow(csvFile);
+        }
+      } catch (FileNotFoundException | NoSuchFileException e) {
+        return this.failureResponse("error_datasource");
+      }
+      MapRecord.results.put("result", "success");
+      MapRecord.results.put("following", CSVDataHolder.followers.isFollowing(csvFile));
+      if (followError != null) {
+        MapRecord.results.put("followError", followError);
+      }
+      return this.successResponse();
+    }
+    // With async=true the load runs in the background and only its job id is returned, to be
+    // polled through the /loadstatus endpoint
+    if (Boolean.parseBoolean(qm.value("async"))) {
+      if (!Files.isRegularFile(Paths.get(csvFile))) {
+        return this.failureResponse("error_datasource");
+      }
+      LoadJob job = CSVDataHolder.jobs.submit(csvFile);
+      MapRecord.results.put("result", "success");
+      MapRecord.results.put("job", job.getId());
+      return this.successResponse();
+    }
     // Tries to parse the CSV, if it fails, it will catch an exception and print an informative message
     try {
-      // creates a new FileReader with the CSV Filepath then parses it
-      parser.setReader(new FileReader(csvFile));
-      parser.parseCSV();
-      CSVDataHolderRecord.filepath = csvFile;
-      CSVDataHolderRecord.csvData = parser.getListOfRows();
+      // concurrent loads of the same file share one load through the registry, and an unchanged
+      // file is not parsed again
+      CSVDataHolder.registry.load(csvFile, () -> CSVDataHolder.loader.load(csvFile));
       MapRecord.results.put("result", "success");
       return this.successResponse();
     }
@@ -0,0 +1,23 @@
+package csv;
+
+import java.io.InputStream;
+
+/**
+ * Receives progress from a CSV load. The loader hands the file's input stream to track before
+ * parsing it, so an implementation can count the bytes as the parser reads them, or stop the load
+ * by throwing from the stream.
+ */
+public interface LoadProgress {
+
+  /** Progress that is not tracked. */
+  LoadProgress NONE = (in, totalBytes) -> in;
+
+  /**
+   * Wraps the input stream of the file being parsed.
+   *
+   * @param in the raw input stream of the file
+   * @param totalBytes the size of the file
+   * @return the stream the parser should read from
+   */
+  InputStream track(InputStream in, long totalBytes);
+}
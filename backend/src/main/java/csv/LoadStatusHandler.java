@@ -0,0 +1,86 @@
+package csv;
+
+import csv.intern.InternReport;
+import csv.jobs.LoadJob;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import server.Handler;
+import spark.QueryParamsMap;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with the /loadstatus endpoint on our local server.
+ * It takes in the id of a job started by /loadcsv?async=true and reports how far along the load is:
+ * its state, the bytes and rows read so far, the throughput and an estimate of the time left.
+ * Passing cancel=true as well cancels the job. Once a job that parsed its file is done, the
+ * response also reports how much heap interning the cells saved and the interning hit rate of each
+ * column. Every response also carries the loader's count of snapshots it could not read or write.
+ */
+public class LoadStatusHandler implements Handler {
+
+  /**
+   * This is the overridden handle method. It populates a HashMap from String to Object with the
+   * progress of the job then serializes it and prints it to the server in JSON format.
+   *
+   * @param request
+   * @param response
+   * @return serialized message
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    MapRecord.results.clear();
+    QueryParamsMap qm = request.queryMap();
+    String id = qm.value("job");
+    if (id == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    LoadJob job = CSVDataHolder.jobs.get(id);
+    if (job == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    if (Boolean.parseBoolean(qm.value("cancel"))) {
+      job.cancel();
+    }
+    MapRecord.results.put("result", "success");
+    MapRecord.results.put("job", job.getId());
+    MapRecord.results.put("filename", job.getFilename());
+    MapRecord.results.put("state", job.getState().name().toLowerCase(Locale.ROOT));
+    MapRecord.results.put("bytesProcessed", job.getBytesRead());
+    MapRecord.results.put("totalBytes", job.getTotalBytes());
+    MapRecord.results.put("rowsParsed", job.getRowsRead());
+    MapRecord.results.put("bytesPerSecond", Math.round(job.getBytesPerSecond()));
+    MapRecord.results.put("etaSeconds", job.getEtaSeconds());
+    if (job.getError() != null) {
+      MapRecord.results.put("error", job.getError());
+    }
+    InternReport report = job.getInternReport();
+    if (report != null) {
+      Map<String, Object> interning = new LinkedHashMap<>();
+      interning.put("bytesSaved", report.bytesSaved());
+      List<Double> hitRates = new ArrayList<>();
+      for (int column = 0; column < report.columns(); column++) {
+        hitRates.add(report.hitRate(column));
+      }
+      interning.put("hitRates", hitRates);
+      MapRecord.results.put("interning", interning);
+    }
+    MapRecord.results.put("snapshots", CSVDataHolder.loader.metrics());
+    return this.successResponse();
+  }
+
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
@@ -0,0 +1,107 @@
+package csv;
+
+import csv.query.Aggregate;
+import csv.query.Filter;
+import csv.query.QueryEngine;
+import csv.query.QueryResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import server.Handler;
+import spark.QueryParamsMap;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with the /querycsv endpoint on our local server.
+ * It runs a filter, group-by and aggregate query over a loaded CSV (the one named by the filename
+ * parameter, or the most recently loaded one) and returns only the aggregated table, so clients
+ * get a few rows of results instead of fetching the whole CSV to compute them. The parameters are
+ * comma separated lists: filter (column:op:value, with op one of eq, ne, lt, le, gt, ge), groupBy
+ * (zero-based columns) and agg (count, or sum, avg, min or max with :column). header=true leaves
+ * the first row out of the query.
+ */
+public class QueryCSVHandler implements Handler {
+
+  private static final Set<String> PARAMS =
+      Set.of("filename", "filter", "groupBy", "agg", "header");
+
+  /**
+   * This is the overridden handle method. It populates a HashMap from String to Object with the
+   * result table of the query then serializes it and prints it to the server in JSON format.
+   *
+   * @param request
+   * @param response
+   * @return serialized message
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    MapRecord.results.clear();
+    if (!PARAMS.containsAll(request.queryParams())) {
+      return this.failureResponse("error_bad_request");
+    }
+    QueryParamsMap qm = request.queryMap();
+    CSVDataset dataset = CSVDataHolder.registry.get(qm.value("filename"));
+    if (dataset == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    // a column no row has would only build and cache an all-missing column
+    int width = dataset.getIndex().width();
+    QueryResult result;
+    try {
+      List<Filter> filters = new ArrayList<>();
+      for (String spec : split(qm.value("filter"))) {
+        Filter filter = Filter.parse(spec);
+        if (filter.column() >= width) {
+          return this.failureResponse("error_bad_request");
+        }
+        filters.add(filter);
+      }
+      List<String> groupBySpecs = split(qm.value("groupBy"));
+      int[] groupBy = new int[groupBySpecs.size()];
+      for (int i = 0; i < groupBy.length; i++) {
+        groupBy[i] = Integer.parseInt(groupBySpecs.get(i).strip());
+        if (groupBy[i] < 0 || groupBy[i] >= width) {
+          return this.failureResponse("error_bad_request");
+        }
+      }
+      List<Aggregate> aggregates = new ArrayList<>();
+      for (String spec : split(qm.value("agg") == null ? "count" : qm.value("agg"))) {
+        Aggregate aggregate = Aggregate.parse(spec);
+        if (aggregate.column() >= width) {
+          return this.failureResponse("error_bad_request");
+        }
+        aggregates.add(aggregate);
+      }
+      int firstRow = Boolean.parseBoolean(qm.value("header")) ? 1 : 0;
+      result = QueryEngine.run(dataset.getColumns(), firstRow, filters, groupBy, aggregates);
+    } catch (IllegalArgumentException e) {
+      // also covers a NumberFormatException from a column or bound that is not a number
+      return this.failureResponse("error_bad_request");
+    }
+    MapRecord.results.put("result", "success");
+    MapRecord.results.put("filepath", dataset.getFilepath());
+    MapRecord.results.put("columns", result.columns());
+    MapRecord.results.put("rows", result.rows());
+    return this.successResponse();
+  }
+
+  /**
+   * Splits a comma separated parameter, giving no parts if it was not given.
+   */
+  private static List<String> split(String value) {
+    return value == null || value.isBlank() ? List.of() : List.of(value.split(","));
+  }
+
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
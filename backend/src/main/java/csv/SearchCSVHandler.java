@@ -0,0 +1,125 @@
+package csv;
+
+import com.squareup.moshi.JsonWriter;
+import csv.search.CSVIndex;
+import csv.search.ColumnIndex;
+import csv.search.PostingLists;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import responses.StreamingSerializer;
+import server.Handler;
+import spark.QueryParamsMap;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with the /searchcsv endpoint on our local server.
+ * It takes in a zero-based column and a value and returns the rows of a loaded CSV (the one named
+ * by the filename parameter, or the most recently loaded one) whose cell in that column matches the
+ * value. Several columns and values can be given as comma separated lists, in which case only rows
+ * matching all of them are returned. Searches are answered from per-column indexes that are built
+ * on first use and kept while the CSV stays loaded.
+ */
+public class SearchCSVHandler implements Handler {
+
+  private static final Set<String> PARAMS =
+      Set.of("filename", "column", "value", "ignoreCase", "match");
+
+  /**
+   * This is the overridden handle method. It looks up the posting list of every column/value pair,
+   * intersects them, and streams the matching row ids and rows to the server in JSON format.
+   *
+   * @param request
+   * @param response
+   * @return
+   */
+  @Override
+  public Object handle(Request request, Response response) throws IOException {
+    MapRecord.results.clear();
+    QueryParamsMap qm = request.queryMap();
+    String columnParam = qm.value("column");
+    String valueParam = qm.value("value");
+    String matchParam = qm.value("match");
+    if (columnParam == null || valueParam == null
+        || !PARAMS.containsAll(request.queryParams())) {
+      return this.failureResponse("error_bad_request");
+    }
+    boolean ignoreCase = Boolean.parseBoolean(qm.value("ignoreCase"));
+    boolean substring;
+    if (matchParam == null || matchParam.equals("exact")) {
+      substring = false;
+    } else if (matchParam.equals("substring")) {
+      substring = true;
+    } else {
+      return this.failureResponse("error_bad_request");
+    }
+    // cells never contain commas, since the parser splits on them, so values can be comma separated
+    String[] columns = columnParam.split(",", -1);
+    String[] values = valueParam.split(",", -1);
+    if (columns.length != values.length) {
+      return this.failureResponse("error_bad_request");
+    }
+    CSVDataset dataset = CSVDataHolder.registry.get(qm.value("filename"));
+    if (dataset == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    CSVIndex index = dataset.getIndex();
+
+    int[] matches = null;
+    try {
+      for (int i = 0; i < columns.length && (matches == null || matches.length > 0); i++) {
+        int column = Integer.parseInt(columns[i].strip());
+        if (column < 0 || column >= index.width()) {
+          return this.failureResponse("error_bad_request");
+        }
+        ColumnIndex columnIndex = index.column(column);
+        String value = values[i].strip();
+        int[] rows = substring ? columnIndex.substring(value, ignoreCase)
+            : columnIndex.exact(value, ignoreCase);
+        matches = matches == null ? rows : PostingLists.intersect(matches, rows);
+      }
+    } catch (NumberFormatException e) {
+      return this.failureResponse("error_bad_request");
+    }
+
+    List<List<String>> data = dataset.getRows();
+    JsonWriter writer = StreamingSerializer.open(response);
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("filepath").value(dataset.getFilepath());
+    writer.name("matches").value(matches.length);
+    writer.name("rowIds").beginArray();
+    for (int row : matches) {
+      writer.value(row);
+    }
+    writer.endArray();
+    writer.name("data").beginArray();
+    for (int row : matches) {
+      writer.beginArray();
+      for (String cell : data.get(row)) {
+        writer.value(cell);
+      }
+      writer.endArray();
+    }
+    writer.endArray();
+    writer.endObject();
+    writer.flush();
+    return "";
+  }
+
+  /*
+   * Overridden interface methods
+   */
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
@@ -0,0 +1,117 @@
+package csv;
+
+import csv.factories.FactoryFailureException;
+import csv.upload.ReadAheadInputStream;
+import csv.upload.UploadTooLargeException;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import server.Handler;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with POST requests to the /loadCSV endpoint on our
+ * local server. Other services push a CSV as the request body and it becomes a loaded dataset, just
+ * as if the same bytes had been loaded from a file by the GET /loadCSV endpoint. The filename is
+ * read from the query string alone, so the body is never read as form parameters, whatever content
+ * type it is sent with. The filename parameter names the dataset for /getCSV and the other CSV
+ * endpoints, and must start with upload/ so uploads never take the place of files in the data
+ * folder.
+ */
+public class UploadCSVHandler implements Handler {
+
+  // read-ahead of the request body: at most BUFFERS reads of BUFFER_BYTES ahead of the parser
+  private static final int BUFFER_BYTES = 1 << 16;
+  private static final int BUFFERS = 4;
+
+  private final long maxBytes;
+
+  /**
+   * Creates the handler, taking uploads of up to -Dcsv.uploadMaxBytes bytes (256MB by default).
+   */
+  public UploadCSVHandler() {
+    this(Long.getLong("csv.uploadMaxBytes", 256L << 20));
+  }
+
+  /**
+   * Creates the handler, taking uploads of up to the given number of bytes.
+   */
+  public UploadCSVHandler(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * This is the overridden handle method. It feeds the request body into the parser while the body
+   * is still arriving, through a bounded ReadAheadInputStream, so the whole upload is never held
+   * as bytes. An upload that says or turns out to be larger than the limit is a bad request.
+   *
+   * @param request
+   * @param response
+   * @return serialized message
+   */
+  @Override
+  public Object handle(Request request, Response response) throws IOException {
+    MapRecord.results.clear();
+    String name = queryParam(request.raw().getQueryString(), "filename");
+    if (name == null || !name.startsWith("upload/") || name.length() == "upload/".length()) {
+      return this.failureResponse("error_bad_request");
+    }
+    if (request.raw().getContentLengthLong() > this.maxBytes) {
+      return this.failureResponse("error_bad_request");
+    }
+    CSVDataset dataset;
+    long bytes;
+    try (ReadAheadInputStream in = new ReadAheadInputStream(request.raw().getInputStream(),
+        BUFFER_BYTES, BUFFERS, this.maxBytes)) {
+      dataset = CSVDataHolder.loader.load(name, in);
+      bytes = in.getBytesRead();
+    } catch (UploadTooLargeException e) {
+      return this.failureResponse("error_bad_request");
+    } catch (IOException | FactoryFailureException e) {
+      // the upload was cut off or could not be read
+      return this.failureResponse("error_datasource");
+    }
+    CSVDataHolder.registry.put(dataset);
+    MapRecord.results.put("result", "success");
+    MapRecord.results.put("filename", name);
+    MapRecord.results.put("rows", dataset.getRows().size());
+    MapRecord.results.put("bytes", bytes);
+    return this.successResponse();
+  }
+
+  /**
+   * Gets a parameter from a query string without looking at the body. Asking the request for query
+   * parameters would make Jetty read a form-encoded body, which is the upload, as parameters too.
+   *
+   * @param query the raw query string, or null if there is none
+   * @param name the name of the parameter
+   * @return the decoded value of the first parameter with the name, or null if there is none
+   */
+  private static String queryParam(String query, String name) {
+    if (query == null) {
+      return null;
+    }
+    for (String pair : query.split("&")) {
+      int equals = pair.indexOf('=');
+      String key = equals < 0 ? pair : pair.substring(0, equals);
+      if (URLDecoder.decode(key, StandardCharsets.UTF_8).equals(name)) {
+        return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1),
+            StandardCharsets.UTF_8);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
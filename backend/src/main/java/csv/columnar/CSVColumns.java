@@ -0,0 +1,107 @@
+package csv.columnar;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Holds the columnar forms of one loaded CSV, for queries that work a column at a time. Like the
+ * search index, each column is converted the first time it is needed and then kept for as long as
+ * the same data stays loaded, and its size is reported so it can be charged against the memory
+ * budget.
+ */
+public class CSVColumns {
+
+  private final List<List<String>> rows;
+  private final Map<Integer, DictionaryColumn> dictionaries;
+  private final Map<Integer, NumericColumn> numbers;
+  // keyed by column * 2, plus one for descending
+  private final Map<Integer, ColumnSort> sorts;
+  private final LongConsumer charge;
+
+  public CSVColumns(List<List<String>> rows) {
+    this(rows, bytes -> { });
+  }
+
+  /**
+   * Constructor of the CSVColumns class for columns whose size is charged to a dataset.
+   *
+   * @param rows the loaded CSV rows
+   * @param charge told the estimated bytes of each columnar form as it is built
+   */
+  public CSVColumns(List<List<String>> rows, LongConsumer charge) {
+    this.rows = rows;
+    this.dictionaries = new ConcurrentHashMap<>();
+    this.numbers = new ConcurrentHashMap<>();
+    this.sorts = new ConcurrentHashMap<>();
+    this.charge = charge;
+  }
+
+  /**
+   * Gets a column as dictionary codes, encoding it if this is the first time it has been asked for.
+   *
+   * @param column zero-based index of the column
+   */
+  public DictionaryColumn dictionary(int column) {
+    return this.dictionaries.computeIfAbsent(column, c -> {
+      DictionaryColumn dictionary = DictionaryColumn.build(this.rows, c);
+      this.charge.accept(dictionary.estimatedBytes());
+      return dictionary;
+    });
+  }
+
+  /**
+   * Gets a column as numbers, reading it if this is the first time it has been asked for.
+   *
+   * @param column zero-based index of the column
+   */
+  public NumericColumn numeric(int column) {
+    return this.numbers.computeIfAbsent(column, c -> {
+      NumericColumn numeric = NumericColumn.build(this.rows, c);
+      this.charge.accept(numeric.estimatedBytes());
+      return numeric;
+    });
+  }
+
+  /**
+   * Gets the sort order of the rows by a column, ranking the column's values if this is the first
+   * time it has been asked for.
+   *
+   * @param column zero-based index of the column
+   * @param descending whether to sort from the largest value to the smallest
+   */
+  public ColumnSort sort(int column, boolean descending) {
+    return this.sorts.computeIfAbsent(column * 2 + (descending ? 1 : 0),
+        key -> new ColumnSort(this.dictionary(column), descending, this.charge));
+  }
+
+  /**
+   * Makes the columnar forms of rows that extend the ones these forms cover, such as the rows of a
+   * file that was appended to. Every dictionary and numeric column converted so far is extended
+   * with the added rows. Sort orders are not carried over, since the added values change the ranks;
+   * they are built again on first use.
+   *
+   * @param rows these forms' rows followed by the added rows
+   * @param charge told the estimated bytes of each columnar form of the new forms as it is built
+   * @return the columnar forms of all the rows
+   */
+  public CSVColumns extend(List<List<String>> rows, LongConsumer charge) {
+    CSVColumns extended = new CSVColumns(rows, charge);
+    this.dictionaries.forEach((column, dictionary) -> {
+      DictionaryColumn grown = dictionary.extend(rows, column);
+      charge.accept(grown.estimatedBytes());
+      extended.dictionaries.put(column, grown);
+    });
+    this.numbers.forEach((column, numeric) -> {
+      NumericColumn grown = numeric.extend(rows, column);
+      charge.accept(grown.estimatedBytes());
+      extended.numbers.put(column, grown);
+    });
+    return extended;
+  }
+
+  public int getRowCount() {
+    return this.rows.size();
+  }
+}
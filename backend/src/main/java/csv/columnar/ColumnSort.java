@@ -0,0 +1,254 @@
+package csv.columnar;
+
+import csv.factories.ColumnType;
+import csv.utility.CSVRowView;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * The sort order of the rows of loaded CSV data by one column, in one direction. In either
+ * direction, cells that are numbers come first, in numeric order, then the other cells in String
+ * order, and rows too short to have the column come last; rows with equal cells keep their
+ * original order.
+ *
+ * <p>Only the distinct values of the column are compared: each dictionary code gets a rank, and the
+ * rows are then counting-sorted by the rank of their code into an int[] permutation of row ids,
+ * without moving or boxing any rows. The permutation is built on first use and kept, so later
+ * requests only read k entries of it. A top-k request before then is answered with a bounded heap
+ * of k row ids instead of a full sort.
+ */
+public class ColumnSort {
+
+  private final DictionaryColumn column;
+  private final int[] ranks;
+  private volatile int[] permutation;
+  private int topRequests;
+  private final LongConsumer charge;
+
+  /**
+   * Constructor of the ColumnSort class, which ranks the column's distinct values.
+   *
+   * @param column the dictionary codes of the column
+   * @param descending whether to sort from the largest value to the smallest
+   */
+  public ColumnSort(DictionaryColumn column, boolean descending) {
+    this(column, descending, bytes -> { });
+  }
+
+  /**
+   * Constructor of the ColumnSort class for a sort whose size is charged to a dataset: that of the
+   * ranks now, and that of the permutation once it is built.
+   *
+   * @param column the dictionary codes of the column
+   * @param descending whether to sort from the largest value to the smallest
+   * @param charge told the estimated bytes of the ranks and of the permutation
+   */
+  public ColumnSort(DictionaryColumn column, boolean descending, LongConsumer charge) {
+    this.column = column;
+    this.charge = charge;
+    int distinct = column.cardinality();
+    boolean[] numeric = new boolean[distinct];
+    double[] numbers = new double[distinct];
+    CSVRowView view = new CSVRowView();
+    for (int code = 0; code < distinct; code++) {
+      char[] chars = column.value(code).toCharArray();
+      view.reset(chars, 0, chars.length);
+      ColumnType type = view.cellCount() == 1 ? view.classify(0) : null;
+      if (type != null && type != ColumnType.STRING) {
+        numbers[code] = view.parseDouble(0);
+        numeric[code] = true;
+      }
+    }
+    int[] codes = new int[distinct];
+    for (int code = 0; code < distinct; code++) {
+      codes[code] = code;
+    }
+    mergeSort(codes, new int[distinct], 0, distinct, (a, b) -> {
+      if (numeric[a] != numeric[b]) {
+        return numeric[a] ? -1 : 1;
+      }
+      int order = numeric[a] ? Double.compare(numbers[a], numbers[b])
+          : column.value(a).compareTo(column.value(b));
+      return descending ? -order : order;
+    });
+    this.ranks = new int[distinct];
+    for (int rank = 0; rank < distinct; rank++) {
+      this.ranks[codes[rank]] = rank;
+    }
+    charge.accept(16 + 4L * distinct);
+  }
+
+  /**
+   * Gets the row ids in sorted order, sorting them the first time.
+   */
+  public int[] permutation() {
+    int[] sorted = this.permutation;
+    if (sorted == null) {
+      synchronized (this) {
+        sorted = this.permutation;
+        if (sorted == null) {
+          sorted = this.countingSort();
+          this.permutation = sorted;
+          this.charge.accept(16 + 4L * sorted.length);
+        }
+      }
+    }
+    return sorted;
+  }
+
+  /**
+   * Gets the first k row ids in sorted order. Once the full permutation has been built this just
+   * copies k entries of it; the first top-k request selects them with a bounded heap in
+   * O(n log k), and a repeated one builds the permutation so that later ones are O(k).
+   *
+   * @param k the number of rows wanted
+   * @return the ids of the first min(k, rows) rows in sorted order
+   */
+  public int[] top(int k) {
+    int count = Math.min(k, this.rowCount());
+    int[] sorted = this.permutation;
+    if (sorted == null) {
+      synchronized (this) {
+        if (this.topRequests++ == 0) {
+          return this.heapSelect(count);
+        }
+      }
+      sorted = this.permutation();
+    }
+    return Arrays.copyOf(sorted, count);
+  }
+
+  private int rowCount() {
+    return this.column.size();
+  }
+
+  /**
+   * Gets the sort key of a row: the rank of its value, or one past the last rank if it is missing.
+   */
+  private int rank(int row) {
+    int code = this.column.code(row);
+    return code == DictionaryColumn.MISSING ? this.ranks.length : this.ranks[code];
+  }
+
+  private int[] countingSort() {
+    int rows = this.rowCount();
+    int[] starts = new int[this.ranks.length + 2];
+    for (int row = 0; row < rows; row++) {
+      starts[this.rank(row) + 1]++;
+    }
+    for (int rank = 1; rank < starts.length; rank++) {
+      starts[rank] += starts[rank - 1];
+    }
+    int[] sorted = new int[rows];
+    for (int row = 0; row < rows; row++) {
+      sorted[starts[this.rank(row)]++] = row;
+    }
+    return sorted;
+  }
+
+  /**
+   * Selects the first k rows with a max-heap of k row ids, whose root is the greatest row kept so
+   * far and is replaced whenever a smaller row is found.
+   */
+  private int[] heapSelect(int k) {
+    int[] heap = new int[k];
+    if (k == 0) {
+      return heap;
+    }
+    int size = 0;
+    for (int row = 0; row < this.rowCount(); row++) {
+      if (size < k) {
+        heap[size] = row;
+        this.siftUp(heap, size++);
+      } else if (this.before(row, heap[0])) {
+        heap[0] = row;
+        this.siftDown(heap, 0, k);
+      }
+    }
+    // popping the root repeatedly leaves the heap in ascending order
+    for (int end = k - 1; end > 0; end--) {
+      int root = heap[0];
+      heap[0] = heap[end];
+      heap[end] = root;
+      this.siftDown(heap, 0, end);
+    }
+    return heap;
+  }
+
+  /**
+   * Checks whether row a sorts before row b, with ties broken by row id so the order is stable.
+   */
+  private boolean before(int a, int b) {
+    int rankA = this.rank(a);
+    int rankB = this.rank(b);
+    return rankA != rankB ? rankA < rankB : a < b;
+  }
+
+  private void siftUp(int[] heap, int at) {
+    while (at > 0) {
+      int parent = (at - 1) / 2;
+      if (!this.before(heap[parent], heap[at])) {
+        return;
+      }
+      int swap = heap[parent];
+      heap[parent] = heap[at];
+      heap[at] = swap;
+      at = parent;
+    }
+  }
+
+  private void siftDown(int[] heap, int at, int size) {
+    while (true) {
+      int largest = at;
+      int left = 2 * at + 1;
+      int right = left + 1;
+      if (left < size && this.before(heap[largest], heap[left])) {
+        largest = left;
+      }
+      if (right < size && this.before(heap[largest], heap[right])) {
+        largest = right;
+      }
+      if (largest == at) {
+        return;
+      }
+      int swap = heap[largest];
+      heap[largest] = heap[at];
+      heap[at] = swap;
+      at = largest;
+    }
+  }
+
+  /**
+   * Compares two ints, as a Comparator would compare two Integers.
+   */
+  private interface IntComparator {
+    int compare(int a, int b);
+  }
+
+  /**
+   * Sorts a range of an int array with a stable merge sort.
+   */
+  private static void mergeSort(int[] values, int[] scratch, int from, int to,
+      IntComparator comparator) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(values, scratch, from, middle, comparator);
+    mergeSort(values, scratch, middle, to, comparator);
+    if (comparator.compare(values[middle - 1], values[middle]) <= 0) {
+      return;
+    }
+    System.arraycopy(values, from, scratch, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < middle
+          && comparator.compare(scratch[left], scratch[right]) <= 0)) {
+        values[i] = scratch[left++];
+      } else {
+        values[i] = scratch[right++];
+      }
+    }
+  }
+}
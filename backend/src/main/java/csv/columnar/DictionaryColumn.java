@@ -0,0 +1,114 @@
+package csv.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column of loaded CSV data stored as dictionary codes: every distinct value gets an int code,
+ * and the column is an int[] holding the code of each row, or -1 where the row is too short to have
+ * the column. Comparing or grouping rows by the column then works on ints rather than Strings.
+ */
+public class DictionaryColumn {
+
+  public static final int MISSING = -1;
+
+  private final int[] codes;
+  private final String[] values;
+  private final Map<String, Integer> lookup;
+
+  private DictionaryColumn(int[] codes, String[] values, Map<String, Integer> lookup) {
+    this.codes = codes;
+    this.values = values;
+    this.lookup = lookup;
+  }
+
+  /**
+   * Encodes one column of the given rows.
+   *
+   * @param rows the loaded CSV rows
+   * @param column zero-based index of the column
+   * @return the encoded column
+   */
+  public static DictionaryColumn build(List<List<String>> rows, int column) {
+    return new DictionaryColumn(new int[0], new String[0], new HashMap<>()).extend(rows, column);
+  }
+
+  /**
+   * Encodes the same column of rows that extend the ones this column was encoded from, such as the
+   * rows of a file that was appended to. The codes already given are kept, and only the added rows
+   * are read; this column is left as it was.
+   *
+   * @param rows this column's rows followed by the added rows
+   * @param column zero-based index of the column
+   * @return the encoded column of all the rows
+   */
+  public DictionaryColumn extend(List<List<String>> rows, int column) {
+    int[] codes = Arrays.copyOf(this.codes, rows.size());
+    List<String> values = new ArrayList<>(Arrays.asList(this.values));
+    Map<String, Integer> lookup = new HashMap<>(this.lookup);
+    for (int row = this.codes.length; row < codes.length; row++) {
+      List<String> cells = rows.get(row);
+      if (column >= cells.size()) {
+        codes[row] = MISSING;
+        continue;
+      }
+      String value = cells.get(column);
+      Integer code = lookup.get(value);
+      if (code == null) {
+        code = values.size();
+        lookup.put(value, code);
+        values.add(value);
+      }
+      codes[row] = code;
+    }
+    return new DictionaryColumn(codes, values.toArray(new String[0]), lookup);
+  }
+
+  /**
+   * Gets the code of the given row's value, or MISSING.
+   */
+  public int code(int row) {
+    return this.codes[row];
+  }
+
+  /**
+   * Gets the code of a value, or MISSING if no row holds it.
+   */
+  public int codeOf(String value) {
+    Integer code = this.lookup.get(value);
+    return code == null ? MISSING : code;
+  }
+
+  /**
+   * Gets the value of a code, or null for MISSING.
+   */
+  public String value(int code) {
+    return code == MISSING ? null : this.values[code];
+  }
+
+  /**
+   * Gets the number of rows in the column.
+   */
+  public int size() {
+    return this.codes.length;
+  }
+
+  /**
+   * Gets the number of distinct values.
+   */
+  public int cardinality() {
+    return this.values.length;
+  }
+
+  /**
+   * Gets the rough heap size of the codes and the dictionary. The values themselves are the rows'
+   * own Strings and are not counted again.
+   */
+  public long estimatedBytes() {
+    // two array headers, then a code per row, a reference per value and a map entry per value
+    return 32 + 4L * this.codes.length + 4L * this.values.length + 56L * this.lookup.size();
+  }
+}
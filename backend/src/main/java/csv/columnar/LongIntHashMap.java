@@ -0,0 +1,104 @@
+package csv.columnar;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to int values, stored in two parallel primitive arrays with open
+ * addressing and linear probing, so looking up or adding a key never boxes it or allocates an
+ * entry. Keys cannot be removed. Used to give group keys dense ids during hash aggregation.
+ */
+public class LongIntHashMap {
+
+  private static final int EMPTY = -1;
+
+  private long[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+
+  public LongIntHashMap() {
+    this(16);
+  }
+
+  /**
+   * Constructor of the LongIntHashMap class.
+   *
+   * @param expected how many keys to size the table for
+   */
+  public LongIntHashMap(int expected) {
+    int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+    this.keys = new long[capacity];
+    this.values = new int[capacity];
+    Arrays.fill(this.values, EMPTY);
+    this.mask = capacity - 1;
+    this.size = 0;
+  }
+
+  /**
+   * Gets the value of a key, adding the key with the given value if it is not present.
+   *
+   * @param key the key to look up
+   * @param value the value to add the key with, which must not be negative
+   * @return the key's value, which is the given value if the key was just added
+   */
+  public int getOrPut(long key, int value) {
+    int slot = this.slot(key);
+    while (this.values[slot] != EMPTY) {
+      if (this.keys[slot] == key) {
+        return this.values[slot];
+      }
+      slot = (slot + 1) & this.mask;
+    }
+    this.keys[slot] = key;
+    this.values[slot] = value;
+    // keep the table at most half full, so probe sequences stay short
+    if (++this.size * 2 > this.keys.length) {
+      this.grow();
+    }
+    return value;
+  }
+
+  /**
+   * Gets the value of a key.
+   *
+   * @return the key's value, or -1 if the key is not present
+   */
+  public int get(long key) {
+    int slot = this.slot(key);
+    while (this.values[slot] != EMPTY) {
+      if (this.keys[slot] == key) {
+        return this.values[slot];
+      }
+      slot = (slot + 1) & this.mask;
+    }
+    return EMPTY;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  private int slot(long key) {
+    long hash = key * 0x9e3779b97f4a7c15L;
+    return (int) (hash ^ (hash >>> 32)) & this.mask;
+  }
+
+  private void grow() {
+    long[] oldKeys = this.keys;
+    int[] oldValues = this.values;
+    this.keys = new long[oldKeys.length * 2];
+    this.values = new int[oldValues.length * 2];
+    Arrays.fill(this.values, EMPTY);
+    this.mask = this.keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != EMPTY) {
+        int slot = this.slot(oldKeys[i]);
+        while (this.values[slot] != EMPTY) {
+          slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = oldKeys[i];
+        this.values[slot] = oldValues[i];
+      }
+    }
+  }
+}
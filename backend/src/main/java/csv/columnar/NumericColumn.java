@@ -0,0 +1,93 @@
+package csv.columnar;
+
+import csv.factories.ColumnType;
+import csv.utility.CSVRowView;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A column of loaded CSV data read as numbers: a double[] with the value of each row, and a bitmap
+ * of the rows whose cell is a number. Rows whose cell is empty, missing or not a number are left
+ * out of the bitmap, so aggregates and comparisons skip them, as SQL skips nulls.
+ */
+public class NumericColumn {
+
+  private final double[] values;
+  private final BitSet present;
+
+  private NumericColumn(double[] values, BitSet present) {
+    this.values = values;
+    this.present = present;
+  }
+
+  /**
+   * Reads one column of the given rows as numbers. Cells are parsed in place through a reused row
+   * view rather than with Double.parseDouble, so no objects are made per cell.
+   *
+   * @param rows the loaded CSV rows
+   * @param column zero-based index of the column
+   * @return the numeric column
+   */
+  public static NumericColumn build(List<List<String>> rows, int column) {
+    return new NumericColumn(new double[0], new BitSet()).extend(rows, column);
+  }
+
+  /**
+   * Reads the same column of rows that extend the ones this column was read from, such as the rows
+   * of a file that was appended to. Only the added rows are read; this column is left as it was.
+   *
+   * @param rows this column's rows followed by the added rows
+   * @param column zero-based index of the column
+   * @return the numeric column of all the rows
+   */
+  public NumericColumn extend(List<List<String>> rows, int column) {
+    double[] values = Arrays.copyOf(this.values, rows.size());
+    BitSet present = (BitSet) this.present.clone();
+    CSVRowView view = new CSVRowView();
+    char[] scratch = new char[64];
+    for (int row = this.values.length; row < values.length; row++) {
+      List<String> cells = rows.get(row);
+      if (column >= cells.size()) {
+        continue;
+      }
+      String cell = cells.get(column);
+      if (cell.length() > scratch.length) {
+        scratch = new char[cell.length() * 2];
+      }
+      cell.getChars(0, cell.length(), scratch, 0);
+      // cells never hold commas, so the view sees the cell as a single cell
+      view.reset(scratch, 0, cell.length());
+      ColumnType type = view.classify(0);
+      if (type != null && type != ColumnType.STRING) {
+        double value = view.parseDouble(0);
+        if (Double.isFinite(value)) {
+          values[row] = value;
+          present.set(row);
+        }
+      }
+    }
+    return new NumericColumn(values, present);
+  }
+
+  /**
+   * Gets the value of the given row, which is 0 if isPresent is false for it.
+   */
+  public double value(int row) {
+    return this.values[row];
+  }
+
+  /**
+   * Checks whether the given row's cell is a number.
+   */
+  public boolean isPresent(int row) {
+    return this.present.get(row);
+  }
+
+  /**
+   * Gets the rough heap size of the values and the bitmap.
+   */
+  public long estimatedBytes() {
+    return 16 + 8L * this.values.length + 40 + this.present.size() / 8;
+  }
+}
@@ -0,0 +1,12 @@
+package csv.factories;
+
+/**
+ * The kinds of value a CSV cell can hold, as told apart by NumberParsing.classify: the narrowest
+ * number type that holds the cell, or STRING if it is not a number.
+ */
+public enum ColumnType {
+  INT,
+  LONG,
+  DOUBLE,
+  STRING
+}
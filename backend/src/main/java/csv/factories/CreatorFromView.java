@@ -0,0 +1,25 @@
+package csv.factories;
+
+import csv.utility.CSVRowView;
+
+/**
+ * Creates an object of type T from a view of a row of CSV data. This is the allocation-free
+ * counterpart of CreatorFromRow: rather than a new List of stripped Strings, the creator is given a
+ * CSVRowView that is reused for every row, and reads just the cells it needs, as CharSequence
+ * slices (CSVRowView.cell) or as numbers parsed straight from the row's buffer (CSVRowView.parseInt
+ * and parseDouble).
+ *
+ * @param <T> object to be created
+ */
+public interface CreatorFromView<T> {
+
+  /**
+   * Creates object of type T from the given row. The view and its slices are only valid until this
+   * method returns, so anything kept from them must be copied out.
+   *
+   * @param row view of a row of CSV data.
+   * @return the converted row of CSV data as an object of type T.
+   * @throws FactoryFailureException when row cannot be converted into an object of type T.
+   */
+  T create(CSVRowView row) throws FactoryFailureException;
+}
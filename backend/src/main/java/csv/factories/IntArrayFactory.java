@@ -0,0 +1,23 @@
+package csv.factories;
+
+import csv.utility.CSVRowView;
+
+/**
+ * Factory to convert a row of CSV data to an array of ints. Does the same job as IntegerFactory,
+ * but parses each cell straight from the row's buffer, so the only allocation per row is the array.
+ */
+public class IntArrayFactory implements CreatorFromView<int[]> {
+
+  @Override
+  public int[] create(CSVRowView row) throws FactoryFailureException {
+    int[] values = new int[row.cellCount()];
+    for (int cell = 0; cell < values.length; cell++) {
+      try {
+        values[cell] = row.parseInt(cell);
+      } catch (NumberFormatException e) {
+        throw new FactoryFailureException(row.toList());
+      }
+    }
+    return values;
+  }
+}
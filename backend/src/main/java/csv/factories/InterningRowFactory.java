@@ -0,0 +1,27 @@
+package csv.factories;
+
+import csv.intern.CellInterner;
+import csv.utility.CSVRowView;
+import java.util.List;
+
+/**
+ * Factory to convert a row of CSV data to an immutable List of Strings, as StringFactory does, but
+ * with every cell interned so that repeated values share one String.
+ */
+public class InterningRowFactory implements CreatorFromView<List<String>> {
+
+  private final CellInterner interner;
+
+  public InterningRowFactory(CellInterner interner) {
+    this.interner = interner;
+  }
+
+  @Override
+  public List<String> create(CSVRowView row) {
+    String[] cells = new String[row.cellCount()];
+    for (int cell = 0; cell < cells.length; cell++) {
+      cells[cell] = this.interner.intern(row, cell);
+    }
+    return List.of(cells);
+  }
+}
@@ -0,0 +1,27 @@
+package csv.factories;
+
+import csv.utility.CSVRowView;
+
+/**
+ * Receives the rows of CSV data one at a time, without a List of Strings being made for each row.
+ * Where CreatorFromRow builds an object per row, a RowSink is given a view of the row that is
+ * reused for every row, and copies out only what it needs (for example into primitive arrays).
+ */
+public interface RowSink {
+
+  /**
+   * Accepts the next row of CSV data. The view is only valid until this method returns.
+   *
+   * @param row view of the row's cells
+   * @throws FactoryFailureException when the row cannot be accepted.
+   */
+  void accept(CSVRowView row) throws FactoryFailureException;
+
+  /**
+   * Called once after the last row has been accepted.
+   *
+   * @throws FactoryFailureException when rows held back by the sink cannot be accepted.
+   */
+  default void finish() throws FactoryFailureException {
+  }
+}
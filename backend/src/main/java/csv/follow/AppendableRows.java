@@ -0,0 +1,97 @@
+package csv.follow;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Rows of a CSV that a single writer appends to while any number of readers read them without
+ * locking. Rows are stored in fixed-size chunks, so appending never copies existing rows, and a
+ * reader takes a snapshot: an immutable List of the rows appended before the snapshot was taken,
+ * which later appends do not change.
+ */
+public class AppendableRows {
+
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  // the chunk directory is replaced, never changed in place, when it needs room for a new chunk
+  private volatile Object[][] chunks;
+  private volatile int size;
+
+  /**
+   * Constructor of the AppendableRows class.
+   *
+   * @param initial the rows to start with
+   */
+  public AppendableRows(List<List<String>> initial) {
+    this.chunks = new Object[8][];
+    this.size = 0;
+    for (List<String> row : initial) {
+      this.append(row);
+    }
+  }
+
+  /**
+   * Appends a row. Only one thread may append.
+   *
+   * @param row the row to append
+   */
+  public void append(List<String> row) {
+    int at = this.size;
+    int chunk = at >>> CHUNK_BITS;
+    Object[][] directory = this.chunks;
+    if (chunk == directory.length) {
+      directory = Arrays.copyOf(directory, directory.length * 2);
+    }
+    if (directory[chunk] == null) {
+      directory[chunk] = new Object[CHUNK_SIZE];
+      this.chunks = directory;
+    }
+    directory[chunk][at & (CHUNK_SIZE - 1)] = row;
+    // the volatile write of the size publishes the row, and any new chunk, to readers
+    this.size = at + 1;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Gets an immutable view of the rows appended so far.
+   */
+  public List<List<String>> snapshot() {
+    // read the size first: every chunk holding those rows was published before it was written
+    int count = this.size;
+    return new Snapshot(this.chunks, count);
+  }
+
+  /**
+   * A fixed-length view of the chunks.
+   */
+  private static final class Snapshot extends AbstractList<List<String>> implements RandomAccess {
+
+    private final Object[][] chunks;
+    private final int size;
+
+    private Snapshot(Object[][] chunks, int size) {
+      this.chunks = chunks;
+      this.size = size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> get(int index) {
+      if (index < 0 || index >= this.size) {
+        throw new IndexOutOfBoundsException(index);
+      }
+      return (List<String>) this.chunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+  }
+}
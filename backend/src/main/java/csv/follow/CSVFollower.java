@@ -0,0 +1,215 @@
+package csv.follow;
+
+import csv.CSVDataset;
+import csv.CSVRegistry;
+import csv.factories.FactoryFailureException;
+import csv.factories.InterningRowFactory;
+import csv.intern.CellInterner;
+import csv.snapshot.LoadKey;
+import csv.utility.CSVParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Follows one loaded CSV file that is being appended to. The follower remembers the byte offset
+ * just after the last complete record (the last line break) it has read, and each poll parses only
+ * the bytes appended since, up to the new last line break; a partly written last line waits until
+ * its line break arrives. The new rows are appended to the rows already loaded, and a new dataset
+ * holding all of them is swapped into the registry, so readers of the old dataset are never
+ * blocked or changed. Records must end with a "\n" line break to be followed.
+ *
+ * <p>The new dataset carries over the old one's search index and columnar forms, extended with the
+ * new rows, and a LoadKey for the bytes read so far, kept up to date by hashing only the appended
+ * bytes. Loading the file again while nothing more has been appended then finds the followed
+ * dataset in the registry instead of parsing the file.
+ */
+public class CSVFollower {
+
+  private final String filepath;
+  private final Path path;
+  private final CSVRegistry registry;
+  private final CellInterner interner;
+  private AppendableRows rows;
+  private long offset;
+  // hash of the bytes before the offset
+  private MessageDigest digest;
+  private CSVDataset published;
+
+  /**
+   * Starts following a file from the dataset loaded from its current contents.
+   *
+   * @param registry the registry the dataset is registered in
+   * @param dataset the dataset loaded from the file's current contents
+   * @param interner interns the cells of appended rows
+   * @throws IOException if the file cannot be read
+   */
+  public CSVFollower(CSVRegistry registry, CSVDataset dataset, CellInterner interner)
+      throws IOException {
+    this.filepath = dataset.getFilepath();
+    this.path = Paths.get(this.filepath);
+    this.registry = registry;
+    this.interner = interner;
+    this.start(dataset);
+  }
+
+  private void start(CSVDataset dataset) throws IOException {
+    long size = Files.size(this.path);
+    this.offset = lastRecordEnd(this.path, size);
+    List<List<String>> loaded = dataset.getRows();
+    if (this.offset < size && !loaded.isEmpty()) {
+      // the parser read the unterminated last line as a row; it is read again once complete
+      loaded = loaded.subList(0, loaded.size() - 1);
+      CSVDataset complete = new CSVDataset(this.filepath, List.copyOf(loaded));
+      this.published = this.registry.replace(dataset, complete) ? complete : null;
+    } else {
+      this.published = dataset;
+    }
+    this.rows = new AppendableRows(loaded);
+    this.digest = newDigest();
+    try (InputStream in = Files.newInputStream(this.path)) {
+      byte[] buffer = new byte[1 << 16];
+      long left = this.offset;
+      int read;
+      while (left > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, left))) != -1) {
+        this.digest.update(buffer, 0, read);
+        left -= read;
+      }
+    }
+  }
+
+  /**
+   * Checks the file for newly appended records and publishes them.
+   *
+   * @return false once following should stop, because the file was loaded again by someone else
+   *     or its dataset was evicted
+   * @throws IOException if the file cannot be read
+   * @throws FactoryFailureException if an appended row cannot be converted
+   */
+  public boolean poll() throws IOException, FactoryFailureException {
+    if (this.published == null || this.registry.get(this.filepath) != this.published) {
+      return false;
+    }
+    BasicFileAttributes attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+    long size = attributes.size();
+    if (size < this.offset) {
+      // the file was truncated or replaced, so the rows read so far no longer describe it
+      return false;
+    }
+    if (size == this.offset) {
+      return true;
+    }
+    byte[] appended = read(this.path, this.offset, size);
+    int end = appended.length;
+    while (end > 0 && appended[end - 1] != '\n') {
+      end--;
+    }
+    if (end == 0) {
+      return true;
+    }
+    CSVParser<List<String>> parser = new CSVParser<>(false);
+    parser.setReader(new InputStreamReader(new ByteArrayInputStream(appended, 0, end),
+        Charset.defaultCharset()));
+    try {
+      parser.parseCSV(new InterningRowFactory(this.interner));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    List<List<String>> added = parser.getConvertedRows();
+    for (List<String> row : added) {
+      this.rows.append(row);
+    }
+    this.offset += end;
+    this.digest.update(appended, 0, end);
+    // the key only matches the file once a poll has read all of it, up to a last line break
+    LoadKey key = new LoadKey(this.offset, attributes.lastModifiedTime().toMillis(),
+        hash(this.digest));
+    CSVDataset next = this.published.withAppendedRows(this.rows.snapshot(), added, key);
+    if (!this.registry.replace(this.published, next)) {
+      return false;
+    }
+    this.published = next;
+    return true;
+  }
+
+  public String getFilepath() {
+    return this.filepath;
+  }
+
+  /**
+   * Gets the byte offset just after the last complete record read so far.
+   */
+  public long getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Finds the offset just after the last line break of a file, or 0 if it has none, by reading
+   * backwards from the end.
+   */
+  static long lastRecordEnd(Path path, long size) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(8192);
+      long end = size;
+      while (end > 0) {
+        long start = Math.max(0, end - buffer.capacity());
+        buffer.clear().limit((int) (end - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+          // keep reading until the block is full
+        }
+        for (int i = buffer.position() - 1; i >= 0; i--) {
+          if (buffer.get(i) == '\n') {
+            return start + i + 1;
+          }
+        }
+        end = start;
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Gets the hash of the bytes given to a digest so far, leaving the digest to take more.
+   */
+  private static byte[] hash(MessageDigest digest) {
+    try {
+      return ((MessageDigest) digest.clone()).digest();
+    } catch (CloneNotSupportedException e) {
+      // the platform's SHA-256 digests can all be cloned
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static byte[] read(Path path, long from, long to) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(to - from));
+      while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+        // keep reading until the appended bytes are all in
+      }
+      return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+  }
+}
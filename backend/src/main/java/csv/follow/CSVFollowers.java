@@ -0,0 +1,160 @@
+package csv.follow;
+
+import csv.CSVDataset;
+import csv.CSVLoader;
+import csv.CSVRegistry;
+import csv.intern.CellInterner;
+import csv.intern.StringPool;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the CSV files that loadcsv?follow=true asked to follow up to date. Every followed file is
+ * polled for appended records on one background thread. Polling the file size was chosen over a
+ * WatchService, which reports changes per directory, is not supported on every file system, and is
+ * itself implemented by polling on some platforms.
+ *
+ * <p>A file stops being followed when loadcsv?follow=false is called for it, when another load
+ * parses it again (loading it while the followed dataset is up to date just finds that dataset),
+ * when its dataset is evicted, or when it shrinks (it must then be loaded again), and after an
+ * error reading it. That error is kept for stopReason until the file is followed again.
+ */
+public class CSVFollowers {
+
+  // bounds of the intern table kept by each follower
+  private static final int INTERN_ENTRIES = 1 << 16;
+  private static final int INTERN_LENGTH = 256;
+
+  private final CSVRegistry registry;
+  private final CSVLoader loader;
+  private final StringPool pool;
+  private final long pollMillis;
+  private final ScheduledExecutorService scheduler;
+  private final Map<String, ScheduledFuture<?>> followed;
+  private final Map<String, String> stopReasons;
+
+  /**
+   * Constructor of the CSVFollowers class.
+   *
+   * @param registry the registry followed datasets are registered in
+   * @param loader loads a file before it is followed
+   * @param pool values shared between loads, or null
+   * @param pollMillis how often to check followed files for appended records
+   */
+  public CSVFollowers(CSVRegistry registry, CSVLoader loader, StringPool pool,
+      long pollMillis) {
+    this.registry = registry;
+    this.loader = loader;
+    this.pool = pool;
+    this.pollMillis = pollMillis;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "csv-follow");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.followed = new ConcurrentHashMap<>();
+    this.stopReasons = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Loads a file, if its current contents are not loaded already, and starts following it. Does
+   * nothing more if the file is already followed.
+   *
+   * @param filepath filepath of the CSV
+   * @return the dataset following starts from
+   * @throws Exception if the file cannot be loaded
+   */
+  public CSVDataset follow(String filepath) throws Exception {
+    ScheduledFuture<?> existing = this.followed.get(filepath);
+    CSVDataset current = this.registry.get(filepath);
+    if (existing != null && !existing.isDone() && current != null) {
+      return current;
+    }
+    CSVDataset dataset = this.loadCurrent(filepath);
+    this.stopReasons.remove(filepath);
+    CSVFollower follower = new CSVFollower(this.registry, dataset,
+        new CellInterner(INTERN_ENTRIES, INTERN_LENGTH, this.pool));
+    ScheduledFuture<?>[] self = new ScheduledFuture<?>[1];
+    synchronized (self) {
+      self[0] = this.scheduler.scheduleWithFixedDelay(() -> {
+        boolean keepGoing;
+        try {
+          keepGoing = follower.poll();
+        } catch (Exception e) {
+          this.stopReasons.put(filepath, e.getClass().getSimpleName() + ": " + e.getMessage());
+          keepGoing = false;
+        }
+        if (!keepGoing) {
+          synchronized (self) {
+            self[0].cancel(false);
+            this.followed.remove(filepath, self[0]);
+          }
+        }
+      }, 0, this.pollMillis, TimeUnit.MILLISECONDS);
+      ScheduledFuture<?> replaced = this.followed.put(filepath, self[0]);
+      if (replaced != null) {
+        replaced.cancel(false);
+      }
+    }
+    return this.registry.get(filepath);
+  }
+
+  /**
+   * Stops following a file. Its dataset stays loaded with the rows read so far.
+   *
+   * @param filepath filepath of the CSV
+   * @return whether the file was being followed
+   */
+  public boolean unfollow(String filepath) {
+    ScheduledFuture<?> future = this.followed.remove(filepath);
+    if (future == null) {
+      return false;
+    }
+    future.cancel(false);
+    return true;
+  }
+
+  /**
+   * Checks whether a file is being followed.
+   */
+  public boolean isFollowing(String filepath) {
+    ScheduledFuture<?> future = this.followed.get(filepath);
+    return future != null && !future.isDone();
+  }
+
+  /**
+   * Gets the error that stopped following a file, if the last time it was followed ended in one.
+   *
+   * @param filepath filepath of the CSV
+   * @return the error, or null
+   */
+  public String stopReason(String filepath) {
+    return this.stopReasons.get(filepath);
+  }
+
+  /**
+   * Loads a file until the dataset matches the file's size and modified time, since following has
+   * to start from rows that describe exactly the bytes on disk.
+   */
+  private CSVDataset loadCurrent(String filepath) throws Exception {
+    Path path = Paths.get(filepath);
+    for (int attempt = 0; attempt < 3; attempt++) {
+      CSVDataset dataset = this.registry.load(filepath, () -> this.loader.load(filepath));
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      if (dataset.getKey() != null && dataset.getKey().matches(attributes.size(),
+          attributes.lastModifiedTime().toMillis())) {
+        return dataset;
+      }
+    }
+    throw new IOException(filepath + " kept changing while it was being loaded");
+  }
+}
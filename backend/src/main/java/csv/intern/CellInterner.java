@@ -0,0 +1,115 @@
+package csv.intern;
+
+import csv.utility.CSVRowView;
+import java.util.Arrays;
+
+/**
+ * Interns cell values during a single load, so that every cell with the same text shares one
+ * String. Cells are looked up straight from the row view's buffer in an open-addressing table of
+ * Strings, so a repeated value costs a hash and a comparison but no allocation; only the first
+ * occurrence of a value is copied into a String. The table is bounded: once it holds maxEntries
+ * values, new values are still looked up but no longer added, so a column of unique ids cannot
+ * make it grow without limit. Cells longer than maxLength are not interned at all.
+ *
+ * <p>If a global StringPool is given, values missing from the table are looked up there before a
+ * new String is kept, so values are also shared with earlier loads.
+ */
+public class CellInterner {
+
+  // rough cost of a String and its array on a 64-bit JVM, as in CSVDataset's estimate
+  private static final long STRING_OVERHEAD = 44;
+
+  private final String[] table;
+  private final long[] hashes;
+  private final int mask;
+  private final int maxEntries;
+  private final int maxLength;
+  private final StringPool pool;
+  private int size;
+  private long[] lookups;
+  private long[] hits;
+  private long bytesSaved;
+
+  /**
+   * Constructor of the CellInterner class.
+   *
+   * @param maxEntries the most distinct values to hold
+   * @param maxLength the longest cell to intern
+   * @param pool a pool shared between loads, or null
+   */
+  public CellInterner(int maxEntries, int maxLength, StringPool pool) {
+    int capacity = Integer.highestOneBit(Math.max(maxEntries, 8) * 2 - 1) << 1;
+    this.table = new String[capacity];
+    this.hashes = new long[capacity];
+    this.mask = capacity - 1;
+    this.maxEntries = maxEntries;
+    this.maxLength = maxLength;
+    this.pool = pool;
+    this.size = 0;
+    this.lookups = new long[8];
+    this.hits = new long[8];
+    this.bytesSaved = 0;
+  }
+
+  /**
+   * Gets the String for a cell, reusing an earlier instance with the same text if there is one.
+   *
+   * @param row the row being read
+   * @param cell zero-based index of the cell
+   * @return a String equal to the cell
+   */
+  public String intern(CSVRowView row, int cell) {
+    int length = row.length(cell);
+    if (length > this.maxLength) {
+      return row.cellString(cell);
+    }
+    if (cell >= this.lookups.length) {
+      this.lookups = Arrays.copyOf(this.lookups, Math.max(cell + 1, this.lookups.length * 2));
+      this.hits = Arrays.copyOf(this.hits, this.lookups.length);
+    }
+    this.lookups[cell]++;
+    if (length == 0) {
+      return this.hit(cell, "");
+    }
+    long hash = row.hash(cell);
+    int slot = (int) hash & this.mask;
+    while (this.table[slot] != null) {
+      if (this.hashes[slot] == hash && row.cellEquals(cell, this.table[slot])) {
+        return this.hit(cell, this.table[slot]);
+      }
+      slot = (slot + 1) & this.mask;
+    }
+    String value = row.cellString(cell);
+    if (this.pool != null) {
+      String pooled = this.pool.canonical(value);
+      if (pooled != value) {
+        this.hit(cell, pooled);
+      }
+      value = pooled;
+    }
+    if (this.size < this.maxEntries) {
+      this.table[slot] = value;
+      this.hashes[slot] = hash;
+      this.size++;
+    }
+    return value;
+  }
+
+  private String hit(int cell, String value) {
+    this.hits[cell]++;
+    this.bytesSaved += STRING_OVERHEAD + value.length();
+    return value;
+  }
+
+  /**
+   * Gets the report of the cells interned so far.
+   */
+  public InternReport report() {
+    int columns = this.lookups.length;
+    while (columns > 0 && this.lookups[columns - 1] == 0) {
+      columns--;
+    }
+    return new InternReport(Arrays.copyOf(this.lookups, columns),
+        Arrays.copyOf(this.hits, columns), this.bytesSaved);
+  }
+}
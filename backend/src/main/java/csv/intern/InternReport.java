@@ -0,0 +1,30 @@
+package csv.intern;
+
+/**
+ * How well interning worked for one load: the cells looked up and the cells that reused an
+ * existing instance, per column, and an estimate of the heap that sharing those instances saved.
+ *
+ * @param lookups the number of cells interned in each column
+ * @param hits the number of those cells that reused an existing String
+ * @param bytesSaved estimated heap not spent on duplicate Strings
+ */
+public record InternReport(long[] lookups, long[] hits, long bytesSaved) {
+
+  /**
+   * Gets the fraction of a column's cells that reused an existing String.
+   *
+   * @param column zero-based index of the column
+   * @return the hit rate, or 0 for a column with no cells
+   */
+  public double hitRate(int column) {
+    return column >= this.lookups.length || this.lookups[column] == 0 ? 0
+        : (double) this.hits[column] / this.lookups[column];
+  }
+
+  /**
+   * Gets the number of columns with interned cells.
+   */
+  public int columns() {
+    return this.lookups.length;
+  }
+}
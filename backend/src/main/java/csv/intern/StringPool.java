@@ -0,0 +1,48 @@
+package csv.intern;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded pool of canonical String instances shared by every load, so that values repeated
+ * across files, or across reloads of the same file, are held once. Once the pool is full, values
+ * not already in it are no longer added, rather than evicting older ones.
+ */
+public class StringPool {
+
+  private final int maxEntries;
+  private final Map<String, String> pool;
+
+  /**
+   * Constructor of the StringPool class.
+   *
+   * @param maxEntries the most values to hold
+   */
+  public StringPool(int maxEntries) {
+    this.maxEntries = maxEntries;
+    this.pool = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Gets the canonical instance of a value, making the given instance canonical if the value is
+   * not pooled yet and there is room.
+   *
+   * @param value the value to look up
+   * @return the pooled instance equal to the value, or the value itself
+   */
+  public String canonical(String value) {
+    String pooled = this.pool.get(value);
+    if (pooled != null) {
+      return pooled;
+    }
+    if (this.pool.size() >= this.maxEntries) {
+      return value;
+    }
+    pooled = this.pool.putIfAbsent(value, value);
+    return pooled == null ? value : pooled;
+  }
+
+  public int size() {
+    return this.pool.size();
+  }
+}
@@ -0,0 +1,206 @@
+package csv.jobs;
+
+import csv.LoadProgress;
+import csv.intern.InternReport;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A CSV load running in the background. The job counts the bytes and rows its parser has read so
+ * that its progress can be polled, and can be cancelled, which makes the next read of the file
+ * fail so the parse stops.
+ */
+public class LoadJob implements LoadProgress {
+
+  /**
+   * The states a job moves through. A job starts QUEUED and ends in one of the last three.
+   */
+  public enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+  private final String id;
+  private final String filename;
+  private final AtomicLong bytesRead;
+  private final AtomicLong rowsRead;
+  private volatile long totalBytes;
+  private volatile long startNanos;
+  private volatile long endNanos;
+  private volatile State state;
+  private volatile String error;
+  private volatile boolean cancelled;
+  private volatile Future<?> future;
+  private volatile InternReport internReport;
+
+  LoadJob(String id, String filename) {
+    this.id = id;
+    this.filename = filename;
+    this.bytesRead = new AtomicLong();
+    this.rowsRead = new AtomicLong();
+    this.state = State.QUEUED;
+  }
+
+  @Override
+  public InputStream track(InputStream in, long totalBytes) {
+    this.totalBytes = totalBytes;
+    return new CountingStream(in);
+  }
+
+  /**
+   * Cancels the job. A queued job never starts, and a running job stops at its next read of the
+   * file.
+   */
+  public void cancel() {
+    this.cancelled = true;
+    Future<?> pending = this.future;
+    // a job that has not started yet is taken off the executor's queue and finished right away
+    if (pending != null && this.state == State.QUEUED && pending.cancel(false)) {
+      this.finish(State.CANCELLED, null);
+    }
+  }
+
+  void setFuture(Future<?> future) {
+    this.future = future;
+  }
+
+  void start() {
+    this.startNanos = System.nanoTime();
+    this.state = State.RUNNING;
+  }
+
+  void finish(State state, String error) {
+    this.endNanos = System.nanoTime();
+    this.error = error;
+    this.state = state;
+  }
+
+  /**
+   * Records the final row count of a finished load, which may include a last line that had no line
+   * break, or rows that came from memory or a snapshot rather than from this job's reads.
+   */
+  void setRowsRead(long rows) {
+    this.rowsRead.set(rows);
+  }
+
+  void setInternReport(InternReport internReport) {
+    this.internReport = internReport;
+  }
+
+  /**
+   * Gets how well interning worked for the finished load, or null if the data was not parsed.
+   */
+  public InternReport getInternReport() {
+    return this.internReport;
+  }
+
+  boolean isCancelled() {
+    return this.cancelled;
+  }
+
+  public String getId() {
+    return this.id;
+  }
+
+  public String getFilename() {
+    return this.filename;
+  }
+
+  public State getState() {
+    return this.state;
+  }
+
+  public String getError() {
+    return this.error;
+  }
+
+  public long getBytesRead() {
+    return this.bytesRead.get();
+  }
+
+  public long getTotalBytes() {
+    return this.totalBytes;
+  }
+
+  /**
+   * Gets the number of rows read so far, counted by the line breaks the parser has read.
+   */
+  public long getRowsRead() {
+    return this.rowsRead.get();
+  }
+
+  /**
+   * Gets the time since the job started running in nanoseconds, or up to when it finished.
+   */
+  public long getElapsedNanos() {
+    if (this.startNanos == 0) {
+      return 0;
+    }
+    return (this.endNanos == 0 ? System.nanoTime() : this.endNanos) - this.startNanos;
+  }
+
+  /**
+   * Gets the System.nanoTime() at which the job finished, or 0 if it has not.
+   */
+  long getFinishedNanos() {
+    return this.endNanos;
+  }
+
+  /**
+   * Gets the average number of bytes read per second so far.
+   */
+  public double getBytesPerSecond() {
+    long elapsed = this.getElapsedNanos();
+    return elapsed == 0 ? 0 : this.getBytesRead() * 1e9 / elapsed;
+  }
+
+  /**
+   * Estimates the seconds left from the bytes still to be read at the throughput so far.
+   *
+   * @return the estimate, or -1 if there is no throughput to estimate from yet
+   */
+  public double getEtaSeconds() {
+    if (this.state != State.RUNNING) {
+      return this.state == State.QUEUED ? -1 : 0;
+    }
+    double rate = this.getBytesPerSecond();
+    return rate == 0 ? -1 : Math.max(0, this.totalBytes - this.getBytesRead()) / rate;
+  }
+
+  /**
+   * Input stream that counts the bytes and line breaks read through it, and fails once the job is
+   * cancelled.
+   */
+  private class CountingStream extends FilterInputStream {
+
+    CountingStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return this.read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (LoadJob.this.cancelled) {
+        throw new InterruptedIOException("Load of " + LoadJob.this.filename + " was cancelled");
+      }
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        int lines = 0;
+        for (int i = off; i < off + read; i++) {
+          if (b[i] == '\n') {
+            lines++;
+          }
+        }
+        LoadJob.this.bytesRead.addAndGet(read);
+        LoadJob.this.rowsRead.addAndGet(lines);
+      }
+      return read;
+    }
+  }
+}
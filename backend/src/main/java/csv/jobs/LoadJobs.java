@@ -0,0 +1,118 @@
+package csv.jobs;
+
+import csv.CSVDataset;
+import csv.CSVLoader;
+import csv.CSVRegistry;
+import csv.jobs.LoadJob.State;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs CSV loads in the background, on a small executor of its own, so a large file does not hold a
+ * server thread for the whole parse. Each load is a LoadJob that can be looked up by id to poll its
+ * progress or cancel it. Finished jobs are kept for a while so their outcome can still be read.
+ *
+ * <p>Unlike loadcsv, a job does not share its parse with other loads of the same file through the
+ * registry: a job's parse reads through the job's own stream, so that it reports the job's progress
+ * and stops when the job is cancelled, which must not fail anyone else's load of the file.
+ */
+public class LoadJobs {
+
+  private static final long RETAIN_NANOS = TimeUnit.MINUTES.toNanos(15);
+
+  private final CSVRegistry registry;
+  private final CSVLoader loader;
+  private final ExecutorService executor;
+  private final Map<String, LoadJob> jobs;
+
+  /**
+   * Constructor of the LoadJobs class.
+   *
+   * @param registry the registry loaded datasets are put in
+   * @param loader the loader that parses the files
+   * @param threads how many loads may run at once
+   */
+  public LoadJobs(CSVRegistry registry, CSVLoader loader, int threads) {
+    this.registry = registry;
+    this.loader = loader;
+    AtomicInteger count = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "csv-load-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.jobs = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Starts loading a CSV in the background.
+   *
+   * @param filename filepath of the CSV
+   * @return the job, whose id can be used to poll it
+   */
+  public LoadJob submit(String filename) {
+    this.prune();
+    LoadJob job = new LoadJob(UUID.randomUUID().toString(), filename);
+    this.jobs.put(job.getId(), job);
+    job.setFuture(this.executor.submit(() -> this.run(job)));
+    return job;
+  }
+
+  /**
+   * Gets a job by id.
+   *
+   * @return the job, or null if there is no such job (or it finished long ago)
+   */
+  public LoadJob get(String id) {
+    return this.jobs.get(id);
+  }
+
+  private void run(LoadJob job) {
+    if (job.isCancelled()) {
+      job.finish(State.CANCELLED, null);
+      return;
+    }
+    job.start();
+    try {
+      CSVDataset dataset = this.loader.load(job.getFilename(), job);
+      // a cancel that came after the last read still keeps the dataset out of the registry
+      if (job.isCancelled()) {
+        job.finish(State.CANCELLED, null);
+        return;
+      }
+      this.registry.put(dataset);
+      job.setRowsRead(dataset.getRows().size());
+      job.setInternReport(dataset.getInternReport());
+      job.finish(State.DONE, null);
+    } catch (Exception e) {
+      // a cancelled job fails with the InterruptedIOException thrown by its own stream
+      if (job.isCancelled()) {
+        job.finish(State.CANCELLED, null);
+      } else {
+        job.finish(State.FAILED, "error_datasource");
+      }
+    }
+  }
+
+  /**
+   * Forgets jobs that finished longer ago than the retention period.
+   */
+  private void prune() {
+    long now = System.nanoTime();
+    Iterator<LoadJob> iterator = this.jobs.values().iterator();
+    while (iterator.hasNext()) {
+      LoadJob job = iterator.next();
+      State state = job.getState();
+      boolean finished = state != State.QUEUED && state != State.RUNNING;
+      if (finished && job.getFinishedNanos() != 0 && now - job.getFinishedNanos() > RETAIN_NANOS) {
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,344 @@
+package csv.join;
+
+import csv.utility.IntArrayList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Joins two loaded CSVs on a key column. The hash table (a JoinTable) is built over the side with
+ * fewer rows, and the other side probes it in chunks of rows on parallel threads; the pairs each
+ * chunk finds are then handed to a JoinSink in order on the calling thread, so the output can be
+ * streamed while only one wave of chunks is held. Each chunk holds at most MAX_CHUNK_PAIRS pairs:
+ * a chunk whose keys match more build rows than that, such as a key shared by most of the build
+ * side, stops there, and the rest of its pairs are found on the calling thread and handed straight
+ * to the sink, so a skewed key cannot fill the heap with pairs.
+ *
+ * <p>The heap the table takes is kept under a budget. If a table over the whole build side would
+ * exceed it, both sides are partitioned by the hash of their keys first (a Grace hash join): the
+ * row ids of each partition are spilled to temporary files, and then one partition at a time is
+ * read back, built into a table and probed. The rows themselves are already in memory in the
+ * registry, so only the ids are written out.
+ *
+ * <p>Pairs come out in the probe side's row order (within each partition, when spilled). For a left
+ * join built over the left side, the left rows that matched nothing come out last.
+ */
+public class HashJoin {
+
+  // rows each probe task handles
+  private static final int CHUNK_ROWS = 4096;
+  // pairs each probe task holds before it leaves the rest of its chunk to the calling thread
+  private static final int MAX_CHUNK_PAIRS = CHUNK_ROWS * 16;
+  // more partitions than this would spill a file per few rows; a join this far over budget is left
+  // to go over it rather than to thrash the disk
+  private static final int MAX_PARTITIONS = 256;
+
+  private final long budgetBytes;
+  private final int parallelism;
+  private final Path spillDir;
+
+  /**
+   * Creates a joiner.
+   *
+   * @param budgetBytes the most heap a join's hash table may take before the join spills to disk
+   * @param parallelism the most chunks to probe at once
+   * @param spillDir the directory to write spilled partitions under, or null for the system's
+   *     temporary directory
+   */
+  public HashJoin(long budgetBytes, int parallelism, Path spillDir) {
+    this.budgetBytes = budgetBytes;
+    this.parallelism = Math.max(1, parallelism);
+    this.spillDir = spillDir;
+  }
+
+  /**
+   * Joins the rows of two datasets whose key cells are equal.
+   *
+   * @param left the left dataset's rows
+   * @param leftColumn zero-based key column of the left rows
+   * @param right the right dataset's rows
+   * @param rightColumn zero-based key column of the right rows
+   * @param type whether left rows without a match are returned too
+   * @param sink receives every joined pair
+   * @return the number of pairs passed to the sink
+   * @throws IOException if the sink fails or partitions cannot be spilled
+   */
+  public long run(List<List<String>> left, int leftColumn, List<List<String>> right,
+      int rightColumn, JoinType type, JoinSink sink) throws IOException {
+    boolean buildLeft = left.size() < right.size();
+    List<List<String>> build = buildLeft ? left : right;
+    int buildColumn = buildLeft ? leftColumn : rightColumn;
+    Probe probe = new Probe(buildLeft ? right : left, buildLeft ? rightColumn : leftColumn,
+        type == JoinType.LEFT && !buildLeft);
+    Output output = new Output(sink, buildLeft,
+        type == JoinType.LEFT && buildLeft ? new BitSet(left.size()) : null);
+
+    int partitions = this.partitions(build.size());
+    if (partitions == 1) {
+      int[] buildRows = IntStream.range(0, build.size()).toArray();
+      JoinTable table = JoinTable.build(build, buildColumn, buildRows);
+      int batch = CHUNK_ROWS * this.parallelism;
+      int[] probeRows = new int[Math.min(batch, probe.rows.size())];
+      for (int from = 0; from < probe.rows.size(); from += batch) {
+        int count = Math.min(batch, probe.rows.size() - from);
+        for (int i = 0; i < count; i++) {
+          probeRows[i] = from + i;
+        }
+        this.probeBatch(table, probe, probeRows, count, output);
+      }
+    } else {
+      this.spillJoin(build, buildColumn, probe, partitions, output);
+    }
+    if (output.matched != null) {
+      for (int row = output.matched.nextClearBit(0); row < left.size();
+          row = output.matched.nextClearBit(row + 1)) {
+        output.emit(row, -1);
+      }
+    }
+    return output.count;
+  }
+
+  /**
+   * Works out how many partitions a join with the given number of build rows needs to keep each
+   * partition's table under the budget: 1 if it fits as a whole, otherwise a power of two.
+   */
+  public int partitions(int buildRows) {
+    long bytes = JoinTable.estimateBytes(buildRows);
+    if (bytes <= this.budgetBytes) {
+      return 1;
+    }
+    long needed = (bytes + this.budgetBytes - 1) / Math.max(1, this.budgetBytes);
+    int partitions = 2;
+    while (partitions < needed && partitions < MAX_PARTITIONS) {
+      partitions <<= 1;
+    }
+    return partitions;
+  }
+
+  /**
+   * Spills the row ids of both sides into partitions, then builds and probes one partition at a
+   * time. The temporary files are deleted whether or not the join finishes.
+   */
+  private void spillJoin(List<List<String>> build, int buildColumn, Probe probe, int partitions,
+      Output output) throws IOException {
+    Path dir = this.spillDir == null ? Files.createTempDirectory("csvjoin")
+        : Files.createTempDirectory(this.spillDir, "csvjoin");
+    Path[] buildFiles = new Path[partitions];
+    Path[] probeFiles = new Path[partitions];
+    try {
+      spill(build, buildColumn, dir, "build", buildFiles);
+      spill(probe.rows, probe.column, dir, "probe", probeFiles);
+      int batch = CHUNK_ROWS * this.parallelism;
+      int[] probeRows = new int[batch];
+      for (int p = 0; p < partitions; p++) {
+        JoinTable table = JoinTable.build(build, buildColumn, readAll(buildFiles[p]));
+        Files.delete(buildFiles[p]);
+        long remaining = Files.size(probeFiles[p]) / Integer.BYTES;
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(probeFiles[p])))) {
+          while (remaining > 0) {
+            int count = (int) Math.min(batch, remaining);
+            for (int i = 0; i < count; i++) {
+              probeRows[i] = in.readInt();
+            }
+            remaining -= count;
+            this.probeBatch(table, probe, probeRows, count, output);
+          }
+        }
+        Files.delete(probeFiles[p]);
+      }
+    } finally {
+      for (int p = 0; p < partitions; p++) {
+        if (buildFiles[p] != null) {
+          Files.deleteIfExists(buildFiles[p]);
+        }
+        if (probeFiles[p] != null) {
+          Files.deleteIfExists(probeFiles[p]);
+        }
+      }
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  /**
+   * Writes the id of every row to the file of its key's partition. Partitions are picked by the top
+   * bits of the key hash, since the JoinTable of each partition picks slots by the bottom bits.
+   */
+  private static void spill(List<List<String>> rows, int column, Path dir, String side,
+      Path[] files) throws IOException {
+    int shift = 32 - Integer.numberOfTrailingZeros(files.length);
+    DataOutputStream[] outs = new DataOutputStream[files.length];
+    try {
+      for (int p = 0; p < files.length; p++) {
+        files[p] = dir.resolve(side + "-" + p);
+        outs[p] = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(files[p]), 8192));
+      }
+      for (int row = 0; row < rows.size(); row++) {
+        String key = key(rows.get(row), column);
+        // rows without the key column cannot match, and wait in the first partition
+        outs[key == null ? 0 : hash(key) >>> shift].writeInt(row);
+      }
+    } finally {
+      for (DataOutputStream out : outs) {
+        if (out != null) {
+          out.close();
+        }
+      }
+    }
+  }
+
+  private static int[] readAll(Path file) throws IOException {
+    int[] rows = new int[(int) (Files.size(file) / Integer.BYTES)];
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = in.readInt();
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Probes the table with the first count of the given row ids, split into chunks that run in
+   * parallel, then emits each chunk's pairs in order, finishing any chunk that stopped early.
+   */
+  private void probeBatch(JoinTable table, Probe probe, int[] probeRows, int count, Output output)
+      throws IOException {
+    int chunks = (count + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    Chunk[] found = IntStream.range(0, chunks)
+        .parallel()
+        .mapToObj(c -> probe.chunk(table, probeRows, c * CHUNK_ROWS,
+            Math.min(count, (c + 1) * CHUNK_ROWS)))
+        .toArray(Chunk[]::new);
+    for (Chunk chunk : found) {
+      IntArrayList pairs = chunk.pairs();
+      for (int i = 0; i < pairs.size(); i += 2) {
+        output.emitPair(pairs.get(i), pairs.get(i + 1));
+      }
+      probe.finish(table, probeRows, chunk, output);
+    }
+  }
+
+  /**
+   * Gets the key cell of a row, or null if the row is too short to have the key column.
+   */
+  static String key(List<String> row, int column) {
+    return column < row.size() ? row.get(column) : null;
+  }
+
+  /**
+   * Spreads the bits of a key's hash code (the murmur3 finalizer), so that both the low bits used
+   * for table slots and the high bits used for partitions depend on the whole hash.
+   */
+  static int hash(String key) {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /**
+   * The probe side of a join.
+   */
+  private record Probe(List<List<String>> rows, int column, boolean keepUnmatched) {
+
+    /**
+     * Looks up the probe rows probeRows[from] to probeRows[to - 1], returning their pairs as
+     * alternating probe and build row ids (a build row of -1 for a kept unmatched row). Stops once
+     * MAX_CHUNK_PAIRS pairs are held, even partway through one probe row's matches.
+     */
+    Chunk chunk(JoinTable table, int[] probeRows, int from, int to) {
+      IntArrayList pairs = new IntArrayList(Math.min((to - from) * 2, MAX_CHUNK_PAIRS * 2));
+      for (int i = from; i < to; i++) {
+        int row = probeRows[i];
+        int id = table.find(key(this.rows.get(row), this.column));
+        if (id < 0) {
+          if (this.keepUnmatched) {
+            pairs.add(row);
+            pairs.add(-1);
+          }
+          continue;
+        }
+        for (int j = table.start(id); j < table.end(id); j++) {
+          if (pairs.size() >= MAX_CHUNK_PAIRS * 2) {
+            return new Chunk(pairs, i, j, to);
+          }
+          pairs.add(row);
+          pairs.add(table.row(j));
+        }
+      }
+      return new Chunk(pairs, to, -1, to);
+    }
+
+    /**
+     * Finds the pairs of a chunk from where it stopped and emits each one as it is found.
+     */
+    void finish(JoinTable table, int[] probeRows, Chunk chunk, Output output) throws IOException {
+      for (int i = chunk.next(); i < chunk.to(); i++) {
+        int row = probeRows[i];
+        int id = table.find(key(this.rows.get(row), this.column));
+        if (id < 0) {
+          if (this.keepUnmatched) {
+            output.emitPair(row, -1);
+          }
+          continue;
+        }
+        int j = i == chunk.next() ? chunk.nextMatch() : table.start(id);
+        for (; j < table.end(id); j++) {
+          output.emitPair(row, table.row(j));
+        }
+      }
+    }
+  }
+
+  /**
+   * The pairs a probe task found, and where in its probe rows it stopped: at probeRows[next], from
+   * its match at table index nextMatch, or next equal to to if the chunk is done.
+   */
+  private record Chunk(IntArrayList pairs, int next, int nextMatch, int to) { }
+
+  /**
+   * Passes pairs to the sink as left and right rows, counting them and, for a left join built over
+   * the left side, recording which left rows matched.
+   */
+  private static class Output {
+
+    private final JoinSink sink;
+    private final boolean buildLeft;
+    private final BitSet matched;
+    private long count;
+
+    Output(JoinSink sink, boolean buildLeft, BitSet matched) {
+      this.sink = sink;
+      this.buildLeft = buildLeft;
+      this.matched = matched;
+    }
+
+    void emitPair(int probeRow, int buildRow) throws IOException {
+      if (!this.buildLeft) {
+        this.emit(probeRow, buildRow);
+        return;
+      }
+      if (this.matched != null) {
+        this.matched.set(buildRow);
+      }
+      this.emit(buildRow, probeRow);
+    }
+
+    void emit(int leftRow, int rightRow) throws IOException {
+      this.sink.accept(leftRow, rightRow);
+      this.count++;
+    }
+  }
+}
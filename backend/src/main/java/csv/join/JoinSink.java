@@ -0,0 +1,19 @@
+package csv.join;
+
+import java.io.IOException;
+
+/**
+ * Receives the output of a HashJoin one row pair at a time, so the joined rows can be written out
+ * as they are found instead of being collected first. Pairs are always passed from a single thread.
+ */
+public interface JoinSink {
+
+  /**
+   * Takes one joined pair.
+   *
+   * @param leftRow the row id in the left dataset
+   * @param rightRow the row id in the right dataset, or -1 for a left row that matched nothing
+   * @throws IOException if the pair cannot be written
+   */
+  void accept(int leftRow, int rightRow) throws IOException;
+}
@@ -0,0 +1,134 @@
+package csv.join;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The hash table of a HashJoin, over the key column of the build side. Every distinct key gets an
+ * id through open addressing on primitive arrays, and the build rows holding each key are stored
+ * together in one int[] (the rows of key id k are rows[starts[k]] up to rows[starts[k + 1]]), so a
+ * probe is a hash lookup followed by a walk over a run of ints. Keys are the dataset's own Strings,
+ * so the table only adds a few ints per build row.
+ */
+public class JoinTable {
+
+  // per build row: its id, its key id and count while building, and two to four hash slots
+  private static final long BYTES_PER_ROW = 24;
+
+  private final String[] keys;
+  // key id + 1 per slot, or 0 for an empty slot
+  private final int[] slots;
+  private final int[] starts;
+  private final int[] rows;
+
+  private JoinTable(String[] keys, int[] slots, int[] starts, int[] rows) {
+    this.keys = keys;
+    this.slots = slots;
+    this.starts = starts;
+    this.rows = rows;
+  }
+
+  /**
+   * Estimates the heap a table over the given number of build rows takes, not counting the keys,
+   * which are shared with the dataset.
+   */
+  public static long estimateBytes(int buildRows) {
+    return BYTES_PER_ROW * buildRows;
+  }
+
+  /**
+   * Builds the table over some rows of a dataset. Rows too short to have the key column are left
+   * out, since they cannot match anything.
+   *
+   * @param data the build side's rows
+   * @param column zero-based index of the key column
+   * @param buildRows ids of the rows to put in the table, in the order their matches come out
+   * @return the table
+   */
+  public static JoinTable build(List<List<String>> data, int column, int[] buildRows) {
+    int[] slots = new int[tableSize(buildRows.length)];
+    int mask = slots.length - 1;
+    String[] keys = new String[Math.max(1, buildRows.length)];
+    int[] keyIds = new int[buildRows.length];
+    int[] counts = new int[buildRows.length + 1];
+    int distinct = 0;
+    for (int i = 0; i < buildRows.length; i++) {
+      String key = HashJoin.key(data.get(buildRows[i]), column);
+      if (key == null) {
+        keyIds[i] = -1;
+        continue;
+      }
+      int slot = HashJoin.hash(key) & mask;
+      while (slots[slot] != 0 && !keys[slots[slot] - 1].equals(key)) {
+        slot = (slot + 1) & mask;
+      }
+      if (slots[slot] == 0) {
+        keys[distinct] = key;
+        slots[slot] = ++distinct;
+      }
+      keyIds[i] = slots[slot] - 1;
+      counts[keyIds[i] + 1]++;
+    }
+    // counts become the start of each key's run of rows
+    for (int id = 0; id < distinct; id++) {
+      counts[id + 1] += counts[id];
+    }
+    int[] starts = Arrays.copyOf(counts, distinct + 1);
+    int[] rows = new int[starts[distinct]];
+    for (int i = 0; i < buildRows.length; i++) {
+      if (keyIds[i] >= 0) {
+        rows[counts[keyIds[i]]++] = buildRows[i];
+      }
+    }
+    return new JoinTable(Arrays.copyOf(keys, distinct), slots, starts, rows);
+  }
+
+  /**
+   * Finds the id of a key, or -1 if no build row holds it.
+   */
+  public int find(String key) {
+    if (key == null) {
+      return -1;
+    }
+    int mask = this.slots.length - 1;
+    for (int slot = HashJoin.hash(key) & mask; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (this.keys[this.slots[slot] - 1].equals(key)) {
+        return this.slots[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the index into rows of the first build row with the given key id.
+   */
+  public int start(int id) {
+    return this.starts[id];
+  }
+
+  /**
+   * Gets the index into rows just past the last build row with the given key id.
+   */
+  public int end(int id) {
+    return this.starts[id + 1];
+  }
+
+  /**
+   * Gets a build row id by its index.
+   */
+  public int row(int index) {
+    return this.rows[index];
+  }
+
+  /**
+   * Gets the number of distinct keys in the table.
+   */
+  public int size() {
+    return this.keys.length;
+  }
+
+  // a power of two at least twice the number of rows, so the table is at most half full
+  private static int tableSize(int rows) {
+    return Integer.highestOneBit(Math.max(1, rows) * 2 - 1) << 1;
+  }
+}
@@ -0,0 +1,21 @@
+package csv.join;
+
+import java.util.Locale;
+
+/**
+ * The kinds of join HashJoin supports. An inner join only returns pairs of matching rows; a left
+ * join also returns every left row that matched nothing, paired with no right row.
+ */
+public enum JoinType {
+  INNER,
+  LEFT;
+
+  /**
+   * Parses a join type from its name, in any case.
+   *
+   * @throws IllegalArgumentException if the name is not a join type
+   */
+  public static JoinType parse(String name) {
+    return JoinType.valueOf(name.strip().toUpperCase(Locale.ROOT));
+  }
+}
@@ -0,0 +1,48 @@
+package csv.query;
+
+import java.util.Locale;
+
+/**
+ * An aggregate computed for every group of a query, written function:column, or just count. The
+ * count is of the rows in the group; sum, avg, min and max are over the cells of the column that
+ * are numbers, and are null for a group with none.
+ *
+ * @param function the aggregate function
+ * @param column zero-based index of the column, or -1 for count
+ */
+public record Aggregate(Function function, int column) {
+
+  /**
+   * The aggregate functions.
+   */
+  public enum Function { COUNT, SUM, AVG, MIN, MAX }
+
+  /**
+   * Parses an aggregate written as function:column, or count.
+   *
+   * @throws IllegalArgumentException if the aggregate is malformed
+   */
+  public static Aggregate parse(String spec) {
+    String[] parts = spec.strip().split(":", -1);
+    Function function = Function.valueOf(parts[0].strip().toUpperCase(Locale.ROOT));
+    if (function == Function.COUNT && parts.length == 1) {
+      return new Aggregate(function, -1);
+    }
+    if (function == Function.COUNT || parts.length != 2) {
+      throw new IllegalArgumentException("aggregate must be count or function:column: " + spec);
+    }
+    int column = Integer.parseInt(parts[1].strip());
+    if (column < 0) {
+      throw new IllegalArgumentException("negative column " + column);
+    }
+    return new Aggregate(function, column);
+  }
+
+  /**
+   * Gets the name of this aggregate as it was written, such as sum:3.
+   */
+  public String name() {
+    String name = this.function.name().toLowerCase(Locale.ROOT);
+    return this.column < 0 ? name : name + ":" + this.column;
+  }
+}
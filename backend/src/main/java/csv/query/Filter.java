@@ -0,0 +1,91 @@
+package csv.query;
+
+import csv.columnar.CSVColumns;
+import csv.columnar.DictionaryColumn;
+import csv.columnar.NumericColumn;
+import java.util.Locale;
+
+/**
+ * A condition on one column of a query, written column:op:value. The eq and ne operators compare
+ * the cell text, through the column's dictionary codes; lt, le, gt and ge compare numerically and
+ * never match a cell that is not a number. Missing cells match no operator.
+ *
+ * @param column zero-based index of the column
+ * @param op the comparison
+ * @param value the value to compare with
+ */
+public record Filter(int column, Op op, String value) {
+
+  /**
+   * The comparisons a filter can make.
+   */
+  public enum Op { EQ, NE, LT, LE, GT, GE }
+
+  /**
+   * Parses a filter written as column:op:value.
+   *
+   * @throws IllegalArgumentException if the filter is malformed
+   */
+  public static Filter parse(String spec) {
+    String[] parts = spec.split(":", 3);
+    if (parts.length != 3) {
+      throw new IllegalArgumentException("filter must be column:op:value: " + spec);
+    }
+    int column = Integer.parseInt(parts[0].strip());
+    if (column < 0) {
+      throw new IllegalArgumentException("negative column " + column);
+    }
+    Op op = Op.valueOf(parts[1].strip().toUpperCase(Locale.ROOT));
+    String value = parts[2].strip();
+    if (op != Op.EQ && op != Op.NE) {
+      Double.parseDouble(value);
+    }
+    return new Filter(column, op, value);
+  }
+
+  /**
+   * Narrows a selection of rows down to those matching this filter.
+   *
+   * @param columns the columns of the data being queried
+   * @param selection row ids, of which the first size are selected; matching rows are moved to the
+   *     front
+   * @param size the number of selected rows
+   * @return the number of selected rows that match
+   */
+  public int apply(CSVColumns columns, int[] selection, int size) {
+    int kept = 0;
+    if (this.op == Op.EQ || this.op == Op.NE) {
+      DictionaryColumn dictionary = columns.dictionary(this.column);
+      int code = dictionary.codeOf(this.value);
+      boolean equal = this.op == Op.EQ;
+      if (equal && code == DictionaryColumn.MISSING) {
+        return 0;
+      }
+      for (int i = 0; i < size; i++) {
+        int rowCode = dictionary.code(selection[i]);
+        if (rowCode != DictionaryColumn.MISSING && (rowCode == code) == equal) {
+          selection[kept++] = selection[i];
+        }
+      }
+      return kept;
+    }
+    NumericColumn numbers = columns.numeric(this.column);
+    double bound = Double.parseDouble(this.value);
+    for (int i = 0; i < size; i++) {
+      int row = selection[i];
+      if (numbers.isPresent(row) && this.matches(numbers.value(row), bound)) {
+        selection[kept++] = row;
+      }
+    }
+    return kept;
+  }
+
+  private boolean matches(double cell, double bound) {
+    return switch (this.op) {
+      case LT -> cell < bound;
+      case LE -> cell <= bound;
+      case GT -> cell > bound;
+      default -> cell >= bound;
+    };
+  }
+}
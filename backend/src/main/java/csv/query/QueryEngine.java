@@ -0,0 +1,196 @@
+package csv.query;
+
+import csv.columnar.CSVColumns;
+import csv.columnar.DictionaryColumn;
+import csv.columnar.LongIntHashMap;
+import csv.columnar.NumericColumn;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs filter, group-by and aggregate queries over the columnar forms of a loaded CSV. Rows are
+ * processed in batches, and every step works on a whole batch at a time over primitive arrays: the
+ * filters narrow a selection vector of row ids one column at a time, the group of each selected
+ * row is found by combining its group-by dictionary codes into a long and looking that up in an
+ * open-addressing LongIntHashMap, and each aggregate then updates per-group arrays for the batch.
+ */
+public class QueryEngine {
+
+  private static final int BATCH = 4096;
+
+  /**
+   * Runs a query.
+   *
+   * @param columns the columns of the data to query
+   * @param firstRow the first row to include, which is 1 to skip a header
+   * @param filters conditions that every included row must meet
+   * @param groupBy zero-based indices of the columns to group by, or none for a single group
+   * @param aggregates the aggregates to compute for every group
+   * @return one row per group, with the group-by cells followed by the aggregates
+   * @throws IllegalArgumentException if the group-by columns have too many value combinations
+   */
+  public static QueryResult run(CSVColumns columns, int firstRow, List<Filter> filters,
+      int[] groupBy, List<Aggregate> aggregates) {
+    DictionaryColumn[] keys = new DictionaryColumn[groupBy.length];
+    long[] radix = new long[groupBy.length];
+    long combinations = 1;
+    for (int i = 0; i < groupBy.length; i++) {
+      keys[i] = columns.dictionary(groupBy[i]);
+      // one more than the cardinality, so that a missing cell has a code of its own
+      radix[i] = keys[i].cardinality() + 1L;
+      try {
+        combinations = Math.multiplyExact(combinations, radix[i]);
+      } catch (ArithmeticException e) {
+        throw new IllegalArgumentException("too many group-by combinations", e);
+      }
+    }
+    Accumulator[] accumulators = new Accumulator[aggregates.size()];
+    for (int i = 0; i < accumulators.length; i++) {
+      Aggregate aggregate = aggregates.get(i);
+      accumulators[i] = new Accumulator(aggregate,
+          aggregate.column() < 0 ? null : columns.numeric(aggregate.column()));
+    }
+
+    LongIntHashMap groupIds = new LongIntHashMap();
+    // the first row of each group, from which its key cells are read at the end
+    int[] firstOfGroup = new int[16];
+    // with no group-by columns every row is in group 0, which exists even if no row matches
+    int groupCount = groupBy.length == 0 ? 1 : 0;
+    for (Accumulator accumulator : accumulators) {
+      accumulator.ensure(Math.max(groupCount, 1));
+    }
+    int[] selection = new int[BATCH];
+    int[] groups = new int[BATCH];
+    int rowCount = columns.getRowCount();
+    for (int start = Math.max(firstRow, 0); start < rowCount; start += BATCH) {
+      int end = Math.min(start + BATCH, rowCount);
+      int size = 0;
+      for (int row = start; row < end; row++) {
+        selection[size++] = row;
+      }
+      for (int f = 0; f < filters.size() && size > 0; f++) {
+        size = filters.get(f).apply(columns, selection, size);
+      }
+      if (size == 0) {
+        continue;
+      }
+      if (groupBy.length > 0) {
+        for (int i = 0; i < size; i++) {
+          int row = selection[i];
+          long key = 0;
+          for (int k = 0; k < keys.length; k++) {
+            key = key * radix[k] + keys[k].code(row) + 1;
+          }
+          int group = groupIds.getOrPut(key, groupCount);
+          if (group == groupCount) {
+            if (groupCount == firstOfGroup.length) {
+              firstOfGroup = Arrays.copyOf(firstOfGroup, groupCount * 2);
+            }
+            firstOfGroup[groupCount++] = row;
+          }
+          groups[i] = group;
+        }
+        for (Accumulator accumulator : accumulators) {
+          accumulator.ensure(groupCount);
+        }
+      } else {
+        Arrays.fill(groups, 0, size, 0);
+      }
+      for (Accumulator accumulator : accumulators) {
+        accumulator.add(selection, groups, size);
+      }
+    }
+
+    List<String> names = new ArrayList<>();
+    for (int column : groupBy) {
+      names.add(String.valueOf(column));
+    }
+    for (Aggregate aggregate : aggregates) {
+      names.add(aggregate.name());
+    }
+    List<List<Object>> rows = new ArrayList<>(groupCount);
+    for (int group = 0; group < groupCount; group++) {
+      List<Object> row = new ArrayList<>(names.size());
+      for (DictionaryColumn key : keys) {
+        row.add(key.value(key.code(firstOfGroup[group])));
+      }
+      for (Accumulator accumulator : accumulators) {
+        row.add(accumulator.result(group));
+      }
+      rows.add(row);
+    }
+    return new QueryResult(names, rows);
+  }
+
+  /**
+   * The running state of one aggregate, with one slot per group in each primitive array.
+   */
+  private static final class Accumulator {
+
+    private final Aggregate.Function function;
+    private final NumericColumn numbers;
+    private long[] counts;
+    private double[] values;
+
+    private Accumulator(Aggregate aggregate, NumericColumn numbers) {
+      this.function = aggregate.function();
+      this.numbers = numbers;
+      this.counts = new long[0];
+      this.values = new double[0];
+    }
+
+    private void ensure(int groups) {
+      if (groups <= this.counts.length) {
+        return;
+      }
+      int old = this.counts.length;
+      int capacity = Math.max(groups, old * 2);
+      this.counts = Arrays.copyOf(this.counts, capacity);
+      this.values = Arrays.copyOf(this.values, capacity);
+      double initial = switch (this.function) {
+        case MIN -> Double.POSITIVE_INFINITY;
+        case MAX -> Double.NEGATIVE_INFINITY;
+        default -> 0;
+      };
+      Arrays.fill(this.values, old, capacity, initial);
+    }
+
+    private void add(int[] selection, int[] groups, int size) {
+      if (this.numbers == null) {
+        for (int i = 0; i < size; i++) {
+          this.counts[groups[i]]++;
+        }
+        return;
+      }
+      for (int i = 0; i < size; i++) {
+        int row = selection[i];
+        if (!this.numbers.isPresent(row)) {
+          continue;
+        }
+        int group = groups[i];
+        double value = this.numbers.value(row);
+        this.counts[group]++;
+        switch (this.function) {
+          case MIN -> this.values[group] = Math.min(this.values[group], value);
+          case MAX -> this.values[group] = Math.max(this.values[group], value);
+          default -> this.values[group] += value;
+        }
+      }
+    }
+
+    private Object result(int group) {
+      long count = this.counts[group];
+      return switch (this.function) {
+        case COUNT -> count;
+        case AVG -> count == 0 ? null : finite(this.values[group] / count);
+        default -> count == 0 ? null : finite(this.values[group]);
+      };
+    }
+
+    // a sum can overflow to infinity, which JSON cannot hold
+    private static Double finite(double value) {
+      return Double.isFinite(value) ? value : null;
+    }
+  }
+}
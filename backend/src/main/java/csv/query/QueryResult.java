@@ -0,0 +1,13 @@
+package csv.query;
+
+import java.util.List;
+
+/**
+ * The table a query produces: one row per group, holding the group's key cells followed by its
+ * aggregates.
+ *
+ * @param columns the names of the columns: the group-by column indices, then the aggregate names
+ * @param rows one row per group, in the order the groups were first seen
+ */
+public record QueryResult(List<String> columns, List<List<Object>> rows) {
+}
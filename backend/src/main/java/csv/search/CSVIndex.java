@@ -0,0 +1,88 @@
+package csv.search;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Holds the column indexes of one loaded CSV. A column's index is built the first time it is
+ * searched and then kept for as long as the same data stays loaded, so repeated searches never
+ * rescan the rows. The size of every index built is reported to whoever made the CSVIndex, so it
+ * can be charged against the memory budget.
+ */
+public class CSVIndex {
+
+  private final List<List<String>> rows;
+  private final Map<Integer, ColumnIndex> columns;
+  // the number of cells in the widest row, worked out on first use
+  private volatile int width = -1;
+  private final LongConsumer charge;
+
+  public CSVIndex(List<List<String>> rows) {
+    this(rows, bytes -> { });
+  }
+
+  /**
+   * Constructor of the CSVIndex class for indexes whose size is charged to a dataset.
+   *
+   * @param rows the loaded CSV rows
+   * @param charge told the estimated bytes of each column index as it is built
+   */
+  public CSVIndex(List<List<String>> rows, LongConsumer charge) {
+    this.rows = rows;
+    this.columns = new ConcurrentHashMap<>();
+    this.charge = charge;
+  }
+
+  /**
+   * Gets the index of a column, building it if this is the first time it has been asked for.
+   *
+   * @param column zero-based index of the column
+   * @return the index for the column
+   * @throws IllegalArgumentException if no row has the column, so that a client cannot make the
+   *     index build and keep an empty index for any number it sends
+   */
+  public ColumnIndex column(int column) {
+    if (column < 0 || column >= this.width()) {
+      throw new IllegalArgumentException("No row has column " + column);
+    }
+    return this.columns.computeIfAbsent(column, c -> ColumnIndex.build(this.rows, c, this.charge));
+  }
+
+  /**
+   * Makes the index of rows that extend the ones this index covers, such as the rows of a file that
+   * was appended to. Every column index built so far is extended with the added rows rather than
+   * left to be built again from all of them on first use.
+   *
+   * @param rows this index's rows followed by the added rows
+   * @param charge told the estimated bytes of each column index of the new index as it is built
+   * @return the index of all the rows
+   */
+  public CSVIndex extend(List<List<String>> rows, LongConsumer charge) {
+    CSVIndex extended = new CSVIndex(rows, charge);
+    int from = this.rows.size();
+    this.columns.forEach((column, index) ->
+        extended.columns.put(column, index.extend(rows, from, column, charge)));
+    return extended;
+  }
+
+  /**
+   * Gets the number of cells in the widest row, the number of columns that can be indexed.
+   */
+  public int width() {
+    int width = this.width;
+    if (width < 0) {
+      width = 0;
+      for (List<String> row : this.rows) {
+        width = Math.max(width, row.size());
+      }
+      this.width = width;
+    }
+    return width;
+  }
+
+  public List<List<String>> getRows() {
+    return this.rows;
+  }
+}
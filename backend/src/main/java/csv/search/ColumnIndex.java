@@ -0,0 +1,270 @@
+package csv.search;
+
+import csv.utility.IntArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Index over a single column of loaded CSV data. Every distinct value in the column gets an id, and
+ * each id maps to the sorted row ids (a posting list) of the rows holding that value, so an exact
+ * search is a single hash lookup. Case-insensitive lookups and substring search use secondary
+ * indexes over the distinct values, which are only built the first time they are needed.
+ *
+ * <p>Each part of the index reports its rough size when it is built, so that a dataset can charge
+ * its caches against the memory budget. The distinct values themselves are the rows' own Strings
+ * and are not counted again.
+ */
+public class ColumnIndex {
+
+  // rough per-object costs on a 64-bit JVM with compressed references, as in CSVDataset
+  private static final long ARRAY_OVERHEAD = 16;
+  private static final long STRING_OVERHEAD = 40;
+  private static final long MAP_ENTRY_OVERHEAD = 56;
+
+  private final String[] values;
+  private final int[][] postings;
+  private final Map<String, Integer> ids;
+  // lowercased value -> ids of the values that fold to it, built on first case-insensitive search
+  private volatile Map<String, int[]> foldedIds;
+  // lowercased trigram -> ids of the values containing it, built on first substring search
+  private volatile Map<String, int[]> trigramIds;
+  // told the size of the secondary indexes as they are built
+  private final LongConsumer charge;
+
+  private ColumnIndex(String[] values, int[][] postings, Map<String, Integer> ids,
+      LongConsumer charge) {
+    this.values = values;
+    this.postings = postings;
+    this.ids = ids;
+    this.charge = charge;
+  }
+
+  /**
+   * Builds the index for one column. Rows that are too short to have the column are left out.
+   *
+   * @param rows the loaded CSV rows
+   * @param column zero-based index of the column to index
+   * @return the index for the column
+   */
+  public static ColumnIndex build(List<List<String>> rows, int column) {
+    return build(rows, column, bytes -> { });
+  }
+
+  /**
+   * Builds the index for one column, reporting its size and later the size of each secondary index
+   * as it is built.
+   *
+   * @param rows the loaded CSV rows
+   * @param column zero-based index of the column to index
+   * @param charge told the estimated bytes of each part of the index as it is built
+   * @return the index for the column
+   */
+  public static ColumnIndex build(List<List<String>> rows, int column, LongConsumer charge) {
+    return new ColumnIndex(new String[0], new int[0][], new HashMap<>(), charge)
+        .extend(rows, 0, column, charge);
+  }
+
+  /**
+   * Makes the index of the same column over rows that extend the ones this index covers, such as
+   * the rows of a file that was appended to. Only the rows from the given one on are read, and only
+   * the posting lists of the values they hold are copied; the others are shared with this index,
+   * which is left as it was. The secondary indexes are built again on first use.
+   *
+   * @param rows the rows this index covers followed by the added rows
+   * @param from the number of rows this index covers
+   * @param column zero-based index of the column this index is for
+   * @param charge told the estimated bytes of each part of the new index as it is built
+   * @return the index over all the rows
+   */
+  public ColumnIndex extend(List<List<String>> rows, int from, int column, LongConsumer charge) {
+    Map<String, Integer> ids = new HashMap<>(this.ids);
+    List<String> values = new ArrayList<>(Arrays.asList(this.values));
+    int[] rowIds = new int[rows.size() - from];
+    // first pass assigns value ids and records the value id of each added row
+    for (int row = from; row < rows.size(); row++) {
+      List<String> cells = rows.get(row);
+      if (column >= cells.size()) {
+        rowIds[row - from] = -1;
+        continue;
+      }
+      String value = cells.get(column);
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = values.size();
+        ids.put(value, id);
+        values.add(value);
+      }
+      rowIds[row - from] = id;
+    }
+    int[][] postings = Arrays.copyOf(this.postings, values.size());
+    int[] sizes = new int[values.size()];
+    // count how many added rows hold each value so each posting list is allocated exactly once
+    for (int id : rowIds) {
+      if (id >= 0) {
+        sizes[id]++;
+      }
+    }
+    for (int id = 0; id < postings.length; id++) {
+      int[] old = id < this.postings.length ? this.postings[id] : PostingLists.EMPTY;
+      if (sizes[id] > 0) {
+        postings[id] = Arrays.copyOf(old, old.length + sizes[id]);
+      }
+      sizes[id] = old.length;
+    }
+    // second pass fills the posting lists, which stay sorted since added rows come after the others
+    for (int row = from; row < rows.size(); row++) {
+      int id = rowIds[row - from];
+      if (id >= 0) {
+        postings[id][sizes[id]++] = row;
+      }
+    }
+    ColumnIndex index = new ColumnIndex(values.toArray(new String[0]), postings, ids, charge);
+    charge.accept(index.estimatedBytes());
+    return index;
+  }
+
+  /**
+   * Gets the rows whose cell equals the given value.
+   *
+   * @param value the value to search for
+   * @param ignoreCase whether to compare without regard to case
+   * @return sorted posting list of matching row ids
+   */
+  public int[] exact(String value, boolean ignoreCase) {
+    if (!ignoreCase) {
+      Integer id = this.ids.get(value);
+      return id == null ? PostingLists.EMPTY : this.postings[id];
+    }
+    int[] valueIds = this.foldedIds().get(fold(value));
+    return valueIds == null ? PostingLists.EMPTY : this.rowsOf(valueIds);
+  }
+
+  /**
+   * Gets the rows whose cell contains the given value. Needles of at least three characters are
+   * narrowed down to candidate values through the trigram index before being checked; shorter
+   * needles are checked against every distinct value.
+   *
+   * @param needle the value to search for
+   * @param ignoreCase whether to compare without regard to case
+   * @return sorted posting list of matching row ids
+   */
+  public int[] substring(String needle, boolean ignoreCase) {
+    String folded = fold(needle);
+    String target = ignoreCase ? folded : needle;
+    IntArrayList matches = new IntArrayList();
+    if (folded.length() < 3) {
+      for (int id = 0; id < this.values.length; id++) {
+        if (this.contains(id, target, ignoreCase)) {
+          matches.add(id);
+        }
+      }
+    } else {
+      Map<String, int[]> trigrams = this.trigramIds();
+      int[] candidates = null;
+      for (int i = 0; i + 3 <= folded.length() && (candidates == null || candidates.length > 0);
+          i++) {
+        int[] ids = trigrams.getOrDefault(folded.substring(i, i + 3), PostingLists.EMPTY);
+        candidates = candidates == null ? ids : PostingLists.intersect(candidates, ids);
+      }
+      for (int id : candidates) {
+        if (this.contains(id, target, ignoreCase)) {
+          matches.add(id);
+        }
+      }
+    }
+    return this.rowsOf(matches.toArray());
+  }
+
+  /**
+   * Gets the number of distinct values in the column.
+   */
+  public int distinctValues() {
+    return this.values.length;
+  }
+
+  /**
+   * Gets the rough heap size of the value ids and posting lists, without the secondary indexes.
+   */
+  public long estimatedBytes() {
+    long bytes = 2 * ARRAY_OVERHEAD + 8L * this.values.length;
+    for (int[] posting : this.postings) {
+      bytes += ARRAY_OVERHEAD + 4L * posting.length;
+    }
+    return bytes + MAP_ENTRY_OVERHEAD * this.ids.size();
+  }
+
+  private boolean contains(int id, String target, boolean ignoreCase) {
+    return (ignoreCase ? fold(this.values[id]) : this.values[id]).contains(target);
+  }
+
+  private int[] rowsOf(int[] valueIds) {
+    int[][] lists = new int[valueIds.length][];
+    for (int i = 0; i < valueIds.length; i++) {
+      lists[i] = this.postings[valueIds[i]];
+    }
+    return PostingLists.unionDisjoint(lists);
+  }
+
+  private Map<String, int[]> foldedIds() {
+    Map<String, int[]> folded = this.foldedIds;
+    if (folded == null) {
+      Map<String, IntArrayList> building = new HashMap<>();
+      for (int id = 0; id < this.values.length; id++) {
+        building.computeIfAbsent(fold(this.values[id]), k -> new IntArrayList(1)).add(id);
+      }
+      folded = freeze(building);
+      this.foldedIds = folded;
+      this.charge.accept(estimateBytes(folded));
+    }
+    return folded;
+  }
+
+  private Map<String, int[]> trigramIds() {
+    Map<String, int[]> trigrams = this.trigramIds;
+    if (trigrams == null) {
+      Map<String, IntArrayList> building = new HashMap<>();
+      for (int id = 0; id < this.values.length; id++) {
+        String value = fold(this.values[id]);
+        for (int i = 0; i + 3 <= value.length(); i++) {
+          IntArrayList ids = building.computeIfAbsent(value.substring(i, i + 3),
+              k -> new IntArrayList(4));
+          // a trigram repeated within one value is only recorded once for it
+          if (ids.last(-1) != id) {
+            ids.add(id);
+          }
+        }
+      }
+      trigrams = freeze(building);
+      this.trigramIds = trigrams;
+      this.charge.accept(estimateBytes(trigrams));
+    }
+    return trigrams;
+  }
+
+  private static Map<String, int[]> freeze(Map<String, IntArrayList> building) {
+    Map<String, int[]> frozen = new HashMap<>(building.size() * 2);
+    for (Map.Entry<String, IntArrayList> entry : building.entrySet()) {
+      frozen.put(entry.getKey(), entry.getValue().toArray());
+    }
+    return frozen;
+  }
+
+  private static long estimateBytes(Map<String, int[]> secondary) {
+    long bytes = 0;
+    for (Map.Entry<String, int[]> entry : secondary.entrySet()) {
+      // the keys are new Strings made by folding or cutting trigrams out of the values
+      bytes += MAP_ENTRY_OVERHEAD + STRING_OVERHEAD + entry.getKey().length()
+          + ARRAY_OVERHEAD + 4L * entry.getValue().length;
+    }
+    return bytes;
+  }
+
+  private static String fold(String value) {
+    return value.toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,99 @@
+package csv.search;
+
+import java.util.Arrays;
+
+/**
+ * Utility methods for posting lists, which are sorted int arrays of row (or value) ids without
+ * duplicates. Keeping results as primitive arrays means conjunctions over several columns are
+ * merged without boxing any ids.
+ */
+public class PostingLists {
+
+  public static final int[] EMPTY = new int[0];
+
+  /**
+   * Intersects two posting lists. When one list is much shorter than the other, each of its ids is
+   * found in the longer list by galloping search instead of walking both lists in step.
+   *
+   * @param a a sorted posting list
+   * @param b a sorted posting list
+   * @return the sorted ids present in both lists
+   */
+  public static int[] intersect(int[] a, int[] b) {
+    if (a.length > b.length) {
+      return intersect(b, a);
+    }
+    int[] out = new int[a.length];
+    int size = 0;
+    if (a.length * 16 < b.length) {
+      int from = 0;
+      for (int id : a) {
+        from = gallop(b, from, id);
+        if (from == b.length) {
+          break;
+        }
+        if (b[from] == id) {
+          out[size++] = id;
+        }
+      }
+    } else {
+      int i = 0;
+      int j = 0;
+      while (i < a.length && j < b.length) {
+        if (a[i] < b[j]) {
+          i++;
+        } else if (a[i] > b[j]) {
+          j++;
+        } else {
+          out[size++] = a[i];
+          i++;
+          j++;
+        }
+      }
+    }
+    return Arrays.copyOf(out, size);
+  }
+
+  /**
+   * Unions posting lists that are known to be disjoint, such as the row lists of different
+   * distinct values of one column.
+   *
+   * @param lists disjoint sorted posting lists
+   * @return a single sorted posting list containing every id
+   */
+  public static int[] unionDisjoint(int[][] lists) {
+    if (lists.length == 0) {
+      return EMPTY;
+    }
+    if (lists.length == 1) {
+      return lists[0];
+    }
+    int total = 0;
+    for (int[] list : lists) {
+      total += list.length;
+    }
+    int[] out = new int[total];
+    int at = 0;
+    for (int[] list : lists) {
+      System.arraycopy(list, 0, out, at, list.length);
+      at += list.length;
+    }
+    Arrays.sort(out);
+    return out;
+  }
+
+  /**
+   * Returns the first index at or after from whose id is at least the target, or list.length.
+   */
+  private static int gallop(int[] list, int from, int target) {
+    int step = 1;
+    int hi = from;
+    while (hi < list.length && list[hi] < target) {
+      from = hi + 1;
+      hi += step;
+      step <<= 1;
+    }
+    int index = Arrays.binarySearch(list, from, Math.min(hi + 1, list.length), target);
+    return index >= 0 ? index : -index - 1;
+  }
+}
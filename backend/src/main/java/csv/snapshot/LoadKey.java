@@ -0,0 +1,30 @@
+package csv.snapshot;
+
+import java.util.Arrays;
+
+/**
+ * Identifies the exact contents a dataset was loaded from: the file's size and last modified time,
+ * which are cheap to check on every load, and a SHA-256 hash of its bytes, which settles whether a
+ * file whose modified time changed actually has different contents.
+ *
+ * @param size the size of the file in bytes
+ * @param modified the last modified time of the file in milliseconds
+ * @param hash SHA-256 hash of the file's contents
+ */
+public record LoadKey(long size, long modified, byte[] hash) {
+
+  /**
+   * Checks whether a file with the given size and modified time is still the file this key was
+   * made from, without reading it.
+   */
+  public boolean matches(long size, long modified) {
+    return this.size == size && this.modified == modified;
+  }
+
+  /**
+   * Checks whether the given hash is the hash of the contents this key was made from.
+   */
+  public boolean sameContents(byte[] hash) {
+    return Arrays.equals(this.hash, hash);
+  }
+}
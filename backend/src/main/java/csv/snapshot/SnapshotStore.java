@@ -0,0 +1,188 @@
+package csv.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads and writes parsed snapshots of CSV files. A snapshot is kept next to the CSV it was made
+ * from (data/x.csv is snapshotted to data/x.csv.snapshot) and stores the file's LoadKey followed by
+ * the parsed rows, with every count and length written as a variable-length int. Reading a snapshot
+ * memory-maps it and copies the cells out directly, which is much cheaper than parsing the CSV.
+ */
+public class SnapshotStore {
+
+  private static final int MAGIC = 0x43535653; // "CSVS"
+  private static final int VERSION = 1;
+  private static final int HASH_LENGTH = 32;
+  // magic, version and size come before the modified time, which is updated in place
+  private static final int MODIFIED_OFFSET = 16;
+  private static final int HEADER_LENGTH = MODIFIED_OFFSET + 8 + HASH_LENGTH;
+
+  /**
+   * Gets the path of the snapshot for a CSV file.
+   */
+  public static Path pathFor(Path csvFile) {
+    return csvFile.resolveSibling(csvFile.getFileName() + ".snapshot");
+  }
+
+  /**
+   * Reads just the LoadKey of a snapshot.
+   *
+   * @param snapshot path of the snapshot
+   * @return the key, or null if there is no readable snapshot at the path
+   */
+  public static LoadKey readKey(Path snapshot) {
+    try (InputStream in = Files.newInputStream(snapshot);
+        DataInputStream data = new DataInputStream(in)) {
+      if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+        return null;
+      }
+      long size = data.readLong();
+      long modified = data.readLong();
+      byte[] hash = new byte[HASH_LENGTH];
+      data.readFully(hash);
+      return new LoadKey(size, modified, hash);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the rows of a snapshot by memory-mapping it. Every count and length is checked against
+   * the bytes left in the snapshot before anything is allocated for it, since each row and cell
+   * takes at least one byte, so a corrupted count cannot make the reader allocate more than the
+   * snapshot could hold.
+   *
+   * @param snapshot path of the snapshot
+   * @return the parsed rows that were written to the snapshot
+   * @throws IOException if the snapshot cannot be read, is truncated or is otherwise invalid
+   */
+  public static List<List<String>> readRows(Path snapshot) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.position(HEADER_LENGTH);
+      int rowCount = checkCount(buffer, buffer.getInt(), snapshot);
+      List<List<String>> rows = new ArrayList<>(rowCount);
+      byte[] scratch = new byte[256];
+      for (int r = 0; r < rowCount; r++) {
+        int cellCount = checkCount(buffer, readVarInt(buffer), snapshot);
+        String[] cells = new String[cellCount];
+        for (int c = 0; c < cellCount; c++) {
+          int length = checkCount(buffer, readVarInt(buffer), snapshot);
+          if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+          }
+          buffer.get(scratch, 0, length);
+          cells[c] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        rows.add(Collections.unmodifiableList(Arrays.asList(cells)));
+      }
+      if (buffer.hasRemaining()) {
+        throw new IOException("Invalid snapshot " + snapshot + ": data after the last row");
+      }
+      return Collections.unmodifiableList(rows);
+    } catch (RuntimeException e) {
+      // a truncated or corrupted snapshot surfaces as a buffer underflow
+      throw new IOException("Unreadable snapshot " + snapshot, e);
+    }
+  }
+
+  /**
+   * Checks that a count read from a snapshot is one that the rest of the snapshot could hold.
+   */
+  private static int checkCount(ByteBuffer buffer, int count, Path snapshot) throws IOException {
+    if (count < 0 || count > buffer.remaining()) {
+      throw new IOException("Invalid snapshot " + snapshot + ": count " + count + " at byte "
+          + buffer.position() + " with " + buffer.remaining() + " bytes left");
+    }
+    return count;
+  }
+
+  /**
+   * Writes a snapshot of the given rows. The snapshot is written to a temporary file first and then
+   * moved into place, so a reader never sees a half-written snapshot.
+   *
+   * @param snapshot path of the snapshot
+   * @param key the key of the CSV file the rows were parsed from
+   * @param rows the parsed rows
+   * @throws IOException if the snapshot cannot be written
+   */
+  public static void write(Path snapshot, LoadKey key, List<List<String>> rows)
+      throws IOException {
+    Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16);
+        DataOutputStream data = new DataOutputStream(out)) {
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      data.writeLong(key.size());
+      data.writeLong(key.modified());
+      data.write(key.hash());
+      data.writeInt(rows.size());
+      for (List<String> row : rows) {
+        writeVarInt(data, row.size());
+        for (String cell : row) {
+          byte[] bytes = cell.getBytes(StandardCharsets.UTF_8);
+          writeVarInt(data, bytes.length);
+          data.write(bytes);
+        }
+      }
+    }
+    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Updates the modified time recorded in a snapshot, for when a CSV file was touched without its
+   * contents changing.
+   *
+   * @param snapshot path of the snapshot
+   * @param modified the new modified time in milliseconds
+   * @throws IOException if the snapshot cannot be written
+   */
+  public static void updateModified(Path snapshot, long modified) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+      file.seek(MODIFIED_OFFSET);
+      file.writeLong(modified);
+    }
+  }
+
+  private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      data.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    data.writeByte(value);
+  }
+
+  private static int readVarInt(ByteBuffer buffer) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 28) {
+        throw new IllegalStateException("Variable-length int longer than five bytes");
+      }
+      b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+}
@@ -0,0 +1,112 @@
+package csv.stats;
+
+import csv.factories.RowSink;
+import csv.utility.CSVRowView;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the words, characters, rows and columns of CSV data as it is parsed, along with the stats
+ * of every column. Words and characters are counted the way CSVCounter used to count them from the
+ * parsed rows (the characters of every cell, and the space separated words of every non-empty
+ * cell), but straight from each row's buffer, without splitting any cell. The stats of separate
+ * chunks of a file are merged into the stats of the whole file.
+ */
+public class CSVStats implements RowSink {
+
+  private long words;
+  private long characters;
+  private long rows;
+  private final List<ColumnStats> columns;
+
+  public CSVStats() {
+    this.words = 0;
+    this.characters = 0;
+    this.rows = 0;
+    this.columns = new ArrayList<>();
+  }
+
+  @Override
+  public void accept(CSVRowView row) {
+    int cells = row.cellCount();
+    // a column first seen in this row was missing from every earlier row
+    while (this.columns.size() < cells) {
+      this.addColumn(this.rows);
+    }
+    for (int cell = 0; cell < cells; cell++) {
+      int length = row.length(cell);
+      if (length > 0) {
+        // cells are stripped, so a non-empty cell has one more word than it has spaces
+        this.words++;
+        for (int i = 0; i < length; i++) {
+          if (row.charAt(cell, i) == ' ') {
+            this.words++;
+          }
+        }
+        this.characters += length;
+      }
+      this.columns.get(cell).add(row, cell);
+    }
+    for (int column = cells; column < this.columns.size(); column++) {
+      this.columns.get(column).addMissing(1);
+    }
+    this.rows++;
+  }
+
+  /**
+   * Merges the stats of another chunk of the same file into these.
+   *
+   * @param other stats of another chunk
+   * @return these stats, for use as a reducer
+   */
+  public CSVStats merge(CSVStats other) {
+    while (this.columns.size() < other.columns.size()) {
+      this.addColumn(this.rows);
+    }
+    for (int column = 0; column < this.columns.size(); column++) {
+      if (column < other.columns.size()) {
+        this.columns.get(column).merge(other.columns.get(column));
+      } else {
+        this.columns.get(column).addMissing(other.rows);
+      }
+    }
+    this.words += other.words;
+    this.characters += other.characters;
+    this.rows += other.rows;
+    return this;
+  }
+
+  private void addColumn(long missing) {
+    ColumnStats stats = new ColumnStats();
+    stats.addMissing(missing);
+    this.columns.add(stats);
+  }
+
+  public long getWords() {
+    return this.words;
+  }
+
+  public long getCharacters() {
+    return this.characters;
+  }
+
+  public long getRows() {
+    return this.rows;
+  }
+
+  /**
+   * Gets the number of cells in the widest row.
+   */
+  public int getColumns() {
+    return this.columns.size();
+  }
+
+  /**
+   * Gets the stats of one column.
+   *
+   * @param column zero-based index of the column
+   */
+  public ColumnStats getColumn(int column) {
+    return this.columns.get(column);
+  }
+}
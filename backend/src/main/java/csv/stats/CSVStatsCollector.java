@@ -0,0 +1,145 @@
+package csv.stats;
+
+import csv.utility.CSVLineScanner;
+import csv.utility.CSVRowView;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the CSVStats of a file in a single pass. The file is cut into chunks at line breaks,
+ * each chunk is scanned on its own thread into its own CSVStats, and the chunk stats are merged.
+ * The file is decoded with the default charset, as loadcsv and following decode it. In UTF-8, as
+ * in the other ASCII-compatible charsets a JVM defaults to, a line break byte never occurs inside
+ * a multi-byte character, so every chunk decodes on its own.
+ */
+public class CSVStatsCollector {
+
+  // below this, a chunk is not worth a thread of its own
+  private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+  /**
+   * Collects the stats of a CSV file.
+   *
+   * @param path the file to read
+   * @param parallelism the most chunks to scan at once
+   * @return the stats of the whole file
+   * @throws IOException if the file cannot be read
+   */
+  public static CSVStats collect(Path path, int parallelism) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int chunks = (int) Math.max(1, Math.min(parallelism, size / MIN_CHUNK_BYTES));
+      long[] bounds = chunkBounds(channel, size, chunks);
+      try {
+        return IntStream.range(0, bounds.length - 1)
+            .parallel()
+            .mapToObj(i -> scan(channel, bounds[i], bounds[i + 1]))
+            .reduce(CSVStats::merge)
+            .orElseGet(CSVStats::new);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Picks the byte offsets the chunks start at: roughly even fractions of the file, each moved
+   * forward to just after the next line break. The last offset is the size of the file.
+   */
+  private static long[] chunkBounds(FileChannel channel, long size, int chunks)
+      throws IOException {
+    long[] bounds = new long[chunks + 1];
+    int count = 1;
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    for (int i = 1; i < chunks; i++) {
+      long at = Math.max(size * i / chunks, bounds[count - 1]);
+      long start = lineStartAtOrAfter(channel, at, size, buffer);
+      if (start > bounds[count - 1] && start < size) {
+        bounds[count++] = start;
+      }
+    }
+    bounds[count++] = size;
+    return Arrays.copyOf(bounds, count);
+  }
+
+  private static long lineStartAtOrAfter(FileChannel channel, long at, long size,
+      ByteBuffer buffer) throws IOException {
+    // the line containing the byte before at may end exactly at at
+    long position = Math.max(0, at - 1);
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  private static CSVStats scan(FileChannel channel, long from, long to) {
+    CSVStats stats = new CSVStats();
+    try (Reader reader = new InputStreamReader(new RangeInputStream(channel, from, to),
+        Charset.defaultCharset())) {
+      CSVLineScanner scanner = new CSVLineScanner(reader);
+      CSVRowView row = new CSVRowView();
+      while (scanner.next(row)) {
+        stats.accept(row);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return stats;
+  }
+
+  /**
+   * Reads one byte range of a file with positional reads, so several ranges can be read from the
+   * same channel at once.
+   */
+  private static final class RangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    private RangeInputStream(FileChannel channel, long from, long to) {
+      this.channel = channel;
+      this.position = from;
+      this.end = to;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return this.read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (this.position >= this.end) {
+        return -1;
+      }
+      int wanted = (int) Math.min(length, this.end - this.position);
+      int read = this.channel.read(ByteBuffer.wrap(bytes, offset, wanted), this.position);
+      if (read > 0) {
+        this.position += read;
+      }
+      return read;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package csv.stats;
+
+import csv.factories.ColumnType;
+import csv.utility.CSVRowView;
+
+/**
+ * Statistics for one column of CSV data: how many cells are empty or missing, the minimum, maximum
+ * and mean of the cells that are numbers, and an approximate count of distinct values. Stats for
+ * different parts of a file are merged into the stats for the whole file.
+ */
+public class ColumnStats {
+
+  private static final int PRECISION = 12;
+
+  private long nulls;
+  private long numeric;
+  private double min;
+  private double max;
+  private double sum;
+  private final HyperLogLog distinct;
+
+  public ColumnStats() {
+    this.nulls = 0;
+    this.numeric = 0;
+    this.min = Double.POSITIVE_INFINITY;
+    this.max = Double.NEGATIVE_INFINITY;
+    this.sum = 0;
+    this.distinct = new HyperLogLog(PRECISION);
+  }
+
+  /**
+   * Adds a cell of the given row.
+   *
+   * @param row the row being read
+   * @param cell zero-based index of the cell, which must exist in the row
+   */
+  public void add(CSVRowView row, int cell) {
+    if (row.isEmpty(cell)) {
+      this.nulls++;
+      return;
+    }
+    this.distinct.add(row.hash(cell));
+    ColumnType type = row.classify(cell);
+    if (type == ColumnType.STRING) {
+      return;
+    }
+    // numbers too large for a double are left out, so the min, max and mean stay finite
+    double value = row.parseDouble(cell);
+    if (Double.isFinite(value)) {
+      this.numeric++;
+      this.sum += value;
+      this.min = Math.min(this.min, value);
+      this.max = Math.max(this.max, value);
+    }
+  }
+
+  /**
+   * Records cells missing from rows too short to have this column.
+   *
+   * @param count the number of missing cells
+   */
+  public void addMissing(long count) {
+    this.nulls += count;
+  }
+
+  /**
+   * Merges the stats of the same column from another part of the file into these.
+   */
+  public void merge(ColumnStats other) {
+    this.nulls += other.nulls;
+    this.numeric += other.numeric;
+    this.sum += other.sum;
+    this.min = Math.min(this.min, other.min);
+    this.max = Math.max(this.max, other.max);
+    this.distinct.merge(other.distinct);
+  }
+
+  public long getNulls() {
+    return this.nulls;
+  }
+
+  /**
+   * Gets the number of cells that are numbers.
+   */
+  public long getNumeric() {
+    return this.numeric;
+  }
+
+  /**
+   * Gets the smallest number in the column, or null if it has none.
+   */
+  public Double getMin() {
+    return this.numeric == 0 ? null : this.min;
+  }
+
+  /**
+   * Gets the largest number in the column, or null if it has none.
+   */
+  public Double getMax() {
+    return this.numeric == 0 ? null : this.max;
+  }
+
+  /**
+   * Gets the mean of the numbers in the column, or null if it has none.
+   */
+  public Double getMean() {
+    return this.numeric == 0 ? null : this.sum / this.numeric;
+  }
+
+  /**
+   * Gets the approximate number of distinct non-empty values in the column.
+   */
+  public long getDistinct() {
+    return this.distinct.estimate();
+  }
+}
@@ -0,0 +1,85 @@
+package csv.stats;
+
+/**
+ * A HyperLogLog sketch, which estimates the number of distinct values added to it in a fixed amount
+ * of memory (2^precision one-byte registers) with a standard error of about
+ * 1.04 / sqrt(2^precision). Sketches with the same precision can be merged, which gives the sketch
+ * of the combined values.
+ */
+public class HyperLogLog {
+
+  private final int precision;
+  private final byte[] registers;
+
+  /**
+   * Constructor of the HyperLogLog class.
+   *
+   * @param precision number of hash bits used to pick a register, from 4 to 16
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 16) {
+      throw new IllegalArgumentException("precision must be from 4 to 16: " + precision);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Adds a value to the sketch by its 64-bit hash, which must be well mixed.
+   *
+   * @param hash hash of the value
+   */
+  public void add(long hash) {
+    int register = (int) (hash >>> (64 - this.precision));
+    // the rank is the position of the first one bit in the remaining bits
+    long rest = (hash << this.precision) | (1L << (this.precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > this.registers[register]) {
+      this.registers[register] = rank;
+    }
+  }
+
+  /**
+   * Merges another sketch into this one.
+   *
+   * @param other a sketch with the same precision
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != this.precision) {
+      throw new IllegalArgumentException("cannot merge precision " + other.precision
+          + " into " + this.precision);
+    }
+    for (int i = 0; i < this.registers.length; i++) {
+      if (other.registers[i] > this.registers[i]) {
+        this.registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /**
+   * Estimates the number of distinct values added, using linear counting while many registers are
+   * still empty, where the raw estimate is biased.
+   */
+  public long estimate() {
+    int m = this.registers.length;
+    double sum = 0;
+    int empty = 0;
+    for (byte register : this.registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        empty++;
+      }
+    }
+    double alpha = switch (m) {
+      case 16 -> 0.673;
+      case 32 -> 0.697;
+      case 64 -> 0.709;
+      default -> 0.7213 / (1 + 1.079 / m);
+    };
+    double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && empty > 0) {
+      estimate = m * Math.log((double) m / empty);
+    }
+    return Math.round(estimate);
+  }
+}
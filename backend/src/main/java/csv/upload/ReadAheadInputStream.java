@@ -0,0 +1,162 @@
+package csv.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An InputStream that reads its source ahead on a thread of its own, so that receiving an upload
+ * and parsing it overlap. Read-ahead is bounded by a fixed set of buffers: the reading thread takes
+ * a free buffer, fills it from the source and queues it, and the buffer only becomes free again
+ * once the consumer has read all of it. When the consumer falls behind, the reading thread waits
+ * for a free buffer and stops reading from the source, so a slow parse holds back the sender
+ * (through the connection's flow control) instead of the upload piling up in memory.
+ *
+ * <p>The source may be at most a given number of bytes long. Once it goes over, reading stops and
+ * the consumer gets an UploadTooLargeException after the bytes read before it.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+  // queued after the last buffer, at the end of the source or after a failure
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+  private final InputStream source;
+  private final BlockingQueue<ByteBuffer> free;
+  private final BlockingQueue<ByteBuffer> filled;
+  private final long maxBytes;
+  private final Thread reader;
+  // set by the reading thread before it queues END
+  private volatile IOException failure;
+  private volatile long bytesRead;
+  private ByteBuffer current;
+  private boolean ended;
+
+  /**
+   * Starts reading ahead from the source.
+   *
+   * @param source the stream to read, such as a request body
+   * @param bufferBytes the size of each buffer
+   * @param buffers the number of buffers, and so the most reads the reading thread can be ahead
+   * @param maxBytes the most bytes the source may have
+   */
+  public ReadAheadInputStream(InputStream source, int bufferBytes, int buffers, long maxBytes) {
+    this.source = source;
+    this.free = new ArrayBlockingQueue<>(buffers);
+    this.filled = new ArrayBlockingQueue<>(buffers + 1);
+    this.maxBytes = maxBytes;
+    for (int i = 0; i < buffers; i++) {
+      this.free.add(ByteBuffer.allocate(bufferBytes));
+    }
+    this.reader = new Thread(this::readAhead, "csv-read-ahead");
+    this.reader.setDaemon(true);
+    this.reader.start();
+  }
+
+  /**
+   * Gets the number of bytes read from the source so far, which can be ahead of what the consumer
+   * has read.
+   */
+  public long getBytesRead() {
+    return this.bytesRead;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] one = new byte[1];
+    return this.read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!this.advance()) {
+      return -1;
+    }
+    int count = Math.min(length, this.current.remaining());
+    this.current.get(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return this.current == null ? 0 : this.current.remaining();
+  }
+
+  /**
+   * Stops reading ahead and closes the source.
+   */
+  @Override
+  public void close() throws IOException {
+    this.reader.interrupt();
+    this.source.close();
+  }
+
+  /**
+   * Makes sure the current buffer has bytes left, handing used buffers back to the reading thread.
+   *
+   * @return false at the end of the source
+   * @throws IOException if the source failed or went over its size
+   */
+  private boolean advance() throws IOException {
+    while (this.current == null || !this.current.hasRemaining()) {
+      if (this.ended) {
+        return false;
+      }
+      if (this.current != null) {
+        this.current.clear();
+        this.free.add(this.current);
+        this.current = null;
+      }
+      ByteBuffer next;
+      try {
+        next = this.filled.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for the upload");
+      }
+      if (next == END) {
+        this.ended = true;
+        if (this.failure != null) {
+          throw this.failure;
+        }
+        return false;
+      }
+      this.current = next;
+    }
+    return true;
+  }
+
+  /**
+   * Runs on the reading thread: fills free buffers from the source until it ends, fails, goes over
+   * its size, or the stream is closed.
+   */
+  private void readAhead() {
+    try {
+      while (true) {
+        ByteBuffer buffer = this.free.take();
+        int read = this.source.read(buffer.array(), 0, buffer.capacity());
+        if (read == -1) {
+          break;
+        }
+        this.bytesRead += read;
+        if (this.bytesRead > this.maxBytes) {
+          this.failure = new UploadTooLargeException(this.maxBytes);
+          break;
+        }
+        buffer.limit(read);
+        this.filled.put(buffer);
+      }
+    } catch (IOException e) {
+      this.failure = e;
+    } catch (InterruptedException e) {
+      // closed by the consumer, who no longer waits for END
+      return;
+    }
+    this.filled.add(END);
+  }
+}
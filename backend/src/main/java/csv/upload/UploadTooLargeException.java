@@ -0,0 +1,16 @@
+package csv.upload;
+
+import java.io.IOException;
+
+/**
+ * Exception that is raised when an upload is larger than the most bytes it may have.
+ */
+public class UploadTooLargeException extends IOException {
+
+  /**
+   * @param maxBytes the most bytes the upload may have
+   */
+  public UploadTooLargeException(long maxBytes) {
+    super("Upload is larger than " + maxBytes + " bytes");
+  }
+}
@@ -0,0 +1,96 @@
+package csv.utility;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads CSV data line by line into a single reusable character buffer and points a CSVRowView at
+ * each line, so reading a file does not create a String per line. Lines end at "\n", "\r" or
+ * "\r\n", just as with BufferedReader.readLine.
+ */
+public class CSVLineScanner {
+
+  private final Reader reader;
+  private char[] buffer;
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+
+  /**
+   * Constructor of the CSVLineScanner class.
+   *
+   * @param reader the CSV data to read
+   */
+  public CSVLineScanner(Reader reader) {
+    this.reader = reader;
+    this.buffer = new char[1 << 16];
+    this.position = 0;
+    this.limit = 0;
+    this.endOfInput = false;
+  }
+
+  /**
+   * Reads the next line and points the row view at it.
+   *
+   * @param row the view to point at the line
+   * @return false if there are no more lines
+   * @throws IOException if the data cannot be read
+   */
+  public boolean next(CSVRowView row) throws IOException {
+    int scanFrom = this.position;
+    while (true) {
+      for (int i = scanFrom; i < this.limit; i++) {
+        char c = this.buffer[i];
+        if (c == '\n' || c == '\r') {
+          // a "\r" at the end of the buffer might be the first half of a "\r\n"
+          if (c == '\r' && i + 1 == this.limit && !this.endOfInput) {
+            break;
+          }
+          int lineStart = this.position;
+          this.position = i + 1;
+          if (c == '\r' && this.position < this.limit && this.buffer[this.position] == '\n') {
+            this.position++;
+          }
+          row.reset(this.buffer, lineStart, i);
+          return true;
+        }
+      }
+      if (this.endOfInput) {
+        if (this.position == this.limit) {
+          return false;
+        }
+        int lineStart = this.position;
+        this.position = this.limit;
+        row.reset(this.buffer, lineStart, this.limit);
+        return true;
+      }
+      scanFrom = this.fill();
+    }
+  }
+
+  /**
+   * Moves the unread part of the line to the front of the buffer, growing it if the line fills the
+   * whole buffer, and reads more data after it.
+   *
+   * @return the offset to resume scanning for a line break from
+   */
+  private int fill() throws IOException {
+    int unread = this.limit - this.position;
+    int scanned = Math.max(0, unread - 1);
+    if (this.position > 0) {
+      System.arraycopy(this.buffer, this.position, this.buffer, 0, unread);
+    } else if (unread == this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+    }
+    this.position = 0;
+    this.limit = unread;
+    int read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+    if (read == -1) {
+      this.endOfInput = true;
+    } else {
+      this.limit += read;
+    }
+    return scanned;
+  }
+}
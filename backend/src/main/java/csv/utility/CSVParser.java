@@ -1,10 +1,13 @@
 package csv.utility;
 
 import csv.factories.CreatorFromRow;
+import csv.factories.CreatorFromView;
 import csv.factories.FactoryFailureException;
+import csv.factories.RowSink;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -40,6 +43,18 @@ public class CSVParser<T> {
     this.header = header;
 //    this.parseCsv();
   }
+  /**
+   * Constructor for a parser that only feeds rows to a RowSink through parseInto, and so has no
+   * row converter.
+   *
+   * @param header Boolean value to indicate if a header is present in data.
+   */
+  public CSVParser(Boolean header) {
+    this.listOfRows = new ArrayList<>();
+    this.convertedRows = new ArrayList<>();
+    this.header = header;
+  }
+
   /**
    *
    */
@@ -51,10 +66,10 @@ public class CSVParser<T> {
    * Converts each row of CSV data into an object of type T.
    *
    * @throws FactoryFailureException when row of CSV data cannot be converted into desired Object.
+   * @throws UncheckedIOException when the data cannot be read, or reading it was cancelled.
    */
   public void parseCSV() throws FactoryFailureException {
-    try {
-      BufferedReader bReader = new BufferedReader(this.reader);
+    try (BufferedReader bReader = new BufferedReader(this.reader)) {
       String line = bReader.readLine();
       if (this.header == Boolean.TRUE) { // there is a header in data
         line = bReader.readLine(); // start reading on the second line
@@ -69,13 +84,53 @@ public class CSVParser<T> {
         this.convertedRows.add(this.rowConverter.create(Arrays.stream(wordsInLine).toList()));
         line = bReader.readLine();
       }
-      bReader.close();
     } catch (IOException e) { // catch IOException from BufferedReader
-      System.err.println("Something went wrong with the file! Try again.");
-      System.exit(0); // print informative message and exit gracefully
+      // rethrown rather than exiting, since the parser also runs inside the server
+      throw new UncheckedIOException("Something went wrong with the file! Try again.", e);
     }
   }
 
+  /**
+   * Parses the CSV data into a RowSink. Rows are split exactly as in parseCSV, but each one is
+   * handed to the sink as a view over a reused buffer, so no Strings or Lists are made per row and
+   * nothing is added to the lists returned by getListOfRows and getConvertedRows.
+   *
+   * @param sink receives each row of data, and is finished after the last one.
+   * @throws FactoryFailureException when the sink cannot accept a row.
+   * @throws UncheckedIOException when the data cannot be read, or reading it was cancelled.
+   */
+  public void parseInto(RowSink sink) throws FactoryFailureException {
+    try (Reader input = this.reader) {
+      CSVLineScanner scanner = new CSVLineScanner(input);
+      CSVRowView row = new CSVRowView();
+      boolean more = scanner.next(row);
+      if (more && this.header == Boolean.TRUE) { // there is a header in data
+        more = scanner.next(row);
+      }
+      while (more) {
+        sink.accept(row);
+        more = scanner.next(row);
+      }
+      sink.finish();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Something went wrong with the file! Try again.", e);
+    }
+  }
+
+  /**
+   * Parses the CSV data with a CreatorFromView in place of the parser's CreatorFromRow. Each row is
+   * converted from a view over a reused buffer, so the only objects made per row are those the
+   * creator makes. The converted objects are added to the list returned by getConvertedRows; as no
+   * List of Strings is made for the rows, nothing is added to getListOfRows.
+   *
+   * @param creator converts each row of data into an object of type T.
+   * @throws FactoryFailureException when row of CSV data cannot be converted into desired Object.
+   * @throws UncheckedIOException when the data cannot be read, or reading it was cancelled.
+   */
+  public void parseCSV(CreatorFromView<T> creator) throws FactoryFailureException {
+    this.parseInto(row -> this.convertedRows.add(creator.create(row)));
+  }
+
   /**
    * Gets the List containing the List of Strings that represent each of the rows of CSV data.
    *
@@ -0,0 +1,268 @@
+package csv.utility;
+
+import csv.factories.ColumnType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reusable view of one row of CSV data, pointing into the character buffer the row was read
+ * into. The row is split into cells exactly as CSVParser splits a line (on commas, dropping
+ * trailing empty cells, with each cell stripped of surrounding whitespace), but the cells are only
+ * recorded as start and end offsets, so no String is created unless a cell is asked for as one.
+ * Cells can also be read as CharSequence slices of the buffer; the view keeps one slice per cell
+ * position and reuses them for every row.
+ */
+public class CSVRowView {
+
+  private char[] chars;
+  private int[] starts;
+  private int[] ends;
+  private int cellCount;
+  private Slice[] slices;
+
+  public CSVRowView() {
+    this.chars = new char[0];
+    this.starts = new int[16];
+    this.ends = new int[16];
+    this.cellCount = 0;
+    this.slices = new Slice[0];
+  }
+
+  /**
+   * Points the view at a new line and splits it into cells.
+   *
+   * @param chars the buffer holding the line
+   * @param from offset of the first character of the line
+   * @param to offset just past the last character of the line, not including the line break
+   */
+  public void reset(char[] chars, int from, int to) {
+    this.chars = chars;
+    this.cellCount = 0;
+    int cellStart = from;
+    boolean sawComma = false;
+    for (int i = from; i <= to; i++) {
+      if (i == to || chars[i] == ',') {
+        sawComma |= i < to;
+        this.addCell(cellStart, i);
+        cellStart = i + 1;
+      }
+    }
+    // like String.split, a line with commas loses its trailing empty cells
+    if (sawComma) {
+      while (this.cellCount > 0
+          && this.starts[this.cellCount - 1] == this.ends[this.cellCount - 1]) {
+        this.cellCount--;
+      }
+    }
+    for (int cell = 0; cell < this.cellCount; cell++) {
+      int start = this.starts[cell];
+      int end = this.ends[cell];
+      while (start < end && Character.isWhitespace(chars[start])) {
+        start++;
+      }
+      while (end > start && Character.isWhitespace(chars[end - 1])) {
+        end--;
+      }
+      this.starts[cell] = start;
+      this.ends[cell] = end;
+    }
+  }
+
+  private void addCell(int start, int end) {
+    if (this.cellCount == this.starts.length) {
+      this.starts = Arrays.copyOf(this.starts, this.cellCount * 2);
+      this.ends = Arrays.copyOf(this.ends, this.cellCount * 2);
+    }
+    this.starts[this.cellCount] = start;
+    this.ends[this.cellCount] = end;
+    this.cellCount++;
+  }
+
+  public int cellCount() {
+    return this.cellCount;
+  }
+
+  /**
+   * Gets the length of a cell after stripping.
+   */
+  public int length(int cell) {
+    this.check(cell);
+    return this.ends[cell] - this.starts[cell];
+  }
+
+  public boolean isEmpty(int cell) {
+    return this.length(cell) == 0;
+  }
+
+  /**
+   * Gets the character at an index within a cell.
+   */
+  public char charAt(int cell, int index) {
+    this.check(cell);
+    return this.chars[this.starts[cell] + index];
+  }
+
+  /**
+   * Works out the narrowest numeric type that can hold a cell.
+   *
+   * @return INT, LONG or DOUBLE for a number, STRING for anything else, or null for an empty cell
+   */
+  public ColumnType classify(int cell) {
+    this.check(cell);
+    return NumberParsing.classify(this.chars, this.starts[cell], this.ends[cell]);
+  }
+
+  /**
+   * Parses a cell as an int without creating a String.
+   *
+   * @throws NumberFormatException if the cell is not an int
+   */
+  public int parseInt(int cell) {
+    this.check(cell);
+    return NumberParsing.parseInt(this.chars, this.starts[cell], this.ends[cell]);
+  }
+
+  /**
+   * Parses a cell as a long without creating a String.
+   *
+   * @throws NumberFormatException if the cell is not a long
+   */
+  public long parseLong(int cell) {
+    this.check(cell);
+    return NumberParsing.parseLong(this.chars, this.starts[cell], this.ends[cell]);
+  }
+
+  /**
+   * Parses a cell as a double, in most cases without creating a String.
+   *
+   * @throws NumberFormatException if the cell is not a number
+   */
+  public double parseDouble(int cell) {
+    this.check(cell);
+    return NumberParsing.parseDouble(this.chars, this.starts[cell], this.ends[cell]);
+  }
+
+  /**
+   * Checks whether a cell holds exactly the characters of the given String, without copying it.
+   */
+  public boolean cellEquals(int cell, String value) {
+    this.check(cell);
+    int start = this.starts[cell];
+    int length = this.ends[cell] - start;
+    if (length != value.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (this.chars[start + i] != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes a well-mixed 64-bit hash of a cell's characters without copying them, so that equal
+   * cells hash alike in any row. Suitable for sketches such as HyperLogLog.
+   */
+  public long hash(int cell) {
+    this.check(cell);
+    // FNV-1a over the characters, then the MurmurHash3 finalizer to spread the bits
+    long hash = 0xcbf29ce484222325L;
+    for (int i = this.starts[cell]; i < this.ends[cell]; i++) {
+      hash = (hash ^ this.chars[i]) * 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  /**
+   * Gets a cell as a slice of the row's buffer, without copying it. The same slice object is
+   * returned for the same cell position of every row, so it shows whatever row the view is on and
+   * must be copied (with toString) if the cell is needed after the view moves on.
+   */
+  public CharSequence cell(int cell) {
+    this.check(cell);
+    if (cell >= this.slices.length) {
+      int grown = this.slices.length;
+      this.slices = Arrays.copyOf(this.slices, Math.max(this.starts.length, cell + 1));
+      for (int i = grown; i < this.slices.length; i++) {
+        this.slices[i] = new Slice(this, i);
+      }
+    }
+    return this.slices[cell];
+  }
+
+  /**
+   * Copies a cell out into a new String.
+   */
+  public String cellString(int cell) {
+    this.check(cell);
+    return new String(this.chars, this.starts[cell], this.ends[cell] - this.starts[cell]);
+  }
+
+  /**
+   * Copies the whole row out into a List of Strings, as CSVParser would have produced it.
+   */
+  public List<String> toList() {
+    List<String> row = new ArrayList<>(this.cellCount);
+    for (int cell = 0; cell < this.cellCount; cell++) {
+      row.add(this.cellString(cell));
+    }
+    return row;
+  }
+
+  private void check(int cell) {
+    if (cell < 0 || cell >= this.cellCount) {
+      throw new IndexOutOfBoundsException(cell);
+    }
+  }
+
+  /**
+   * A CharSequence over one cell position of a row view.
+   */
+  static final class Slice implements CharSequence {
+
+    private final CSVRowView row;
+    private final int cell;
+
+    private Slice(CSVRowView row, int cell) {
+      this.row = row;
+      this.cell = cell;
+    }
+
+    CSVRowView getRow() {
+      return this.row;
+    }
+
+    int getCell() {
+      return this.cell;
+    }
+
+    @Override
+    public int length() {
+      return this.row.length(this.cell);
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= this.length()) {
+        throw new IndexOutOfBoundsException(index);
+      }
+      return this.row.chars[this.row.starts[this.cell] + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return this.toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return this.row.cellString(this.cell);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package csv.utility;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive doubles. Used in place of a List of Doubles wherever numeric cells
+ * are collected, so that adding a value never boxes it.
+ */
+public class DoubleArrayList {
+
+  private double[] values;
+  private int size;
+
+  public DoubleArrayList() {
+    this(16);
+  }
+
+  public DoubleArrayList(int capacity) {
+    this.values = new double[Math.max(capacity, 1)];
+    this.size = 0;
+  }
+
+  /**
+   * Appends a value, doubling the backing array when it is full.
+   *
+   * @param value the value to append
+   */
+  public void add(double value) {
+    if (this.size == this.values.length) {
+      this.values = Arrays.copyOf(this.values, this.size * 2);
+    }
+    this.values[this.size++] = value;
+  }
+
+  public double get(int index) {
+    if (index >= this.size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return this.values[index];
+  }
+
+  /**
+   * Drops every value from the given index on.
+   *
+   * @param size the number of values to keep
+   */
+  public void truncate(int size) {
+    if (size < 0 || size > this.size) {
+      throw new IndexOutOfBoundsException(size);
+    }
+    this.size = size;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Gets the last value that was appended, or the given default if the list is empty.
+   */
+  public double last(double fallback) {
+    return this.size == 0 ? fallback : this.values[this.size - 1];
+  }
+
+  /**
+   * Copies the values into an array of exactly the right length.
+   *
+   * @return the values appended so far
+   */
+  public double[] toArray() {
+    return Arrays.copyOf(this.values, this.size);
+  }
+}
@@ -0,0 +1,73 @@
+package csv.utility;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive ints. Used in place of a List of Integers wherever row ids or
+ * numeric cells are collected, so that adding a value never boxes it.
+ */
+public class IntArrayList {
+
+  private int[] values;
+  private int size;
+
+  public IntArrayList() {
+    this(16);
+  }
+
+  public IntArrayList(int capacity) {
+    this.values = new int[Math.max(capacity, 1)];
+    this.size = 0;
+  }
+
+  /**
+   * Appends a value, doubling the backing array when it is full.
+   *
+   * @param value the value to append
+   */
+  public void add(int value) {
+    if (this.size == this.values.length) {
+      this.values = Arrays.copyOf(this.values, this.size * 2);
+    }
+    this.values[this.size++] = value;
+  }
+
+  public int get(int index) {
+    if (index >= this.size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return this.values[index];
+  }
+
+  /**
+   * Drops every value from the given index on.
+   *
+   * @param size the number of values to keep
+   */
+  public void truncate(int size) {
+    if (size < 0 || size > this.size) {
+      throw new IndexOutOfBoundsException(size);
+    }
+    this.size = size;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Gets the last value that was appended, or the given default if the list is empty.
+   */
+  public int last(int fallback) {
+    return this.size == 0 ? fallback : this.values[this.size - 1];
+  }
+
+  /**
+   * Copies the values into an array of exactly the right length.
+   *
+   * @return the values appended so far
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(this.values, this.size);
+  }
+}
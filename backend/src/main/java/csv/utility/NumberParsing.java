@@ -0,0 +1,247 @@
+package csv.utility;
+
+import csv.factories.ColumnType;
+
+/**
+ * Parses numbers straight out of a range of a char array, so that numeric cells can be read without
+ * first being copied into a String. Accepts the same plain decimal forms as Integer.parseInt,
+ * Long.parseLong and Double.parseDouble (an optional sign, digits, an optional fraction and an
+ * optional exponent), but not hexadecimal, NaN, Infinity or type suffixes.
+ */
+public class NumberParsing {
+
+  // powers of ten that are exactly representable as doubles
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * Works out the narrowest numeric type that can hold the given cell.
+   *
+   * @return INT, LONG or DOUBLE for a number, STRING for anything else, or null for an empty cell
+   */
+  public static ColumnType classify(char[] chars, int start, int end) {
+    if (start == end) {
+      return null;
+    }
+    int i = start;
+    if (chars[i] == '-' || chars[i] == '+') {
+      i++;
+    }
+    int digits = 0;
+    while (i < end && isDigit(chars[i])) {
+      i++;
+      digits++;
+    }
+    if (i == end) {
+      if (digits == 0) {
+        return ColumnType.STRING;
+      }
+      // an integer too long to be an int or long is still a valid double
+      if (digits <= 18) {
+        return fitsInt(chars, start, end) ? ColumnType.INT : ColumnType.LONG;
+      }
+      return fitsLong(chars, start, end) ? ColumnType.LONG : ColumnType.DOUBLE;
+    }
+    if (chars[i] == '.') {
+      i++;
+      while (i < end && isDigit(chars[i])) {
+        i++;
+        digits++;
+      }
+    }
+    if (digits == 0) {
+      return ColumnType.STRING;
+    }
+    if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+      i++;
+      if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+        i++;
+      }
+      int exponentDigits = 0;
+      while (i < end && isDigit(chars[i])) {
+        i++;
+        exponentDigits++;
+      }
+      if (exponentDigits == 0) {
+        return ColumnType.STRING;
+      }
+    }
+    return i == end ? ColumnType.DOUBLE : ColumnType.STRING;
+  }
+
+  /**
+   * Parses an int from the given range.
+   *
+   * @throws NumberFormatException if the range is not an int
+   */
+  public static int parseInt(char[] chars, int start, int end) {
+    long value = parseLong(chars, start, end);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new NumberFormatException("Out of range for an int: "
+          + new String(chars, start, end - start));
+    }
+    return (int) value;
+  }
+
+  /**
+   * Parses a long from the given range.
+   *
+   * @throws NumberFormatException if the range is not a long
+   */
+  public static long parseLong(char[] chars, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+      negative = chars[i] == '-';
+      i++;
+    }
+    if (i == end) {
+      throw invalid(chars, start, end);
+    }
+    // accumulate negatively, since Long.MIN_VALUE has no positive counterpart
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long value = 0;
+    for (; i < end; i++) {
+      if (!isDigit(chars[i])) {
+        throw invalid(chars, start, end);
+      }
+      int digit = chars[i] - '0';
+      if (value < (limit + digit) / 10) {
+        throw invalid(chars, start, end);
+      }
+      value = value * 10 - digit;
+    }
+    return negative ? value : -value;
+  }
+
+  /**
+   * Parses a double from the given range. Numbers with at most 15 significant digits and a small
+   * enough exponent are computed exactly with one multiplication or division, which is correctly
+   * rounded; anything else falls back to Double.parseDouble.
+   *
+   * @throws NumberFormatException if the range is not a number
+   */
+  public static double parseDouble(char[] chars, int start, int end) {
+    ColumnType type = classify(chars, start, end);
+    if (type == null || type == ColumnType.STRING) {
+      throw invalid(chars, start, end);
+    }
+    int i = start;
+    boolean negative = false;
+    if (chars[i] == '-' || chars[i] == '+') {
+      negative = chars[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int significant = 0;
+    int exponent = 0;
+    boolean fraction = false;
+    for (; i < end && chars[i] != 'e' && chars[i] != 'E'; i++) {
+      if (chars[i] == '.') {
+        fraction = true;
+        continue;
+      }
+      int digit = chars[i] - '0';
+      if (significant > 0 || digit != 0) {
+        significant++;
+      }
+      if (significant > 15) {
+        return Double.parseDouble(new String(chars, start, end - start));
+      }
+      mantissa = mantissa * 10 + digit;
+      if (fraction) {
+        exponent--;
+      }
+    }
+    if (i < end) {
+      i++;
+      boolean negativeExponent = chars[i] == '-';
+      if (chars[i] == '-' || chars[i] == '+') {
+        i++;
+      }
+      int explicit = 0;
+      for (; i < end; i++) {
+        explicit = explicit * 10 + (chars[i] - '0');
+        if (explicit > 400) {
+          return Double.parseDouble(new String(chars, start, end - start));
+        }
+      }
+      exponent += negativeExponent ? -explicit : explicit;
+    }
+    double value;
+    if (mantissa == 0) {
+      value = 0;
+    } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+      value = mantissa * POWERS_OF_TEN[exponent];
+    } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+      value = mantissa / POWERS_OF_TEN[-exponent];
+    } else {
+      return Double.parseDouble(new String(chars, start, end - start));
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses an int from a CharSequence. A cell slice from a CSVRowView is parsed straight from the
+   * row's buffer; any other CharSequence is copied first.
+   *
+   * @throws NumberFormatException if the text is not an int
+   */
+  public static int parseInt(CharSequence text) {
+    if (text instanceof CSVRowView.Slice slice) {
+      return slice.getRow().parseInt(slice.getCell());
+    }
+    char[] chars = text.toString().toCharArray();
+    return parseInt(chars, 0, chars.length);
+  }
+
+  /**
+   * Parses a long from a CharSequence, straight from the row's buffer for a CSVRowView cell slice.
+   *
+   * @throws NumberFormatException if the text is not a long
+   */
+  public static long parseLong(CharSequence text) {
+    if (text instanceof CSVRowView.Slice slice) {
+      return slice.getRow().parseLong(slice.getCell());
+    }
+    char[] chars = text.toString().toCharArray();
+    return parseLong(chars, 0, chars.length);
+  }
+
+  /**
+   * Parses a double from a CharSequence, straight from the row's buffer for a CSVRowView cell
+   * slice.
+   *
+   * @throws NumberFormatException if the text is not a number
+   */
+  public static double parseDouble(CharSequence text) {
+    if (text instanceof CSVRowView.Slice slice) {
+      return slice.getRow().parseDouble(slice.getCell());
+    }
+    char[] chars = text.toString().toCharArray();
+    return parseDouble(chars, 0, chars.length);
+  }
+
+  private static boolean fitsLong(char[] chars, int start, int end) {
+    try {
+      parseLong(chars, start, end);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static boolean fitsInt(char[] chars, int start, int end) {
+    long value = parseLong(chars, start, end);
+    return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static NumberFormatException invalid(char[] chars, int start, int end) {
+    return new NumberFormatException("Not a number: " + new String(chars, start, end - start));
+  }
+}
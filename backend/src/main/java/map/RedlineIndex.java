@@ -0,0 +1,260 @@
+package map;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import csv.utility.DoubleArrayList;
+import csv.utility.IntArrayList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import map.RedlineData.Features;
+
+/**
+ * A spatial index over the polygons of the redlining GeoJSON, for finding the HOLC neighborhood a
+ * point lies in. Every ring of every polygon is flattened into two double arrays of longitudes and
+ * latitudes, and each polygon keeps its bounding box. The boxes are bucketed into a uniform grid
+ * over the whole dataset, so a lookup only runs the exact point-in-polygon test on the few polygons
+ * whose box overlaps the point's grid cell. The index is read-only once built, so any number of
+ * threads can look points up at once.
+ */
+public class RedlineIndex {
+
+  // the grid has about 4 cells per polygon, and at most this many cells per axis
+  private static final int MAX_GRID = 1024;
+
+  private final String[] grades;
+  private final String[] holcIds;
+  private final String[] names;
+  private final String[] cities;
+  // per polygon: its feature, bounding box and first ring
+  private final int[] polygonFeature;
+  private final double[] minLon;
+  private final double[] minLat;
+  private final double[] maxLon;
+  private final double[] maxLat;
+  private final int[] ringStart;
+  // per ring: its first point
+  private final int[] pointStart;
+  private final double[] lons;
+  private final double[] lats;
+  // grid cell -> polygons whose box overlaps it, as runs of cellPolygons
+  private final double gridLon;
+  private final double gridLat;
+  private final double cellWidth;
+  private final double cellHeight;
+  private final int columns;
+  private final int rows;
+  private final int[] cellStart;
+  private final int[] cellPolygons;
+
+  private RedlineIndex(List<Features> features) {
+    List<Features> kept = new ArrayList<>();
+    IntArrayList polygonFeature = new IntArrayList();
+    IntArrayList ringStart = new IntArrayList();
+    IntArrayList pointStart = new IntArrayList();
+    DoubleArrayList lons = new DoubleArrayList();
+    DoubleArrayList lats = new DoubleArrayList();
+    for (Features feature : features) {
+      // some features of the dataset have no geometry
+      if (feature.geometry == null || feature.geometry.coordinates == null) {
+        continue;
+      }
+      for (List<List<List<Double>>> polygon : feature.geometry.coordinates) {
+        polygonFeature.add(kept.size());
+        ringStart.add(pointStart.size());
+        for (List<List<Double>> ring : polygon) {
+          pointStart.add(lons.size());
+          for (List<Double> point : ring) {
+            lons.add(point.get(0));
+            lats.add(point.get(1));
+          }
+        }
+      }
+      kept.add(feature);
+    }
+    ringStart.add(pointStart.size());
+    pointStart.add(lons.size());
+
+    this.grades = new String[kept.size()];
+    this.holcIds = new String[kept.size()];
+    this.names = new String[kept.size()];
+    this.cities = new String[kept.size()];
+    for (int i = 0; i < kept.size(); i++) {
+      RedlineData.Properties properties = kept.get(i).properties;
+      if (properties != null) {
+        this.grades[i] = properties.holc_grade;
+        this.holcIds[i] = properties.holc_id;
+        this.names[i] = properties.name;
+        this.cities[i] = properties.city;
+      }
+    }
+    this.polygonFeature = polygonFeature.toArray();
+    this.ringStart = ringStart.toArray();
+    this.pointStart = pointStart.toArray();
+    this.lons = lons.toArray();
+    this.lats = lats.toArray();
+
+    int polygons = this.polygonFeature.length;
+    this.minLon = new double[polygons];
+    this.minLat = new double[polygons];
+    this.maxLon = new double[polygons];
+    this.maxLat = new double[polygons];
+    double allMinLon = Double.POSITIVE_INFINITY;
+    double allMinLat = Double.POSITIVE_INFINITY;
+    double allMaxLon = Double.NEGATIVE_INFINITY;
+    double allMaxLat = Double.NEGATIVE_INFINITY;
+    for (int p = 0; p < polygons; p++) {
+      this.minLon[p] = Double.POSITIVE_INFINITY;
+      this.minLat[p] = Double.POSITIVE_INFINITY;
+      this.maxLon[p] = Double.NEGATIVE_INFINITY;
+      this.maxLat[p] = Double.NEGATIVE_INFINITY;
+      // the outer ring bounds the holes, but every ring is cheap to include
+      for (int i = this.pointStart[this.ringStart[p]];
+          i < this.pointStart[this.ringStart[p + 1]]; i++) {
+        this.minLon[p] = Math.min(this.minLon[p], this.lons[i]);
+        this.minLat[p] = Math.min(this.minLat[p], this.lats[i]);
+        this.maxLon[p] = Math.max(this.maxLon[p], this.lons[i]);
+        this.maxLat[p] = Math.max(this.maxLat[p], this.lats[i]);
+      }
+      allMinLon = Math.min(allMinLon, this.minLon[p]);
+      allMinLat = Math.min(allMinLat, this.minLat[p]);
+      allMaxLon = Math.max(allMaxLon, this.maxLon[p]);
+      allMaxLat = Math.max(allMaxLat, this.maxLat[p]);
+    }
+
+    int size = (int) Math.min(MAX_GRID, Math.max(1, Math.ceil(Math.sqrt(polygons) * 2)));
+    this.columns = size;
+    this.rows = size;
+    this.gridLon = polygons == 0 ? 0 : allMinLon;
+    this.gridLat = polygons == 0 ? 0 : allMinLat;
+    // a dataset of one point still gets a grid cell of some size
+    this.cellWidth = polygons == 0 ? 1 : Math.max(1e-9, (allMaxLon - allMinLon) / size);
+    this.cellHeight = polygons == 0 ? 1 : Math.max(1e-9, (allMaxLat - allMinLat) / size);
+
+    // count the polygons overlapping each cell, then fill in each cell's run of polygons
+    int cells = size * size;
+    int[] counts = new int[cells + 1];
+    for (int p = 0; p < polygons; p++) {
+      for (int r = this.row(this.minLat[p]); r <= this.row(this.maxLat[p]); r++) {
+        for (int c = this.column(this.minLon[p]); c <= this.column(this.maxLon[p]); c++) {
+          counts[r * size + c + 1]++;
+        }
+      }
+    }
+    for (int cell = 0; cell < cells; cell++) {
+      counts[cell + 1] += counts[cell];
+    }
+    this.cellStart = counts.clone();
+    this.cellPolygons = new int[counts[cells]];
+    for (int p = 0; p < polygons; p++) {
+      for (int r = this.row(this.minLat[p]); r <= this.row(this.maxLat[p]); r++) {
+        for (int c = this.column(this.minLon[p]); c <= this.column(this.maxLon[p]); c++) {
+          this.cellPolygons[counts[r * size + c]++] = p;
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the index from redlining GeoJSON text.
+   *
+   * @param json a GeoJSON FeatureCollection of MultiPolygons, as served by the map endpoint
+   * @return the index of its polygons
+   * @throws IOException if the JSON cannot be read
+   */
+  public static RedlineIndex fromJson(String json) throws IOException {
+    Moshi moshi = new Moshi.Builder().build();
+    JsonAdapter<RedlineData> adapter = moshi.adapter(RedlineData.class);
+    RedlineData data = adapter.fromJson(json);
+    if (data == null || data.features == null) {
+      throw new IOException("GeoJSON has no features");
+    }
+    return new RedlineIndex(data.features);
+  }
+
+  /**
+   * Finds the neighborhood holding a point. A point inside several (overlapping) neighborhoods gets
+   * the first of them in the GeoJSON.
+   *
+   * @param lon the point's longitude
+   * @param lat the point's latitude
+   * @return the neighborhood's index, or -1 if the point is in none
+   */
+  public int locate(double lon, double lat) {
+    // a point outside the grid is clamped to an edge cell, where no bounding box holds it
+    int cell = this.row(lat) * this.columns + this.column(lon);
+    int found = Integer.MAX_VALUE;
+    for (int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++) {
+      int p = this.cellPolygons[i];
+      if (this.polygonFeature[p] < found && lon >= this.minLon[p] && lon <= this.maxLon[p]
+          && lat >= this.minLat[p] && lat <= this.maxLat[p] && this.contains(p, lon, lat)) {
+        found = this.polygonFeature[p];
+      }
+    }
+    return found == Integer.MAX_VALUE ? -1 : found;
+  }
+
+  /**
+   * Gets the HOLC grade (A to D) of a neighborhood.
+   */
+  public String grade(int neighborhood) {
+    return this.grades[neighborhood];
+  }
+
+  /**
+   * Gets the HOLC id of a neighborhood, such as "B4".
+   */
+  public String holcId(int neighborhood) {
+    return this.holcIds[neighborhood];
+  }
+
+  /**
+   * Gets the name of a neighborhood.
+   */
+  public String name(int neighborhood) {
+    return this.names[neighborhood];
+  }
+
+  /**
+   * Gets the city of a neighborhood.
+   */
+  public String city(int neighborhood) {
+    return this.cities[neighborhood];
+  }
+
+  /**
+   * Gets the number of neighborhoods that have a geometry.
+   */
+  public int size() {
+    return this.grades.length;
+  }
+
+  /**
+   * Tests whether a polygon contains a point, by counting the edges of all its rings that a ray
+   * from the point crosses (even-odd), so a point in a hole is outside.
+   */
+  private boolean contains(int polygon, double lon, double lat) {
+    boolean inside = false;
+    for (int ring = this.ringStart[polygon]; ring < this.ringStart[polygon + 1]; ring++) {
+      int from = this.pointStart[ring];
+      int to = this.pointStart[ring + 1];
+      for (int i = from, j = to - 1; i < to; j = i++) {
+        double latI = this.lats[i];
+        double latJ = this.lats[j];
+        if ((latI > lat) != (latJ > lat)
+            && lon < (this.lons[j] - this.lons[i]) * (lat - latI) / (latJ - latI) + this.lons[i]) {
+          inside = !inside;
+        }
+      }
+    }
+    return inside;
+  }
+
+  private int column(double lon) {
+    return Math.min(this.columns - 1, Math.max(0, (int) ((lon - this.gridLon) / this.cellWidth)));
+  }
+
+  private int row(double lat) {
+    return Math.min(this.rows - 1, Math.max(0, (int) ((lat - this.gridLat) / this.cellHeight)));
+  }
+}
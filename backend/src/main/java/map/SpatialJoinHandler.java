@@ -0,0 +1,208 @@
+package map;
+
+import com.squareup.moshi.JsonWriter;
+import csv.CSVDataHolder;
+import csv.CSVDataset;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import responses.StreamingSerializer;
+import server.Handler;
+import spark.QueryParamsMap;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with the /csvspatialjoin endpoint on our local
+ * server. It tags every row of a loaded CSV with the HOLC neighborhood its point lies in, using the
+ * redlining data the /map endpoint serves. The lat and lon parameters are the zero-based columns of
+ * the point, and header=true skips the first row. mode=rows (the default) streams back each row
+ * with the neighborhood's grade, HOLC id and name appended (or nulls, for a point in no
+ * neighborhood), and mode=counts returns only the number of rows in each grade.
+ */
+public class SpatialJoinHandler implements Handler {
+
+  private static final Set<String> PARAMS = Set.of("filename", "lat", "lon", "header", "mode");
+  // rows each lookup task handles
+  private static final int CHUNK_ROWS = 4096;
+  // a located row whose point was not a number
+  private static final int INVALID = -2;
+
+  private final Path source;
+  private volatile RedlineIndex index;
+
+  /**
+   * Creates the handler over the redlining data in data/fullDownload.json, which is indexed the
+   * first time it is needed.
+   */
+  public SpatialJoinHandler() {
+    this(Path.of("data/fullDownload.json"));
+  }
+
+  /**
+   * Creates the handler over the redlining GeoJSON in the given file.
+   */
+  public SpatialJoinHandler(Path source) {
+    this.source = source;
+  }
+
+  /**
+   * This is the overridden handle method. It locates the rows' points in the redline index on
+   * parallel threads, a batch of chunks at a time, and streams out each batch's rows in order, or
+   * their totals per grade.
+   *
+   * @param request
+   * @param response
+   * @return
+   */
+  @Override
+  public Object handle(Request request, Response response) throws IOException {
+    MapRecord.results.clear();
+    QueryParamsMap qm = request.queryMap();
+    String mode = qm.value("mode") == null ? "rows" : qm.value("mode");
+    if (qm.value("lat") == null || qm.value("lon") == null
+        || !PARAMS.containsAll(request.queryParams())
+        || !(mode.equals("rows") || mode.equals("counts"))) {
+      return this.failureResponse("error_bad_request");
+    }
+    CSVDataset dataset = CSVDataHolder.registry.get(qm.value("filename"));
+    if (dataset == null) {
+      return this.failureResponse("error_bad_request");
+    }
+    int latColumn;
+    int lonColumn;
+    try {
+      latColumn = Integer.parseInt(qm.value("lat").strip());
+      lonColumn = Integer.parseInt(qm.value("lon").strip());
+    } catch (NumberFormatException e) {
+      return this.failureResponse("error_bad_request");
+    }
+    if (latColumn < 0 || lonColumn < 0) {
+      return this.failureResponse("error_bad_request");
+    }
+    RedlineIndex index;
+    try {
+      index = this.index();
+    } catch (IOException e) {
+      return this.failureResponse("error_datasource");
+    }
+
+    List<List<String>> rows = dataset.getRows();
+    int first = Boolean.parseBoolean(qm.value("header")) ? Math.min(1, rows.size()) : 0;
+    int batch = CHUNK_ROWS * Runtime.getRuntime().availableProcessors();
+    int[] located = new int[Math.min(batch, rows.size())];
+    // per neighborhood, then unmatched and invalid rows
+    long[] counts = new long[index.size() + 2];
+    JsonWriter writer = StreamingSerializer.open(response);
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("filepath").value(dataset.getFilepath());
+    if (mode.equals("rows")) {
+      writer.name("data").beginArray();
+    }
+    for (int from = first; from < rows.size(); from += batch) {
+      int count = Math.min(batch, rows.size() - from);
+      locate(index, rows, from, count, latColumn, lonColumn, located);
+      for (int i = 0; i < count; i++) {
+        int neighborhood = located[i];
+        counts[neighborhood >= 0 ? neighborhood : index.size() - neighborhood - 1]++;
+        if (mode.equals("rows")) {
+          writeRow(writer, rows.get(from + i), index, neighborhood);
+        }
+      }
+    }
+    if (mode.equals("rows")) {
+      writer.endArray();
+    } else {
+      Map<String, Long> grades = new TreeMap<>();
+      for (int neighborhood = 0; neighborhood < index.size(); neighborhood++) {
+        if (counts[neighborhood] > 0) {
+          grades.merge(String.valueOf(index.grade(neighborhood)), counts[neighborhood], Long::sum);
+        }
+      }
+      writer.name("counts").beginObject();
+      for (Map.Entry<String, Long> grade : grades.entrySet()) {
+        writer.name(grade.getKey()).value(grade.getValue());
+      }
+      writer.endObject();
+    }
+    writer.name("rows").value(rows.size() - first);
+    writer.name("unmatched").value(counts[index.size()]);
+    writer.name("invalid").value(counts[index.size() + 1]);
+    writer.endObject();
+    writer.flush();
+    return "";
+  }
+
+  /**
+   * Locates the points of rows from to from + count - 1 into located, one chunk of rows per task.
+   * Each entry is a neighborhood, -1 for no neighborhood, or INVALID.
+   */
+  private static void locate(RedlineIndex index, List<List<String>> rows, int from, int count,
+      int latColumn, int lonColumn, int[] located) {
+    IntStream.range(0, (count + CHUNK_ROWS - 1) / CHUNK_ROWS).parallel().forEach(chunk -> {
+      for (int i = chunk * CHUNK_ROWS; i < Math.min(count, (chunk + 1) * CHUNK_ROWS); i++) {
+        List<String> row = rows.get(from + i);
+        try {
+          located[i] = index.locate(Double.parseDouble(row.get(lonColumn)),
+              Double.parseDouble(row.get(latColumn)));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+          located[i] = INVALID;
+        }
+      }
+    });
+  }
+
+  private static void writeRow(JsonWriter writer, List<String> row, RedlineIndex index,
+      int neighborhood) throws IOException {
+    writer.beginArray();
+    for (String cell : row) {
+      writer.value(cell);
+    }
+    if (neighborhood >= 0) {
+      writer.value(index.grade(neighborhood));
+      writer.value(index.holcId(neighborhood));
+      writer.value(index.name(neighborhood));
+    } else {
+      writer.nullValue().nullValue().nullValue();
+    }
+    writer.endArray();
+  }
+
+  /**
+   * Gets the index of the redlining data, reading and indexing it on first use.
+   */
+  private RedlineIndex index() throws IOException {
+    RedlineIndex index = this.index;
+    if (index == null) {
+      synchronized (this) {
+        index = this.index;
+        if (index == null) {
+          index = RedlineIndex.fromJson(Files.readString(this.source));
+          this.index = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /*
+   * Overridden interface methods
+   */
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
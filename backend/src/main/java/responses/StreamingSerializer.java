@@ -0,0 +1,31 @@
+package responses;
+
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import okio.BufferedSink;
+import okio.Okio;
+import spark.Response;
+
+/**
+ * This is a serializer for responses that are too large to build up as a single String. Rather than
+ * populating the results map in MapRecord and serializing it all at once, a handler writes its
+ * fields one at a time through a Moshi JsonWriter that is backed directly by the response's output
+ * stream, so data is flushed to the client as it is written.
+ */
+public class StreamingSerializer {
+
+  /**
+   * Opens a JsonWriter on the raw output stream of the given response. The caller is responsible
+   * for flushing the writer once the document is complete; the writer should not be closed, since
+   * Spark still owns the underlying stream.
+   *
+   * @param response response from API server to write to
+   * @return a JsonWriter that writes straight to the client
+   * @throws IOException if the output stream cannot be opened
+   */
+  public static JsonWriter open(Response response) throws IOException {
+    response.type("application/json");
+    BufferedSink sink = Okio.buffer(Okio.sink(response.raw().getOutputStream()));
+    return JsonWriter.of(sink);
+  }
+}
@@ -1,30 +1,57 @@
 package server;
 
-import static spark.Spark.after;
+import static spark.Spark.before;
 
+import csv.CSVStatsHandler;
 import csv.GetCSVHandler;
+import csv.JoinCSVHandler;
 import csv.LoadCSVHandler;
+import csv.LoadStatusHandler;
+import csv.QueryCSVHandler;
+import csv.SearchCSVHandler;
+import csv.UploadCSVHandler;
 import map.MapHandler;
+import map.SpatialJoinHandler;
+import weather.BatchWeatherHandler;
+import weather.WeatherDataHolder;
 import weather.WeatherHandler;
+import weather.WeatherStatsHandler;
 import spark.Spark;
 
 /**
  * Top-level class for this demo. Contains the main() method which starts Spark and runs the various
- * handlers. There are three endpoints: loadcsv, getcsv, and weather.
+ * handlers. The endpoints load, read, search, query and join CSVs (loadcsv, loadstatus, getcsv,
+ * searchcsv, csvstats, querycsv, joincsv), look up the weather (weather, weatherstats), and serve
+ * map data (map, csvspatialjoin).
  */
 public class Server {
     public static void main(String[] args) {
         Spark.port(3232);
 
-        after((request, response) -> {
+        // headers are set before the handlers run so that streamed responses, which are committed
+        // while the handler is still writing, carry them too
+        before((request, response) -> {
             response.header("Access-Control-Allow-Origin", "*");
             response.header("Access-Control-Allow-Methods", "*");
         });
-        // sets /loadcsv, /getcsv, and /weather endpoints
+        // sets the CSV, weather and map endpoints
         Spark.get("loadcsv", new LoadCSVHandler());
+        Spark.post("loadcsv", new UploadCSVHandler());
+        Spark.get("loadstatus", new LoadStatusHandler());
         Spark.get("getcsv", new GetCSVHandler());
-        Spark.get("weather", new WeatherHandler());
+        Spark.get("searchcsv", new SearchCSVHandler());
+        Spark.get("csvstats", new CSVStatsHandler());
+        Spark.get("querycsv", new QueryCSVHandler());
+        Spark.get("joincsv", new JoinCSVHandler());
+        WeatherHandler weather = new WeatherHandler(WeatherDataHolder.nws,
+            WeatherDataHolder.gridCache, WeatherDataHolder.forecastCache);
+        Spark.get("weather", weather);
+        Spark.post("weather", new BatchWeatherHandler(weather, WeatherDataHolder.batchExecutor,
+            WeatherDataHolder.batchMaxPoints));
+        Spark.get("weatherstats", new WeatherStatsHandler());
+        WeatherDataHolder.startRefreshing();
         Spark.get("map", new MapHandler());
+        Spark.get("csvspatialjoin", new SpatialJoinHandler());
         Spark.init();
         Spark.awaitInitialization();
         System.out.println("Server started.");
@@ -0,0 +1,231 @@
+package weather;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonWriter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import responses.StreamingSerializer;
+import server.Handler;
+import spark.Request;
+import spark.Response;
+import weather.exceptions.BadJsonException;
+
+/**
+ * This is the Handler class that is instantiated with POST requests to the /weather endpoint on our
+ * local server. It takes many locations at once, as a JSON body such as
+ * {"points": [{"lat": 41.8268, "lon": -71.4029}, ...]}, and returns the temperature of each one, in
+ * the order they were given, with an error in place of the temperature for any location that could
+ * not be looked up. Repeated locations are looked up once, and locations in the same NWS grid cell
+ * share one forecast request. The lookups run concurrently on an executor whose size bounds how
+ * many NWS requests batches have in flight, so a batch takes about as long as its slowest lookup.
+ * A temperature from a stale forecast is marked as the /weather endpoint marks it.
+ */
+public class BatchWeatherHandler implements Handler {
+
+  private static final JsonAdapter<Map<String, Object>> BODY_ADAPTER = new Moshi.Builder().build()
+      .adapter(Types.newParameterizedType(Map.class, String.class, Object.class));
+
+  private final WeatherHandler lookups;
+  private final ExecutorService executor;
+  private final int maxPoints;
+
+  // a location as given, and as the strings it is sent to the NWS API as
+  private record Point(double lat, double lon, String latitude, String longitude) {}
+
+  /**
+   * Creates the handler.
+   *
+   * @param lookups the /weather handler whose NWS client and caches each location is looked up with
+   * @param executor runs the lookups; its number of threads is the most NWS requests in flight
+   * @param maxPoints the most locations one request may ask for
+   */
+  public BatchWeatherHandler(WeatherHandler lookups, ExecutorService executor, int maxPoints) {
+    this.lookups = lookups;
+    this.executor = executor;
+    this.maxPoints = maxPoints;
+  }
+
+  /**
+   * This is the overridden handle method. It reads the locations from the request body, starts one
+   * lookup per distinct location, and streams the results back in the order of the locations. A
+   * body that is not JSON is a bad JSON error; one without a list of points, or with more than the
+   * limit, is a bad request. A single location that is not a pair of numbers gets a bad request
+   * error of its own, and does not fail the others.
+   *
+   * @param request
+   * @param response
+   * @return
+   */
+  @Override
+  public Object handle(Request request, Response response) throws IOException {
+    MapRecord.results.clear();
+    Map<String, Object> body;
+    try {
+      body = BODY_ADAPTER.fromJson(request.body());
+    } catch (IOException | JsonDataException e) {
+      return this.failureResponse("error_bad_json");
+    }
+    if (body == null || !(body.get("points") instanceof List<?> items)
+        || items.size() > this.maxPoints) {
+      return this.failureResponse("error_bad_request");
+    }
+
+    List<Point> points = new ArrayList<>(items.size());
+    for (Object item : items) {
+      points.add(parsePoint(item));
+    }
+    Map<Point, CompletableFuture<WeatherHandler.Forecast>> temperatures = new HashMap<>();
+    // forecasts by grid cell, filled in as the cells of the locations come back
+    Map<String, CompletableFuture<WeatherHandler.Forecast>> forecasts = new ConcurrentHashMap<>();
+    for (Point point : points) {
+      if (point != null) {
+        temperatures.computeIfAbsent(point, p -> this.lookup(p, forecasts));
+      }
+    }
+
+    JsonWriter writer = StreamingSerializer.open(response);
+    writer.beginObject();
+    writer.name("result").value("success");
+    writer.name("points").value(points.size());
+    writer.name("results").beginArray();
+    for (int i = 0; i < points.size(); i++) {
+      Point point = points.get(i);
+      writer.beginObject();
+      if (point == null) {
+        writer.name("result").value("error");
+        writer.name("error").value("error_bad_request");
+        writer.endObject();
+        continue;
+      }
+      writer.name("lat").value(point.lat());
+      writer.name("lon").value(point.lon());
+      try {
+        WeatherHandler.Forecast forecast = temperatures.get(point).join();
+        Map<String, Object> period = forecast.temps().getPeriods().get(0);
+        writer.name("result").value("success");
+        writer.name("temperature")
+            .value(period.get("temperature") + " " + period.get("temperatureUnit"));
+        if (forecast.stale()) {
+          writer.name("stale").value(true);
+          writer.name("ageSeconds").value(forecast.ageMillis() / 1000);
+        }
+      } catch (CompletionException e) {
+        writer.name("result").value("error");
+        writer.name("error").value(errorOf(e.getCause()));
+      }
+      writer.endObject();
+    }
+    writer.endArray();
+    writer.name("cells").value(forecasts.size());
+    writer.endObject();
+    writer.flush();
+    return "";
+  }
+
+  /**
+   * Starts the lookup of a location: its grid cell, through the GridCache, and then the forecast of
+   * that cell, which is only requested once for all the locations in the cell.
+   */
+  private CompletableFuture<WeatherHandler.Forecast> lookup(Point point,
+      Map<String, CompletableFuture<WeatherHandler.Forecast>> forecasts) {
+    return CompletableFuture.supplyAsync(unchecked(
+            () -> this.lookups.cachedGridRequest(point.longitude(), point.latitude())),
+            this.executor)
+        .thenCompose(grid -> forecasts.computeIfAbsent(
+            grid.properties.gridId + "/" + grid.properties.gridX + "," + grid.properties.gridY,
+            cell -> CompletableFuture.supplyAsync(
+                unchecked(() -> this.lookups.forecastRequest(grid)), this.executor))
+            .thenApply(forecast -> {
+              this.lookups.recordCell(point.longitude(), point.latitude(), grid, forecast);
+              return forecast;
+            }));
+  }
+
+  /**
+   * Reads one location of the body, or returns null if it is not an object with a numeric lat and
+   * lon (either JSON numbers or strings holding numbers).
+   */
+  private static Point parsePoint(Object item) {
+    if (!(item instanceof Map<?, ?> fields)) {
+      return null;
+    }
+    try {
+      double lat = parseCoordinate(fields.get("lat"));
+      double lon = parseCoordinate(fields.get("lon"));
+      return new Point(lat, lon, BigDecimal.valueOf(lat).toPlainString(),
+          BigDecimal.valueOf(lon).toPlainString());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static double parseCoordinate(Object value) {
+    double coordinate;
+    if (value instanceof Number number) {
+      coordinate = number.doubleValue();
+    } else if (value instanceof String text) {
+      coordinate = Double.parseDouble(text.strip());
+    } else {
+      throw new NumberFormatException("not a coordinate: " + value);
+    }
+    if (!Double.isFinite(coordinate)) {
+      throw new NumberFormatException("not a coordinate: " + value);
+    }
+    return coordinate;
+  }
+
+  /**
+   * Gets the error a failed lookup is reported with, matching the /weather endpoint's errors.
+   */
+  private static String errorOf(Throwable cause) {
+    if (cause instanceof BadJsonException) {
+      return "error_bad_json";
+    }
+    // DatasourceException, and the NWS API failing to answer at all
+    return "error_datasource";
+  }
+
+  /**
+   * Adapts a lookup to a Supplier for CompletableFuture, carrying its exception as the cause of a
+   * CompletionException.
+   */
+  private static <T> Supplier<T> unchecked(Callable<T> lookup) {
+    return () -> {
+      try {
+        return lookup.call();
+      } catch (CompletionException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new CompletionException(e);
+      }
+    };
+  }
+
+  /*
+   * Overridden interface methods
+   */
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
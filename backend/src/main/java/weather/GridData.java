@@ -9,6 +9,12 @@ public class GridData {
 
   Properties properties;
 
+  /**
+   * Creates a GridData without properties, to be filled in as a response is read.
+   */
+  GridData() {
+  }
+
   public GridData(String gridId, Integer gridX, Integer gridY) {
     this.properties = new Properties();
     this.properties.gridId = gridId;
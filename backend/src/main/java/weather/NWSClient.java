@@ -0,0 +1,260 @@
+package weather;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import weather.upstream.CircuitBreaker;
+import weather.upstream.CircuitOpenException;
+import weather.upstream.LatencyTracker;
+
+/**
+ * Sends GET requests to the NWS API through one long-lived HttpClient. A client keeps its
+ * connections open between requests, and over HTTPS negotiates HTTP/2 so concurrent requests share
+ * one connection, which saves a TLS handshake and a selector thread on every request compared to
+ * building a new client for each one. Every request has a deadline, so a stalled NWS server does
+ * not hold a server thread forever, and requests go through a CircuitBreaker, which refuses them at
+ * once while the API keeps failing. Optionally, a request that has not been answered within the
+ * p95 of recent latencies is hedged: the same request is sent again and whichever answers first is
+ * used, which cuts the API's slow tail at the cost of a few percent more requests.
+ */
+public class NWSClient {
+
+  // the latency percentile a hedged request waits for before sending its second attempt
+  private static final double HEDGE_PERCENTILE = 0.95;
+  // latencies to see before hedging, so the percentile means something
+  private static final int HEDGE_MIN_SAMPLES = 20;
+
+  private final HttpClient http;
+  private final String baseUri;
+  private final Duration requestTimeout;
+  private final CircuitBreaker breaker;
+  private final boolean hedge;
+  private final LatencyTracker latencies = new LatencyTracker(1024);
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong hedges = new AtomicLong();
+  private final AtomicLong hedgeWins = new AtomicLong();
+
+  /**
+   * Creates a client for an NWS API server that does not hedge requests, and opens its circuit
+   * after 5 failures in a row, for 30 seconds.
+   *
+   * @param http the HttpClient to send every request through
+   * @param baseUri the URI the API's paths are relative to, such as https://api.weather.gov/
+   * @param requestTimeout the longest to wait for each response
+   */
+  public NWSClient(HttpClient http, String baseUri, Duration requestTimeout) {
+    this(http, baseUri, requestTimeout, new CircuitBreaker(5, 30_000), false);
+  }
+
+  /**
+   * Creates a client for an NWS API server.
+   *
+   * @param http the HttpClient to send every request through
+   * @param baseUri the URI the API's paths are relative to, such as https://api.weather.gov/
+   * @param requestTimeout the longest to wait for each response, and for each attempt of a hedged
+   *     one
+   * @param breaker the circuit breaker requests go through
+   * @param hedge whether to hedge requests slower than the p95 latency
+   */
+  public NWSClient(HttpClient http, String baseUri, Duration requestTimeout, CircuitBreaker breaker,
+      boolean hedge) {
+    this.http = http;
+    this.baseUri = baseUri.endsWith("/") ? baseUri : baseUri + "/";
+    this.requestTimeout = requestTimeout;
+    this.breaker = breaker;
+    this.hedge = hedge;
+  }
+
+  /**
+   * Builds an HttpClient for NWS requests that prefers HTTP/2, gives up on connecting after the
+   * given timeout, and runs its work on a fixed pool of daemon threads of its own instead of the
+   * common pool.
+   *
+   * @param connectTimeout the longest to wait for a connection
+   * @param threads the number of threads the client runs its work on
+   * @return the client
+   */
+  public static HttpClient newHttpClient(Duration connectTimeout, int threads) {
+    AtomicInteger count = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "nws-http-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    return HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(connectTimeout)
+        .executor(executor)
+        .build();
+  }
+
+  /**
+   * Sends a GET request for a path of the API and reads the body as a String. A request that fails,
+   * times out, or is answered with a 5xx or 429 status counts as a failure for the circuit breaker.
+   *
+   * @param path the path relative to the base URI, such as points/41.8,-71.4
+   * @param headers extra request headers, as alternating names and values
+   * @return the response
+   * @throws URISyntaxException if the path does not make a valid URI
+   * @throws CircuitOpenException if the circuit breaker is open, without sending the request
+   * @throws HttpTimeoutException if no response came within the request timeout
+   * @throws IOException if the request fails
+   * @throws InterruptedException if interrupted while waiting for the response
+   */
+  public HttpResponse<String> get(String path, String... headers)
+      throws URISyntaxException, IOException, InterruptedException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder()
+        .uri(new URI(this.baseUri + path))
+        .timeout(this.requestTimeout)
+        .GET();
+    if (headers.length > 0) {
+      builder.headers(headers);
+    }
+    HttpRequest request = builder.build();
+    long ticket = this.breaker.tryAcquire();
+    if (ticket == CircuitBreaker.REFUSED) {
+      throw new CircuitOpenException("NWS API circuit open");
+    }
+    this.requests.incrementAndGet();
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = this.hedge ? this.sendHedged(request)
+          : this.http.send(request, HttpResponse.BodyHandlers.ofString());
+      this.latencies.record(System.nanoTime() - start);
+      if (response.statusCode() >= 500 || response.statusCode() == 429) {
+        this.failures.incrementAndGet();
+        this.breaker.onFailure(ticket);
+      } else {
+        this.breaker.onSuccess(ticket);
+      }
+      return response;
+    } catch (HttpTimeoutException e) {
+      this.timeouts.incrementAndGet();
+      this.breaker.onFailure(ticket);
+      throw e;
+    } catch (IOException e) {
+      this.failures.incrementAndGet();
+      this.breaker.onFailure(ticket);
+      throw e;
+    } catch (InterruptedException | RuntimeException e) {
+      this.breaker.release(ticket);
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the client's metrics: the requests sent, those that failed or timed out, those that were
+   * hedged and how many of those the second attempt answered first, the p50, p95 and p99 of recent
+   * latencies in milliseconds, and the circuit breaker's metrics.
+   */
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("requests", this.requests.get());
+    metrics.put("failures", this.failures.get());
+    metrics.put("timeouts", this.timeouts.get());
+    metrics.put("hedges", this.hedges.get());
+    metrics.put("hedgeWins", this.hedgeWins.get());
+    metrics.put("p50Millis", this.latencies.percentile(0.5) / 1_000_000.0);
+    metrics.put("p95Millis", this.latencies.percentile(0.95) / 1_000_000.0);
+    metrics.put("p99Millis", this.latencies.percentile(0.99) / 1_000_000.0);
+    metrics.put("breaker", this.breaker.metrics());
+    return metrics;
+  }
+
+  /**
+   * Sends a request, and if it is still unanswered after the p95 latency, sends it again and uses
+   * whichever attempt answers first. The slower attempt is cancelled. Until enough latencies have
+   * been seen to know the p95, requests are not hedged.
+   */
+  private HttpResponse<String> sendHedged(HttpRequest request)
+      throws IOException, InterruptedException {
+    CompletableFuture<HttpResponse<String>> first =
+        this.http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    if (this.latencies.count() < HEDGE_MIN_SAMPLES) {
+      return await(first);
+    }
+    long delayNanos = Math.max(1, this.latencies.percentile(HEDGE_PERCENTILE));
+    try {
+      return first.get(delayNanos, TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } catch (TimeoutException e) {
+      // still unanswered at the p95, so hedge
+    }
+    this.hedges.incrementAndGet();
+    CompletableFuture<HttpResponse<String>> second =
+        this.http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    try {
+      HttpResponse<String> response = await(firstSuccess(first, second));
+      if (response == second.getNow(null)) {
+        this.hedgeWins.incrementAndGet();
+      }
+      return response;
+    } finally {
+      first.cancel(true);
+      second.cancel(true);
+    }
+  }
+
+  /**
+   * Completes with whichever attempt succeeds first, or fails once both have failed.
+   */
+  private static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> first,
+      CompletableFuture<T> second) {
+    CompletableFuture<T> winner = new CompletableFuture<>();
+    AtomicInteger failed = new AtomicInteger();
+    for (CompletableFuture<T> attempt : List.of(first, second)) {
+      attempt.whenComplete((result, error) -> {
+        if (error == null) {
+          winner.complete(result);
+        } else if (failed.incrementAndGet() == 2) {
+          winner.completeExceptionally(error);
+        }
+      });
+    }
+    return winner;
+  }
+
+  private static <T> T await(CompletableFuture<T> future)
+      throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  /**
+   * Gets the IOException an asynchronous request failed with, as HttpClient.send would throw it.
+   */
+  private static IOException unwrap(Throwable e) {
+    Throwable cause = e;
+    while ((cause instanceof ExecutionException
+        || cause instanceof CompletionException) && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof IOException io) {
+      return io;
+    }
+    return new IOException(cause);
+  }
+}
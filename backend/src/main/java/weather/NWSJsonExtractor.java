@@ -0,0 +1,300 @@
+package weather;
+
+import com.squareup.moshi.JsonReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import okio.Buffer;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+/**
+ * Reads the few fields the weather endpoint needs out of NWS API responses with a streaming Moshi
+ * JsonReader, instead of decoding the whole document. A /forecast response is mostly periods the
+ * endpoint never looks at, and a /points response is mostly links and location details, so the
+ * reader skips to the fields it wants, reads only those, and stops. The response body is encoded
+ * into the reader's buffer a chunk at a time as it is read, so the part after the wanted fields is
+ * never even encoded, and the reader is closed as soon as it is done, which hands its buffer's
+ * segments back to Okio's pool for the next response. Since the rest of a document is not read, a
+ * document that breaks off after the wanted fields is not noticed; one that breaks off before them
+ * still fails.
+ */
+public class NWSJsonExtractor {
+
+  private static final JsonReader.Options TOP = JsonReader.Options.of("properties");
+  private static final JsonReader.Options GRID = JsonReader.Options.of("gridId", "gridX", "gridY");
+  private static final JsonReader.Options FORECAST_TOP =
+      JsonReader.Options.of("properties", "geometry");
+  private static final JsonReader.Options GEOMETRY = JsonReader.Options.of("type", "coordinates");
+  private static final JsonReader.Options FORECAST = JsonReader.Options.of("periods");
+  private static final JsonReader.Options PERIOD =
+      JsonReader.Options.of("temperature", "temperatureUnit");
+
+  /**
+   * Reads the gridId, gridX and gridY of a /points response. A document without properties gives
+   * a GridData without properties, and one whose properties lack some of the fields gives a
+   * GridData with those fields left null.
+   *
+   * @param json the response body
+   * @return the grid cell
+   * @throws IOException if the document is not JSON of the expected shape
+   */
+  public static GridData grid(String json) throws IOException {
+    try (JsonReader reader = open(json)) {
+      return grid(reader);
+    }
+  }
+
+  private static GridData grid(JsonReader reader) throws IOException {
+    GridData grid = new GridData();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (reader.selectName(TOP) != 0) {
+        reader.skipName();
+        reader.skipValue();
+        continue;
+      }
+      if (reader.peek() == JsonReader.Token.NULL) {
+        reader.nextNull();
+        continue;
+      }
+      grid.properties = new GridData.Properties();
+      reader.beginObject();
+      int found = 0;
+      while (reader.hasNext()) {
+        switch (reader.selectName(GRID)) {
+          case 0 -> grid.properties.gridId = reader.peek() == JsonReader.Token.NULL
+              ? reader.nextNull() : reader.nextString();
+          case 1 -> grid.properties.gridX = nextInteger(reader);
+          case 2 -> grid.properties.gridY = nextInteger(reader);
+          default -> {
+            reader.skipName();
+            reader.skipValue();
+            continue;
+          }
+        }
+        if (++found == 3) {
+          return grid;
+        }
+      }
+      reader.endObject();
+    }
+    reader.endObject();
+    expectEnd(reader);
+    return grid;
+  }
+
+  /**
+   * Reads the temperature and temperatureUnit of the first period of a /forecast response, into a
+   * TempData whose only period holds those two fields, as Moshi would decode them (a number as a
+   * Double). A document without periods gives a TempData without periods, and an empty list of
+   * periods gives an empty list. The outline of the grid cell is read too if the document's
+   * geometry is a Polygon that comes before the periods, as it does in NWS responses.
+   *
+   * @param json the response body
+   * @return the forecast's first period
+   * @throws IOException if the document is not JSON of the expected shape
+   */
+  public static TempData forecast(String json) throws IOException {
+    try (JsonReader reader = open(json)) {
+      return forecast(reader);
+    }
+  }
+
+  private static TempData forecast(JsonReader reader) throws IOException {
+    TempData forecast = new TempData(null);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int field = reader.selectName(FORECAST_TOP);
+      if (field == 1) {
+        forecast.cell = cell(reader);
+        continue;
+      }
+      if (field != 0) {
+        reader.skipName();
+        reader.skipValue();
+        continue;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (reader.selectName(FORECAST) != 0) {
+          reader.skipName();
+          reader.skipValue();
+          continue;
+        }
+        List<Map<String, Object>> periods = new ArrayList<>(1);
+        forecast.properties.periods = periods;
+        reader.beginArray();
+        if (reader.hasNext()) {
+          periods.add(firstPeriod(reader));
+          return forecast;
+        }
+        reader.endArray();
+      }
+      reader.endObject();
+    }
+    reader.endObject();
+    expectEnd(reader);
+    return forecast;
+  }
+
+  /**
+   * Reads the wanted fields of a period, stopping once it has both.
+   */
+  private static Map<String, Object> firstPeriod(JsonReader reader) throws IOException {
+    Map<String, Object> period = new HashMap<>(4);
+    reader.beginObject();
+    while (reader.hasNext() && period.size() < 2) {
+      int field = reader.selectName(PERIOD);
+      if (field < 0) {
+        reader.skipName();
+        reader.skipValue();
+      } else {
+        period.put(PERIOD.strings().get(field), reader.readJsonValue());
+      }
+    }
+    return period;
+  }
+
+  /**
+   * Reads the outer ring of a Polygon geometry as alternating longitudes and latitudes, or returns
+   * null for any other geometry.
+   */
+  private static double[] cell(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonReader.Token.NULL) {
+      return reader.nextNull();
+    }
+    String type = null;
+    double[] ring = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.selectName(GEOMETRY)) {
+        case 0 -> type = reader.peek() == JsonReader.Token.NULL
+            ? reader.nextNull() : reader.nextString();
+        case 1 -> ring = type == null || type.equals("Polygon") ? outerRing(reader) : skip(reader);
+        default -> {
+          reader.skipName();
+          reader.skipValue();
+        }
+      }
+    }
+    reader.endObject();
+    return "Polygon".equals(type) ? ring : null;
+  }
+
+  /**
+   * Reads the first of a Polygon's rings, or returns null if the coordinates are not shaped like a
+   * Polygon's, as those of a geometry whose type comes after them may not be.
+   */
+  private static double[] outerRing(JsonReader reader) throws IOException {
+    double[] ring = new double[10];
+    int size = 0;
+    reader.beginArray();
+    if (reader.hasNext()) {
+      if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+        return skipRest(reader);
+      }
+      reader.beginArray();
+      while (reader.hasNext()) {
+        if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+          skipRest(reader);
+          return skipRest(reader);
+        }
+        if (size + 2 > ring.length) {
+          ring = Arrays.copyOf(ring, ring.length * 2);
+        }
+        reader.beginArray();
+        ring[size++] = reader.nextDouble();
+        ring[size++] = reader.nextDouble();
+        // an altitude, if any
+        while (reader.hasNext()) {
+          reader.skipValue();
+        }
+        reader.endArray();
+      }
+      reader.endArray();
+    }
+    // the holes, which no grid cell has
+    while (reader.hasNext()) {
+      reader.skipValue();
+    }
+    reader.endArray();
+    return Arrays.copyOf(ring, size);
+  }
+
+  private static double[] skip(JsonReader reader) throws IOException {
+    reader.skipValue();
+    return null;
+  }
+
+  /**
+   * Skips the rest of the array being read, and its end.
+   */
+  private static double[] skipRest(JsonReader reader) throws IOException {
+    while (reader.hasNext()) {
+      reader.skipValue();
+    }
+    reader.endArray();
+    return null;
+  }
+
+  private static Integer nextInteger(JsonReader reader) throws IOException {
+    return reader.peek() == JsonReader.Token.NULL ? reader.nextNull() : reader.nextInt();
+  }
+
+  private static void expectEnd(JsonReader reader) throws IOException {
+    if (reader.peek() != JsonReader.Token.END_DOCUMENT) {
+      throw new IOException("JSON document was not fully consumed.");
+    }
+  }
+
+  private static JsonReader open(String json) {
+    return JsonReader.of(Okio.buffer(new StringSource(json)));
+  }
+
+  /**
+   * A Source over a String that encodes it as UTF-8 only as far as it is read.
+   */
+  private static class StringSource implements Source {
+
+    private static final int CHUNK = 4096;
+
+    private final String text;
+    private int position;
+
+    StringSource(String text) {
+      this.text = text;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) {
+      if (this.position == this.text.length()) {
+        return -1;
+      }
+      // each char takes at most 3 bytes, so this never writes more than was asked for
+      int end = (int) Math.min(this.text.length(),
+          this.position + Math.max(1, Math.min(CHUNK, byteCount / 3)));
+      if (Character.isHighSurrogate(this.text.charAt(end - 1)) && end < this.text.length()) {
+        // keep a surrogate pair together
+        end++;
+      }
+      long before = sink.size();
+      sink.writeUtf8(this.text, this.position, end);
+      this.position = end;
+      return sink.size() - before;
+    }
+
+    @Override
+    public Timeout timeout() {
+      return Timeout.NONE;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -10,6 +10,8 @@ import java.util.Map;
 public class TempData {
 
   Properties properties;
+  // the outline of the forecast's grid cell as alternating longitudes and latitudes, if known
+  double[] cell;
 
   public TempData(List<Map<String, Object>> periods) {
     this.properties = new Properties();
@@ -23,6 +25,10 @@ public class TempData {
     return this.properties.periods;
   }
 
+  public double[] getCell() {
+    return this.cell;
+  }
+
   /**
    * This class is able to get built using the Moshi build fromJson method.
    */
@@ -0,0 +1,122 @@
+package weather;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import weather.cache.CacheLog;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
+import weather.cache.RefreshScheduler;
+import weather.upstream.CircuitBreaker;
+
+/**
+ * This is a shared class that holds the state the weather endpoint keeps between requests.
+ */
+public class WeatherDataHolder {
+
+  /**
+   * The client for every NWS request the server makes. The API's address can be changed with
+   * -Dweather.baseUri, the connect and request timeouts with -Dweather.connectTimeoutMillis (5000
+   * by default) and -Dweather.requestTimeoutMillis (10000 by default), and the client's threads
+   * with -Dweather.httpThreads (4 by default). Its circuit opens after -Dweather.breakerFailures
+   * failures in a row (5 by default) for -Dweather.breakerOpenMillis (30000 by default), and
+   * -Dweather.hedge=true hedges requests slower than the p95 latency.
+   */
+  public static final NWSClient nws = new NWSClient(
+      NWSClient.newHttpClient(Duration.ofMillis(Long.getLong("weather.connectTimeoutMillis", 5000)),
+          Integer.getInteger("weather.httpThreads", 4)),
+      System.getProperty("weather.baseUri", "https://api.weather.gov/"),
+      Duration.ofMillis(Long.getLong("weather.requestTimeoutMillis", 10_000)),
+      new CircuitBreaker(Integer.getInteger("weather.breakerFailures", 5),
+          Long.getLong("weather.breakerOpenMillis", 30_000)),
+      Boolean.getBoolean("weather.hedge"));
+
+  /**
+   * The grid cells of the points looked up so far, by squares of -Dweather.gridQuantum degrees
+   * (0.01 by default, about 1km). Entries are kept for -Dweather.gridTtlMillis (a week by default),
+   * and at most -Dweather.gridCacheSize of them (100000 by default).
+   */
+  public static final GridCache gridCache = new GridCache(
+      Double.parseDouble(System.getProperty("weather.gridQuantum", "0.01")),
+      Long.getLong("weather.gridTtlMillis", Duration.ofDays(7).toMillis()),
+      Integer.getInteger("weather.gridCacheSize", 100_000));
+
+  /**
+   * The forecasts of the grid cells looked up so far, kept as long as their caching headers allow
+   * and revalidated after, for at most -Dweather.forecastCacheSize cells (10000 by default). For
+   * -Dweather.maxStaleMillis after a forecast expires (600000 by default, 0 turns this off) it is
+   * still served, marked as stale, while it is revalidated in the background on
+   * -Dweather.revalidateThreads daemon threads (2 by default).
+   */
+  public static final ForecastCache forecastCache = new ForecastCache(
+      Integer.getInteger("weather.forecastCacheSize", 10_000),
+      Long.getLong("weather.maxStaleMillis", 600_000),
+      newDaemonExecutor("weather-revalidate", Integer.getInteger("weather.revalidateThreads", 2)));
+
+  /**
+   * Runs the lookups of batch weather requests, on -Dweather.batchConcurrency daemon threads (16 by
+   * default). Each lookup sends one NWS request at a time, so this bounds how many requests all
+   * batches together have in flight.
+   */
+  public static final ExecutorService batchExecutor = newDaemonExecutor("weather-batch",
+      Integer.getInteger("weather.batchConcurrency", 16));
+
+  /**
+   * The most locations one batch weather request may ask for, set with -Dweather.batchMaxPoints
+   * (1000 by default).
+   */
+  public static final int batchMaxPoints = Integer.getInteger("weather.batchMaxPoints", 1000);
+
+  /**
+   * Refreshes the -Dweather.refreshTopN most asked-for forecasts (100 by default, 0 turns
+   * refreshing off) within -Dweather.refreshLeadMillis of their expiry (60000 by default), at most
+   * -Dweather.refreshPerSecond of them a second (2 by default), once startRefreshing is called.
+   */
+  public static final RefreshScheduler refreshScheduler = new RefreshScheduler(forecastCache, nws,
+      Integer.getInteger("weather.refreshTopN", 100),
+      Long.getLong("weather.refreshLeadMillis", 60_000),
+      Double.parseDouble(System.getProperty("weather.refreshPerSecond", "2")));
+
+  /**
+   * With -Dweather.cacheDir set, the caches are filled in from and persisted to logs in that
+   * directory. This is why they are not, if opening the logs failed, and null otherwise.
+   */
+  public static final String persistenceError =
+      persistCaches(System.getProperty("weather.cacheDir"));
+
+  /**
+   * Starts the refreshScheduler looking for forecasts to refresh every
+   * -Dweather.refreshPeriodMillis (5000 by default), unless refreshing is off. The Server calls
+   * this once at startup, so loading this class, as the tests do, sends no refreshes of its own.
+   */
+  public static void startRefreshing() {
+    if (Integer.getInteger("weather.refreshTopN", 100) > 0) {
+      refreshScheduler.start(Long.getLong("weather.refreshPeriodMillis", 5000));
+    }
+  }
+
+  private static String persistCaches(String cacheDir) {
+    if (cacheDir == null) {
+      return null;
+    }
+    try {
+      gridCache.persistTo(CacheLog.open(Path.of(cacheDir, "grid.log")));
+      forecastCache.persistTo(CacheLog.open(Path.of(cacheDir, "forecast.log")));
+      return null;
+    } catch (IOException e) {
+      return "Not persisting the weather caches to " + cacheDir + ": " + e.getMessage();
+    }
+  }
+
+  private static ExecutorService newDaemonExecutor(String name, int threads) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -1,30 +1,60 @@
 package weather;
 
-import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
 import responses.FailureResponse.FailureRecord;
 import server.Handler;
 import responses.MapSerializer.MapRecord;
 import java.io.IOException;
-import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import spark.QueryParamsMap;
 import spark.Request;
 import spark.Response;
 import weather.exceptions.BadJsonException;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
 import weather.exceptions.DatasourceException;
 
 /**
  * This is the Handler class that is instantiated with the /weather endpoint on our local server.
  * It takes in a longitude and latitude as a parameters, and if it is a valid location, returns the
- * most recent forecast for that location.
- *
+ * most recent forecast for that location. Requests to the NWS API go through the NWSClient the
+ * handler is given, which the server shares between all of its weather requests. The grid cell of a
+ * location is looked up in a GridCache first, so nearby locations that were asked for before only
+ * need the forecast request, and forecasts come from a ForecastCache for as long as the NWS says
+ * they stay current. A forecast the cache serves after it expired, while it revalidates it, is
+ * marked with "stale" and its age in seconds.
  */
 public class WeatherHandler implements Handler {
 
+  /**
+   * The first period of a forecast, and how old the response it came from is.
+   *
+   * @param temps the forecast's first period
+   * @param ageMillis how long ago the response was fetched or revalidated
+   * @param stale whether the response had expired and is being revalidated
+   */
+  record Forecast(TempData temps, long ageMillis, boolean stale) {}
+
+  private final NWSClient nws;
+  private final GridCache gridCache;
+  private final ForecastCache forecastCache;
+
+  /**
+   * Creates the handler with the server's shared NWSClient and caches.
+   */
+  public WeatherHandler() {
+    this(WeatherDataHolder.nws, WeatherDataHolder.gridCache, WeatherDataHolder.forecastCache);
+  }
+
+  /**
+   * Creates the handler with the given NWSClient and caches.
+   */
+  public WeatherHandler(NWSClient nws, GridCache gridCache, ForecastCache forecastCache) {
+    this.nws = nws;
+    this.gridCache = gridCache;
+    this.forecastCache = forecastCache;
+  }
+
   /**
    * This is the overridden handle method. It populates a HashMap from String to Object with the
    * result and a temperature of the most recent forecast if the location is valid then serializes
@@ -53,14 +83,20 @@ public class WeatherHandler implements Handler {
     try{
       // sends a request to the points and gridpoints NWS API endpoints then puts the results in a map
       // and prints the data to the server
-      GridData gridData = this.handleGridRequest(longitude,latitude);
-      TempData tempData = this.handleTempRequest(gridData);
+      GridData gridData = this.cachedGridRequest(longitude, latitude);
+      Forecast forecast = this.forecastRequest(gridData);
+      this.recordCell(longitude, latitude, gridData, forecast);
+      TempData tempData = forecast.temps();
       MapRecord.results.put("result", "success");
       MapRecord.results.put("lat", latitude);
       MapRecord.results.put("lon", longitude);
       MapRecord.results.put("temperature",
           tempData.properties.periods.get(0).get("temperature")
               + " " + tempData.properties.periods.get(0).get("temperatureUnit"));
+      if (forecast.stale()) {
+        MapRecord.results.put("stale", true);
+        MapRecord.results.put("ageSeconds", forecast.ageMillis() / 1000);
+      }
       return this.successResponse();
 
     }// Catches an error with the datasource (presumably if coords are not passed correctly
@@ -69,6 +105,43 @@ public class WeatherHandler implements Handler {
     } // Catches an error with the NWS API, presumably if it passes an unreadable JSON
     catch (BadJsonException badJsonException){
       return this.failureResponse("error_bad_json");
+    } // Catches the NWS API not answering in time, or the circuit breaker refusing to ask it
+    catch (IOException ioException) {
+      return this.failureResponse("error_datasource");
+    }
+  }
+
+  /**
+   * Gets the GridData of a location through the GridCache. A location that is not a pair of numbers
+   * is not cached, and is passed on to the NWS API as it is, but NaN or an infinite coordinate is a
+   * DatasourceException. The batch handler looks up each of its locations through here too.
+   */
+  GridData cachedGridRequest(String longitude, String latitude) throws Exception {
+    double lat;
+    double lon;
+    try {
+      lat = Double.parseDouble(latitude);
+      lon = Double.parseDouble(longitude);
+    } catch (NumberFormatException e) {
+      return this.handleGridRequest(longitude, latitude);
+    }
+    if (!Double.isFinite(lat) || !Double.isFinite(lon)) {
+      throw new DatasourceException("Not a location");
+    }
+    return this.gridCache.get(lat, lon, () -> this.handleGridRequest(longitude, latitude));
+  }
+
+  /**
+   * Records in the GridCache the outline of a location's grid cell that came with its forecast, so
+   * that other locations inside the cell reuse the cached GridData. The batch handler records its
+   * locations' cells through here too.
+   */
+  void recordCell(String longitude, String latitude, GridData gridData, Forecast forecast) {
+    try {
+      this.gridCache.setCell(Double.parseDouble(latitude), Double.parseDouble(longitude),
+          gridData, forecast.temps().getCell());
+    } catch (NumberFormatException e) {
+      // the location was not cached
     }
   }
 
@@ -87,16 +160,8 @@ public class WeatherHandler implements Handler {
   public GridData handleGridRequest(String longitude, String latitude)
       throws URISyntaxException, IOException, InterruptedException, DatasourceException,
       BadJsonException {
-    // Creates a get request based on the longitude and latitude parameters
-    HttpRequest getGridRequest = HttpRequest.newBuilder()
-        .uri(new URI("https://api.weather.gov/points/" + latitude + "," + longitude))
-        .GET()
-        .build();
-
-    // Uses the Get Request to fetch the location response data from the API
-    HttpResponse<String> sendGetGridResponse = HttpClient.newBuilder()
-        .build().
-        send(getGridRequest, HttpResponse.BodyHandlers.ofString());
+    // Fetches the location response data from the API based on the longitude and latitude
+    HttpResponse<String> sendGetGridResponse = this.nws.get("points/" + latitude + "," + longitude);
     // Handles various NWS API error responses, location not found, overspecific, typos in response
     if (sendGetGridResponse.statusCode() == 400 || sendGetGridResponse.statusCode() == 404 ||
         sendGetGridResponse.statusCode() == 301) {
@@ -114,7 +179,8 @@ public class WeatherHandler implements Handler {
 
   /**
    * Sends a get request to the /gridpoints.../forecast endpoint of NWS API based on built GridData and handles the response
-   * by creating a TempData object with the temperature data for the location.
+   * by creating a TempData object with the temperature data for the location. A forecast that is
+   * still current in the ForecastCache is not requested again.
    * @param getGridData
    * @return
    * @throws URISyntaxException
@@ -125,17 +191,21 @@ public class WeatherHandler implements Handler {
    */
   public TempData handleTempRequest(GridData getGridData)
       throws URISyntaxException, IOException, InterruptedException, DatasourceException, BadJsonException {
-    // Creates a get request based GridData
-    HttpRequest getTempRequest = HttpRequest.newBuilder()
-        .uri(new URI("https://api.weather.gov/gridpoints/" + getGridData.properties.gridId +
-            "/" + getGridData.properties.gridX + "," + getGridData.properties.gridY
-            + "/forecast"))
-        .GET()
-        .build();
-    // Uses the Get Request to fetch the temperature response data from the API
-    HttpResponse<String> sendGetTempResponse = HttpClient.newBuilder()
-        .build()
-        .send(getTempRequest, HttpResponse.BodyHandlers.ofString());
+    return this.forecastRequest(getGridData).temps();
+  }
+
+  /**
+   * Gets the forecast of a grid cell as handleTempRequest does, along with whether the
+   * ForecastCache served it stale and how old it is. The batch handler looks up its forecasts
+   * through here too.
+   */
+  Forecast forecastRequest(GridData getGridData)
+      throws URISyntaxException, IOException, InterruptedException, DatasourceException,
+      BadJsonException {
+    // Fetches the temperature response data based on GridData, from the API or the ForecastCache
+    ForecastCache.Response sendGetTempResponse = this.forecastCache.get("gridpoints/"
+        + getGridData.properties.gridId + "/" + getGridData.properties.gridX + ","
+        + getGridData.properties.gridY + "/forecast", this.nws);
     // Handles various NWS API error responses, location not found, overspecific, typos in response
     if (sendGetTempResponse.statusCode() == 400 || sendGetTempResponse.statusCode() == 404 ||
         sendGetTempResponse.statusCode() == 301) {
@@ -144,7 +214,8 @@ public class WeatherHandler implements Handler {
 
     // Tries to create a TempData object, fails if JSON is unreadable.
     try {
-      return this.tempDataCreator(sendGetTempResponse.body());
+      return new Forecast(this.tempDataCreator(sendGetTempResponse.body()),
+          sendGetTempResponse.ageMillis(), sendGetTempResponse.stale());
     } catch (Exception e) {
       throw new BadJsonException("JSON Reading failure");
     }
@@ -152,17 +223,16 @@ public class WeatherHandler implements Handler {
   }
 
   /**
-   * Creates a GridData object using Moshi to read from a passed JSON. Throws a BadJsonException if
-   * Moshi is unable to read it.
+   * Creates a GridData object by streaming the gridId, gridX and gridY out of a passed JSON with
+   * NWSJsonExtractor, which stops reading once it has them. Throws a BadJsonException if the JSON
+   * is unreadable.
    * @param httpBody
    * @return
    * @throws BadJsonException
    */
   public GridData gridDataCreator(String httpBody) throws BadJsonException{
     try {
-      Moshi moshi = new Moshi.Builder().build();
-      JsonAdapter<GridData> gridDataAdapter = moshi.adapter(GridData.class);
-      return gridDataAdapter.fromJson(httpBody);
+      return NWSJsonExtractor.grid(httpBody);
     }
     catch(Exception e){
       throw new BadJsonException("JSON Reading failure");
@@ -170,17 +240,16 @@ public class WeatherHandler implements Handler {
   }
 
   /**
-   * Creates a TempData object using Moshi to read from a passed JSON. Throws a BadJsonException if
-   * Moshi is unable to read it.
+   * Creates a TempData object holding the temperature and unit of the first forecast period of a
+   * passed JSON, streamed out with NWSJsonExtractor rather than decoding every period. Throws a
+   * BadJsonException if the JSON is unreadable.
    * @param httpBody
    * @return
    * @throws BadJsonException
    */
   public TempData tempDataCreator(String httpBody) throws BadJsonException{
     try {
-      Moshi moshi = new Moshi.Builder().build();
-      JsonAdapter<TempData> tempDataAdapter = moshi.adapter(TempData.class);
-      return tempDataAdapter.fromJson(httpBody);
+      return NWSJsonExtractor.forecast(httpBody);
     }
     catch(Exception e){
       throw new BadJsonException("JSON Reading failure");
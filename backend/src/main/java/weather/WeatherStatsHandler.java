@@ -0,0 +1,50 @@
+package weather;
+
+import responses.FailureResponse.FailureRecord;
+import responses.MapSerializer.MapRecord;
+import server.Handler;
+import spark.Request;
+import spark.Response;
+
+/**
+ * This is the Handler class that is instantiated with the /weatherstats endpoint on our local
+ * server. It reports the metrics of the state the weather endpoint keeps between requests: how
+ * often the GridCache and the ForecastCache answered a lookup without asking the NWS API, how many
+ * popular forecasts were refreshed ahead of their expiry, the NWS client's request latencies,
+ * failures, hedges and circuit breaker state, and why the caches are not persisted, if opening
+ * their logs failed.
+ */
+public class WeatherStatsHandler implements Handler {
+
+  /**
+   * This is the overridden handle method. It populates a HashMap from String to Object with the
+   * metrics then serializes it and prints it to the server in JSON format.
+   *
+   * @param request
+   * @param response
+   * @return serialized message
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    MapRecord.results.clear();
+    MapRecord.results.put("result", "success");
+    MapRecord.results.put("gridCache", WeatherDataHolder.gridCache.metrics());
+    MapRecord.results.put("forecastCache", WeatherDataHolder.forecastCache.metrics());
+    MapRecord.results.put("refresh", WeatherDataHolder.refreshScheduler.metrics());
+    MapRecord.results.put("nws", WeatherDataHolder.nws.metrics());
+    if (WeatherDataHolder.persistenceError != null) {
+      MapRecord.results.put("persistenceError", WeatherDataHolder.persistenceError);
+    }
+    return this.successResponse();
+  }
+
+  @Override
+  public String successResponse() {
+    return MapRecord.serialize();
+  }
+
+  @Override
+  public String failureResponse(String errorMessage) {
+    return FailureRecord.serialize(errorMessage);
+  }
+}
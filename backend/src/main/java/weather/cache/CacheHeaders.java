@@ -0,0 +1,95 @@
+package weather.cache;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Reads how long a response may be reused from its HTTP caching headers, as a shared cache: the
+ * s-maxage or max-age directive of Cache-Control, or else the time from Date to Expires, less the
+ * Age the response already had. no-cache responses are kept but always revalidated, and no-store
+ * and private responses are not kept at all.
+ */
+public class CacheHeaders {
+
+  /**
+   * What a response's headers allow.
+   *
+   * @param storable whether the response may be kept
+   * @param freshMillis how long from now the response may be used without revalidating
+   */
+  public record Freshness(boolean storable, long freshMillis) {}
+
+  /**
+   * Works out the freshness of a response.
+   *
+   * @param headers the response's headers
+   * @param nowMillis the current time
+   * @return whether it may be kept, and for how long without revalidating
+   */
+  public static Freshness of(HttpHeaders headers, long nowMillis) {
+    long maxAge = -1;
+    long sharedMaxAge = -1;
+    boolean noCache = false;
+    for (String value : headers.allValues("Cache-Control")) {
+      for (String directive : value.split(",")) {
+        String[] parts = directive.strip().toLowerCase(Locale.ROOT).split("=", 2);
+        switch (parts[0]) {
+          case "no-store", "private" -> {
+            return new Freshness(false, 0);
+          }
+          case "no-cache" -> noCache = true;
+          case "max-age" -> maxAge = seconds(parts);
+          case "s-maxage" -> sharedMaxAge = seconds(parts);
+          default -> {
+            // other directives do not change how long the response is fresh
+          }
+        }
+      }
+    }
+    if (noCache) {
+      return new Freshness(true, 0);
+    }
+    long lifetimeMillis;
+    if (sharedMaxAge >= 0) {
+      lifetimeMillis = sharedMaxAge * 1000;
+    } else if (maxAge >= 0) {
+      lifetimeMillis = maxAge * 1000;
+    } else {
+      Optional<Long> expires = headers.firstValue("Expires").flatMap(CacheHeaders::parseDate);
+      if (expires.isEmpty()) {
+        // without freshness information, or with an Expires that is not a date (which means
+        // already expired), the response can only be reused after revalidating it
+        return new Freshness(true, 0);
+      }
+      lifetimeMillis = expires.get()
+          - headers.firstValue("Date").flatMap(CacheHeaders::parseDate).orElse(nowMillis);
+    }
+    long ageMillis = headers.firstValue("Age").map(CacheHeaders::parseSeconds).orElse(0L) * 1000;
+    return new Freshness(true, Math.max(0, lifetimeMillis - ageMillis));
+  }
+
+  private static long seconds(String[] directive) {
+    return directive.length == 2 ? parseSeconds(directive[1].replace("\"", "")) : 0;
+  }
+
+  private static long parseSeconds(String value) {
+    try {
+      return Math.max(0, Long.parseLong(value.strip()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static Optional<Long> parseDate(String value) {
+    try {
+      return Optional.of(ZonedDateTime.parse(value.strip(), DateTimeFormatter.RFC_1123_DATE_TIME)
+          .toInstant().toEpochMilli());
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,480 @@
+package weather.cache;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of cache entries, so that a cache can be filled back in after a restart.
+ * Every put or remove of a key is appended as a record, and an in-memory index maps each key to its
+ * latest record, so the file only ever grows at its end. Once more of the file is taken up by
+ * records that were replaced or removed than by live ones, the live records are copied to a new
+ * file which replaces the old one (compaction). Opening a log memory-maps the file and reads the
+ * records straight out of the mapping to build the index.
+ *
+ * <p>Puts and removes are handed to the log's own writer thread, which appends them in the order
+ * they were made and compacts the file when it is due, so that a cache writing to its log while
+ * it holds its own lock never waits on the disk. At most MAX_PENDING writes wait for the writer;
+ * past that they are dropped and counted, which at worst leaves a restarted cache colder, or with
+ * entries it had dropped until they expire. Failed writes, dropped writes, and the bytes of a torn
+ * end cut off when the log was opened, are reported in the log's metrics.
+ *
+ * <p>A record is its payload's length and CRC32 followed by the payload: whether it is a put, when
+ * the entry expires (in epoch milliseconds), the key, and for a put the value. A record cut off or
+ * corrupted by a crash fails its check, and the file is truncated there when it is opened. Writes
+ * are not forced to disk, so a crash of the machine can lose the most recent ones; the log is a
+ * cache of the NWS API, so losing them only costs a request later. For the same reason a log
+ * written in an older format, which its header's version tells, is emptied when it is opened rather
+ * than read.
+ */
+public class CacheLog implements Closeable {
+
+  private static final int MAGIC = 0x57434C47; // "WCLG"
+  // bumped whenever the records or the values caches keep in them change their format
+  private static final int VERSION = 2;
+  private static final int HEADER_LENGTH = 8;
+  private static final int RECORD_HEADER_LENGTH = 8;
+  // a log is compacted once its dead records take up more than this and more than its live ones
+  private static final long MIN_COMPACT_BYTES = 64 << 10;
+  private static final int MAX_PENDING = 10_000;
+
+  /**
+   * An entry read back from a log.
+   *
+   * @param expiresAt when the entry stops being worth loading, in epoch milliseconds
+   * @param value the entry's value
+   */
+  public record Entry(long expiresAt, byte[] value) {}
+
+  private final Path file;
+  private FileChannel channel;
+  // key -> position and length (including the record header) of its latest put
+  private final Map<String, long[]> index = new HashMap<>();
+  private long liveBytes;
+  private long fileBytes;
+  private long compactions;
+  private long writeErrors;
+  private long truncatedBytes;
+  private long discardedBytes;
+  private String lastError;
+  private final AtomicLong droppedWrites = new AtomicLong();
+  private final ThreadPoolExecutor writer;
+
+  private CacheLog(Path file, FileChannel channel) {
+    this.file = file;
+    this.channel = channel;
+    this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(MAX_PENDING), runnable -> {
+          Thread thread = new Thread(runnable, "cache-log-" + file.getFileName());
+          thread.setDaemon(true);
+          return thread;
+        }, this::reject);
+  }
+
+  /**
+   * Opens the log at a path, creating it if there is none, and indexes its records.
+   *
+   * @param file the log's path
+   * @return the log
+   * @throws IOException if the file cannot be opened, or is not a cache log
+   */
+  public static CacheLog open(Path file) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    CacheLog log = new CacheLog(file, channel);
+    try {
+      log.index();
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return log;
+  }
+
+  /**
+   * Reads the live entries of the log that have not expired by the given time, in the order they
+   * were last written, from a memory mapping of the file, once the pending writes are done.
+   *
+   * @param nowMillis the current time in epoch milliseconds
+   * @return the entries by key
+   * @throws IOException if the file cannot be read
+   */
+  public Map<String, Entry> load(long nowMillis) throws IOException {
+    this.flush();
+    return this.read(nowMillis);
+  }
+
+  private synchronized Map<String, Entry> read(long nowMillis) throws IOException {
+    MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.fileBytes);
+    List<Map.Entry<String, long[]>> live = this.byPosition();
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    for (Map.Entry<String, long[]> entry : live) {
+      buffer.position((int) entry.getValue()[0] + RECORD_HEADER_LENGTH);
+      Record record = Record.read(buffer);
+      if (record.expiresAt() > nowMillis) {
+        entries.put(entry.getKey(), new Entry(record.expiresAt(), record.value()));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Has the writer append a put of a key. A write that fails is counted and otherwise ignored,
+   * since the log is only a copy of what the cache holds in memory. The value is not copied, so it
+   * must not be changed afterwards.
+   *
+   * @param key the key
+   * @param expiresAtMillis when the entry stops being worth loading, in epoch milliseconds
+   * @param value the entry's value
+   */
+  public void put(String key, long expiresAtMillis, byte[] value) {
+    this.writer.execute(new Append(new Record(true, expiresAtMillis, key, value)));
+  }
+
+  /**
+   * Has the writer append a remove of a key, if the log holds it by then.
+   *
+   * @param key the key
+   */
+  public void remove(String key) {
+    this.writer.execute(new Append(new Record(false, 0, key, null)));
+  }
+
+  /**
+   * Waits until the writes made so far are appended.
+   *
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  public void flush() throws InterruptedIOException {
+    try {
+      this.writer.submit(() -> { }).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted flushing cache log " + this.file);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Copies the live records to a new file, which replaces the log's file.
+   *
+   * @throws IOException if the new file cannot be written, in which case the log is unchanged
+   */
+  public synchronized void compact() throws IOException {
+    Path compacted = this.file.resolveSibling(this.file.getFileName() + ".compact");
+    Map<String, long[]> moved = new HashMap<>();
+    long position = HEADER_LENGTH;
+    try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      out.write(header());
+      for (Map.Entry<String, long[]> entry : this.byPosition()) {
+        long[] location = entry.getValue();
+        long copied = 0;
+        while (copied < location[1]) {
+          copied += this.channel.transferTo(location[0] + copied, location[1] - copied, out);
+        }
+        moved.put(entry.getKey(), new long[] {position, location[1]});
+        position += location[1];
+      }
+    }
+    this.channel.close();
+    Files.move(compacted, this.file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.index.clear();
+    this.index.putAll(moved);
+    this.fileBytes = position;
+    this.liveBytes = position - HEADER_LENGTH;
+    this.compactions++;
+  }
+
+  /**
+   * Gets the number of live keys in the log, as of the last write appended.
+   */
+  public synchronized int size() {
+    return this.index.size();
+  }
+
+  /**
+   * Gets the log's metrics: its live keys, its size and the part of it that is live, how often it
+   * was compacted, the writes waiting for the writer, how many writes failed or were dropped and
+   * the last failure, how many bytes of a torn end were cut off when it was opened, and how many
+   * bytes of an older format were discarded.
+   */
+  public synchronized Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("keys", this.index.size());
+    metrics.put("fileBytes", this.fileBytes);
+    metrics.put("liveBytes", this.liveBytes);
+    metrics.put("compactions", this.compactions);
+    metrics.put("pendingWrites", this.writer.getQueue().size());
+    metrics.put("writeErrors", this.writeErrors);
+    metrics.put("droppedWrites", this.droppedWrites.get());
+    if (this.lastError != null) {
+      metrics.put("lastError", this.lastError);
+    }
+    metrics.put("truncatedBytes", this.truncatedBytes);
+    metrics.put("discardedBytes", this.discardedBytes);
+    return metrics;
+  }
+
+  /**
+   * Appends the pending writes and closes the file.
+   *
+   * @throws IOException if the file cannot be closed, or if interrupted while the writes are
+   *     appended
+   */
+  @Override
+  public void close() throws IOException {
+    this.writer.shutdown();
+    try {
+      this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted closing cache log " + this.file);
+    } finally {
+      synchronized (this) {
+        this.channel.close();
+      }
+    }
+  }
+
+  /**
+   * Builds the index from the file, writing the header of a new file, and truncates a torn record
+   * at the end.
+   */
+  private void index() throws IOException {
+    long size = this.channel.size();
+    if (size == 0) {
+      this.channel.write(header(), 0);
+      this.fileBytes = HEADER_LENGTH;
+      return;
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Cache log too large to map: " + this.file);
+    }
+    MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    if (size < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+      throw new IOException("Not a cache log: " + this.file);
+    }
+    if (buffer.getInt() != VERSION) {
+      this.discardedBytes = size;
+      this.channel.truncate(0);
+      this.channel.write(header(), 0);
+      this.fileBytes = HEADER_LENGTH;
+      return;
+    }
+    long position = HEADER_LENGTH;
+    while (position + RECORD_HEADER_LENGTH <= size) {
+      buffer.position((int) position);
+      int length = buffer.getInt();
+      int crc = buffer.getInt();
+      if (length <= 0 || position + RECORD_HEADER_LENGTH + length > size
+          || crc != checksum(buffer, length)) {
+        break;
+      }
+      Record record = Record.read(buffer);
+      this.index(record.key(), record.put(), position, RECORD_HEADER_LENGTH + length);
+      position += RECORD_HEADER_LENGTH + length;
+    }
+    if (position < size) {
+      this.truncatedBytes = size - position;
+      this.channel.truncate(position);
+    }
+    this.fileBytes = position;
+  }
+
+  private void index(String key, boolean put, long position, long length) {
+    long[] previous = put ? this.index.put(key, new long[] {position, length})
+        : this.index.remove(key);
+    if (previous != null) {
+      this.liveBytes -= previous[1];
+    }
+    if (put) {
+      this.liveBytes += length;
+    }
+  }
+
+  /**
+   * Appends a record on the writer thread, and compacts the file if it is due.
+   */
+  private synchronized void append(Record record) {
+    if (!record.put() && !this.index.containsKey(record.key())) {
+      return;
+    }
+    ByteBuffer bytes = record.encode();
+    long position = this.fileBytes;
+    try {
+      while (bytes.hasRemaining()) {
+        this.channel.write(bytes, position + bytes.position());
+      }
+    } catch (IOException e) {
+      this.failed("Could not write to", e);
+      return;
+    }
+    this.fileBytes += bytes.limit();
+    this.index(record.key(), record.put(), position, bytes.limit());
+    long deadBytes = this.fileBytes - HEADER_LENGTH - this.liveBytes;
+    if (deadBytes > MIN_COMPACT_BYTES && deadBytes > this.liveBytes) {
+      try {
+        this.compact();
+      } catch (IOException e) {
+        this.failed("Could not compact", e);
+      }
+    }
+  }
+
+  private void failed(String action, IOException e) {
+    this.writeErrors++;
+    this.lastError = action + " cache log " + this.file + ": " + e.getMessage();
+  }
+
+  /**
+   * Drops a write the writer has no room for, or one made after the log was closed. A flush is
+   * not dropped: it waits for room, or if the log is closed returns at once.
+   */
+  private void reject(Runnable task, ThreadPoolExecutor executor) {
+    if (task instanceof Append) {
+      this.droppedWrites.incrementAndGet();
+    } else if (executor.isShutdown()) {
+      task.run();
+    } else {
+      try {
+        executor.getQueue().put(task);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Gets the index's entries in the order of their records in the file.
+   */
+  private List<Map.Entry<String, long[]>> byPosition() {
+    List<Map.Entry<String, long[]>> entries = new ArrayList<>(this.index.entrySet());
+    entries.sort(Comparator.comparingLong(entry -> entry.getValue()[0]));
+    return entries;
+  }
+
+  /**
+   * Writes a String that may be null, for the values caches keep in a log.
+   */
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a String written by writeString, from a stream over a value in memory.
+   *
+   * @throws IOException if the stream holds fewer bytes than the String's length says
+   */
+  static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > in.available()) {
+      throw new IOException("Invalid string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static ByteBuffer header() {
+    return ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION).flip();
+  }
+
+  /**
+   * Computes the CRC32 of the next length bytes of a buffer, without moving its position.
+   */
+  private static int checksum(ByteBuffer buffer, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(buffer.slice(buffer.position(), length));
+    return (int) crc.getValue();
+  }
+
+  /**
+   * A put or remove waiting for the writer.
+   */
+  private class Append implements Runnable {
+
+    private final Record record;
+
+    Append(Record record) {
+      this.record = record;
+    }
+
+    @Override
+    public void run() {
+      CacheLog.this.append(this.record);
+    }
+  }
+
+  /**
+   * A record's payload.
+   */
+  private record Record(boolean put, long expiresAt, String key, byte[] value) {
+
+    static Record read(ByteBuffer buffer) {
+      boolean put = buffer.get() == 1;
+      long expiresAt = buffer.getLong();
+      byte[] key = new byte[buffer.getInt()];
+      buffer.get(key);
+      byte[] value = null;
+      if (put) {
+        value = new byte[buffer.getInt()];
+        buffer.get(value);
+      }
+      return new Record(put, expiresAt, new String(key, StandardCharsets.UTF_8), value);
+    }
+
+    ByteBuffer encode() {
+      byte[] keyBytes = this.key.getBytes(StandardCharsets.UTF_8);
+      int length = 1 + 8 + 4 + keyBytes.length + (this.put ? 4 + this.value.length : 0);
+      ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_LENGTH + length);
+      buffer.position(RECORD_HEADER_LENGTH);
+      buffer.put((byte) (this.put ? 1 : 0)).putLong(this.expiresAt);
+      buffer.putInt(keyBytes.length).put(keyBytes);
+      if (this.put) {
+        buffer.putInt(this.value.length).put(this.value);
+      }
+      buffer.position(RECORD_HEADER_LENGTH);
+      int crc = checksum(buffer, length);
+      buffer.putInt(0, length).putInt(4, crc);
+      return buffer.position(0);
+    }
+  }
+}
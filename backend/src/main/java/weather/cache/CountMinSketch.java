@@ -0,0 +1,100 @@
+package weather.cache;
+
+/**
+ * Estimates how often each key was seen, in a fixed amount of memory however many keys there are.
+ * Each of a few rows of counters is indexed by a different hash of the key; seeing a key increments
+ * its counter in every row, and its estimate is the smallest of those counters. Keys that collide
+ * in a row can only add to each other's counts, so an estimate is never below the true count, and
+ * the row where the key collides least bounds how far above it is. Once the counters have taken
+ * sampleSize increments they are all halved, so the estimates follow what is popular lately rather
+ * than since the server started.
+ */
+public class CountMinSketch {
+
+  private static final int DEPTH = 4;
+  // give each row its own hash of the key
+  private static final int[] SEEDS = {0x9E3779B9, 0x7F4A7C15, 0x94D049BB, 0x27D4EB2F};
+
+  private final int[][] counters;
+  private final int mask;
+  private final int sampleSize;
+  private int increments;
+  private long resets;
+
+  /**
+   * Creates a sketch with no counts.
+   *
+   * @param width the counters per row, rounded up to a power of two; the more keys are tracked,
+   *     the wider the rows need to be for the estimates to stay close
+   * @param sampleSize the increments after which all counters are halved
+   */
+  public CountMinSketch(int width, int sampleSize) {
+    int rounded = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+    this.counters = new int[DEPTH][rounded];
+    this.mask = rounded - 1;
+    this.sampleSize = sampleSize;
+  }
+
+  /**
+   * Counts a key once.
+   *
+   * @param key the key
+   * @return the key's estimated count, including this one
+   */
+  public synchronized int increment(String key) {
+    int hash = key.hashCode();
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      int[] counters = this.counters[row];
+      int index = this.index(hash, row);
+      if (counters[index] < Integer.MAX_VALUE) {
+        counters[index]++;
+      }
+      estimate = Math.min(estimate, counters[index]);
+    }
+    if (++this.increments >= this.sampleSize) {
+      this.halve();
+    }
+    return estimate;
+  }
+
+  /**
+   * Gets the estimated count of a key.
+   *
+   * @param key the key
+   * @return the smallest of its counters
+   */
+  public synchronized int estimate(String key) {
+    int hash = key.hashCode();
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      estimate = Math.min(estimate, this.counters[row][this.index(hash, row)]);
+    }
+    return estimate;
+  }
+
+  /**
+   * Gets how many times the counters were halved.
+   */
+  public synchronized long resets() {
+    return this.resets;
+  }
+
+  private int index(int hash, int row) {
+    // MurmurHash3's finalizer, so that every bit of the hash reaches the index
+    int h = (hash ^ SEEDS[row]) * 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    return (h ^ (h >>> 16)) & this.mask;
+  }
+
+  private void halve() {
+    for (int[] row : this.counters) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] >>>= 1;
+      }
+    }
+    this.increments /= 2;
+    this.resets++;
+  }
+}
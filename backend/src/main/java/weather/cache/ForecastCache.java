@@ -0,0 +1,452 @@
+package weather.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+import weather.NWSClient;
+
+/**
+ * A cache of NWS forecast responses, keyed on the forecast's path (and so on the grid cell's
+ * gridId, gridX and gridY). How long an entry is used for comes from the response's own caching
+ * headers (see CacheHeaders), so the cache follows the NWS's update schedule instead of guessing
+ * one. Once an entry is stale it is revalidated with the ETag and Last-Modified it came with; a 304
+ * Not Modified answer renews the entry without sending the forecast again. Concurrent requests for
+ * a forecast that is missing or stale share one upstream request. Many users asking for the same
+ * grid cell therefore cost one upstream request per update window, even when they ask at once.
+ * Like a GridCache, the cache can be persisted to a CacheLog to survive restarts. Every lookup is
+ * counted in a CountMinSketch, so that a RefreshScheduler can find the most asked-for forecasts and
+ * refresh them before they expire. With a maximum staleness, a forecast that has expired by no more
+ * than that is still answered from the cache at once, marked as stale, while one background fetch
+ * revalidates it (stale-while-revalidate), so a slow NWS API does not slow lookups down until a
+ * forecast is too stale to use.
+ */
+public class ForecastCache {
+
+  /**
+   * A forecast response, from the cache or from the NWS API.
+   *
+   * @param statusCode the HTTP status of the response
+   * @param body the response's body
+   * @param ageMillis how long ago the response was fetched or revalidated, 0 for a fetch just made
+   * @param stale whether the response had expired, and is being revalidated in the background
+   */
+  public record Response(int statusCode, String body, long ageMillis, boolean stale) {
+
+    /**
+     * Creates a response that was just fetched.
+     */
+    public Response(int statusCode, String body) {
+      this(statusCode, body, 0, false);
+    }
+  }
+
+  /**
+   * A forecast that is about to expire, with how often it has been asked for lately.
+   *
+   * @param path the forecast's path
+   * @param freshUntil when it expires, in epoch milliseconds
+   * @param popularity its estimated count of recent lookups
+   */
+  public record Expiring(String path, long freshUntil, int popularity) {}
+
+  private record Entry(String body, String etag, String lastModified, long fetchedAt,
+      long freshUntil) {}
+
+  private final int maxEntries;
+  private final long maxStaleMillis;
+  private final Executor revalidator;
+  private final LongSupplier clock;
+  // access-ordered, so the eldest entry is the least recently used
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final SingleFlight<String, Response> flights = new SingleFlight<>();
+  private final CountMinSketch popularity;
+  // the forecasts being revalidated in the background
+  private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+  private long hits;
+  private long staleHits;
+  private long revalidations;
+  private long misses;
+  private long refreshes;
+  private long evictions;
+  private CacheLog log;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxEntries the most forecasts to keep
+   */
+  public ForecastCache(int maxEntries) {
+    this(maxEntries, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates an empty cache that reads the time in milliseconds from the given clock.
+   */
+  public ForecastCache(int maxEntries, LongSupplier clock) {
+    this(maxEntries, 0, Runnable::run, clock);
+  }
+
+  /**
+   * Creates an empty cache that serves stale forecasts while it revalidates them.
+   *
+   * @param maxEntries the most forecasts to keep
+   * @param maxStaleMillis how long after it expires a forecast may still be served, 0 for never
+   * @param revalidator runs the background revalidations of stale forecasts
+   */
+  public ForecastCache(int maxEntries, long maxStaleMillis, Executor revalidator) {
+    this(maxEntries, maxStaleMillis, revalidator, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates an empty cache that serves stale forecasts while it revalidates them, and reads the
+   * time in milliseconds from the given clock.
+   */
+  public ForecastCache(int maxEntries, long maxStaleMillis, Executor revalidator,
+      LongSupplier clock) {
+    this.maxEntries = maxEntries;
+    this.maxStaleMillis = maxStaleMillis;
+    this.revalidator = revalidator;
+    this.clock = clock;
+    // wide enough for a few times as many forecasts as the cache holds, aged over ten times that
+    this.popularity = new CountMinSketch(4 * maxEntries, 40 * maxEntries);
+  }
+
+  /**
+   * Gets a forecast: from the cache if the entry is still fresh, or if it expired no more than the
+   * maximum staleness ago, in which case it is revalidated in the background; otherwise from the
+   * NWS API, conditionally if there is a stale entry to revalidate. Callers that ask while the same
+   * forecast is being fetched wait for that fetch and share its response. Responses other than 200
+   * and 304 are passed back as they are and not cached.
+   *
+   * @param path the forecast's path, relative to the API's base URI
+   * @param nws the client to send requests through
+   * @return the forecast response
+   * @throws URISyntaxException if the path does not make a valid URI
+   * @throws IOException if the request fails or times out
+   * @throws InterruptedException if interrupted while waiting for the response
+   */
+  public Response get(String path, NWSClient nws)
+      throws URISyntaxException, IOException, InterruptedException {
+    Response cached = this.lookup(path, nws);
+    if (cached != null) {
+      return cached;
+    }
+    return this.load(path, nws, false);
+  }
+
+  /**
+   * Fetches a forecast from the NWS API even if its entry is still fresh, revalidating the entry if
+   * it has validators, so that the cache keeps answering lookups for it once the old response would
+   * have expired. Refreshes are not counted as lookups of the forecast, and a refresh of a forecast
+   * that is already being fetched shares that fetch.
+   *
+   * @param path the forecast's path, relative to the API's base URI
+   * @param nws the client to send requests through
+   * @return the forecast response
+   * @throws URISyntaxException if the path does not make a valid URI
+   * @throws IOException if the request fails or times out
+   * @throws InterruptedException if interrupted while waiting for the response
+   */
+  public Response refresh(String path, NWSClient nws)
+      throws URISyntaxException, IOException, InterruptedException {
+    return this.load(path, nws, true);
+  }
+
+  private Response load(String path, NWSClient nws, boolean refresh)
+      throws URISyntaxException, IOException, InterruptedException {
+    try {
+      return this.flights.get(path, () -> this.fetch(path, nws, refresh));
+    } catch (URISyntaxException | IOException | InterruptedException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      // fetch throws nothing else
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Gets a forecast from the cache if its entry is still fresh, or stale by no more than the
+   * maximum staleness, counting the hit, or returns null.
+   */
+  private synchronized Response lookup(String path, NWSClient nws) {
+    this.popularity.increment(path);
+    Entry entry = this.entries.get(path);
+    if (entry == null) {
+      return null;
+    }
+    long now = this.clock.getAsLong();
+    if (entry.freshUntil() > now) {
+      this.hits++;
+      return new Response(200, entry.body(), now - entry.fetchedAt(), false);
+    }
+    // a response that had to be revalidated before every use (no-cache) is never served stale
+    if (this.maxStaleMillis > 0 && entry.freshUntil() > entry.fetchedAt()
+        && now - entry.freshUntil() <= this.maxStaleMillis) {
+      this.staleHits++;
+      this.revalidateInBackground(path, nws);
+      return new Response(200, entry.body(), now - entry.fetchedAt(), true);
+    }
+    return null;
+  }
+
+  /**
+   * Starts a background revalidation of a forecast, unless one is already running. One that fails
+   * leaves the stale entry in place, and the next lookup of it starts another.
+   */
+  private void revalidateInBackground(String path, NWSClient nws) {
+    if (!this.revalidating.add(path)) {
+      return;
+    }
+    try {
+      this.revalidator.execute(() -> {
+        try {
+          this.load(path, nws, true);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Exception e) {
+          // the stale entry is served until it is too stale, or a revalidation succeeds
+        } finally {
+          this.revalidating.remove(path);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      this.revalidating.remove(path);
+    }
+  }
+
+  /**
+   * Fetches a forecast from the NWS API, revalidating the stale entry if there is one, and caches
+   * the response. A fetch that finished after this caller's lookup may have refreshed the entry
+   * already, in which case it is used as it is, unless this is a refresh.
+   */
+  private Response fetch(String path, NWSClient nws, boolean refresh)
+      throws URISyntaxException, IOException, InterruptedException {
+    Entry entry;
+    synchronized (this) {
+      entry = this.entries.get(path);
+      long now = this.clock.getAsLong();
+      if (!refresh && entry != null && entry.freshUntil() > now) {
+        this.hits++;
+        return new Response(200, entry.body(), now - entry.fetchedAt(), false);
+      }
+    }
+    HttpResponse<String> response = nws.get(path, validators(entry));
+    long now = this.clock.getAsLong();
+    CacheHeaders.Freshness freshness = CacheHeaders.of(response.headers(), now);
+    if (response.statusCode() == 304 && entry != null) {
+      synchronized (this) {
+        if (refresh) {
+          this.refreshes++;
+        } else {
+          this.revalidations++;
+        }
+        this.store(path, freshness, new Entry(entry.body(),
+            response.headers().firstValue("ETag").orElse(entry.etag()),
+            response.headers().firstValue("Last-Modified").orElse(entry.lastModified()),
+            now, now + freshness.freshMillis()));
+      }
+      return new Response(200, entry.body());
+    }
+    synchronized (this) {
+      if (refresh) {
+        this.refreshes++;
+      } else {
+        this.misses++;
+      }
+      if (response.statusCode() == 200) {
+        this.store(path, freshness, new Entry(response.body(),
+            response.headers().firstValue("ETag").orElse(null),
+            response.headers().firstValue("Last-Modified").orElse(null),
+            now, now + freshness.freshMillis()));
+      }
+    }
+    return new Response(response.statusCode(), response.body());
+  }
+
+  /**
+   * Gets the most asked-for forecasts that are still fresh but expire before the given time, most
+   * popular first.
+   *
+   * @param limit the most forecasts to return
+   * @param beforeMillis the time, in epoch milliseconds, by which they expire
+   * @return the forecasts
+   */
+  public synchronized List<Expiring> hottestExpiring(int limit, long beforeMillis) {
+    long now = this.clock.getAsLong();
+    // the least popular of the forecasts kept so far is at the head
+    PriorityQueue<Expiring> hottest = new PriorityQueue<>(limit + 1,
+        Comparator.comparingInt(Expiring::popularity));
+    for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+      long freshUntil = entry.getValue().freshUntil();
+      if (freshUntil <= now || freshUntil > beforeMillis) {
+        continue;
+      }
+      hottest.add(new Expiring(entry.getKey(), freshUntil,
+          this.popularity.estimate(entry.getKey())));
+      if (hottest.size() > limit) {
+        hottest.poll();
+      }
+    }
+    List<Expiring> expiring = new ArrayList<>(hottest);
+    expiring.sort(Comparator.comparingInt(Expiring::popularity).reversed());
+    return expiring;
+  }
+
+  /**
+   * Gets the number of forecasts in the cache.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Gets the cache's metrics: its size, the fresh hits, the stale forecasts served while they
+   * were revalidated, the stale entries renewed by a 304, the full fetches, the refreshes ahead of
+   * expiry or in the background, the requests that reached the NWS API, the lookups that waited on
+   * another caller's fetch, the share of lookups answered without sending a forecast, and the
+   * metrics of its log if it is persisted.
+   */
+  public synchronized Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("size", this.entries.size());
+    metrics.put("hits", this.hits);
+    metrics.put("staleHits", this.staleHits);
+    metrics.put("revalidations", this.revalidations);
+    metrics.put("misses", this.misses);
+    metrics.put("refreshes", this.refreshes);
+    metrics.put("upstreamRequests", this.revalidations + this.misses + this.refreshes);
+    long coalesced = this.flights.coalesced();
+    metrics.put("coalesced", coalesced);
+    long lookups = this.hits + this.staleHits + this.revalidations + this.misses + coalesced;
+    metrics.put("hitRate", lookups == 0 ? 0.0
+        : (double) (this.hits + this.staleHits + this.revalidations + coalesced) / lookups);
+    metrics.put("evictions", this.evictions);
+    if (this.log != null) {
+      metrics.put("log", this.log.metrics());
+    }
+    return metrics;
+  }
+
+  /**
+   * Keeps an entry if its response allows it and it can be reused, either while fresh or by
+   * revalidating it, and drops the least recently used entries past the limit.
+   */
+  private void store(String path, CacheHeaders.Freshness freshness, Entry entry) {
+    boolean reusable = freshness.freshMillis() > 0 || entry.etag() != null
+        || entry.lastModified() != null;
+    if (!freshness.storable() || !reusable) {
+      this.entries.remove(path);
+      if (this.log != null) {
+        this.log.remove(path);
+      }
+      return;
+    }
+    this.entries.put(path, entry);
+    if (this.log != null) {
+      this.log.put(path, expiresAt(entry), encode(entry));
+    }
+    this.evict();
+  }
+
+  /**
+   * Fills the cache in from a log and writes every forecast the cache takes in or drops from then
+   * on to the log. A forecast that has gone stale is still loaded if it can be revalidated, and is
+   * revalidated before it is used, as it would have been without the restart. A forecast that
+   * cannot be decoded is removed from the log and left out.
+   *
+   * @param log the log to persist to
+   * @throws IOException if the log cannot be read
+   */
+  public synchronized void persistTo(CacheLog log) throws IOException {
+    for (Map.Entry<String, CacheLog.Entry> entry : log.load(this.clock.getAsLong()).entrySet()) {
+      try {
+        this.entries.put(entry.getKey(), decode(entry.getValue().value()));
+      } catch (IOException e) {
+        log.remove(entry.getKey());
+      }
+    }
+    this.log = log;
+    this.evict();
+  }
+
+  /**
+   * Drops the least recently used entries past the limit.
+   */
+  private void evict() {
+    Iterator<String> eldest = this.entries.keySet().iterator();
+    while (this.entries.size() > this.maxEntries) {
+      String path = eldest.next();
+      eldest.remove();
+      this.evictions++;
+      if (this.log != null) {
+        this.log.remove(path);
+      }
+    }
+  }
+
+  /**
+   * Gets when a forecast stops being worth keeping in a log: once it is too stale to serve, unless
+   * it has a validator to revalidate it with.
+   */
+  private long expiresAt(Entry entry) {
+    return entry.etag() != null || entry.lastModified() != null ? Long.MAX_VALUE
+        : entry.freshUntil() + this.maxStaleMillis;
+  }
+
+  private static byte[] encode(Entry entry) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.body().length() + 64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      CacheLog.writeString(out, entry.body());
+      CacheLog.writeString(out, entry.etag());
+      CacheLog.writeString(out, entry.lastModified());
+      out.writeLong(entry.fetchedAt());
+      out.writeLong(entry.freshUntil());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Entry decode(byte[] value) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+      Entry entry = new Entry(CacheLog.readString(in), CacheLog.readString(in),
+          CacheLog.readString(in), in.readLong(), in.readLong());
+      if (in.available() > 0) {
+        throw new IOException("Not a forecast entry");
+      }
+      return entry;
+    }
+  }
+
+  /**
+   * Gets the conditional request headers for revalidating an entry, or none without an entry.
+   */
+  private static String[] validators(Entry entry) {
+    List<String> headers = new ArrayList<>(4);
+    if (entry != null && entry.etag() != null) {
+      headers.add("If-None-Match");
+      headers.add(entry.etag());
+    }
+    if (entry != null && entry.lastModified() != null) {
+      headers.add("If-Modified-Since");
+      headers.add(entry.lastModified());
+    }
+    return headers.toArray(new String[0]);
+  }
+}
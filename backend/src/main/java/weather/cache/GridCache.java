@@ -0,0 +1,338 @@
+package weather.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.function.LongSupplier;
+import weather.GridData;
+
+/**
+ * A cache of the NWS grid cell (GridData) for a point, so that weather lookups for points that were
+ * looked up before skip the /points request. Points are quantized to squares of a fixed size in
+ * degrees, smaller than the NWS's 2.5km grid cells, and all points in one square share an entry.
+ * A square can still straddle two grid cells, so an entry only answers the point it was loaded for
+ * until the outline of its cell is known, from the cell's forecast, and after that only the points
+ * inside the outline; any other point of the square is looked up, and its cell replaces the entry.
+ * The grid assigned to a point practically never changes, so entries live for a long time, and the
+ * least recently used ones are dropped once the cache is full.
+ *
+ * <p>Concurrent misses for one point are coalesced into a single lookup, so a burst of requests
+ * for a new point costs one /points request. The cache counts its hits, misses and coalesced
+ * misses, and estimates the time its hits saved as the mean time of a miss.
+ *
+ * <p>A cache can be persisted to a CacheLog, which it is filled in from and then writes every new
+ * entry and every dropped one to, so that a restarted server starts with the grid cells it knew.
+ */
+public class GridCache {
+
+  private final double quantum;
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final LongSupplier clock;
+  // access-ordered, so the eldest entry is the least recently used
+  private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final SingleFlight<Point, GridData> flights = new SingleFlight<>();
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expirations;
+  private long missNanos;
+  private long savedNanos;
+  private CacheLog log;
+
+  private record Point(double lat, double lon) {}
+
+  /**
+   * A square's grid cell, the point it was loaded for, and the outline of the cell as alternating
+   * longitudes and latitudes, or null while it is not known.
+   */
+  private record Entry(GridData grid, long expiresAt, double lat, double lon, double[] cell) {
+
+    boolean covers(double lat, double lon) {
+      return this.cell == null
+          ? lat == this.lat && lon == this.lon : contains(this.cell, lat, lon);
+    }
+  }
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param quantum the size in degrees of the squares points are quantized to
+   * @param ttlMillis how long an entry is used for after it is loaded
+   * @param maxEntries the most entries to keep
+   */
+  public GridCache(double quantum, long ttlMillis, int maxEntries) {
+    this(quantum, ttlMillis, maxEntries, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates an empty cache that reads the time in milliseconds from the given clock.
+   */
+  public GridCache(double quantum, long ttlMillis, int maxEntries, LongSupplier clock) {
+    this.quantum = quantum;
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  /**
+   * Gets the grid cell of a point, from the cache if the point's square was loaded recently enough
+   * and its cell covers the point, or otherwise from the loader, whose result is then cached.
+   * Concurrent misses for one point share a single call of the loader.
+   *
+   * @param lat the point's latitude
+   * @param lon the point's longitude
+   * @param loader looks up the point's grid cell
+   * @return the grid cell
+   * @throws IllegalArgumentException if the point is not finite
+   * @throws Exception whatever the loader throws, in which case nothing is cached
+   */
+  public GridData get(double lat, double lon, Callable<GridData> loader) throws Exception {
+    if (!Double.isFinite(lat) || !Double.isFinite(lon)) {
+      throw new IllegalArgumentException("Not a point: " + lat + "," + lon);
+    }
+    long key = this.key(lat, lon);
+    GridData cached = this.lookup(key, lat, lon);
+    if (cached != null) {
+      return cached;
+    }
+    return this.flights.get(new Point(lat, lon), () -> this.load(key, lat, lon, loader));
+  }
+
+  /**
+   * Records the outline of a grid cell, as read from its forecast, on the entry of a point's square
+   * if that entry holds the cell, so that the other points inside the outline are answered by it.
+   *
+   * @param lat the point's latitude
+   * @param lon the point's longitude
+   * @param grid the point's grid cell
+   * @param cell the cell's outline as alternating longitudes and latitudes, or null if unknown
+   */
+  public synchronized void setCell(double lat, double lon, GridData grid, double[] cell) {
+    if (cell == null || cell.length < 6 || !Double.isFinite(lat) || !Double.isFinite(lon)) {
+      return;
+    }
+    long key = this.key(lat, lon);
+    Entry entry = this.entries.get(key);
+    if (entry == null || !sameCell(entry.grid(), grid) || Arrays.equals(entry.cell(), cell)) {
+      return;
+    }
+    entry = new Entry(entry.grid(), entry.expiresAt(), entry.lat(), entry.lon(), cell.clone());
+    this.entries.put(key, entry);
+    if (this.log != null) {
+      this.log.put(Long.toString(key), entry.expiresAt(), encode(entry));
+    }
+  }
+
+  /**
+   * Gets a square's grid cell if it is cached, not expired and covers the point, counting the hit,
+   * or returns null.
+   */
+  private synchronized GridData lookup(long key, double lat, double lon) {
+    Entry entry = this.entries.get(key);
+    if (entry != null && entry.expiresAt() > this.clock.getAsLong()) {
+      if (!entry.covers(lat, lon)) {
+        return null;
+      }
+      this.hits++;
+      this.savedNanos += this.misses == 0 ? 0 : this.missNanos / this.misses;
+      return entry.grid();
+    }
+    if (entry != null) {
+      this.entries.remove(key);
+      this.expirations++;
+      if (this.log != null) {
+        this.log.remove(Long.toString(key));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Calls the loader for a point and caches its result in the point's square, unless a load that
+   * finished after this caller's lookup already cached a cell covering the point. An entry for the
+   * same cell keeps its outline.
+   */
+  private GridData load(long key, double lat, double lon, Callable<GridData> loader)
+      throws Exception {
+    GridData cached = this.lookup(key, lat, lon);
+    if (cached != null) {
+      return cached;
+    }
+    long start = System.nanoTime();
+    GridData grid = loader.call();
+    long elapsed = System.nanoTime() - start;
+    synchronized (this) {
+      this.misses++;
+      this.missNanos += elapsed;
+      Entry previous = this.entries.get(key);
+      if (previous != null && previous.cell() != null && sameCell(previous.grid(), grid)) {
+        return grid;
+      }
+      Entry entry = new Entry(grid, this.clock.getAsLong() + this.ttlMillis, lat, lon, null);
+      this.entries.put(key, entry);
+      if (this.log != null && grid.getProperties() != null) {
+        this.log.put(Long.toString(key), entry.expiresAt(), encode(entry));
+      }
+      this.evict();
+    }
+    return grid;
+  }
+
+  /**
+   * Fills the cache in from a log, leaving out the entries that have expired, and writes every
+   * entry the cache takes in or drops from then on to the log. The log's entries are taken in the
+   * order they were written, so the least recently loaded are dropped first if there are more than
+   * fit. An entry that cannot be decoded is removed from the log and left out.
+   *
+   * @param log the log to persist to
+   * @throws IOException if the log cannot be read
+   */
+  public synchronized void persistTo(CacheLog log) throws IOException {
+    for (Map.Entry<String, CacheLog.Entry> entry : log.load(this.clock.getAsLong()).entrySet()) {
+      try {
+        this.entries.put(Long.parseLong(entry.getKey()),
+            decode(entry.getValue().value(), entry.getValue().expiresAt()));
+      } catch (IOException | NumberFormatException e) {
+        log.remove(entry.getKey());
+      }
+    }
+    this.log = log;
+    this.evict();
+  }
+
+  /**
+   * Drops the least recently used entries past the limit.
+   */
+  private void evict() {
+    Iterator<Long> eldest = this.entries.keySet().iterator();
+    while (this.entries.size() > this.maxEntries) {
+      Long key = eldest.next();
+      eldest.remove();
+      this.evictions++;
+      if (this.log != null) {
+        this.log.remove(key.toString());
+      }
+    }
+  }
+
+  /**
+   * Gets the number of entries in the cache, including expired ones not yet dropped.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Gets the cache's metrics: its size, hits, misses, the misses that waited on another caller's
+   * lookup, the share of lookups that did not ask the NWS (hits and coalesced misses), evictions,
+   * expirations, the milliseconds its hits are estimated to have saved, and the metrics of its log
+   * if it is persisted.
+   */
+  public synchronized Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("size", this.entries.size());
+    metrics.put("hits", this.hits);
+    metrics.put("misses", this.misses);
+    long coalesced = this.flights.coalesced();
+    metrics.put("coalesced", coalesced);
+    long lookups = this.hits + this.misses + coalesced;
+    metrics.put("hitRate", lookups == 0 ? 0.0 : (double) (this.hits + coalesced) / lookups);
+    metrics.put("evictions", this.evictions);
+    metrics.put("expirations", this.expirations);
+    metrics.put("savedMillis", this.savedNanos / 1_000_000);
+    if (this.log != null) {
+      metrics.put("log", this.log.metrics());
+    }
+    return metrics;
+  }
+
+  private static byte[] encode(Entry entry) {
+    GridData grid = entry.grid();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      CacheLog.writeString(out, grid.getGridId());
+      out.writeInt(grid.getGridX() == null ? Integer.MIN_VALUE : grid.getGridX());
+      out.writeInt(grid.getGridY() == null ? Integer.MIN_VALUE : grid.getGridY());
+      out.writeDouble(entry.lat());
+      out.writeDouble(entry.lon());
+      out.writeInt(entry.cell() == null ? -1 : entry.cell().length);
+      if (entry.cell() != null) {
+        for (double coordinate : entry.cell()) {
+          out.writeDouble(coordinate);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Entry decode(byte[] value, long expiresAt) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+      String gridId = CacheLog.readString(in);
+      int gridX = in.readInt();
+      int gridY = in.readInt();
+      GridData grid = new GridData(gridId, gridX == Integer.MIN_VALUE ? null : gridX,
+          gridY == Integer.MIN_VALUE ? null : gridY);
+      double lat = in.readDouble();
+      double lon = in.readDouble();
+      int length = in.readInt();
+      if (length > value.length / Double.BYTES) {
+        throw new IOException("Invalid grid cell outline of " + length + " coordinates");
+      }
+      double[] cell = length < 0 ? null : new double[length];
+      for (int i = 0; i < length; i++) {
+        cell[i] = in.readDouble();
+      }
+      if (in.available() > 0) {
+        throw new IOException("Not a grid cache entry");
+      }
+      return new Entry(grid, expiresAt, lat, lon, cell);
+    }
+  }
+
+  private static boolean sameCell(GridData a, GridData b) {
+    return a.getProperties() != null && b.getProperties() != null
+        && Objects.equals(a.getGridId(), b.getGridId())
+        && Objects.equals(a.getGridX(), b.getGridX())
+        && Objects.equals(a.getGridY(), b.getGridY());
+  }
+
+  /**
+   * Tests whether a point is inside an outline of alternating longitudes and latitudes, by counting
+   * the edges a ray from the point crosses.
+   */
+  private static boolean contains(double[] cell, double lat, double lon) {
+    boolean inside = false;
+    for (int i = 0, j = cell.length - 2; i < cell.length - 1; j = i, i += 2) {
+      double lonI = cell[i];
+      double latI = cell[i + 1];
+      double lonJ = cell[j];
+      double latJ = cell[j + 1];
+      if ((latI > lat) != (latJ > lat)
+          && lon < (lonJ - lonI) * (lat - latI) / (latJ - latI) + lonI) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  /**
+   * Packs the square holding a point into one long: the square's row in the high half and its
+   * column in the low half.
+   */
+  private long key(double lat, double lon) {
+    long row = (long) Math.floor(lat / this.quantum);
+    long column = (long) Math.floor(lon / this.quantum);
+    return (row << 32) | (column & 0xffffffffL);
+  }
+}
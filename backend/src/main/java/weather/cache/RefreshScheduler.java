@@ -0,0 +1,205 @@
+package weather.cache;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import weather.NWSClient;
+
+/**
+ * Refreshes the most asked-for forecasts of a ForecastCache shortly before they expire, so that the
+ * users who keep asking for them keep getting cache hits instead of waiting on the NWS API once an
+ * hour. Every period it asks the cache for the topN most popular forecasts (by the cache's
+ * CountMinSketch) that expire within the lead time, and schedules a refresh of each at a random
+ * time in the first three quarters of its lead window, so that forecasts that expire together are
+ * not all refreshed at once. Refreshes are also rate limited: each one takes a permit, the permits
+ * are spaced evenly at the given rate, and a refresh that comes before its permit waits for it. A
+ * refresh whose permit would only come once its forecast has expired is skipped instead, as is one
+ * that would join topN others already waiting, so the permits never run ahead by more than that
+ * backlog and a lookup of the forecast fetches it as it would without the scheduler. A forecast is
+ * scheduled once per expiry, so one whose refresh does not extend it is not refreshed again.
+ */
+public class RefreshScheduler implements Closeable {
+
+  private final ForecastCache cache;
+  private final NWSClient nws;
+  private final int topN;
+  private final long leadMillis;
+  private final long permitMillis;
+  private final ScheduledExecutorService executor;
+  private final LongSupplier clock;
+  // path -> the expiry a refresh of the forecast was scheduled for
+  private final Map<String, Long> scheduled = new ConcurrentHashMap<>();
+  private long nextPermitAt;
+  // refreshes holding a permit that is not due yet
+  private int waiting;
+  private final AtomicLong refreshes = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong throttled = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+  private final AtomicBoolean started = new AtomicBoolean();
+
+  /**
+   * Creates a scheduler that runs its refreshes on two daemon threads of its own.
+   *
+   * @param cache the cache whose forecasts to refresh
+   * @param nws the client to send refreshes through
+   * @param topN the most forecasts to schedule per period
+   * @param leadMillis how long before a forecast expires it may be refreshed
+   * @param perSecond the most refreshes to send per second
+   */
+  public RefreshScheduler(ForecastCache cache, NWSClient nws, int topN, long leadMillis,
+      double perSecond) {
+    this(cache, nws, topN, leadMillis, perSecond, newExecutor(), System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a scheduler that runs its refreshes on the given executor and reads the time in
+   * milliseconds from the given clock.
+   */
+  public RefreshScheduler(ForecastCache cache, NWSClient nws, int topN, long leadMillis,
+      double perSecond, ScheduledExecutorService executor, LongSupplier clock) {
+    this.cache = cache;
+    this.nws = nws;
+    this.topN = topN;
+    this.leadMillis = leadMillis;
+    this.permitMillis = Math.max(1, Math.round(1000 / perSecond));
+    this.executor = executor;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts looking for forecasts to refresh every period. A scheduler that was started already is
+   * left as it is.
+   *
+   * @param periodMillis the time between looks, which should be well under the lead time
+   */
+  public void start(long periodMillis) {
+    if (!this.started.compareAndSet(false, true)) {
+      return;
+    }
+    this.executor.scheduleWithFixedDelay(this::tick, periodMillis, periodMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Schedules refreshes of the most popular forecasts that expire within the lead time and are not
+   * scheduled for that expiry yet.
+   *
+   * @return the number of refreshes scheduled
+   */
+  public int tick() {
+    long now = this.clock.getAsLong();
+    this.scheduled.values().removeIf(freshUntil -> freshUntil <= now);
+    int count = 0;
+    for (ForecastCache.Expiring expiring :
+        this.cache.hottestExpiring(this.topN, now + this.leadMillis)) {
+      if (Objects.equals(this.scheduled.put(expiring.path(), expiring.freshUntil()),
+          expiring.freshUntil())) {
+        continue;
+      }
+      long start = Math.max(now, expiring.freshUntil() - this.leadMillis);
+      long end = Math.max(start, expiring.freshUntil() - this.leadMillis / 4);
+      long at = start + ThreadLocalRandom.current().nextLong(end - start + 1);
+      this.executor.schedule(() -> this.run(expiring.path(), expiring.freshUntil()), at - now,
+          TimeUnit.MILLISECONDS);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Refreshes a forecast once it has a permit, waits for one, or skips the refresh if there is no
+   * permit to be had before the forecast expires.
+   */
+  private void run(String path, long freshUntil) {
+    long wait = this.reserve(freshUntil);
+    if (wait < 0) {
+      this.skipped.incrementAndGet();
+    } else if (wait > 0) {
+      this.throttled.incrementAndGet();
+      this.executor.schedule(() -> {
+        this.permitDue();
+        this.refresh(path);
+      }, wait, TimeUnit.MILLISECONDS);
+    } else {
+      this.refresh(path);
+    }
+  }
+
+  /**
+   * Takes the next permit, returning how long until it is due, or -1 without taking it if it is
+   * not due before the deadline or topN refreshes are already waiting for theirs.
+   */
+  private synchronized long reserve(long deadline) {
+    long now = this.clock.getAsLong();
+    long at = Math.max(now, this.nextPermitAt);
+    if (at >= deadline || (at > now && this.waiting >= this.topN)) {
+      return -1;
+    }
+    this.nextPermitAt = at + this.permitMillis;
+    if (at > now) {
+      this.waiting++;
+    }
+    return at - now;
+  }
+
+  private synchronized void permitDue() {
+    this.waiting--;
+  }
+
+  private void refresh(String path) {
+    try {
+      if (this.cache.refresh(path, this.nws).statusCode() == 200) {
+        this.refreshes.incrementAndGet();
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      // a refresh that fails leaves the forecast to be fetched by the next lookup, as without one
+    }
+    this.failures.incrementAndGet();
+  }
+
+  /**
+   * Gets the scheduler's metrics: the forecasts scheduled for their current expiry, the refreshes
+   * that renewed a forecast and the ones that failed, the refreshes that waited for a permit, and
+   * the ones skipped for want of one.
+   */
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("scheduled", this.scheduled.size());
+    metrics.put("refreshes", this.refreshes.get());
+    metrics.put("failures", this.failures.get());
+    metrics.put("throttled", this.throttled.get());
+    metrics.put("skipped", this.skipped.get());
+    return metrics;
+  }
+
+  /**
+   * Stops the scheduler's threads, dropping the refreshes not sent yet.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  private static ScheduledExecutorService newExecutor() {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newScheduledThreadPool(2, runnable -> {
+      Thread thread = new Thread(runnable, "weather-refresh-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -0,0 +1,120 @@
+package weather.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent loads of the same key into one. The first caller for a key runs the loader
+ * and publishes its result through a CompletableFuture; callers that arrive while it is running
+ * wait on that future instead of loading the key again, and get the same value or the same
+ * exception. The one exception they do not share is the first caller being interrupted, which says
+ * nothing about the key: they start the load over instead, one of them running it. Once the load
+ * finishes the key is forgotten, so a later caller loads it afresh (the caches this is used by keep
+ * the result themselves). A burst of requests therefore costs one load per distinct key rather
+ * than one per request.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the loaded values
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * Loads a key, or waits for the load of it that is already in flight.
+   *
+   * @param key the key to load
+   * @param loader loads the key, if no load of it is in flight
+   * @return the loaded value
+   * @throws Exception whatever the loader throws, or InterruptedException if interrupted while
+   *     waiting for another caller's load
+   */
+  public V get(K key, Callable<V> loader) throws Exception {
+    while (true) {
+      CompletableFuture<V> flight = new CompletableFuture<>();
+      CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, flight);
+      if (existing == null) {
+        return this.load(key, flight, loader);
+      }
+      this.coalesced.incrementAndGet();
+      try {
+        return await(existing);
+      } catch (LeaderInterruptedException e) {
+        // this caller did not wait on a load after all
+        this.coalesced.decrementAndGet();
+      }
+    }
+  }
+
+  private V load(K key, CompletableFuture<V> flight, Callable<V> loader) throws Exception {
+    this.loads.incrementAndGet();
+    try {
+      V value = loader.call();
+      flight.complete(value);
+      return value;
+    } catch (Throwable e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Gets the number of loads that ran.
+   */
+  public long loads() {
+    return this.loads.get();
+  }
+
+  /**
+   * Gets the number of calls that waited on another caller's load instead of running their own.
+   */
+  public long coalesced() {
+    return this.coalesced.get();
+  }
+
+  /**
+   * Gets the number of keys being loaded right now.
+   */
+  public int inFlight() {
+    return this.inFlight.size();
+  }
+
+  /**
+   * Waits for a load and passes on the exception it failed with, if it failed, except that a load
+   * whose caller was interrupted is a LeaderInterruptedException.
+   */
+  private static <V> V await(CompletableFuture<V> flight) throws Exception {
+    try {
+      return flight.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof InterruptedException) {
+        throw new LeaderInterruptedException();
+      }
+      if (cause instanceof Exception exception) {
+        throw exception;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Thrown to a waiting caller when the load it waited on was interrupted, so that it loads again.
+   */
+  private static class LeaderInterruptedException extends Exception {
+
+    LeaderInterruptedException() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package weather.upstream;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A circuit breaker for calls to an upstream service. While the breaker is closed every call goes
+ * through; after a number of failures in a row it opens, and calls are refused at once instead of
+ * waiting on a service that is down. Once it has been open for a while it lets a single trial call
+ * through (half open): if the trial succeeds the breaker closes again, and if it fails the breaker
+ * stays open for another period.
+ *
+ * <p>Each allowed call is given a ticket naming the breaker's state at the time, which it reports
+ * its outcome with. The outcome of a call that started before the state last changed says nothing
+ * about the state since, so it is ignored: a slow call that began while the breaker was closed can
+ * neither close an open breaker by succeeding nor open it again by failing.
+ */
+public class CircuitBreaker {
+
+  /**
+   * The states of a breaker.
+   */
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  /**
+   * Returned by tryAcquire for a call that is refused.
+   */
+  public static final long REFUSED = -1;
+
+  private final int failureThreshold;
+  private final long openMillis;
+  private final LongSupplier clock;
+  private State state = State.CLOSED;
+  // bumped on every change of state, and handed to the calls as their tickets
+  private long generation;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean trialInFlight;
+  private long opens;
+  private long rejected;
+
+  /**
+   * Creates a closed breaker.
+   *
+   * @param failureThreshold the failures in a row that open the breaker
+   * @param openMillis how long the breaker stays open before letting a trial call through
+   */
+  public CircuitBreaker(int failureThreshold, long openMillis) {
+    this(failureThreshold, openMillis, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a closed breaker that reads the time in milliseconds from the given clock.
+   */
+  public CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * Asks to make a call. A caller that is allowed must report how the call went with onSuccess,
+   * onFailure or release, passing the ticket it was given.
+   *
+   * @return the call's ticket, or REFUSED if the call may not go ahead
+   */
+  public synchronized long tryAcquire() {
+    if (this.state == State.OPEN && this.clock.getAsLong() - this.openedAt >= this.openMillis) {
+      this.moveTo(State.HALF_OPEN);
+    }
+    if (this.state == State.CLOSED || (this.state == State.HALF_OPEN && !this.trialInFlight)) {
+      this.trialInFlight = this.state == State.HALF_OPEN;
+      return this.generation;
+    }
+    this.rejected++;
+    return REFUSED;
+  }
+
+  /**
+   * Records a successful call, which closes the breaker if it was the trial call, unless the state
+   * changed since the call started.
+   */
+  public synchronized void onSuccess(long ticket) {
+    if (ticket != this.generation) {
+      return;
+    }
+    this.consecutiveFailures = 0;
+    if (this.state == State.HALF_OPEN) {
+      this.trialInFlight = false;
+      this.moveTo(State.CLOSED);
+    }
+  }
+
+  /**
+   * Records a failed call, which opens the breaker if it was the trial call or one failure too
+   * many, unless the state changed since the call started.
+   */
+  public synchronized void onFailure(long ticket) {
+    if (ticket != this.generation) {
+      return;
+    }
+    this.consecutiveFailures++;
+    if (this.state == State.HALF_OPEN || (this.state == State.CLOSED
+        && this.consecutiveFailures >= this.failureThreshold)) {
+      this.trialInFlight = false;
+      this.moveTo(State.OPEN);
+      this.openedAt = this.clock.getAsLong();
+      this.opens++;
+    }
+  }
+
+  /**
+   * Records a call that ended without saying anything about the service, such as an interrupted
+   * one, so that a trial call can be made again.
+   */
+  public synchronized void release(long ticket) {
+    if (ticket == this.generation && this.state == State.HALF_OPEN) {
+      this.trialInFlight = false;
+    }
+  }
+
+  private void moveTo(State state) {
+    this.state = state;
+    this.generation++;
+  }
+
+  /**
+   * Gets the breaker's state.
+   */
+  public synchronized State state() {
+    return this.state;
+  }
+
+  /**
+   * Gets the breaker's metrics: its state, the failures in a row, how often it opened, and the
+   * calls it refused.
+   */
+  public synchronized Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("state", this.state.name().toLowerCase(Locale.ROOT));
+    metrics.put("consecutiveFailures", this.consecutiveFailures);
+    metrics.put("opens", this.opens);
+    metrics.put("rejected", this.rejected);
+    return metrics;
+  }
+}
@@ -0,0 +1,13 @@
+package weather.upstream;
+
+import java.io.IOException;
+
+/**
+ * Exception to be thrown when a call to the NWS API is refused because its circuit breaker is open.
+ */
+public class CircuitOpenException extends IOException {
+
+  public CircuitOpenException(String errorMessage) {
+    super(errorMessage);
+  }
+}
@@ -0,0 +1,54 @@
+package weather.upstream;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent calls to an upstream service in a ring buffer, so that
+ * percentiles of the recent latency can be read, such as the p95 that hedged requests wait for.
+ */
+public class LatencyTracker {
+
+  private final long[] samples;
+  private long count;
+
+  /**
+   * Creates a tracker of the given number of most recent latencies.
+   */
+  public LatencyTracker(int capacity) {
+    this.samples = new long[capacity];
+  }
+
+  /**
+   * Records the latency of a call.
+   */
+  public synchronized void record(long nanos) {
+    this.samples[(int) (this.count % this.samples.length)] = nanos;
+    this.count++;
+  }
+
+  /**
+   * Gets the number of latencies recorded so far, including ones that have since been replaced.
+   */
+  public synchronized long count() {
+    return this.count;
+  }
+
+  /**
+   * Gets a percentile of the recent latencies, by the nearest-rank method.
+   *
+   * @param percentile the percentile, between 0 and 1
+   * @return the latency in nanoseconds, or 0 if none were recorded
+   */
+  public long percentile(double percentile) {
+    long[] sorted;
+    synchronized (this) {
+      sorted = Arrays.copyOf(this.samples, (int) Math.min(this.count, this.samples.length));
+    }
+    if (sorted.length == 0) {
+      return 0;
+    }
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+}
@@ -0,0 +1,126 @@
+package csvStatstest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.factories.StringFactory;
+import csv.stats.CSVStats;
+import csv.stats.CSVStatsCollector;
+import csv.stats.ColumnStats;
+import csv.stats.HyperLogLog;
+import csv.utility.CSVParser;
+import java.io.FileReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing suite for the single pass CSV stats and their parallel collection.
+ */
+public class TestCSVStats {
+
+  @TempDir
+  Path dataDir;
+
+  /**
+   * Tests that the word, character, row and column counts match counting the parsed rows, and the
+   * column stats of the star data.
+   * @throws Exception if reading fails
+   */
+  @Test
+  public void testTenStarCounts() throws Exception {
+    CSVParser<List<String>> parser = new CSVParser<>(new StringFactory(), false);
+    parser.setReader(new FileReader("data/ten-star.csv"));
+    parser.parseCSV();
+    long words = 0;
+    long characters = 0;
+    int columns = 0;
+    for (List<String> row : parser.getListOfRows()) {
+      for (String cell : row) {
+        if (!cell.isEmpty()) {
+          characters += cell.length();
+          words += cell.split(" ").length;
+        }
+      }
+      columns = Math.max(columns, row.size());
+    }
+
+    CSVStats stats = CSVStatsCollector.collect(Paths.get("data/ten-star.csv"), 4);
+    assertEquals(words, stats.getWords());
+    assertEquals(characters, stats.getCharacters());
+    assertEquals(parser.getListOfRows().size(), stats.getRows());
+    assertEquals(columns, stats.getColumns());
+
+    // the header row is a string in every column
+    ColumnStats id = stats.getColumn(0);
+    assertEquals(0, id.getNulls());
+    assertEquals(10, id.getNumeric());
+    assertEquals(0.0, id.getMin());
+    assertEquals(118721.0, id.getMax());
+    assertEquals(11, id.getDistinct());
+    ColumnStats name = stats.getColumn(1);
+    assertNull(name.getMean());
+    assertTrue(name.getNulls() > 0);
+  }
+
+  /**
+   * Tests that collecting a file in several chunks gives the same stats as one chunk, including
+   * for columns that only appear part way through the file.
+   * @throws Exception if reading fails
+   */
+  @Test
+  public void testChunksMerge() throws Exception {
+    Path csv = this.dataDir.resolve("big.csv");
+    try (Writer writer = Files.newBufferedWriter(csv)) {
+      for (int i = 0; i < 200_000; i++) {
+        writer.write(i + ",name " + (i % 1000) + "," + (i % 7) * 0.5);
+        writer.write(i > 150_000 ? ",extra\r\n" : "\n");
+      }
+    }
+    CSVStats one = CSVStatsCollector.collect(csv, 1);
+    CSVStats many = CSVStatsCollector.collect(csv, 8);
+    assertEquals(200_000, many.getRows());
+    assertEquals(one.getWords(), many.getWords());
+    assertEquals(one.getCharacters(), many.getCharacters());
+    assertEquals(4, many.getColumns());
+    for (int column = 0; column < 4; column++) {
+      ColumnStats a = one.getColumn(column);
+      ColumnStats b = many.getColumn(column);
+      assertEquals(a.getNulls(), b.getNulls());
+      assertEquals(a.getMin(), b.getMin());
+      assertEquals(a.getMax(), b.getMax());
+      assertEquals(a.getDistinct(), b.getDistinct());
+    }
+    assertEquals(150_001, many.getColumn(3).getNulls());
+    assertEquals(1.5, many.getColumn(2).getMean(), 1e-3);
+  }
+
+  /**
+   * Tests that the HyperLogLog estimate stays within a few standard errors of the true count.
+   */
+  @Test
+  public void testHyperLogLogAccuracy() {
+    HyperLogLog small = new HyperLogLog(12);
+    HyperLogLog large = new HyperLogLog(12);
+    for (long i = 0; i < 100_000; i++) {
+      long hash = mix(i);
+      (i < 1_000 ? small : large).add(hash);
+      large.add(hash);
+    }
+    assertEquals(1_000, small.estimate(), 30);
+    assertEquals(100_000, large.estimate(), 5_000);
+    small.merge(large);
+    assertEquals(large.estimate(), small.estimate());
+  }
+
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+}
@@ -0,0 +1,108 @@
+package csvStatstest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import csv.CSVStatsHandler;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Spark;
+
+/**
+ * Testing suite for the CSVStats API handler.
+ */
+public class TestCSVStatsAPIHandler {
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  /**
+   * Before each test runs, restart Spark server for the csvstats endpoint.
+   */
+  @BeforeEach
+  public void setup() {
+    Spark.get("/csvstats", new CSVStatsHandler());
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/csvstats");
+    Spark.awaitStop();
+  }
+
+  /**
+   * Helper method to request an API call and read its JSON body into a Map.
+   * @param apiCall the call string, including endpoint
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> request(String apiCall) throws IOException {
+    URL requestURL = new URL("http://localhost:" + Spark.port() + "/" + apiCall);
+    HttpURLConnection clientConnection = (HttpURLConnection) requestURL.openConnection();
+    clientConnection.connect();
+    assertEquals(200, clientConnection.getResponseCode());
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    Map<String, Object> body =
+        adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    return body;
+  }
+
+  /**
+   * Tests that a missing filename is a bad request and a file outside the data folder, or one that
+   * does not exist, is a datasource error.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIInvalidFiles() throws IOException {
+    assertEquals("error_bad_request", request("csvstats").get("errorMessage"));
+    assertEquals("error_datasource",
+        request("csvstats?filename=pom.xml").get("errorMessage"));
+    assertEquals("error_datasource",
+        request("csvstats?filename=data/missing.csv").get("errorMessage"));
+  }
+
+  /**
+   * Tests the counts and column stats returned for the star data.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIValidCSV() throws IOException {
+    Map<String, Object> body = request("csvstats?filename=data/ten-star.csv");
+    assertEquals("success", body.get("result"));
+    assertEquals(11.0, body.get("rows"));
+    assertEquals(5.0, body.get("columns"));
+    List<?> columns = (List<?>) body.get("columnStats");
+    assertEquals(5, columns.size());
+    Map<?, ?> x = (Map<?, ?>) columns.get(2);
+    assertEquals(2.0, x.get("column"));
+    assertEquals(10.0, x.get("numeric"));
+    assertEquals(11.0, x.get("distinct"));
+  }
+}
@@ -0,0 +1,61 @@
+package getCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import csv.columnar.CSVColumns;
+import csv.columnar.ColumnSort;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for the cached column sort orders behind getcsv's sort and top parameters.
+ */
+public class TestColumnSort {
+
+  private static final List<List<String>> ROWS = List.of(
+      List.of("a", "10"), List.of("b", "9.5"), List.of("c", "Name"), List.of("d"),
+      List.of("e", "-3"), List.of("f", "10"), List.of("g", "Apple"));
+
+  /**
+   * Tests that numbers sort numerically before text and missing cells sort last in both directions,
+   * and equal cells keep their order.
+   */
+  @Test
+  public void testPermutation() {
+    CSVColumns columns = new CSVColumns(ROWS);
+    assertArrayEquals(new int[] {4, 1, 0, 5, 6, 2, 3}, columns.sort(1, false).permutation());
+    assertArrayEquals(new int[] {0, 5, 1, 4, 2, 6, 3}, columns.sort(1, true).permutation());
+    assertSame(columns.sort(1, true), columns.sort(1, true));
+  }
+
+  /**
+   * Tests that top-k from the bounded heap, and from the cached permutation on a repeated request,
+   * match the start of a full sort on random data.
+   */
+  @Test
+  public void testTopMatchesSort() {
+    Random random = new Random(320);
+    List<List<String>> rows = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      rows.add(i % 50 == 0 ? List.of() : List.of(String.valueOf(random.nextInt(1_000))));
+    }
+    Integer[] expected = new Integer[rows.size()];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i;
+    }
+    Arrays.sort(expected, Comparator.comparingInt((Integer row) ->
+        rows.get(row).isEmpty() ? Integer.MAX_VALUE : -Integer.parseInt(rows.get(row).get(0))));
+    int[] full = Arrays.stream(expected).mapToInt(Integer::intValue).toArray();
+
+    ColumnSort sort = new CSVColumns(rows).sort(0, true);
+    assertArrayEquals(Arrays.copyOf(full, 25), sort.top(25));
+    assertArrayEquals(Arrays.copyOf(full, 40), sort.top(40));
+    assertArrayEquals(full, sort.permutation());
+    assertArrayEquals(full, sort.top(10_000));
+  }
+}
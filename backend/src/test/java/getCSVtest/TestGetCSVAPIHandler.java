@@ -2,16 +2,20 @@ package getCSVtest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
-import csv.CSVDataHolder.CSVDataHolderRecord;
+import com.squareup.moshi.Types;
+import csv.CSVDataHolder;
+import csv.CSVDataset;
 import csv.GetCSVHandler;
 import responses.FailureResponse.FailureRecord;
-import responses.MapSerializer.MapRecord;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import okio.Buffer;
@@ -40,8 +44,7 @@ public class TestGetCSVAPIHandler {
    */
   @BeforeEach
   public void setup() {
-    CSVDataHolderRecord.filepath = null;
-    CSVDataHolderRecord.csvData = null;
+    CSVDataHolder.registry.clear();
 
     Spark.get("/getcsv", new GetCSVHandler());
     Spark.init();
@@ -119,35 +122,147 @@ public class TestGetCSVAPIHandler {
   }
 
   /**
-   * Test for when a valid CSV file is loaded before. There should be 3 things shown to the
-   * user -- successful result, name of filepath, and the CSV data.
+   * Helper method to read the streamed getcsv response body into a Map.
+   * @param clientConnection the connection to read from
+   * @return the deserialized response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> readBody(HttpURLConnection clientConnection)
+      throws IOException {
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    return adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+  }
+
+  /**
+   * Test for when a valid CSV file is loaded before. There should be 5 things shown to the
+   * user -- successful result, name of filepath, the offset and total number of rows, and the
+   * CSV data.
    * @throws IOException if the connection fails
    */
   @Test
   public void testAPIValidCSV() throws IOException {
-    CSVDataHolderRecord.filepath = "data/testCSV/two-rows.csv";
-    CSVDataHolderRecord.csvData = this.setUpCSVDataHelper();
+    CSVDataHolder.registry.put(
+        new CSVDataset("data/testCSV/two-rows.csv", this.setUpCSVDataHelper()));
     HttpURLConnection clientConnection = tryRequest("getcsv");
     assertEquals(200, clientConnection.getResponseCode());
-    Moshi moshi = new Moshi.Builder().build();
-    MapRecord response1 = moshi.adapter(MapRecord.class).fromJson(
-        new Buffer().readFrom(clientConnection.getInputStream()));
-    assertEquals(3, MapRecord.results.size());
-    assertEquals("success", MapRecord.results.get("result"));
-    assertEquals("data/testCSV/two-rows.csv", MapRecord.results.get("filepath"));
-    assertEquals("[[fourteen, test,  , panda]]", MapRecord.results.get("data").toString());
+    Map<String, Object> response1 = readBody(clientConnection);
+    assertEquals(5, response1.size());
+    assertEquals("success", response1.get("result"));
+    assertEquals("data/testCSV/two-rows.csv", response1.get("filepath"));
+    assertEquals("[[fourteen, test,  , panda]]", response1.get("data").toString());
 
     // if the csv file is updated (loadcsv is called again with valid csv file)
-    CSVDataHolderRecord.filepath = "data/testCSV/edge-empty.csv";
-    CSVDataHolderRecord.csvData = new ArrayList<>();
+    CSVDataHolder.registry.put(new CSVDataset("data/testCSV/edge-empty.csv", new ArrayList<>()));
     clientConnection = tryRequest("getcsv");
     assertEquals(200, clientConnection.getResponseCode());
-    MapRecord response2 = moshi.adapter(MapRecord.class).fromJson(
+    Map<String, Object> response2 = readBody(clientConnection);
+    assertEquals(5, response2.size());
+    assertEquals("success", response2.get("result"));
+    assertEquals("data/testCSV/edge-empty.csv", response2.get("filepath"));
+    assertEquals("[]", response2.get("data").toString());
+    clientConnection.disconnect();
+  }
+
+  /**
+   * Test for when a page of rows and a subset of columns is requested. Only the rows in the page
+   * and the cells in the requested columns should be returned, and a page past the end of the
+   * data should be empty.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIPagedCSV() throws IOException {
+    List<List<String>> rows = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      rows.add(List.of("row" + i, "a" + i, "b" + i));
+    }
+    CSVDataHolder.registry.put(new CSVDataset("data/ten-rows.csv", rows));
+    HttpURLConnection clientConnection = tryRequest("getcsv?offset=3&limit=2&columns=2,0");
+    assertEquals(200, clientConnection.getResponseCode());
+    Map<String, Object> response = readBody(clientConnection);
+    assertEquals(3.0, response.get("offset"));
+    assertEquals(10.0, response.get("total"));
+    assertEquals("[[b3, row3], [b4, row4]]", response.get("data").toString());
+
+    clientConnection = tryRequest("getcsv?offset=20&limit=5");
+    assertEquals("[]", readBody(clientConnection).get("data").toString());
+
+    clientConnection = tryRequest("getcsv?offset=-1");
+    FailureRecord failure = new Moshi.Builder().build().adapter(FailureRecord.class).fromJson(
+        new Buffer().readFrom(clientConnection.getInputStream()));
+    assertEquals("error_bad_request", failure.errorMessageForTest);
+    clientConnection.disconnect();
+  }
+
+  /**
+   * Test for when several CSV files are loaded. Loading a second file should not unload the first,
+   * and the filename parameter should select which one is returned.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPISelectsCSVByFilename() throws IOException {
+    CSVDataHolder.registry.put(new CSVDataset("data/first.csv", List.of(List.of("first"))));
+    CSVDataHolder.registry.put(new CSVDataset("data/second.csv", List.of(List.of("second"))));
+    HttpURLConnection clientConnection = tryRequest("getcsv?filename=data/first.csv");
+    assertEquals("[[first]]", readBody(clientConnection).get("data").toString());
+    clientConnection = tryRequest("getcsv");
+    assertEquals("[[second]]", readBody(clientConnection).get("data").toString());
+    clientConnection = tryRequest("getcsv?filename=data/third.csv");
+    FailureRecord failure = new Moshi.Builder().build().adapter(FailureRecord.class).fromJson(
         new Buffer().readFrom(clientConnection.getInputStream()));
-    assertEquals(3, MapRecord.results.size());
-    assertEquals("success", MapRecord.results.get("result"));
-    assertEquals("data/testCSV/edge-empty.csv", MapRecord.results.get("filepath"));
-    assertEquals("[]", MapRecord.results.get("data").toString());
+    assertEquals("error_bad_request", failure.errorMessageForTest);
+    clientConnection.disconnect();
+  }
+
+  /**
+   * Test for sorting by a column, in both directions, with top-k and paging on the sorted rows, and
+   * for sorts by a bad direction or a column no row has.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPISortedCSV() throws IOException {
+    CSVDataHolder.registry.put(new CSVDataset("data/stars.csv", List.of(
+        List.of("Sol", "0"), List.of("Rigel", "264"), List.of("Vega", "7.68"),
+        List.of("Sirius", "2.64"))));
+    HttpURLConnection clientConnection = tryRequest("getcsv?sort=1&columns=0");
+    assertEquals("[[Sol], [Sirius], [Vega], [Rigel]]",
+        readBody(clientConnection).get("data").toString());
+    clientConnection = tryRequest("getcsv?sort=1:desc&top=2&columns=0");
+    Map<String, Object> body = readBody(clientConnection);
+    assertEquals("[[Rigel], [Vega]]", body.get("data").toString());
+    assertEquals(4.0, body.get("total"));
+    clientConnection = tryRequest("getcsv?sort=0&top=3&offset=1&limit=1");
+    assertEquals("[[Sirius, 2.64]]", readBody(clientConnection).get("data").toString());
+    for (String badSort : new String[] {"1:up", "2", "7:desc"}) {
+      clientConnection = tryRequest("getcsv?sort=" + badSort);
+      FailureRecord failure = new Moshi.Builder().build().adapter(FailureRecord.class).fromJson(
+          new Buffer().readFrom(clientConnection.getInputStream()));
+      assertEquals("error_bad_request", failure.errorMessageForTest, badSort);
+      clientConnection.disconnect();
+    }
+  }
+
+  /**
+   * Test for sorting a CSV with a header, which stays the first row whether or not it would sort
+   * among the top rows, while top and paging count the rows below it.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPISortedCSVWithHeader() throws IOException {
+    CSVDataHolder.registry.put(new CSVDataset("data/stars.csv", List.of(
+        List.of("name", "distance"), List.of("Sol", "0"), List.of("Rigel", "264"),
+        List.of("Vega", "7.68"), List.of("Sirius", "2.64"))));
+    HttpURLConnection clientConnection = tryRequest("getcsv?sort=1&header=true&columns=0");
+    assertEquals("[[name], [Sol], [Sirius], [Vega], [Rigel]]",
+        readBody(clientConnection).get("data").toString());
+    clientConnection = tryRequest("getcsv?sort=1:desc&top=2&header=true&columns=0");
+    assertEquals("[[name], [Rigel], [Vega]]", readBody(clientConnection).get("data").toString());
+    // "name" sorts before every other name in descending order
+    clientConnection = tryRequest("getcsv?sort=0:desc&top=2&header=true&columns=0");
+    assertEquals("[[name], [Vega], [Sol]]", readBody(clientConnection).get("data").toString());
+    clientConnection = tryRequest("getcsv?sort=0&header=true&offset=1&limit=2&columns=0");
+    assertEquals("[[Rigel], [Sirius]]", readBody(clientConnection).get("data").toString());
     clientConnection.disconnect();
   }
-}
\ No newline at end of file
+}
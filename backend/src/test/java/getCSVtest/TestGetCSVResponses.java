@@ -2,7 +2,6 @@ package getCSVtest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
-import csv.CSVDataHolder.CSVDataHolderRecord;
 import csv.factories.FactoryFailureException;
 import csv.factories.StringFactory;
 import csv.utility.CSVParser;
@@ -38,13 +37,13 @@ public class TestGetCSVResponses {
   @Test
   public void getValidCSVFile() throws FactoryFailureException, FileNotFoundException {
     MapRecord.results.put("result", "success");
-    CSVDataHolderRecord.filepath = "data/stars/ten-star.csv";
-    MapRecord.results.put("filepath", CSVDataHolderRecord.filepath);
+    String filepath = "data/stars/ten-star.csv";
+    MapRecord.results.put("filepath", filepath);
     CSVParser<List<String>> parser = new CSVParser<>(new StringFactory(), true);
-    parser.setReader(new FileReader(CSVDataHolderRecord.filepath));
+    parser.setReader(new FileReader(filepath));
     parser.parseCSV();
-    CSVDataHolderRecord.csvData = parser.getListOfRows();
-    MapRecord.results.put("data", CSVDataHolderRecord.csvData);
+    List<List<String>> csvData = parser.getListOfRows();
+    MapRecord.results.put("data", csvData);
     String output = "{\"result\":\"success\",\"filepath\":\"data/stars/ten-star.csv\","
         + "\"data\":[[\"0\",\"Sol\",\"0\",\"0\",\"0\"],[\"1\",\"\",\"282.43485\","
         + "\"0.00449\",\"5.36884\"],[\"2\",\"\",\"43.04329\",\"0.00285\",\"-15.24144\"],"
@@ -67,13 +66,13 @@ public class TestGetCSVResponses {
   @Test
   public void getBlankCSVFile() throws FactoryFailureException, FileNotFoundException {
     MapRecord.results.put("result", "success");
-    CSVDataHolderRecord.filepath = "data/testCSV/blank.csv";
-    MapRecord.results.put("filepath", CSVDataHolderRecord.filepath);
+    String filepath = "data/testCSV/blank.csv";
+    MapRecord.results.put("filepath", filepath);
     CSVParser<List<String>> parser = new CSVParser<>(new StringFactory(), true);
-    parser.setReader(new FileReader(CSVDataHolderRecord.filepath));
+    parser.setReader(new FileReader(filepath));
     parser.parseCSV();
-    CSVDataHolderRecord.csvData = parser.getListOfRows();
-    MapRecord.results.put("data", CSVDataHolderRecord.csvData);
+    List<List<String>> csvData = parser.getListOfRows();
+    MapRecord.results.put("data", csvData);
     String output = "{\"result\":\"success\",\"filepath\":\"data/testCSV/blank.csv\","
         + "\"data\":[]}";
     assertEquals(3, MapRecord.results.size());
@@ -89,13 +88,13 @@ public class TestGetCSVResponses {
   @Test
   public void getMultiColumnCSVFile() throws FactoryFailureException, FileNotFoundException {
     MapRecord.results.put("result", "success");
-    CSVDataHolderRecord.filepath = "data/testCSV/one-empty-col.csv";
-    MapRecord.results.put("filepath", CSVDataHolderRecord.filepath);
+    String filepath = "data/testCSV/one-empty-col.csv";
+    MapRecord.results.put("filepath", filepath);
     CSVParser<List<String>> parser = new CSVParser<>(new StringFactory(), true);
-    parser.setReader(new FileReader(CSVDataHolderRecord.filepath));
+    parser.setReader(new FileReader(filepath));
     parser.parseCSV();
-    CSVDataHolderRecord.csvData = parser.getListOfRows();
-    MapRecord.results.put("data", CSVDataHolderRecord.csvData);
+    List<List<String>> csvData = parser.getListOfRows();
+    MapRecord.results.put("data", csvData);
     String output = "{\"result\":\"success\",\"filepath\":\"data/testCSV/one-empty-col.csv\","
         + "\"data\":[[\"this\",\"\",\"col\",\"empty\"],[\"nothing\",\"\",\"in\",\"here\"]]}";
     assertEquals(3, MapRecord.results.size());
@@ -0,0 +1,130 @@
+package joinCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.join.HashJoin;
+import csv.join.JoinType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing suite for HashJoin, in memory and spilled to disk.
+ */
+public class TestHashJoin {
+
+  private static final List<List<String>> STARS = List.of(
+      List.of("Sol", "G"), List.of("Proxima", "M"), List.of("Sirius", "A"),
+      List.of("Vega", "A"), List.of("Nameless"));
+  private static final List<List<String>> CLASSES = List.of(
+      List.of("A", "white"), List.of("G", "yellow"), List.of("A", "blue-white"));
+
+  @TempDir
+  Path spillDir;
+
+  private static List<String> join(HashJoin joiner, List<List<String>> left, int leftColumn,
+      List<List<String>> right, int rightColumn, JoinType type) throws Exception {
+    List<String> pairs = new ArrayList<>();
+    long count = joiner.run(left, leftColumn, right, rightColumn, type,
+        (l, r) -> pairs.add(l + ":" + r));
+    assertEquals(pairs.size(), count);
+    pairs.sort(null);
+    return pairs;
+  }
+
+  /**
+   * Tests inner and left joins with the table built over either side, including duplicate keys and
+   * a row too short to have the key column.
+   * @throws Exception if the join fails
+   */
+  @Test
+  public void testJoinTypes() throws Exception {
+    HashJoin joiner = new HashJoin(Long.MAX_VALUE, 2, this.spillDir);
+    // the right side is smaller, so the table is built over it
+    assertEquals(List.of("0:1", "2:0", "2:2", "3:0", "3:2"),
+        join(joiner, STARS, 1, CLASSES, 0, JoinType.INNER));
+    assertEquals(List.of("0:1", "1:-1", "2:0", "2:2", "3:0", "3:2", "4:-1"),
+        join(joiner, STARS, 1, CLASSES, 0, JoinType.LEFT));
+    // the left side is smaller, so unmatched left rows are found from the matched set
+    assertEquals(List.of("0:2", "0:3", "1:0", "2:2", "2:3"),
+        join(joiner, CLASSES, 0, STARS, 1, JoinType.INNER));
+    assertEquals(List.of("0:2", "0:3", "1:0", "2:2", "2:3"),
+        join(joiner, CLASSES, 0, STARS, 1, JoinType.LEFT));
+    assertEquals(List.of("0:-1", "1:-1", "2:-1"),
+        join(joiner, CLASSES, 0, List.of(), 0, JoinType.LEFT));
+  }
+
+  /**
+   * Tests that a join over budget is partitioned, gives the same pairs as one in memory, and
+   * deletes its spill files.
+   * @throws Exception if the join fails
+   */
+  @Test
+  public void testSpilledJoinMatchesInMemory() throws Exception {
+    List<List<String>> orders = new ArrayList<>();
+    int matching = 0;
+    for (int i = 0; i < 30_000; i++) {
+      // some orders name customers that do not exist
+      int customer = i * 7 % 12_000;
+      orders.add(List.of("order" + i, "customer" + customer));
+      matching += customer < 10_000 ? 1 : 0;
+    }
+    List<List<String>> customers = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      customers.add(List.of("customer" + i, "name" + i));
+    }
+    HashJoin inMemory = new HashJoin(Long.MAX_VALUE, 4, this.spillDir);
+    HashJoin spilling = new HashJoin(20_000, 4, this.spillDir);
+    assertEquals(1, inMemory.partitions(customers.size()));
+    assertTrue(spilling.partitions(customers.size()) > 1);
+
+    for (JoinType type : JoinType.values()) {
+      List<String> expected = join(inMemory, orders, 1, customers, 0, type);
+      assertEquals(expected, join(spilling, orders, 1, customers, 0, type));
+      assertEquals(expected.stream().map(p -> p.split(":")).map(p -> p[1] + ":" + p[0])
+              .filter(p -> !p.startsWith("-1")).sorted().toList(),
+          join(spilling, customers, 0, orders, 1, JoinType.INNER));
+    }
+    assertEquals(matching, join(inMemory, orders, 1, customers, 0, JoinType.INNER).size());
+    try (Stream<Path> left = Files.list(this.spillDir)) {
+      assertEquals(0, left.count());
+    }
+  }
+
+  /**
+   * Tests that a key matching far more build rows than a probe task holds pairs for still gives
+   * every pair, in the probe side's order, with the rows around it.
+   * @throws Exception if the join fails
+   */
+  @Test
+  public void testSkewedKey() throws Exception {
+    List<List<String>> left = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      left.add(List.of(i % 1000 == 0 ? "rare" : "common", String.valueOf(i)));
+    }
+    List<List<String>> right = new ArrayList<>();
+    for (int i = 0; i < 100_001; i++) {
+      right.add(List.of(i == 1 || i == 3 ? "common" : i == 2 ? "rare" : "none" + i));
+    }
+    // the left side is smaller, so the right rows probe a table where "common" has 99,900 rows
+    List<long[]> pairs = new ArrayList<>();
+    long count = new HashJoin(Long.MAX_VALUE, 2, this.spillDir).run(left, 0, right, 0,
+        JoinType.INNER, (l, r) -> pairs.add(new long[] {l, r}));
+    assertEquals(99_900 * 2 + 100, count);
+    assertEquals(count, pairs.size());
+    int at = 0;
+    for (int probe : new int[] {1, 2, 3}) {
+      int last = -1;
+      for (int n = probe == 2 ? 100 : 99_900; n > 0; n--, at++) {
+        assertEquals(probe, pairs.get(at)[1]);
+        assertTrue(pairs.get(at)[0] > last);
+        last = (int) pairs.get(at)[0];
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package joinCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import csv.CSVDataHolder;
+import csv.CSVDataset;
+import csv.JoinCSVHandler;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Spark;
+
+/**
+ * Testing suite for the JoinCSV API handler.
+ */
+public class TestJoinCSVAPIHandler {
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  /**
+   * Before each test runs, load two small CSVs and restart Spark server for the joincsv endpoint.
+   */
+  @BeforeEach
+  public void setup() {
+    CSVDataHolder.registry.clear();
+    CSVDataHolder.registry.put(new CSVDataset("data/sales.csv", List.of(
+        List.of("east", "10"), List.of("west", "4"), List.of("north", "7"), List.of("east", "2"))));
+    CSVDataHolder.registry.put(new CSVDataset("data/regions.csv", List.of(
+        List.of("Boston", "east"), List.of("Seattle", "west"))));
+    Spark.get("/joincsv", new JoinCSVHandler());
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/joincsv");
+    Spark.awaitStop();
+  }
+
+  /**
+   * Helper method to request an API call and read its JSON body into a Map.
+   * @param apiCall the call string, including endpoint
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> request(String apiCall) throws IOException {
+    URL requestURL = new URL("http://localhost:" + Spark.port() + "/" + apiCall);
+    HttpURLConnection clientConnection = (HttpURLConnection) requestURL.openConnection();
+    clientConnection.connect();
+    assertEquals(200, clientConnection.getResponseCode());
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    Map<String, Object> body =
+        adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    return body;
+  }
+
+  /**
+   * Tests inner and left joins on different key columns of each side.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIJoin() throws IOException {
+    Map<String, Object> body =
+        request("joincsv?left=data/sales.csv&right=data/regions.csv&on=0:1");
+    assertEquals("success", body.get("result"));
+    assertEquals("inner", body.get("type"));
+    assertEquals(List.of(List.of("east", "10", "Boston", "east"),
+        List.of("west", "4", "Seattle", "west"), List.of("east", "2", "Boston", "east")),
+        body.get("data"));
+    assertEquals(3.0, body.get("rows"));
+
+    // the smaller left side is built, so rows come out in the order of the right side
+    body = request("joincsv?left=data/regions.csv&right=data/sales.csv&on=1:0&type=left");
+    assertEquals(List.of(List.of("Boston", "east", "east", "10"),
+        List.of("Seattle", "west", "west", "4"), List.of("Boston", "east", "east", "2")),
+        body.get("data"));
+
+    body = request("joincsv?left=data/sales.csv&right=data/regions.csv&on=0:1&type=left");
+    assertEquals(4.0, body.get("rows"));
+    assertEquals(Arrays.asList("north", "7", null, null), ((List<?>) body.get("data")).get(2));
+  }
+
+  /**
+   * Tests that missing or unloaded datasets, bad columns and bad join types are bad requests.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIBadJoins() throws IOException {
+    assertEquals("error_bad_request", request("joincsv?left=data/sales.csv&on=0")
+        .get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("joincsv?left=data/sales.csv&right=data/other.csv&on=0").get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("joincsv?left=data/sales.csv&right=data/regions.csv&on=x").get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("joincsv?left=data/sales.csv&right=data/regions.csv&on=0:1:2")
+            .get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("joincsv?left=data/sales.csv&right=data/regions.csv&on=0&type=outer")
+            .get("errorMessage"));
+  }
+}
@@ -0,0 +1,168 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.CSVDataset;
+import csv.CSVLoader;
+import csv.CSVRegistry;
+import csv.follow.AppendableRows;
+import csv.follow.CSVFollower;
+import csv.follow.CSVFollowers;
+import csv.intern.CellInterner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing suite for following CSV files that are being appended to.
+ */
+public class TestCSVFollower {
+
+  @TempDir
+  Path dataDir;
+
+  private static void append(Path csv, String text) throws Exception {
+    Files.writeString(csv, text, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Tests that a snapshot keeps its rows while more rows are appended across chunk boundaries.
+   */
+  @Test
+  public void testSnapshotsAreStable() {
+    AppendableRows rows = new AppendableRows(List.of(List.of("0")));
+    for (int i = 1; i < 5_000; i++) {
+      rows.append(List.of(String.valueOf(i)));
+    }
+    List<List<String>> before = rows.snapshot();
+    for (int i = 5_000; i < 50_000; i++) {
+      rows.append(List.of(String.valueOf(i)));
+    }
+    assertEquals(5_000, before.size());
+    assertEquals(50_000, rows.snapshot().size());
+    assertEquals(List.of("4999"), before.get(4_999));
+    assertEquals(List.of("49999"), rows.snapshot().get(49_999));
+  }
+
+  /**
+   * Tests that a partly written last line is held back until complete, that only appended bytes
+   * are parsed into new datasets, which extend the old ones' caches while old ones stay as they
+   * were, and that a truncated file stops being followed.
+   * @throws Exception if reading fails
+   */
+  @Test
+  public void testPollAppendsCompleteRecords() throws Exception {
+    Path csv = this.dataDir.resolve("growing.csv");
+    Files.writeString(csv, "a,1\nb,2\npart");
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    CSVDataset loaded = registry.load(csv.toString(),
+        () -> new CSVLoader(registry, false).load(csv.toString()));
+    assertEquals(3, loaded.getRows().size());
+
+    CSVFollower follower = new CSVFollower(registry, loaded, new CellInterner(64, 64, null));
+    CSVDataset complete = registry.get(csv.toString());
+    assertEquals("[[a, 1], [b, 2]]", complete.getRows().toString());
+    assertEquals(8, follower.getOffset());
+    complete.getIndex().column(1);
+    complete.getColumns().numeric(1);
+
+    append(csv, "ial,3\nc,");
+    assertTrue(follower.poll());
+    append(csv, "4\r\n");
+    assertTrue(follower.poll());
+    CSVDataset grown = registry.get(csv.toString());
+    assertEquals("[[a, 1], [b, 2], [partial, 3], [c, 4]]", grown.getRows().toString());
+    assertEquals(2, complete.getRows().size());
+    assertEquals(Files.size(csv), follower.getOffset());
+    assertTrue(grown.getEstimatedBytes() > complete.getEstimatedBytes());
+    // the caches built before the appends were extended, not dropped
+    assertTrue(grown.getCacheBytes() > 0);
+    assertArrayEquals(new int[] {3}, grown.getIndex().column(1).exact("4", false));
+    assertEquals(3.0, grown.getColumns().numeric(1).value(2));
+    assertEquals(1, complete.getIndex().column(1).exact("1", false).length);
+    // loading the file again finds the followed dataset, whose key is that of the whole file
+    assertSame(grown, new CSVLoader(registry, false).load(csv.toString()));
+    assertTrue(follower.poll());
+
+    Files.writeString(csv, "z\n");
+    assertFalse(follower.poll());
+  }
+
+  /**
+   * Tests that a followed file picks up appended rows in the background, and that only a load that
+   * parses it again stops the follower.
+   * @throws Exception if reading fails
+   */
+  @Test
+  public void testFollowersPoll() throws Exception {
+    Path csv = this.dataDir.resolve("log.csv");
+    Files.writeString(csv, "1\n");
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    CSVLoader loader = new CSVLoader(registry, false);
+    CSVFollowers followers = new CSVFollowers(registry, loader, null, 10);
+    String filepath = csv.toString();
+    followers.follow(filepath);
+    assertTrue(followers.isFollowing(filepath));
+
+    List<String> expected = new ArrayList<>(List.of("[1]"));
+    for (int i = 2; i <= 20; i++) {
+      append(csv, i + "\n");
+      expected.add("[" + i + "]");
+    }
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (registry.get(filepath).getRows().size() < 20 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected.toString(), registry.get(filepath).getRows().toString());
+
+    // loading the file while it is up to date finds the followed dataset, and following goes on
+    assertSame(registry.get(filepath), registry.load(filepath, () -> loader.load(filepath)));
+    assertTrue(followers.isFollowing(filepath));
+    // a partly written line is not read by the follower, so loading the file now parses it
+    append(csv, "21");
+    registry.load(filepath, () -> loader.load(filepath));
+    while (followers.isFollowing(filepath) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(followers.isFollowing(filepath));
+    assertNull(followers.stopReason(filepath));
+  }
+
+  /**
+   * Tests that an error reading a followed file stops following it and is kept as the reason, until
+   * the file is followed again.
+   * @throws Exception if reading fails
+   */
+  @Test
+  public void testFollowErrorIsKept() throws Exception {
+    Path csv = this.dataDir.resolve("gone.csv");
+    Files.writeString(csv, "1\n");
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    CSVLoader loader = new CSVLoader(registry, false);
+    CSVFollowers followers = new CSVFollowers(registry, loader, null, 10);
+    String filepath = csv.toString();
+    followers.follow(filepath);
+    Files.delete(csv);
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (followers.isFollowing(filepath) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(followers.isFollowing(filepath));
+    assertTrue(followers.stopReason(filepath).startsWith("NoSuchFileException"));
+
+    Files.writeString(csv, "2\n");
+    followers.follow(filepath);
+    assertTrue(followers.isFollowing(filepath));
+    assertNull(followers.stopReason(filepath));
+    followers.unfollow(filepath);
+  }
+}
@@ -0,0 +1,122 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.CSVDataset;
+import csv.CSVLoader;
+import csv.CSVRegistry;
+import csv.snapshot.LoadKey;
+import csv.snapshot.SnapshotStore;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing suite for the CSV loader and its parsed snapshots.
+ */
+public class TestCSVLoader {
+
+  @TempDir
+  Path dataDir;
+
+  /**
+   * Tests that an unchanged file that is already loaded is returned from the registry, and that a
+   * fresh registry (as after a restart) reads the snapshot instead of parsing.
+   * @throws Exception if loading fails
+   */
+  @Test
+  public void testRepeatLoadsSkipParsing() throws Exception {
+    Path csv = this.dataDir.resolve("stars.csv");
+    Files.writeString(csv, "0,Sol,0\n1,Proxima Centauri,4.2\n");
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    CSVLoader loader = new CSVLoader(registry, true);
+    CSVDataset parsed = loader.load(csv.toString());
+    registry.put(parsed);
+    assertEquals("[[0, Sol, 0], [1, Proxima Centauri, 4.2]]", parsed.getRows().toString());
+    assertTrue(Files.exists(SnapshotStore.pathFor(csv)));
+    assertSame(parsed, loader.load(csv.toString()));
+
+    // a new registry has nothing loaded, so the rows come from the snapshot; the file is rewritten
+    // with the same size and modified time to show that it is not parsed again
+    Files.writeString(csv, "9,Sol,0\n1,Proxima Centauri,4.2\n");
+    Files.setLastModifiedTime(csv, FileTime.fromMillis(parsed.getKey().modified()));
+    CSVDataset restored = new CSVLoader(new CSVRegistry(Long.MAX_VALUE), true)
+        .load(csv.toString());
+    assertEquals(parsed.getRows(), restored.getRows());
+  }
+
+  /**
+   * Tests that touching a file without changing it reuses the snapshot (and records the new
+   * modified time in it), while changing the file parses it again.
+   * @throws Exception if loading fails
+   */
+  @Test
+  public void testTouchedAndChangedFiles() throws Exception {
+    Path csv = this.dataDir.resolve("rows.csv");
+    Files.writeString(csv, "a,b\nc,d\n");
+    CSVLoader loader = new CSVLoader(new CSVRegistry(Long.MAX_VALUE), true);
+    CSVDataset first = loader.load(csv.toString());
+
+    long touched = first.getKey().modified() + 5000;
+    Files.setLastModifiedTime(csv, FileTime.fromMillis(touched));
+    CSVDataset second = loader.load(csv.toString());
+    assertEquals(first.getRows(), second.getRows());
+    LoadKey snapshotKey = SnapshotStore.readKey(SnapshotStore.pathFor(csv));
+    assertEquals(touched, snapshotKey.modified());
+
+    Files.writeString(csv, "a,b\nc,e\n");
+    Files.setLastModifiedTime(csv, FileTime.fromMillis(touched + 5000));
+    assertEquals("[[a, b], [c, e]]", loader.load(csv.toString()).getRows().toString());
+  }
+
+  /**
+   * Tests that loading a file that does not exist raises a FileNotFoundException.
+   */
+  @Test
+  public void testMissingFile() {
+    CSVLoader loader = new CSVLoader(new CSVRegistry(Long.MAX_VALUE), true);
+    assertThrows(FileNotFoundException.class,
+        () -> loader.load(this.dataDir.resolve("missing.csv").toString()));
+  }
+
+  /**
+   * Tests that a snapshot whose row count or cell length is larger than the snapshot could hold is
+   * rejected as invalid without allocating for it, and that the file is parsed instead.
+   * @throws Exception if loading fails
+   */
+  @Test
+  public void testCorruptedCountsAreRejected() throws Exception {
+    Path csv = this.dataDir.resolve("stars.csv");
+    Files.writeString(csv, "0,Sol,0\n1,Proxima Centauri,4.2\n");
+    CSVDataset parsed = new CSVLoader(new CSVRegistry(Long.MAX_VALUE), true).load(csv.toString());
+    Path snapshot = SnapshotStore.pathFor(csv);
+    byte[] written = Files.readAllBytes(snapshot);
+
+    byte[] rowCount = written.clone();
+    // the row count comes right after the header, which ends 56 bytes in
+    ByteBuffer.wrap(rowCount).putInt(56, Integer.MAX_VALUE - 8);
+    Files.write(snapshot, rowCount);
+    IOException invalid = assertThrows(IOException.class, () -> SnapshotStore.readRows(snapshot));
+    assertTrue(invalid.getMessage().startsWith("Invalid snapshot"));
+    CSVLoader loader = new CSVLoader(new CSVRegistry(Long.MAX_VALUE), true);
+    CSVDataset reparsed = loader.load(csv.toString());
+    assertEquals(parsed.getRows(), reparsed.getRows());
+    assertEquals(1L, loader.metrics().get("snapshotReadErrors"));
+    assertTrue(((String) loader.metrics().get("lastSnapshotError")).contains("Invalid snapshot"));
+
+    // parsing wrote a good snapshot again, whose last cell, "4.2", has its length just before it
+    assertEquals(parsed.getRows(), SnapshotStore.readRows(snapshot));
+    byte[] cellLength = Files.readAllBytes(snapshot);
+    cellLength[cellLength.length - 4] = 0x7F;
+    Files.write(snapshot, cellLength);
+    assertThrows(IOException.class, () -> SnapshotStore.readRows(snapshot));
+  }
+}
@@ -0,0 +1,126 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.CSVDataset;
+import csv.CSVRegistry;
+import java.io.FileNotFoundException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for unit testing the registry of loaded CSVs.
+ */
+public class TestCSVRegistry {
+
+  /**
+   * Helper method to make a dataset with the given number of identical rows.
+   */
+  private static CSVDataset dataset(String filepath, int rows) {
+    return new CSVDataset(filepath, Collections.nCopies(rows, List.of("a", "b")));
+  }
+
+  /**
+   * Tests that datasets stay loaded side by side and that the latest one is returned when no
+   * filepath is given.
+   */
+  @Test
+  public void testSeveralDatasets() {
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    CSVDataset first = dataset("data/first.csv", 1);
+    CSVDataset second = dataset("data/second.csv", 1);
+    registry.put(first);
+    registry.put(second);
+    assertSame(first, registry.get("data/first.csv"));
+    assertSame(second, registry.get(null));
+    assertEquals(first.getEstimatedBytes() + second.getEstimatedBytes(), registry.getUsedBytes());
+  }
+
+  /**
+   * Tests that the least recently used dataset is evicted once the budget is exceeded.
+   */
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    long size = dataset("", 10).getEstimatedBytes();
+    CSVRegistry registry = new CSVRegistry(size * 2);
+    registry.put(dataset("data/a.csv", 10));
+    registry.put(dataset("data/b.csv", 10));
+    registry.get("data/a.csv"); // a is now more recently used than b
+    registry.put(dataset("data/c.csv", 10));
+    assertNull(registry.get("data/b.csv"));
+    assertEquals(List.of("data/a.csv", "data/c.csv"), registry.getFilepaths());
+    assertEquals(size * 2, registry.getUsedBytes());
+  }
+
+  /**
+   * Tests that caches built on a dataset after it was registered count towards the budget, and
+   * evict the least recently used dataset once they exceed it.
+   */
+  @Test
+  public void testCachesAreCharged() {
+    long size = dataset("", 10).getEstimatedBytes();
+    CSVRegistry registry = new CSVRegistry(size * 2 + 100);
+    CSVDataset a = dataset("data/a.csv", 10);
+    CSVDataset b = dataset("data/b.csv", 10);
+    registry.put(a);
+    registry.put(b);
+    assertEquals(size * 2, registry.getUsedBytes());
+
+    b.getIndex().column(0);
+    b.getColumns().sort(1, false).permutation();
+    assertTrue(b.getCacheBytes() > 100);
+    assertEquals(size + b.getCacheBytes(), b.getEstimatedBytes());
+    assertNull(registry.get("data/a.csv"));
+    assertEquals(b.getEstimatedBytes(), registry.getUsedBytes());
+
+    // an evicted dataset building caches no longer affects the registry
+    a.getColumns().numeric(0);
+    assertEquals(List.of("data/b.csv"), registry.getFilepaths());
+  }
+
+  /**
+   * Tests that concurrent loads of the same file share a single call to the loader, and that a
+   * failing load reports its exception.
+   * @throws Exception if a load fails unexpectedly
+   */
+  @Test
+  public void testConcurrentLoadsAreDeduplicated() throws Exception {
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    AtomicInteger parses = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<CSVDataset> leader = executor.submit(() -> registry.load("data/a.csv", () -> {
+        parses.incrementAndGet();
+        release.await();
+        return dataset("data/a.csv", 1);
+      }));
+      while (parses.get() == 0) {
+        Thread.onSpinWait();
+      }
+      Future<CSVDataset> follower = executor.submit(() -> registry.load("data/a.csv", () -> {
+        parses.incrementAndGet();
+        return dataset("data/a.csv", 1);
+      }));
+      Thread.sleep(100);
+      release.countDown();
+      assertSame(leader.get(), follower.get());
+      assertEquals(1, parses.get());
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThrows(FileNotFoundException.class, () -> registry.load("data/missing.csv", () -> {
+      throw new FileNotFoundException("data/missing.csv");
+    }));
+  }
+}
@@ -0,0 +1,103 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.CSVDataset;
+import csv.CSVLoader;
+import csv.CSVRegistry;
+import csv.factories.InterningRowFactory;
+import csv.factories.StringFactory;
+import csv.intern.CellInterner;
+import csv.intern.InternReport;
+import csv.intern.StringPool;
+import csv.utility.CSVParser;
+import java.io.File;
+import java.io.FileReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing suite for interning cell values while parsing.
+ */
+public class TestCellInterner {
+
+  @TempDir
+  Path dataDir;
+
+  private static List<List<String>> parse(String data, CellInterner interner) throws Exception {
+    CSVParser<List<String>> parser = new CSVParser<>(false);
+    parser.setReader(new StringReader(data));
+    parser.parseCSV(new InterningRowFactory(interner));
+    return parser.getConvertedRows();
+  }
+
+  /**
+   * Tests that equal cells share one String, in the same or different columns, and the hit rate
+   * reported for each column.
+   * @throws Exception if parsing fails
+   */
+  @Test
+  public void testEqualCellsShareInstances() throws Exception {
+    CellInterner interner = new CellInterner(1024, 64, null);
+    List<List<String>> rows = parse("RI,Providence,\nRI,Newport,RI\nMA,Boston,", interner);
+    assertEquals(List.of(List.of("RI", "Providence"), List.of("RI", "Newport", "RI"),
+        List.of("MA", "Boston")), rows);
+    assertSame(rows.get(0).get(0), rows.get(1).get(0));
+    assertSame(rows.get(0).get(0), rows.get(1).get(2));
+    InternReport report = interner.report();
+    assertEquals(3, report.columns());
+    assertEquals(1.0 / 3, report.hitRate(0), 1e-9);
+    assertEquals(0.0, report.hitRate(1));
+    assertEquals(1.0, report.hitRate(2));
+    assertEquals(2 * (44 + 2), report.bytesSaved());
+  }
+
+  /**
+   * Tests that the table stops adding values once full, that long cells are not interned, and that
+   * a pool shares values between loads.
+   * @throws Exception if parsing fails
+   */
+  @Test
+  public void testBoundsAndPool() throws Exception {
+    List<List<String>> rows = parse("a\nb\nc\nc\na\nlong value\nlong value",
+        new CellInterner(2, 5, null));
+    assertSame(rows.get(0).get(0), rows.get(4).get(0));
+    assertNotSame(rows.get(2).get(0), rows.get(3).get(0));
+    assertNotSame(rows.get(5).get(0), rows.get(6).get(0));
+
+    StringPool pool = new StringPool(100);
+    List<List<String>> first = parse("Providence", new CellInterner(16, 64, pool));
+    CellInterner second = new CellInterner(16, 64, pool);
+    assertSame(first.get(0).get(0), parse("Providence", second).get(0).get(0));
+    assertEquals(1.0, second.report().hitRate(0));
+  }
+
+  /**
+   * Tests that every CSV in the data folder loads with the same rows as the List of Strings parser,
+   * and that interning never makes the estimated heap larger.
+   * @throws Exception if loading fails
+   */
+  @Test
+  public void testDataFolder() throws Exception {
+    File[] files = new File("data").listFiles((dir, name) -> name.endsWith(".csv"));
+    for (File file : files) {
+      Path copy = this.dataDir.resolve(file.getName());
+      Files.copy(file.toPath(), copy);
+      CSVDataset dataset = new CSVLoader(new CSVRegistry(Long.MAX_VALUE), false)
+          .load(copy.toString());
+      CSVParser<List<String>> parser = new CSVParser<>(new StringFactory(), false);
+      parser.setReader(new FileReader(file));
+      parser.parseCSV();
+      assertEquals(parser.getListOfRows(), dataset.getRows(), file.getName());
+      InternReport report = dataset.getInternReport();
+      assertTrue(report.bytesSaved() >= 0, file.getName());
+    }
+  }
+}
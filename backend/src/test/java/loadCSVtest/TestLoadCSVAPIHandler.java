@@ -3,7 +3,7 @@ package loadCSVtest;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.squareup.moshi.Moshi;
-import csv.CSVDataHolder.CSVDataHolderRecord;
+import csv.CSVDataHolder;
 import responses.FailureResponse.FailureRecord;
 import csv.LoadCSVHandler;
 import responses.MapSerializer.MapRecord;
@@ -151,7 +151,7 @@ public class TestLoadCSVAPIHandler {
   /**
    * Test for when a valid CSV file is inputted by the user -- the file exists and is in the
    * /data folder, where they are allowed access. Then tests if the user gives an invalid CSV file
-   * afterwards, the filepath and csvData from CSVDataHolderRecord should not be changed
+   * afterwards, the latest dataset in CSVDataHolder should not be changed
    * (for getcsv functionality). Finally, tests if the user gives another valid CSV file
    * afterwards, for which the filepath and csvData should be updated.
    * @throws IOException if the connection fails
@@ -166,26 +166,28 @@ public class TestLoadCSVAPIHandler {
     assertEquals(2, MapRecord.results.size());
     assertEquals("success", MapRecord.results.get("result"));
     assertEquals("data/testCSV/two-rows.csv", MapRecord.results.get("filepath"));
-    assertEquals("data/testCSV/two-rows.csv", CSVDataHolderRecord.filepath);
-    assertEquals("[[5, hi, 17], [fourteen, test, , panda]]", CSVDataHolderRecord.csvData.toString());
+    assertEquals("data/testCSV/two-rows.csv", CSVDataHolder.registry.get(null).getFilepath());
+    assertEquals("[[5, hi, 17], [fourteen, test, , panda]]",
+        CSVDataHolder.registry.get(null).getRows().toString());
 
-    // test for when we try to load another invalid CSV file, that the CSVDataHolderRecord
+    // test for when we try to load another invalid CSV file, that the latest dataset's
     // filepath and csvData do not change
     clientConnection = tryRequest("loadcsv?filepath=data/testCSV/not-a-file.csv");
     assertEquals(200, clientConnection.getResponseCode());
     FailureRecord response2 = moshi.adapter(FailureRecord.class).fromJson(
         new Buffer().readFrom(clientConnection.getInputStream()));
-    assertEquals("data/testCSV/two-rows.csv", CSVDataHolderRecord.filepath);
-    assertEquals("[[5, hi, 17], [fourteen, test, , panda]]", CSVDataHolderRecord.csvData.toString());
+    assertEquals("data/testCSV/two-rows.csv", CSVDataHolder.registry.get(null).getFilepath());
+    assertEquals("[[5, hi, 17], [fourteen, test, , panda]]",
+        CSVDataHolder.registry.get(null).getRows().toString());
 
-    // test for when we try to load another valid CSV file, that the CSVDataHolderRecord
+    // test for when we try to load another valid CSV file, that the latest dataset's
     // filepath and csvData are being updated
     clientConnection = tryRequest("loadcsv?filepath=data/testCSV/edge-empty.csv");
     assertEquals(200, clientConnection.getResponseCode());
     MapRecord response3 = moshi.adapter(MapRecord.class).fromJson(
         new Buffer().readFrom(clientConnection.getInputStream()));
-    assertEquals("data/testCSV/edge-empty.csv", CSVDataHolderRecord.filepath);
-    assertEquals("[[, testing]]", CSVDataHolderRecord.csvData.toString());
+    assertEquals("data/testCSV/edge-empty.csv", CSVDataHolder.registry.get(null).getFilepath());
+    assertEquals("[[, testing]]", CSVDataHolder.registry.get(null).getRows().toString());
     clientConnection.disconnect();
   }
 }
\ No newline at end of file
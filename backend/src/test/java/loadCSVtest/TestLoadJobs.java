@@ -0,0 +1,135 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.CSVDataset;
+import csv.CSVLoader;
+import csv.CSVRegistry;
+import csv.jobs.LoadJob;
+import csv.jobs.LoadJob.State;
+import csv.jobs.LoadJobs;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing suite for background CSV loads.
+ */
+public class TestLoadJobs {
+
+  @TempDir
+  Path dataDir;
+
+  /**
+   * Helper method to write a CSV with the given number of rows.
+   */
+  private Path writeCSV(String name, int rows) throws IOException {
+    Path csv = this.dataDir.resolve(name);
+    try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+      for (int i = 0; i < rows; i++) {
+        writer.write(i + ",star " + i + "," + (i * 0.5) + "\n");
+      }
+    }
+    return csv;
+  }
+
+  /**
+   * Helper method to wait for a job to finish.
+   */
+  private static void awaitFinished(LoadJob job) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30_000;
+    while ((job.getState() == State.QUEUED || job.getState() == State.RUNNING)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Tests that a background load registers the dataset and reports every byte and row as read.
+   * @throws Exception if the file cannot be written
+   */
+  @Test
+  public void testBackgroundLoad() throws Exception {
+    Path csv = this.writeCSV("stars.csv", 1000);
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    LoadJobs jobs = new LoadJobs(registry, new CSVLoader(registry, false), 1);
+    LoadJob job = jobs.submit(csv.toString());
+    assertEquals(job, jobs.get(job.getId()));
+    awaitFinished(job);
+    assertEquals(State.DONE, job.getState());
+    assertEquals(Files.size(csv), job.getBytesRead());
+    assertEquals(1000, job.getRowsRead());
+    assertEquals(0, job.getEtaSeconds());
+    assertNotNull(registry.get(csv.toString()));
+  }
+
+  /**
+   * Tests that a cancelled job stops without registering a dataset, and that a job for a missing
+   * file fails.
+   * @throws Exception if the file cannot be written
+   */
+  @Test
+  public void testCancelledAndFailedLoads() throws Exception {
+    Path big = this.writeCSV("big.csv", 300_000);
+    Path small = this.writeCSV("small.csv", 10);
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    LoadJobs jobs = new LoadJobs(registry, new CSVLoader(registry, false), 1);
+    LoadJob first = jobs.submit(big.toString());
+    LoadJob second = jobs.submit(small.toString());
+    first.cancel();
+    second.cancel();
+    awaitFinished(first);
+    awaitFinished(second);
+    assertEquals(State.CANCELLED, first.getState());
+    assertEquals(State.CANCELLED, second.getState());
+    assertTrue(registry.getFilepaths().isEmpty());
+
+    LoadJob missing = jobs.submit(this.dataDir.resolve("missing.csv").toString());
+    awaitFinished(missing);
+    assertEquals(State.FAILED, missing.getState());
+    assertEquals("error_datasource", missing.getError());
+  }
+
+  /**
+   * Tests that cancelling a job for a file that another request is loading at the same time only
+   * stops the job: the other load still succeeds, and the job reports its own progress.
+   * @throws Exception if the file cannot be written or the other load fails
+   */
+  @Test
+  public void testCancelDoesNotFailOtherLoads() throws Exception {
+    Path big = this.writeCSV("big.csv", 300_000);
+    CSVRegistry registry = new CSVRegistry(Long.MAX_VALUE);
+    CSVLoader loader = new CSVLoader(registry, false);
+    LoadJobs jobs = new LoadJobs(registry, loader, 1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<CSVDataset> other = executor.submit(
+          () -> registry.load(big.toString(), () -> loader.load(big.toString())));
+      LoadJob job = jobs.submit(big.toString());
+      while (job.getBytesRead() == 0 && job.getState() != State.DONE) {
+        Thread.sleep(1);
+      }
+      job.cancel();
+      awaitFinished(job);
+      assertEquals(State.CANCELLED, job.getState());
+      assertEquals(300_000, other.get().getRows().size());
+      assertSame(other.get(), registry.get(big.toString()));
+
+      LoadJob again = jobs.submit(big.toString());
+      awaitFinished(again);
+      assertEquals(State.DONE, again.getState());
+      assertEquals(300_000, again.getRowsRead());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import csv.factories.ColumnType;
+import csv.factories.StringFactory;
+import csv.utility.CSVLineScanner;
+import csv.utility.CSVParser;
+import csv.utility.CSVRowView;
+import csv.utility.NumberParsing;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for reading CSV cells in place: the row view and the char array number parsers.
+ */
+public class TestNumberParsing {
+
+  /**
+   * Tests that the line scanner and row view split lines exactly as parseCSV does.
+   * @throws Exception if parsing fails
+   */
+  @Test
+  public void testRowViewMatchesParser() throws Exception {
+    String data = "a, b ,c\r\n\n,\r x,,\n,,y\r\r\n  \nlast,";
+    CSVParser<List<String>> parser = new CSVParser<>(new StringFactory(), false);
+    parser.setReader(new StringReader(data));
+    parser.parseCSV();
+
+    List<List<String>> viewed = new ArrayList<>();
+    CSVLineScanner scanner = new CSVLineScanner(new StringReader(data));
+    CSVRowView row = new CSVRowView();
+    while (scanner.next(row)) {
+      viewed.add(row.toList());
+    }
+    assertEquals(parser.getListOfRows(), viewed);
+  }
+
+  /**
+   * Tests the char array number parsers against the JDK's.
+   */
+  @Test
+  public void testNumberParsing() {
+    String[] doubles = {"0", "-0.5", "3.14159", "1e10", "2.5E-3", "123456789012345678",
+        "0.1", "1.7976931348623157e308", "4.9e-324", "+7", ".5", "5."};
+    for (String value : doubles) {
+      char[] chars = value.toCharArray();
+      assertEquals(Double.parseDouble(value), NumberParsing.parseDouble(chars, 0, chars.length),
+          value);
+    }
+    char[] min = String.valueOf(Long.MIN_VALUE).toCharArray();
+    assertEquals(Long.MIN_VALUE, NumberParsing.parseLong(min, 0, min.length));
+    assertEquals(ColumnType.LONG, NumberParsing.classify(min, 0, min.length));
+    char[] big = "99999999999999999999".toCharArray();
+    assertEquals(ColumnType.DOUBLE, NumberParsing.classify(big, 0, big.length));
+    for (String text : new String[] {"-", ".", "1e", "abc", "1.2.3", "NaN"}) {
+      char[] chars = text.toCharArray();
+      assertEquals(ColumnType.STRING, NumberParsing.classify(chars, 0, chars.length), text);
+      assertThrows(NumberFormatException.class,
+          () -> NumberParsing.parseDouble(chars, 0, chars.length));
+    }
+    assertEquals(ColumnType.INT, NumberParsing.classify("12".toCharArray(), 0, 2));
+  }
+}
@@ -0,0 +1,80 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import csv.upload.ReadAheadInputStream;
+import csv.upload.UploadTooLargeException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for the bounded read-ahead of uploads.
+ */
+public class TestReadAheadInputStream {
+
+  /**
+   * Tests that every byte comes through in order, across many buffers.
+   * @throws IOException if reading fails
+   */
+  @Test
+  public void testReadsEverything() throws IOException {
+    byte[] bytes = new byte[100_000];
+    new Random(32).nextBytes(bytes);
+    try (ReadAheadInputStream in =
+        new ReadAheadInputStream(new ByteArrayInputStream(bytes), 1000, 3, bytes.length)) {
+      assertArrayEquals(bytes, in.readAllBytes());
+      assertEquals(-1, in.read());
+      assertEquals(bytes.length, in.getBytesRead());
+    }
+  }
+
+  /**
+   * Tests that a source longer than the limit fails after the bytes read before it.
+   * @throws IOException if reading fails
+   */
+  @Test
+  public void testTooLarge() throws IOException {
+    try (ReadAheadInputStream in =
+        new ReadAheadInputStream(new ByteArrayInputStream(new byte[5000]), 1000, 2, 4500)) {
+      assertEquals(4000, in.readNBytes(4000).length);
+      assertThrows(UploadTooLargeException.class, in::read);
+    }
+  }
+
+  /**
+   * Tests that reading ahead stops once every buffer is full, and goes on as the consumer reads.
+   * @throws Exception if reading fails
+   */
+  @Test
+  public void testReadAheadIsBounded() throws Exception {
+    // an endless source that fills each read
+    InputStream endless = new InputStream() {
+      @Override
+      public int read() {
+        return 7;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) {
+        return length;
+      }
+    };
+    try (ReadAheadInputStream in = new ReadAheadInputStream(endless, 1000, 4, Long.MAX_VALUE)) {
+      Thread.sleep(200);
+      assertEquals(4000, in.getBytesRead());
+      in.readNBytes(2500);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (in.getBytesRead() < 6000 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      Thread.sleep(100);
+      // two buffers were used up, and the one being read is still held
+      assertEquals(6000, in.getBytesRead());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csv.factories.CreatorFromView;
+import csv.factories.IntArrayFactory;
+import csv.factories.IntegerFactory;
+import csv.utility.CSVParser;
+import csv.utility.CSVRowView;
+import csv.utility.NumberParsing;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for parsing CSV data through reusable row views, without the per-row copies of the
+ * List of Strings path.
+ */
+public class TestRowViewAllocation {
+
+  private static final int ROWS = 50_000;
+
+  /**
+   * Tests that cell slices read the current row and parse straight from it.
+   * @throws Exception if parsing fails
+   */
+  @Test
+  public void testCellSlices() throws Exception {
+    CSVParser<String> parser = new CSVParser<>(false);
+    parser.setReader(new StringReader("1, Sol ,2.5\n-7,Proxima,1e3\n"));
+    parser.parseCSV((CreatorFromView<String>) row -> {
+      CharSequence name = row.cell(1);
+      assertEquals(row.parseInt(0), NumberParsing.parseInt(row.cell(0)));
+      assertEquals(row.parseDouble(2), NumberParsing.parseDouble(row.cell(2)));
+      return name.length() + ":" + name + ":" + name.charAt(0);
+    });
+    assertEquals(List.of("3:Sol:S", "7:Proxima:P"), parser.getConvertedRows());
+
+    CSVParser<int[]> ints = new CSVParser<>(false);
+    ints.setReader(new StringReader("1,2,3\n4,5\n"));
+    ints.parseCSV(new IntArrayFactory());
+    assertArrayEquals(new int[] {4, 5}, ints.getConvertedRows().get(1));
+  }
+
+  /**
+   * Tests that the row view path makes no copy of any row: every row is handed to the creator
+   * through the same reused view, its cells are slices of the view's buffer rather than Strings,
+   * and no List of Strings is kept for it, unlike the List of Strings path.
+   * @throws Exception if parsing fails
+   */
+  @Test
+  public void testNoPerRowCopies() throws Exception {
+    StringBuilder data = new StringBuilder();
+    long expected = 0;
+    for (int i = 0; i < ROWS; i++) {
+      data.append(i).append(',').append(i * 2).append(", ").append(i % 97).append(",1\n");
+      expected += i + i * 2 + i % 97 + 1;
+    }
+    String csv = data.toString();
+
+    Set<CSVRowView> views = Collections.newSetFromMap(new IdentityHashMap<>());
+    long[] sum = new long[1];
+    CSVParser<Object> parser = new CSVParser<>(false);
+    parser.setReader(new StringReader(csv));
+    parser.parseCSV((CreatorFromView<Object>) row -> {
+      views.add(row);
+      assertFalse(row.cell(0) instanceof String);
+      for (int cell = 0; cell < row.cellCount(); cell++) {
+        sum[0] += row.parseInt(cell);
+      }
+      return null;
+    });
+    assertEquals(1, views.size());
+    assertEquals(expected, sum[0]);
+    assertEquals(ROWS, parser.getConvertedRows().size());
+    assertTrue(parser.getListOfRows().isEmpty());
+
+    CSVParser<List<Integer>> lists = new CSVParser<>(new IntegerFactory(), false);
+    lists.setReader(new StringReader(csv));
+    lists.parseCSV();
+    assertEquals(ROWS, lists.getListOfRows().size());
+  }
+}
@@ -0,0 +1,176 @@
+package loadCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import csv.CSVDataHolder;
+import csv.CSVDataset;
+import csv.CSVLoader;
+import csv.CSVRegistry;
+import csv.UploadCSVHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Spark;
+
+/**
+ * Testing suite for uploading CSVs by POST to the loadcsv endpoint.
+ */
+public class TestUploadCSVAPIHandler {
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  /**
+   * Before each test runs, restart Spark server for the loadcsv endpoint, taking uploads of up to
+   * 1000 bytes.
+   */
+  @BeforeEach
+  public void setup() {
+    CSVDataHolder.registry.clear();
+    Spark.post("/loadcsv", new UploadCSVHandler(1000));
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/loadcsv");
+    Spark.awaitStop();
+  }
+
+  /**
+   * Helper method to POST a body to an API call and read its JSON response into a Map.
+   * @param apiCall the call string, including endpoint
+   * @param body the bytes to upload
+   * @param chunked whether to send the body without a Content-Length
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> post(String apiCall, byte[] body, boolean chunked)
+      throws IOException {
+    return post(apiCall, body, chunked, "text/csv");
+  }
+
+  /**
+   * Helper method to POST a body with the given content type to an API call and read its JSON
+   * response into a Map.
+   * @param apiCall the call string, including endpoint
+   * @param body the bytes to upload
+   * @param chunked whether to send the body without a Content-Length
+   * @param contentType the content type to send, or null to send none of our own
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> post(String apiCall, byte[] body, boolean chunked,
+      String contentType) throws IOException {
+    URL requestURL = new URL("http://localhost:" + Spark.port() + "/" + apiCall);
+    HttpURLConnection clientConnection = (HttpURLConnection) requestURL.openConnection();
+    clientConnection.setRequestMethod("POST");
+    if (contentType != null) {
+      clientConnection.setRequestProperty("Content-Type", contentType);
+    }
+    clientConnection.setDoOutput(true);
+    if (chunked) {
+      clientConnection.setChunkedStreamingMode(64);
+    } else {
+      clientConnection.setFixedLengthStreamingMode(body.length);
+    }
+    try (OutputStream out = clientConnection.getOutputStream()) {
+      out.write(body);
+    } catch (IOException e) {
+      // the server may answer and stop reading before the whole body is sent
+    }
+    assertEquals(200, clientConnection.getResponseCode());
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    Map<String, Object> response =
+        adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    return response;
+  }
+
+  /**
+   * Tests that an uploaded CSV is loaded with the same rows and size as loading its file.
+   * @throws Exception if the connection or the file load fails
+   */
+  @Test
+  public void testUploadMatchesFileLoad() throws Exception {
+    byte[] csv = Files.readAllBytes(Path.of("data/ten-star.csv"));
+    for (boolean chunked : new boolean[] {false, true}) {
+      Map<String, Object> body = post("loadcsv?filename=upload/stars.csv", csv, chunked);
+      assertEquals("success", body.get("result"));
+      assertEquals((double) csv.length, body.get("bytes"));
+
+      CSVDataset uploaded = CSVDataHolder.registry.get("upload/stars.csv");
+      CSVDataset file = new CSVLoader(new CSVRegistry(Long.MAX_VALUE), false)
+          .load("data/ten-star.csv");
+      assertEquals(file.getRows(), uploaded.getRows());
+      assertEquals(file.getEstimatedBytes(), uploaded.getEstimatedBytes());
+      assertEquals((double) file.getRows().size(), body.get("rows"));
+      assertEquals(uploaded, CSVDataHolder.registry.get(null));
+    }
+  }
+
+  /**
+   * Tests that uploads over the limit, whether they say so or not, and badly named uploads are
+   * bad requests that load nothing.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testBadUploads() throws IOException {
+    byte[] large = "a,b,c\n".repeat(200).getBytes();
+    assertEquals("error_bad_request",
+        post("loadcsv?filename=upload/large.csv", large, false).get("errorMessage"));
+    assertEquals("error_bad_request",
+        post("loadcsv?filename=upload/large.csv", large, true).get("errorMessage"));
+    assertEquals("error_bad_request",
+        post("loadcsv?filename=data/stars.csv", "a\n".getBytes(), false).get("errorMessage"));
+    assertEquals("error_bad_request", post("loadcsv", "a\n".getBytes(), false)
+        .get("errorMessage"));
+    assertEquals(null, CSVDataHolder.registry.get(null));
+  }
+
+  /**
+   * Tests that an upload sent without a content type, which HttpURLConnection then sends as a
+   * form, is still loaded whole rather than read as form parameters, and that the filename may be
+   * percent-encoded.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testUploadWithoutContentType() throws IOException {
+    byte[] csv = "name,x=1&y=2\nSol,0\n".getBytes();
+    for (String contentType : new String[] {null, "application/x-www-form-urlencoded"}) {
+      Map<String, Object> body = post("loadcsv?filename=upload%2Fform.csv", csv, false,
+          contentType);
+      assertEquals("success", body.get("result"));
+      assertEquals(2.0, body.get("rows"));
+      assertEquals("[[name, x=1&y=2], [Sol, 0]]",
+          CSVDataHolder.registry.get("upload/form.csv").getRows().toString());
+    }
+  }
+}
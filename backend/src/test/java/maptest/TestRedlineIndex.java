@@ -0,0 +1,126 @@
+package maptest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import map.RedlineIndex;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for locating points in the redlining polygons through RedlineIndex.
+ */
+public class TestRedlineIndex {
+
+  /**
+   * Builds a GeoJSON MultiPolygon feature. Each polygon is a list of rings, and each ring a flat
+   * list of lon, lat pairs.
+   */
+  static String feature(String grade, String id, double[][]... polygons) {
+    StringBuilder json = new StringBuilder("{\"type\":\"Feature\",\"geometry\":{\"type\":"
+        + "\"MultiPolygon\",\"coordinates\":[");
+    for (int p = 0; p < polygons.length; p++) {
+      json.append(p == 0 ? "[" : ",[");
+      for (int r = 0; r < polygons[p].length; r++) {
+        json.append(r == 0 ? "[" : ",[");
+        double[] ring = polygons[p][r];
+        for (int i = 0; i < ring.length; i += 2) {
+          json.append(i == 0 ? "" : ",").append("[").append(ring[i]).append(",")
+              .append(ring[i + 1]).append("]");
+        }
+        json.append("]");
+      }
+      json.append("]");
+    }
+    return json.append("]},\"properties\":{\"holc_grade\":\"").append(grade)
+        .append("\",\"holc_id\":\"").append(id).append("\",\"name\":\"").append(id)
+        .append("\",\"city\":\"Providence\"}}").toString();
+  }
+
+  /**
+   * Builds a closed rectangular ring.
+   */
+  static double[] box(double minLon, double minLat, double maxLon, double maxLat) {
+    return new double[] {minLon, minLat, maxLon, minLat, maxLon, maxLat, minLon, maxLat,
+        minLon, minLat};
+  }
+
+  static String collection(List<String> features) {
+    return "{\"type\":\"FeatureCollection\",\"features\":[" + String.join(",", features) + "]}";
+  }
+
+  /**
+   * Tests points inside, outside, in a hole, in the second polygon of a MultiPolygon, in a
+   * triangle's bounding box but not the triangle, and in overlapping neighborhoods.
+   * @throws IOException if the GeoJSON cannot be read
+   */
+  @Test
+  public void testLocate() throws IOException {
+    RedlineIndex index = RedlineIndex.fromJson(collection(List.of(
+        feature("A", "A1", new double[][] {box(0, 0, 10, 10), box(4, 4, 6, 6)},
+            new double[][] {box(20, 20, 22, 22)}),
+        feature("D", "D1", new double[][] {{10, 0, 20, 0, 20, 10, 10, 0}}),
+        "{\"type\":\"Feature\",\"geometry\":null,\"properties\":{\"holc_grade\":\"C\"}}",
+        feature("B", "B1", new double[][] {box(8, 8, 12, 12)}))));
+    assertEquals(3, index.size());
+    assertEquals(0, index.locate(1, 1));
+    assertEquals(-1, index.locate(5, 5));
+    assertEquals(0, index.locate(21, 21));
+    assertEquals(1, index.locate(19, 5));
+    assertEquals(-1, index.locate(11, 5));
+    // inside both A1 and B1, which comes later
+    assertEquals(0, index.locate(9, 9));
+    assertEquals(2, index.locate(11, 11.5));
+    assertEquals(-1, index.locate(-50, 70));
+    assertEquals(-1, index.locate(Double.NaN, 1));
+    assertEquals("B", index.grade(2));
+    assertEquals("D1", index.holcId(1));
+    assertEquals("Providence", index.city(0));
+  }
+
+  /**
+   * Tests a grid of neighborhoods against a scan of every bounding box.
+   * @throws IOException if the GeoJSON cannot be read
+   */
+  @Test
+  public void testLocateMatchesScan() throws IOException {
+    List<String> features = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < 40; j++) {
+        features.add(feature("ABCD".substring((i + j) % 4, (i + j) % 4 + 1), i + "-" + j,
+            new double[][] {box(-71.5 + i * 0.01, 41.7 + j * 0.01, -71.5 + i * 0.01 + 0.008,
+                41.7 + j * 0.01 + 0.008)}));
+      }
+    }
+    RedlineIndex index = RedlineIndex.fromJson(collection(features));
+    Random random = new Random(320);
+    int points = 1_000_000;
+    double[] lons = new double[points];
+    double[] lats = new double[points];
+    for (int k = 0; k < points; k++) {
+      lons[k] = -71.51 + random.nextDouble() * 0.42;
+      lats[k] = 41.69 + random.nextDouble() * 0.42;
+    }
+    int[] located = new int[points];
+    for (int k = 0; k < points; k++) {
+      located[k] = index.locate(lons[k], lats[k]);
+    }
+
+    for (int k = 0; k < points; k += 97) {
+      int i = (int) Math.floor((lons[k] + 71.5) / 0.01);
+      int j = (int) Math.floor((lats[k] - 41.7) / 0.01);
+      double inLon = lons[k] + 71.5 - i * 0.01;
+      double inLat = lats[k] - 41.7 - j * 0.01;
+      boolean inside = i >= 0 && i < 40 && j >= 0 && j < 40 && inLon > 1e-9 && inLon < 0.008 - 1e-9
+          && inLat > 1e-9 && inLat < 0.008 - 1e-9;
+      boolean edge = i >= 0 && i < 40 && j >= 0 && j < 40
+          && (Math.abs(inLon) < 1e-9 || Math.abs(inLon - 0.008) < 1e-9
+          || Math.abs(inLat) < 1e-9 || Math.abs(inLat - 0.008) < 1e-9);
+      if (!edge) {
+        assertEquals(inside ? i * 40 + j : -1, located[k]);
+      }
+    }
+  }
+}
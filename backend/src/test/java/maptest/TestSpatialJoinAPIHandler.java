@@ -0,0 +1,144 @@
+package maptest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import csv.CSVDataHolder;
+import csv.CSVDataset;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import map.SpatialJoinHandler;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import spark.Spark;
+
+/**
+ * Testing suite for the CSV spatial join API handler.
+ */
+public class TestSpatialJoinAPIHandler {
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  @TempDir
+  Path dataDir;
+
+  /**
+   * Before each test runs, load a CSV of points, write a small redlining file, and restart Spark
+   * server for the csvspatialjoin endpoint and for one over a missing redlining file.
+   * @throws IOException if the redlining file cannot be written
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    CSVDataHolder.registry.clear();
+    CSVDataHolder.registry.put(new CSVDataset("data/homes.csv", List.of(
+        List.of("home", "lat", "lon"), List.of("1", "1", "1"), List.of("2", "5", "15"),
+        List.of("3", "2", "3"), List.of("4", "50", "50"), List.of("5", "north", "1"))));
+    Path redlining = this.dataDir.resolve("redlining.json");
+    Files.writeString(redlining, TestRedlineIndex.collection(List.of(
+        TestRedlineIndex.feature("A", "A1", new double[][] {TestRedlineIndex.box(0, 0, 10, 10)}),
+        TestRedlineIndex.feature("D", "D1",
+            new double[][] {TestRedlineIndex.box(10, 0, 20, 10)}))));
+    Spark.get("/csvspatialjoin", new SpatialJoinHandler(redlining));
+    Spark.get("/missing", new SpatialJoinHandler(this.dataDir.resolve("none.json")));
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/csvspatialjoin");
+    Spark.unmap("/missing");
+    Spark.awaitStop();
+  }
+
+  /**
+   * Helper method to request an API call and read its JSON body into a Map.
+   * @param apiCall the call string, including endpoint
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> request(String apiCall) throws IOException {
+    URL requestURL = new URL("http://localhost:" + Spark.port() + "/" + apiCall);
+    HttpURLConnection clientConnection = (HttpURLConnection) requestURL.openConnection();
+    clientConnection.connect();
+    assertEquals(200, clientConnection.getResponseCode());
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    Map<String, Object> body =
+        adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    return body;
+  }
+
+  /**
+   * Tests that rows are tagged with their neighborhood, in their loaded order.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIRows() throws IOException {
+    Map<String, Object> body = request("csvspatialjoin?lat=1&lon=2&header=true");
+    assertEquals("success", body.get("result"));
+    assertEquals(List.of(List.of("1", "1", "1", "A", "A1", "A1"),
+        List.of("2", "5", "15", "D", "D1", "D1"), List.of("3", "2", "3", "A", "A1", "A1"),
+        Arrays.asList("4", "50", "50", null, null, null),
+        Arrays.asList("5", "north", "1", null, null, null)), body.get("data"));
+    assertEquals(5.0, body.get("rows"));
+    assertEquals(1.0, body.get("unmatched"));
+    assertEquals(1.0, body.get("invalid"));
+  }
+
+  /**
+   * Tests the totals per grade.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPICounts() throws IOException {
+    Map<String, Object> body = request("csvspatialjoin?lat=1&lon=2&header=true&mode=counts");
+    assertEquals(Map.of("A", 2.0, "D", 1.0), body.get("counts"));
+    assertEquals(null, body.get("data"));
+    // without header=true the header row is an invalid point
+    assertEquals(2.0, request("csvspatialjoin?lat=1&lon=2&mode=counts").get("invalid"));
+  }
+
+  /**
+   * Tests bad parameters and a missing redlining file.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIErrors() throws IOException {
+    assertEquals("error_bad_request", request("csvspatialjoin?lat=1").get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("csvspatialjoin?lat=1&lon=x").get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("csvspatialjoin?lat=1&lon=2&mode=map").get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("csvspatialjoin?lat=1&lon=2&filename=data/none.csv").get("errorMessage"));
+    assertEquals("error_datasource", request("missing?lat=1&lon=2").get("errorMessage"));
+  }
+}
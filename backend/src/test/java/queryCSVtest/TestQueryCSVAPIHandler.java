@@ -0,0 +1,113 @@
+package queryCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import csv.CSVDataHolder;
+import csv.CSVDataset;
+import csv.QueryCSVHandler;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Spark;
+
+/**
+ * Testing suite for the QueryCSV API handler.
+ */
+public class TestQueryCSVAPIHandler {
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  /**
+   * Before each test runs, load a small CSV and restart Spark server for the querycsv endpoint.
+   */
+  @BeforeEach
+  public void setup() {
+    CSVDataHolder.registry.clear();
+    CSVDataHolder.registry.put(new CSVDataset("data/sales.csv", List.of(
+        List.of("east", "10"), List.of("west", "4"), List.of("east", "7"))));
+    Spark.get("/querycsv", new QueryCSVHandler());
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/querycsv");
+    Spark.awaitStop();
+  }
+
+  /**
+   * Helper method to request an API call and read its JSON body into a Map.
+   * @param apiCall the call string, including endpoint
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> request(String apiCall) throws IOException {
+    URL requestURL = new URL("http://localhost:" + Spark.port() + "/" + apiCall);
+    HttpURLConnection clientConnection = (HttpURLConnection) requestURL.openConnection();
+    clientConnection.connect();
+    assertEquals(200, clientConnection.getResponseCode());
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    Map<String, Object> body =
+        adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    return body;
+  }
+
+  /**
+   * Tests a grouped query, and the default count over all rows.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIGroupedQuery() throws IOException {
+    Map<String, Object> body = request("querycsv?groupBy=0&agg=count,sum:1&filter=1:gt:5");
+    assertEquals("success", body.get("result"));
+    assertEquals(List.of("0", "count", "sum:1"), body.get("columns"));
+    assertEquals(List.of(List.of("east", 2.0, 17.0)), body.get("rows"));
+
+    assertEquals(List.of(List.of(3.0)), request("querycsv").get("rows"));
+  }
+
+  /**
+   * Tests that malformed queries, columns past the widest row and unknown parameters are bad
+   * requests.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testAPIBadQueries() throws IOException {
+    assertEquals("error_bad_request", request("querycsv?agg=median:1").get("errorMessage"));
+    assertEquals("error_bad_request", request("querycsv?groupBy=x").get("errorMessage"));
+    assertEquals("error_bad_request", request("querycsv?filter=1:gt").get("errorMessage"));
+    assertEquals("error_bad_request", request("querycsv?order=1").get("errorMessage"));
+    assertEquals("error_bad_request", request("querycsv?groupBy=2").get("errorMessage"));
+    assertEquals("error_bad_request", request("querycsv?filter=5:eq:x").get("errorMessage"));
+    assertEquals("error_bad_request", request("querycsv?agg=sum:2").get("errorMessage"));
+    assertEquals("error_bad_request",
+        request("querycsv?filename=data/other.csv").get("errorMessage"));
+  }
+}
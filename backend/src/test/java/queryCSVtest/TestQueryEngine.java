@@ -0,0 +1,103 @@
+package queryCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import csv.columnar.CSVColumns;
+import csv.columnar.LongIntHashMap;
+import csv.query.Aggregate;
+import csv.query.Filter;
+import csv.query.QueryEngine;
+import csv.query.QueryResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for the columnar query engine behind /querycsv.
+ */
+public class TestQueryEngine {
+
+  private static final List<List<String>> SALES = List.of(
+      List.of("region", "product", "units", "price"),
+      List.of("east", "apple", "10", "1.5"),
+      List.of("west", "apple", "4", "1.25"),
+      List.of("east", "pear", "7", "2"),
+      List.of("east", "apple", "n/a", "1.5"),
+      List.of("west", "pear", "3"),
+      List.of("north"));
+
+  private static List<Aggregate> aggregates(String... specs) {
+    List<Aggregate> aggregates = new ArrayList<>();
+    for (String spec : specs) {
+      aggregates.add(Aggregate.parse(spec));
+    }
+    return aggregates;
+  }
+
+  /**
+   * Tests grouping by one and two columns, skipping the header row and non-numeric cells.
+   */
+  @Test
+  public void testGroupBy() {
+    CSVColumns columns = new CSVColumns(SALES);
+    QueryResult byRegion = QueryEngine.run(columns, 1, List.of(), new int[] {0},
+        aggregates("count", "sum:2", "avg:2", "min:3", "max:3"));
+    assertEquals(List.of("0", "count", "sum:2", "avg:2", "min:3", "max:3"), byRegion.columns());
+    assertEquals(List.of(
+        Arrays.asList("east", 3L, 17.0, 8.5, 1.5, 2.0),
+        Arrays.asList("west", 2L, 7.0, 3.5, 1.25, 1.25),
+        Arrays.asList("north", 1L, null, null, null, null)), byRegion.rows());
+
+    QueryResult byBoth = QueryEngine.run(columns, 1, List.of(), new int[] {0, 1},
+        aggregates("count"));
+    assertEquals(List.of(
+        Arrays.asList("east", "apple", 2L),
+        Arrays.asList("west", "apple", 1L),
+        Arrays.asList("east", "pear", 1L),
+        Arrays.asList("west", "pear", 1L),
+        Arrays.asList("north", null, 1L)), byBoth.rows());
+  }
+
+  /**
+   * Tests text and numeric filters, and that a query with no group-by columns gives one row even
+   * when nothing matches.
+   */
+  @Test
+  public void testFilters() {
+    CSVColumns columns = new CSVColumns(SALES);
+    QueryResult apples = QueryEngine.run(columns, 0,
+        List.of(Filter.parse("1:eq:apple"), Filter.parse("2:ge:5")), new int[0],
+        aggregates("count", "sum:2"));
+    assertEquals(List.of(Arrays.asList(1L, 10.0)), apples.rows());
+
+    QueryResult notEast = QueryEngine.run(columns, 1, List.of(Filter.parse("0:ne:east")),
+        new int[0], aggregates("count"));
+    assertEquals(List.of(List.of(3L)), notEast.rows());
+
+    QueryResult none = QueryEngine.run(columns, 1, List.of(Filter.parse("0:eq:south")),
+        new int[0], aggregates("count", "max:2"));
+    assertEquals(List.of(Arrays.asList(0L, null)), none.rows());
+
+    assertThrows(IllegalArgumentException.class, () -> Filter.parse("2:like:a"));
+    assertThrows(IllegalArgumentException.class, () -> Filter.parse("2:gt:ten"));
+    assertThrows(IllegalArgumentException.class, () -> Aggregate.parse("sum"));
+  }
+
+  /**
+   * Tests that the open-addressing map keeps every key through many resizes.
+   */
+  @Test
+  public void testLongIntHashMap() {
+    LongIntHashMap map = new LongIntHashMap();
+    for (int i = 0; i < 100_000; i++) {
+      assertEquals(i, map.getOrPut(i * 31L - 50_000, i));
+    }
+    assertEquals(100_000, map.size());
+    for (int i = 0; i < 100_000; i++) {
+      assertEquals(i, map.getOrPut(i * 31L - 50_000, -5));
+    }
+    assertEquals(-1, map.get(1));
+  }
+}
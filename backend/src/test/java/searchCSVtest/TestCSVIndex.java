@@ -0,0 +1,89 @@
+package searchCSVtest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import csv.search.CSVIndex;
+import csv.search.ColumnIndex;
+import csv.search.PostingLists;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing suite for unit testing the column indexes behind the searchcsv endpoint.
+ */
+public class TestCSVIndex {
+
+  private final List<List<String>> rows = List.of(
+      List.of("RI", "Providence", "Fox Point"),
+      List.of("MA", "Boston", "Back Bay"),
+      List.of("RI", "providence", "College Hill"),
+      List.of("CT", "Hartford"),
+      List.of("ri", "Newport", "Point"));
+
+  /**
+   * Tests that exact searches return the sorted rows holding the value, with and without regard
+   * to case, and that rows too short for the column are never matched.
+   */
+  @Test
+  public void testExactSearch() {
+    CSVIndex index = new CSVIndex(this.rows);
+    assertArrayEquals(new int[] {0, 2}, index.column(0).exact("RI", false));
+    assertArrayEquals(new int[] {0, 2, 4}, index.column(0).exact("ri", true));
+    assertArrayEquals(new int[] {}, index.column(2).exact("Hartford", false));
+    assertEquals(4, index.column(2).distinctValues());
+  }
+
+  /**
+   * Tests substring searches, both for needles long enough to use the trigram index and for
+   * short needles that are checked against every distinct value.
+   */
+  @Test
+  public void testSubstringSearch() {
+    ColumnIndex neighborhoods = ColumnIndex.build(this.rows, 2);
+    assertArrayEquals(new int[] {0, 4}, neighborhoods.substring("Point", false));
+    assertArrayEquals(new int[] {0, 4}, neighborhoods.substring("POINT", true));
+    assertArrayEquals(new int[] {}, neighborhoods.substring("POINT", false));
+    assertArrayEquals(new int[] {0, 2, 4}, neighborhoods.substring("o", false));
+    assertArrayEquals(new int[] {0, 2}, ColumnIndex.build(this.rows, 1)
+        .substring("rovidence", true));
+  }
+
+  /**
+   * Tests that column indexes are cached and only built once per column.
+   */
+  @Test
+  public void testIndexIsCached() {
+    CSVIndex index = new CSVIndex(this.rows);
+    assertSame(index.column(1), index.column(1));
+  }
+
+  /**
+   * Tests that a column past the widest row is refused rather than indexed.
+   */
+  @Test
+  public void testColumnBeyondWidestRow() {
+    CSVIndex index = new CSVIndex(this.rows);
+    assertEquals(3, index.width());
+    assertThrows(IllegalArgumentException.class, () -> index.column(3));
+    assertThrows(IllegalArgumentException.class, () -> index.column(Integer.MAX_VALUE));
+    assertThrows(IllegalArgumentException.class, () -> index.column(-1));
+  }
+
+  /**
+   * Tests intersecting posting lists of similar and very different lengths.
+   */
+  @Test
+  public void testIntersect() {
+    assertArrayEquals(new int[] {3, 7}, PostingLists.intersect(new int[] {1, 3, 5, 7},
+        new int[] {2, 3, 7, 9}));
+    int[] large = new int[1000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = i * 2;
+    }
+    assertArrayEquals(new int[] {0, 500, 1998}, PostingLists.intersect(
+        new int[] {0, 3, 500, 1001, 1998, 5000}, large));
+  }
+}
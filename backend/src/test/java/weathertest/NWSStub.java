@@ -0,0 +1,166 @@
+package weathertest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the NWS API, for testing the weather endpoint without the network. It
+ * answers /points/lat,lon with a grid cell derived from the point, and the cell's /forecast with a
+ * temperature derived from the cell, and the outline of the cell as its geometry, after an optional
+ * delay, and counts the requests it gets.
+ * Forecasts carry an ETag, which changes with the stub's version, and are answered with 304 Not
+ * Modified when a request's If-None-Match still matches it.
+ */
+public class NWSStub implements AutoCloseable {
+
+  static {
+    // the server writes a response's headers and body separately, which without TCP_NODELAY waits
+    // out the client's delayed ACK on every request of a kept-alive connection
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  final AtomicInteger pointRequests = new AtomicInteger();
+  final AtomicInteger forecastRequests = new AtomicInteger();
+  final AtomicInteger notModified = new AtomicInteger();
+  // requests being answered right now, and the most there have been at once
+  final AtomicInteger inFlight = new AtomicInteger();
+  final AtomicInteger maxInFlight = new AtomicInteger();
+  volatile long delayMillis;
+  // every slowEvery-th request is delayed by slowMillis instead, to give the stub a slow tail
+  volatile int slowEvery;
+  volatile long slowMillis;
+  private final AtomicInteger requests = new AtomicInteger();
+  // sent as the Cache-Control of forecasts, if set
+  volatile String forecastCacheControl;
+  // bumped to publish new forecasts, which changes their ETag
+  volatile int version;
+
+  /**
+   * Starts the stub on a free local port.
+   * @throws IOException if the server cannot start
+   */
+  public NWSStub() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.executor = Executors.newCachedThreadPool();
+    this.server.setExecutor(this.executor);
+    this.server.createContext("/points/", this::points);
+    this.server.createContext("/gridpoints/", this::forecast);
+    this.server.start();
+  }
+
+  /**
+   * Gets the base URI to give an NWSClient.
+   */
+  String baseUri() {
+    return "http://localhost:" + this.server.getAddress().getPort() + "/";
+  }
+
+  /**
+   * Gets the temperature the stub reports for the grid cell holding a point.
+   */
+  static int temperature(double lat, double lon) {
+    return Math.floorMod(gridX(lat) * 7 + gridY(lon), 100);
+  }
+
+  private static int gridX(double lat) {
+    return (int) Math.floor(lat * 10);
+  }
+
+  private static int gridY(double lon) {
+    return (int) Math.floor(lon * 10);
+  }
+
+  private void points(HttpExchange exchange) throws IOException {
+    this.pointRequests.incrementAndGet();
+    String[] point = exchange.getRequestURI().getPath().substring("/points/".length()).split(",");
+    double lat;
+    double lon;
+    try {
+      lat = Double.parseDouble(point[0]);
+      lon = Double.parseDouble(point[1]);
+    } catch (RuntimeException e) {
+      this.respond(exchange, 404, "{\"status\":404}");
+      return;
+    }
+    this.respond(exchange, 200, "{\"properties\":{\"gridId\":\"STB\",\"gridX\":" + gridX(lat)
+        + ",\"gridY\":" + gridY(lon) + "}}");
+  }
+
+  private void forecast(HttpExchange exchange) throws IOException {
+    this.forecastRequests.incrementAndGet();
+    // /gridpoints/STB/x,y/forecast
+    String[] cell = exchange.getRequestURI().getPath().split("/")[3].split(",");
+    int temperature = Math.floorMod(Integer.parseInt(cell[0]) * 7 + Integer.parseInt(cell[1]), 100);
+    String etag = "\"" + cell[0] + "," + cell[1] + "-v" + this.version + "\"";
+    exchange.getResponseHeaders().set("ETag", etag);
+    if (this.forecastCacheControl != null) {
+      exchange.getResponseHeaders().set("Cache-Control", this.forecastCacheControl);
+    }
+    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      this.notModified.incrementAndGet();
+      this.respond(exchange, 304, null);
+      return;
+    }
+    this.respond(exchange, 200, "{\"geometry\":" + outline(Integer.parseInt(cell[0]),
+        Integer.parseInt(cell[1])) + ",\"properties\":{\"periods\":[{\"number\":1,"
+        + "\"temperature\":" + temperature + ",\"temperatureUnit\":\"F\"}]}}");
+  }
+
+  /**
+   * Gets the GeoJSON Polygon of a grid cell, the square of points whose gridX and gridY it has.
+   */
+  private static String outline(int gridX, int gridY) {
+    double south = gridX / 10.0;
+    double north = (gridX + 1) / 10.0;
+    double west = gridY / 10.0;
+    double east = (gridY + 1) / 10.0;
+    return "{\"type\":\"Polygon\",\"coordinates\":[[[" + west + "," + south + "],[" + east + ","
+        + south + "],[" + east + "," + north + "],[" + west + "," + north + "],[" + west + ","
+        + south + "]]]}";
+  }
+
+  private void respond(HttpExchange exchange, int status, String body) throws IOException {
+    this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+    int slowEvery = this.slowEvery;
+    long delay = slowEvery > 0 && this.requests.incrementAndGet() % slowEvery == 0
+        ? this.slowMillis : this.delayMillis;
+    try {
+      if (delay > 0) {
+        Thread.sleep(delay);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      this.inFlight.decrementAndGet();
+    }
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+      return;
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/geo+json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Stops the stub.
+   */
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.executor.shutdownNow();
+  }
+}
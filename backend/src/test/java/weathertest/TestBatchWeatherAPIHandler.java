@@ -0,0 +1,186 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Spark;
+import weather.BatchWeatherHandler;
+import weather.NWSClient;
+import weather.WeatherHandler;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
+
+/**
+ * Testing suite for the batch weather handler (POST /weather) against a local stub of the NWS API.
+ */
+public class TestBatchWeatherAPIHandler {
+
+  private static final int CONCURRENCY = 8;
+
+  private NWSStub stub;
+  private ExecutorService executor;
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  /**
+   * Before each test runs, start the stub and restart Spark server for the batch endpoint.
+   * @throws IOException if the stub cannot start
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    this.stub = new NWSStub();
+    this.executor = Executors.newFixedThreadPool(CONCURRENCY);
+    NWSClient nws = new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 4),
+        this.stub.baseUri(), Duration.ofSeconds(5));
+    WeatherHandler weather = new WeatherHandler(nws, new GridCache(0.01, 60_000, 1000),
+        new ForecastCache(100));
+    Spark.post("/weather", new BatchWeatherHandler(weather, this.executor, 100));
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint, and stop the stub.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/weather");
+    Spark.awaitStop();
+    this.stub.close();
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Helper method to POST a JSON body to the weather endpoint and read its JSON response into a
+   * Map.
+   * @param body the request body
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static private Map<String, Object> post(String body) throws IOException {
+    URL requestURL = new URL("http://localhost:" + Spark.port() + "/weather");
+    HttpURLConnection clientConnection = (HttpURLConnection) requestURL.openConnection();
+    clientConnection.setRequestMethod("POST");
+    clientConnection.setRequestProperty("Content-Type", "application/json");
+    clientConnection.setDoOutput(true);
+    try (OutputStream out = clientConnection.getOutputStream()) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    assertEquals(200, clientConnection.getResponseCode());
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    Map<String, Object> response =
+        adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    return response;
+  }
+
+  /**
+   * Tests that a batch answers in input order, looks up each distinct point and each grid cell
+   * once, keeps within the in-flight limit, and takes far less time than looking the points up one
+   * by one.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testBatchDedupesAndRunsConcurrently() throws IOException {
+    this.stub.delayMillis = 100;
+    // 8 points, more than a grid square apart, in each of 3 grid cells, each asked for twice
+    StringBuilder body = new StringBuilder("{\"points\": [");
+    double[][] points = new double[48][];
+    for (int i = 0; i < points.length; i++) {
+      int point = i % 24;
+      points[i] = new double[] {41.001 + (point % 3) * 0.1 + (point / 3) * 0.011, -71.45};
+      body.append(i == 0 ? "" : ",").append("{\"lat\": ").append(points[i][0])
+          .append(", \"lon\": ").append(points[i][1]).append("}");
+    }
+    body.append("]}");
+
+    long start = System.nanoTime();
+    Map<String, Object> response = post(body.toString());
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals("success", response.get("result"));
+    assertEquals(48.0, response.get("points"));
+    assertEquals(3.0, response.get("cells"));
+    List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("results");
+    for (int i = 0; i < points.length; i++) {
+      Map<String, Object> result = results.get(i);
+      assertEquals(points[i][0], result.get("lat"));
+      assertEquals("success", result.get("result"));
+      assertEquals(NWSStub.temperature(points[i][0], points[i][1]) + ".0 F",
+          result.get("temperature"));
+    }
+    assertEquals(24, this.stub.pointRequests.get());
+    assertEquals(3, this.stub.forecastRequests.get());
+    assertTrue(this.stub.maxInFlight.get() <= CONCURRENCY);
+    // one by one, the 27 requests would take 2.7s; 8 at a time, four rounds take about 0.4s
+    assertTrue(elapsedMillis < 1500, "batch took " + elapsedMillis + "ms");
+  }
+
+  /**
+   * Tests that items that cannot be looked up get their own errors without failing the batch.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPerItemErrors() throws IOException {
+    Map<String, Object> response = post("{\"points\": [{\"lat\": 41.8268, \"lon\": -71.4029},"
+        + " {\"lat\": \"north\", \"lon\": -71}, 7,"
+        + " {\"lat\": \"40.7128\", \"lon\": \"-74.0060\"}]}");
+    List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("results");
+    assertEquals(4, results.size());
+    assertEquals("success", results.get(0).get("result"));
+    assertEquals("error_bad_request", results.get(1).get("error"));
+    assertEquals("error_bad_request", results.get(2).get("error"));
+    assertEquals(NWSStub.temperature(40.7128, -74.0060) + ".0 F",
+        results.get(3).get("temperature"));
+
+    // with the NWS API down, a lookup is a datasource error
+    this.stub.close();
+    results = (List<Map<String, Object>>) post("{\"points\": [{\"lat\": 1, \"lon\": 2}]}")
+        .get("results");
+    assertEquals("error_datasource", results.get(0).get("error"));
+  }
+
+  /**
+   * Tests that a body that is not JSON, has no points, or has too many is refused as a whole.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testBadBodies() throws IOException {
+    assertEquals("error_bad_json", post("{points").get("errorMessage"));
+    assertEquals("error_bad_request", post("{\"lat\": 1}").get("errorMessage"));
+    assertEquals("error_bad_request",
+        post("{\"points\": [" + "{},".repeat(100) + "{}]}").get("errorMessage"));
+  }
+}
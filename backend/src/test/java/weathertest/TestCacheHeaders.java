@@ -0,0 +1,60 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.http.HttpHeaders;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import weather.cache.CacheHeaders;
+import weather.cache.CacheHeaders.Freshness;
+
+/**
+ * Testing suite for reading freshness from HTTP caching headers.
+ */
+public class TestCacheHeaders {
+
+  private static final long NOW = 1_700_000_000_000L;
+
+  private static Freshness of(Map<String, List<String>> headers) {
+    return CacheHeaders.of(HttpHeaders.of(headers, (name, value) -> true), NOW);
+  }
+
+  /**
+   * Tests max-age, s-maxage (which wins for a shared cache) and Age.
+   */
+  @Test
+  public void testMaxAge() {
+    assertEquals(new Freshness(true, 300_000),
+        of(Map.of("Cache-Control", List.of("public, max-age=300"))));
+    assertEquals(new Freshness(true, 60_000),
+        of(Map.of("Cache-Control", List.of("max-age=300, s-maxage=60"))));
+    assertEquals(new Freshness(true, 200_000),
+        of(Map.of("Cache-Control", List.of("max-age=300"), "Age", List.of("100"))));
+    assertEquals(new Freshness(true, 0),
+        of(Map.of("Cache-Control", List.of("max-age=300"), "Age", List.of("900"))));
+  }
+
+  /**
+   * Tests Expires against Date, and headers without freshness.
+   */
+  @Test
+  public void testExpires() {
+    assertEquals(new Freshness(true, 1_800_000), of(Map.of(
+        "Date", List.of("Tue, 14 Nov 2023 12:00:00 GMT"),
+        "Expires", List.of("Tue, 14 Nov 2023 12:30:00 GMT"))));
+    assertEquals(new Freshness(true, 0), of(Map.of("Expires", List.of("0"))));
+    assertEquals(new Freshness(true, 0), of(Map.of("ETag", List.of("\"a\""))));
+  }
+
+  /**
+   * Tests the directives that stop a response from being reused without revalidating, or at all.
+   */
+  @Test
+  public void testNoCacheAndNoStore() {
+    assertEquals(new Freshness(true, 0),
+        of(Map.of("Cache-Control", List.of("no-cache, max-age=300"))));
+    assertEquals(new Freshness(false, 0), of(Map.of("Cache-Control", List.of("no-store"))));
+    assertEquals(new Freshness(false, 0), of(Map.of("Cache-Control", List.of("private"))));
+  }
+}
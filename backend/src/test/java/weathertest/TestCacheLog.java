@@ -0,0 +1,257 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weather.GridData;
+import weather.NWSClient;
+import weather.cache.CacheLog;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
+
+/**
+ * Testing suite for the append-only CacheLog, and for the weather caches persisted to one.
+ */
+public class TestCacheLog {
+
+  @TempDir
+  Path dir;
+
+  private final AtomicLong now = new AtomicLong(1_000);
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Tests that the latest put of each key survives reopening, and removed and expired keys do not.
+   * @throws IOException if the log cannot be used
+   */
+  @Test
+  public void testReopen() throws IOException {
+    Path file = this.dir.resolve("cache/test.log");
+    try (CacheLog log = CacheLog.open(file)) {
+      log.put("a", 5_000, bytes("one"));
+      log.put("b", 5_000, bytes("two"));
+      log.put("a", 5_000, bytes("three"));
+      log.put("c", 2_000, bytes("expires"));
+      log.put("d", 5_000, bytes("removed"));
+      log.remove("d");
+    }
+    try (CacheLog log = CacheLog.open(file)) {
+      assertEquals(3, log.size());
+      Map<String, CacheLog.Entry> entries = log.load(3_000);
+      // in the order they were last written
+      assertEquals(java.util.List.of("b", "a"), java.util.List.copyOf(entries.keySet()));
+      assertArrayEquals(bytes("three"), entries.get("a").value());
+      assertEquals(5_000, entries.get("a").expiresAt());
+    }
+  }
+
+  /**
+   * Tests that a record torn by a crash is dropped, along with anything after it, and the log can
+   * be written to again.
+   * @throws IOException if the log cannot be used
+   */
+  @Test
+  public void testTornRecord() throws IOException {
+    Path file = this.dir.resolve("test.log");
+    try (CacheLog log = CacheLog.open(file)) {
+      log.put("a", Long.MAX_VALUE, bytes("kept"));
+      log.put("b", Long.MAX_VALUE, bytes("torn"));
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 2);
+    }
+    try (CacheLog log = CacheLog.open(file)) {
+      assertEquals(Map.of("a", "kept"), strings(log.load(0)));
+      // the torn record's 30 bytes, less the 2 cut off
+      assertEquals(28L, log.metrics().get("truncatedBytes"));
+      log.put("c", Long.MAX_VALUE, bytes("after"));
+    }
+    try (CacheLog log = CacheLog.open(file)) {
+      assertEquals(Map.of("a", "kept", "c", "after"), strings(log.load(0)));
+    }
+  }
+
+  /**
+   * Tests that rewriting keys over and over compacts the log to about the size of its live records,
+   * on the log's writer thread.
+   * @throws IOException if the log cannot be used
+   */
+  @Test
+  public void testCompaction() throws IOException {
+    Path file = this.dir.resolve("test.log");
+    byte[] value = new byte[1000];
+    try (CacheLog log = CacheLog.open(file)) {
+      for (int i = 0; i < 1000; i++) {
+        value[0] = (byte) i;
+        log.put("key" + (i % 10), Long.MAX_VALUE, value.clone());
+      }
+      log.flush();
+      assertEquals(0L, log.metrics().get("droppedWrites"));
+      assertTrue((long) log.metrics().get("compactions") > 0);
+      assertTrue(Files.size(file) < 200_000);
+    }
+    try (CacheLog log = CacheLog.open(file)) {
+      Map<String, CacheLog.Entry> entries = log.load(0);
+      assertEquals(10, entries.size());
+      assertEquals((byte) 999, entries.get("key9").value()[0]);
+    }
+  }
+
+  /**
+   * Tests that a GridCache persisted to a log comes back warm after a restart, without the entries
+   * that expired while it was down.
+   * @throws Exception if a lookup or the log fails
+   */
+  @Test
+  public void testGridCacheRestart() throws Exception {
+    Path file = this.dir.resolve("grid.log");
+    AtomicInteger loads = new AtomicInteger();
+    GridCache before = new GridCache(0.01, 60_000, 100, this.now::get);
+    try (CacheLog log = CacheLog.open(file)) {
+      before.persistTo(log);
+      before.get(41.8268, -71.4029, () -> {
+        loads.incrementAndGet();
+        return new GridData("BOX", 64, 64);
+      });
+      this.now.addAndGet(30_000);
+      before.get(40.7128, -74.0060, () -> new GridData("OKX", 33, 35));
+    }
+
+    this.now.addAndGet(40_000);
+    GridCache after = new GridCache(0.01, 60_000, 100, this.now::get);
+    try (CacheLog log = CacheLog.open(file)) {
+      after.persistTo(log);
+      GridData grid = after.get(41.8261, -71.4021, () -> {
+        loads.incrementAndGet();
+        return new GridData("OTHER", 0, 0);
+      });
+      // loaded 70 seconds ago, so expired
+      assertEquals("OTHER", grid.getGridId());
+      grid = after.get(40.7128, -74.0060, () -> new GridData("OTHER", 0, 0));
+      assertEquals("OKX", grid.getGridId());
+      assertEquals(33, grid.getGridX());
+      assertEquals(1L, after.metrics().get("hits"));
+    }
+  }
+
+  /**
+   * Tests that a restarted ForecastCache serves a forecast that is still fresh without asking the
+   * NWS, and revalidates one that went stale while it was down.
+   * @throws Exception if a request or the log fails
+   */
+  @Test
+  public void testForecastCacheRestart() throws Exception {
+    Path file = this.dir.resolve("forecast.log");
+    try (NWSStub stub = new NWSStub()) {
+      stub.forecastCacheControl = "max-age=60";
+      NWSClient nws = new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 2),
+          stub.baseUri(), Duration.ofSeconds(5));
+      String path = "gridpoints/STB/418,-715/forecast";
+      ForecastCache before = new ForecastCache(100, this.now::get);
+      String body;
+      try (CacheLog log = CacheLog.open(file)) {
+        before.persistTo(log);
+        body = before.get(path, nws).body();
+      }
+      assertEquals(1, stub.forecastRequests.get());
+
+      ForecastCache after = new ForecastCache(100, this.now::get);
+      try (CacheLog log = CacheLog.open(file)) {
+        after.persistTo(log);
+        assertEquals(body, after.get(path, nws).body());
+        assertEquals(1, stub.forecastRequests.get());
+        this.now.addAndGet(120_000);
+      }
+
+      ForecastCache stale = new ForecastCache(100, this.now::get);
+      try (CacheLog log = CacheLog.open(file)) {
+        stale.persistTo(log);
+        assertEquals(body, stale.get(path, nws).body());
+        assertEquals(2, stub.forecastRequests.get());
+        assertEquals(1, stub.notModified.get());
+      }
+    }
+  }
+
+  /**
+   * Tests that a log written in the first format, whose forecasts did not record when they were
+   * fetched, is emptied on opening rather than failing the cache that loads it, and that a record
+   * which does not decode is dropped from the log.
+   * @throws Exception if the log fails
+   */
+  @Test
+  public void testOlderFormatIsDiscarded() throws Exception {
+    Path file = this.dir.resolve("forecast.log");
+    byte[] version1 = version1ForecastLog("gridpoints/STB/418,-715/forecast");
+    Files.write(file, version1);
+    ForecastCache cache = new ForecastCache(100, this.now::get);
+    try (CacheLog log = CacheLog.open(file)) {
+      cache.persistTo(log);
+      assertEquals(0, cache.size());
+      assertEquals((long) version1.length, log.metrics().get("discardedBytes"));
+      log.put("gridpoints/STB/1,1/forecast", Long.MAX_VALUE, bytes("not a forecast"));
+    }
+
+    ForecastCache after = new ForecastCache(100, this.now::get);
+    try (CacheLog log = CacheLog.open(file)) {
+      assertEquals(0L, log.metrics().get("discardedBytes"));
+      after.persistTo(log);
+      assertEquals(0, after.size());
+      log.flush();
+      assertEquals(0, log.size());
+    }
+  }
+
+  /**
+   * Builds a log as the first format wrote it: version 1 in the header, and a forecast entry of
+   * body, ETag, Last-Modified and the time it is fresh until.
+   */
+  private static byte[] version1ForecastLog(String path) throws IOException {
+    ByteArrayOutputStream value = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(value)) {
+      for (String field : new String[] {"{\"properties\":{}}", "\"etag\""}) {
+        out.writeInt(field.length());
+        out.write(bytes(field));
+      }
+      out.writeInt(-1);
+      out.writeLong(Long.MAX_VALUE);
+    }
+    byte[] key = bytes(path);
+    ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 4 + key.length + 4 + value.size());
+    payload.put((byte) 1).putLong(Long.MAX_VALUE).putInt(key.length).put(key)
+        .putInt(value.size()).put(value.toByteArray()).flip();
+    CRC32 crc = new CRC32();
+    crc.update(payload.duplicate());
+    ByteBuffer log = ByteBuffer.allocate(8 + 8 + payload.remaining());
+    log.putInt(0x57434C47).putInt(1).putInt(payload.remaining()).putInt((int) crc.getValue())
+        .put(payload);
+    return log.array();
+  }
+
+  private static Map<String, String> strings(Map<String, CacheLog.Entry> entries) {
+    Map<String, String> strings = new java.util.HashMap<>();
+    entries.forEach((key, entry) -> strings.put(key, new String(entry.value(),
+        StandardCharsets.UTF_8)));
+    return strings;
+  }
+}
@@ -0,0 +1,122 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import weather.GridData;
+import weather.cache.GridCache;
+import weather.exceptions.DatasourceException;
+
+/**
+ * Testing suite for the GridCache of NWS grid lookups.
+ */
+public class TestGridCache {
+
+  private final AtomicLong now = new AtomicLong(1_000);
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private GridData load(String id) {
+    this.loads.incrementAndGet();
+    return new GridData(id, 1, 2);
+  }
+
+  /**
+   * Gets the outline of the square from south to north and west to east, as alternating longitudes
+   * and latitudes.
+   */
+  private static double[] outline(double south, double west, double north, double east) {
+    return new double[] {west, south, east, south, east, north, west, north, west, south};
+  }
+
+  /**
+   * Tests that points in one square share an entry once its cell's outline is known and points in
+   * another do not, including across zero.
+   * @throws Exception if a load fails
+   */
+  @Test
+  public void testQuantizedHits() throws Exception {
+    GridCache cache = new GridCache(0.01, 60_000, 10, this.now::get);
+    GridData first = cache.get(41.8268, -71.4029, () -> this.load("BOX"));
+    assertSame(first, cache.get(41.8268, -71.4029, () -> this.load("OTHER")));
+    cache.setCell(41.8268, -71.4029, first, outline(41.8, -71.5, 41.9, -71.4));
+    assertSame(first, cache.get(41.8261, -71.4021, () -> this.load("OTHER")));
+    assertEquals("OTHER", cache.get(41.8368, -71.4029, () -> this.load("OTHER")).getGridId());
+    cache.get(0.001, -0.001, () -> this.load("A"));
+    assertEquals("B", cache.get(-0.001, -0.001, () -> this.load("B")).getGridId());
+    assertEquals("C", cache.get(0.001, 0.001, () -> this.load("C")).getGridId());
+    assertEquals(5, this.loads.get());
+
+    Map<String, Object> metrics = cache.metrics();
+    assertEquals(2L, metrics.get("hits"));
+    assertEquals(5L, metrics.get("misses"));
+    assertEquals(2.0 / 7, (double) metrics.get("hitRate"), 1e-9);
+  }
+
+  /**
+   * Tests that a point of a square outside the outline of the square's cell is looked up rather
+   * than given that cell, that a point of a square whose outline is not known yet is looked up,
+   * and that points that are not finite are rejected.
+   * @throws Exception if a load fails
+   */
+  @Test
+  public void testSquareStraddlingCells() throws Exception {
+    GridCache cache = new GridCache(0.01, 60_000, 10, this.now::get);
+    cache.get(41.8268, -71.4029, () -> this.load("WEST"));
+    assertEquals("EAST", cache.get(41.8268, -71.4021, () -> this.load("EAST")).getGridId());
+    GridData east = cache.get(41.8268, -71.4021, () -> this.load("OTHER"));
+    assertEquals("EAST", east.getGridId());
+    // the cells meet at -71.4025, across the middle of the square
+    cache.setCell(41.8268, -71.4021, east, outline(41.8, -71.4025, 41.9, -71.3));
+    assertSame(east, cache.get(41.8261, -71.4022, () -> this.load("OTHER")));
+    assertEquals("WEST", cache.get(41.8268, -71.4029, () -> this.load("WEST")).getGridId());
+    assertEquals(3, this.loads.get());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> cache.get(Double.NaN, 0, () -> this.load("NAN")));
+    assertThrows(IllegalArgumentException.class,
+        () -> cache.get(0, Double.POSITIVE_INFINITY, () -> this.load("INFINITY")));
+    assertEquals(3, this.loads.get());
+  }
+
+  /**
+   * Tests that entries expire after the TTL and that the least recently used entry is evicted.
+   * @throws Exception if a load fails
+   */
+  @Test
+  public void testExpiryAndEviction() throws Exception {
+    GridCache cache = new GridCache(0.01, 60_000, 2, this.now::get);
+    cache.get(1, 1, () -> this.load("A"));
+    cache.get(2, 2, () -> this.load("B"));
+    this.now.addAndGet(30_000);
+    // touching A makes B the least recently used
+    cache.get(1, 1, () -> this.load("A2"));
+    cache.get(3, 3, () -> this.load("C"));
+    assertEquals(2, cache.size());
+    assertEquals(1L, cache.metrics().get("evictions"));
+    assertEquals("A", cache.get(1, 1, () -> this.load("A3")).getGridId());
+    assertEquals("B2", cache.get(2, 2, () -> this.load("B2")).getGridId());
+
+    this.now.addAndGet(60_000);
+    assertEquals("A4", cache.get(1, 1, () -> this.load("A4")).getGridId());
+    assertEquals(1L, cache.metrics().get("expirations"));
+  }
+
+  /**
+   * Tests that a failed lookup is not cached.
+   * @throws Exception if a load fails
+   */
+  @Test
+  public void testFailuresAreNotCached() throws Exception {
+    GridCache cache = new GridCache(0.01, 60_000, 2, this.now::get);
+    assertThrows(DatasourceException.class, () -> cache.get(1, 1, () -> {
+      throw new DatasourceException("API error");
+    }));
+    assertEquals("A", cache.get(1, 1, () -> this.load("A")).getGridId());
+    assertEquals(0L, cache.metrics().get("hits"));
+  }
+}
@@ -0,0 +1,104 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import weather.GridData;
+import weather.NWSClient;
+import weather.TempData;
+import weather.WeatherHandler;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
+
+/**
+ * Compares sending NWS requests through one shared NWSClient against building a new HttpClient
+ * for every request, as WeatherHandler used to, against a local stub of the API, by the mean
+ * latency of a weather lookup and the most threads alive at once for each. Both depend on the
+ * machine and what else it is running, so they are only checked when the tests are run with
+ * -Dbenchmarks=true; otherwise only the answers are.
+ */
+public class TestNWSClientBenchmark {
+
+  private static final int LOOKUPS = 60;
+  private static final boolean BENCHMARKS = Boolean.getBoolean("benchmarks");
+  // a lookup against the local stub takes a few milliseconds; ten times that is a regression
+  private static final double MAX_SHARED_MILLIS = 50;
+  // not used, since the lookups call the NWS requests directly
+  private static final GridCache CACHE = new GridCache(0.01, 0, 0);
+  // keeps no forecasts, so every lookup reaches the stub
+  private static final ForecastCache NO_FORECASTS = new ForecastCache(0);
+
+  /**
+   * Runs count lookups, each one a points request and a forecast request.
+   * @return mean nanoseconds per lookup
+   */
+  private static double lookups(NWSStub stub, boolean shared, HttpClient sharedClient, int count)
+      throws Exception {
+    NWSClient sharedNws = new NWSClient(sharedClient, stub.baseUri(), Duration.ofSeconds(5));
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      NWSClient nws = shared ? sharedNws : new NWSClient(HttpClient.newBuilder().build(),
+          stub.baseUri(), Duration.ofSeconds(5));
+      WeatherHandler handler = new WeatherHandler(nws, CACHE, NO_FORECASTS);
+      double lat = 41 + i % 10 / 10.0;
+      GridData grid = handler.handleGridRequest("-71.4", String.valueOf(lat));
+      if (!shared) {
+        // the old handler built a second client for the forecast request
+        handler = new WeatherHandler(new NWSClient(HttpClient.newBuilder().build(),
+            stub.baseUri(), Duration.ofSeconds(5)), CACHE, NO_FORECASTS);
+      }
+      TempData temp = handler.handleTempRequest(grid);
+      assertEquals((double) NWSStub.temperature(lat, -71.4),
+          temp.getPeriods().get(0).get("temperature"));
+    }
+    return (System.nanoTime() - start) / (double) count;
+  }
+
+  /**
+   * Tests that the shared client answers correctly and, with -Dbenchmarks=true, faster than
+   * building clients per request and well within a bound, without the threads that building
+   * clients per request starts.
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testSharedClientBenchmark() throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    try (NWSStub stub = new NWSStub()) {
+      HttpClient sharedClient = NWSClient.newHttpClient(Duration.ofSeconds(2), 4);
+      // warm up both paths
+      lookups(stub, true, sharedClient, LOOKUPS / 3);
+      lookups(stub, false, sharedClient, LOOKUPS / 3);
+
+      System.gc();
+      Thread.sleep(200);
+      int before = threads.getThreadCount();
+      threads.resetPeakThreadCount();
+      double perCall = lookups(stub, false, sharedClient, LOOKUPS);
+      int perCallThreads = threads.getPeakThreadCount() - before;
+
+      System.gc();
+      Thread.sleep(200);
+      before = threads.getThreadCount();
+      threads.resetPeakThreadCount();
+      double sharedTime = lookups(stub, true, sharedClient, LOOKUPS);
+      int sharedThreads = threads.getPeakThreadCount() - before;
+      if (!BENCHMARKS) {
+        return;
+      }
+
+      // the shared client's threads already exist, so at most the stub's own threads are added
+      assertTrue(sharedThreads <= 8, "shared client added " + sharedThreads + " threads");
+      assertTrue(perCallThreads > sharedThreads + 8,
+          "clients per request added " + perCallThreads + " threads");
+      assertTrue(sharedTime < perCall, "shared client took " + sharedTime / 1e6
+          + " ms per lookup, clients per request " + perCall / 1e6);
+      assertTrue(sharedTime / 1e6 < MAX_SHARED_MILLIS,
+          "shared client took " + sharedTime / 1e6 + " ms per lookup");
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.squareup.moshi.Moshi;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import weather.GridData;
+import weather.NWSJsonExtractor;
+import weather.TempData;
+
+/**
+ * Testing suite for streaming the needed fields out of NWS API responses, compared with decoding
+ * the whole document with Moshi as the weather endpoint used to.
+ */
+public class TestNWSJsonExtractor {
+
+  private static final int CALLS = 2_000;
+
+  /**
+   * Builds a /forecast response shaped like the NWS API's, with a polygon and 14 periods.
+   */
+  static String forecastJson() {
+    StringBuilder json = new StringBuilder("{\"@context\":[\"https://geojson.org/geojson-ld/"
+        + "geojson-context.jsonld\",{\"@version\":\"1.1\",\"wx\":\"https://api.weather.gov/"
+        + "ontology#\",\"geo\":\"http://www.opengis.net/ont/geosparql#\"}],\"type\":\"Feature\","
+        + "\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+    for (int i = 0; i < 5; i++) {
+      json.append(i == 0 ? "" : ",").append("[-71.4").append(i).append("17,41.8").append(i)
+          .append("05]");
+    }
+    json.append("]]},\"properties\":{\"updated\":\"2022-10-14T19:07:43+00:00\",\"units\":\"us\","
+        + "\"forecastGenerator\":\"BaselineForecastGenerator\",\"generatedAt\":"
+        + "\"2022-10-14T19:58:34+00:00\",\"elevation\":{\"unitCode\":\"wmoUnit:m\","
+        + "\"value\":91.135199999999998},\"periods\":[");
+    for (int i = 1; i <= 14; i++) {
+      json.append(i == 1 ? "" : ",").append("{\"number\":").append(i)
+          .append(",\"name\":\"Period ").append(i).append("\",\"startTime\":")
+          .append("\"2022-10-14T15:00:00-04:00\",\"endTime\":\"2022-10-14T18:00:00-04:00\",")
+          .append("\"isDaytime\":true,\"temperature\":").append(60 + i)
+          .append(",\"temperatureUnit\":\"F\",\"temperatureTrend\":null,\"windSpeed\":")
+          .append("\"6 mph\",\"windDirection\":\"W\",\"icon\":\"https://api.weather.gov/icons/")
+          .append("land/day/bkn?size=medium\",\"shortForecast\":\"Partly Sunny\",")
+          .append("\"detailedForecast\":\"Partly sunny, with a high near ").append(60 + i)
+          .append(". West wind around 6 mph. Chance of precipitation is 20%.\"}");
+    }
+    return json.append("]}}").toString();
+  }
+
+  /**
+   * Builds a /points response shaped like the NWS API's.
+   */
+  static String pointsJson() {
+    return "{\"@context\":[\"https://geojson.org/geojson-ld/geojson-context.jsonld\"],\"id\":"
+        + "\"https://api.weather.gov/points/41.8268,-71.4029\",\"type\":\"Feature\",\"geometry\":"
+        + "{\"type\":\"Point\",\"coordinates\":[-71.4029,41.8268]},\"properties\":{\"@id\":"
+        + "\"https://api.weather.gov/points/41.8268,-71.4029\",\"@type\":\"wx:Point\",\"cwa\":"
+        + "\"BOX\",\"forecastOffice\":\"https://api.weather.gov/offices/BOX\",\"gridId\":\"BOX\","
+        + "\"gridX\":64,\"gridY\":64,\"forecast\":\"https://api.weather.gov/gridpoints/BOX/64,64/"
+        + "forecast\",\"relativeLocation\":{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\","
+        + "\"coordinates\":[-71.41,41.82]},\"properties\":{\"city\":\"Providence\",\"state\":"
+        + "\"RI\"}},\"timeZone\":\"America/New_York\",\"radarStation\":\"KBOX\"}}";
+  }
+
+  /**
+   * Tests that the streamed fields match the ones Moshi decodes from the whole document.
+   * @throws IOException if a document cannot be read
+   */
+  @Test
+  public void testMatchesFullDecode() throws IOException {
+    Moshi moshi = new Moshi.Builder().build();
+    TempData full = moshi.adapter(TempData.class).fromJson(forecastJson());
+    TempData streamed = NWSJsonExtractor.forecast(forecastJson());
+    Map<String, Object> first = full.getPeriods().get(0);
+    assertEquals(first.get("temperature"), streamed.getPeriods().get(0).get("temperature"));
+    assertEquals(61.0, streamed.getPeriods().get(0).get("temperature"));
+    assertEquals(first.get("temperatureUnit"), streamed.getPeriods().get(0).get("temperatureUnit"));
+    assertEquals(10, streamed.getCell().length);
+    assertEquals(-71.4017, streamed.getCell()[0]);
+    assertEquals(41.8405, streamed.getCell()[9]);
+
+    GridData grid = NWSJsonExtractor.grid(pointsJson());
+    assertEquals("BOX", grid.getGridId());
+    assertEquals(64, grid.getGridX());
+    assertEquals(64, grid.getGridY());
+  }
+
+  /**
+   * Tests documents without the wanted fields, and ones that break off before them.
+   * @throws IOException if a document cannot be read
+   */
+  @Test
+  public void testMissingFieldsAndBadJson() throws IOException {
+    assertEquals(List.of(),
+        NWSJsonExtractor.forecast("{\"properties\":{\"periods\":[]}}").getPeriods());
+    assertNull(NWSJsonExtractor.forecast("{\"type\":\"Feature\"}").getPeriods());
+    assertNull(NWSJsonExtractor.forecast("{\"geometry\":{\"type\":\"Point\",\"coordinates\":"
+        + "[-71.4,41.8]}}").getCell());
+    assertNull(NWSJsonExtractor.forecast("{\"geometry\":{\"coordinates\":[[-71.4,41.8]],"
+        + "\"type\":\"LineString\"}}").getCell());
+    assertNull(NWSJsonExtractor.grid("{\"properties\":null}").getProperties());
+    assertNull(NWSJsonExtractor.grid("{\"properties\":{\"gridX\":1}}").getGridY());
+    String truncated = forecastJson().substring(0, forecastJson().indexOf("\"periods\"") + 12);
+    assertThrows(IOException.class, () -> NWSJsonExtractor.forecast(truncated));
+    assertThrows(IOException.class, () -> NWSJsonExtractor.grid("{\"properties\":{}}}"));
+  }
+
+  /**
+   * Compares the bytes allocated and the CPU time of streaming the first period with decoding the
+   * whole forecast with a new Moshi each time, as tempDataCreator used to. Streaming should
+   * allocate less than a tenth as much, and take less than half the CPU time.
+   * @throws IOException if a document cannot be read
+   */
+  @Test
+  public void testFarCheaperThanFullDecode() throws IOException {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    String json = forecastJson();
+    long[] full = new long[2];
+    long[] streamed = new long[2];
+    // the first round warms up both, the second is measured
+    for (int round = 0; round < 2; round++) {
+      long bytes = threads.getCurrentThreadAllocatedBytes();
+      long cpu = threads.getCurrentThreadCpuTime();
+      for (int i = 0; i < CALLS; i++) {
+        new Moshi.Builder().build().adapter(TempData.class).fromJson(json);
+      }
+      full[0] = threads.getCurrentThreadAllocatedBytes() - bytes;
+      full[1] = threads.getCurrentThreadCpuTime() - cpu;
+      bytes = threads.getCurrentThreadAllocatedBytes();
+      cpu = threads.getCurrentThreadCpuTime();
+      for (int i = 0; i < CALLS; i++) {
+        NWSJsonExtractor.forecast(json);
+      }
+      streamed[0] = threads.getCurrentThreadAllocatedBytes() - bytes;
+      streamed[1] = threads.getCurrentThreadCpuTime() - cpu;
+    }
+    assertTrue(streamed[0] * 10 < full[0]);
+    assertTrue(streamed[1] * 2 < full[1]);
+  }
+}
@@ -0,0 +1,161 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.NWSClient;
+import weather.upstream.CircuitBreaker;
+import weather.upstream.CircuitOpenException;
+
+/**
+ * Testing suite for the NWSClient's deadlines, circuit breaker and hedged requests, against a local
+ * stub of the NWS API with injected latency.
+ */
+public class TestNWSResilience {
+
+  private final AtomicLong now = new AtomicLong(1_000);
+  private NWSStub stub;
+
+  /**
+   * Before each test runs, start the stub.
+   * @throws Exception if the stub cannot start
+   */
+  @BeforeEach
+  public void setup() throws Exception {
+    this.stub = new NWSStub();
+  }
+
+  /**
+   * After each test runs, stop the stub.
+   */
+  @AfterEach
+  public void teardown() {
+    this.stub.close();
+  }
+
+  private NWSClient client(Duration requestTimeout, CircuitBreaker breaker, boolean hedge) {
+    return new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 4), this.stub.baseUri(),
+        requestTimeout, breaker, hedge);
+  }
+
+  /**
+   * Tests that a request slower than its deadline fails with a timeout instead of waiting for it.
+   * @throws Exception if the request fails otherwise
+   */
+  @Test
+  public void testDeadline() throws Exception {
+    NWSClient nws = this.client(Duration.ofMillis(100), new CircuitBreaker(5, 30_000), false);
+    nws.get("points/41.8,-71.4");
+    this.stub.delayMillis = 2_000;
+    long start = System.nanoTime();
+    assertThrows(HttpTimeoutException.class, () -> nws.get("points/41.8,-71.4"));
+    assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    assertEquals(1L, nws.metrics().get("timeouts"));
+  }
+
+  /**
+   * Tests that the breaker opens after failures in a row and refuses requests without sending them,
+   * then lets one trial through once it has been open long enough, which closes it on success.
+   * @throws Exception if a request fails otherwise
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCircuitBreaker() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker(3, 10_000, this.now::get);
+    NWSClient nws = this.client(Duration.ofMillis(50), breaker, false);
+    this.stub.delayMillis = 500;
+    for (int i = 0; i < 3; i++) {
+      assertThrows(HttpTimeoutException.class, () -> nws.get("points/41.8,-71.4"));
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    int sent = this.stub.pointRequests.get();
+    assertThrows(CircuitOpenException.class, () -> nws.get("points/41.8,-71.4"));
+    assertEquals(sent, this.stub.pointRequests.get());
+
+    // a failed trial opens the breaker again
+    this.now.addAndGet(10_000);
+    assertThrows(HttpTimeoutException.class, () -> nws.get("points/41.8,-71.4"));
+    assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    assertThrows(CircuitOpenException.class, () -> nws.get("points/41.8,-71.4"));
+
+    this.stub.delayMillis = 0;
+    this.now.addAndGet(10_000);
+    assertEquals(200, nws.get("points/41.8,-71.4").statusCode());
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    Map<String, Object> metrics = (Map<String, Object>) nws.metrics().get("breaker");
+    assertEquals(2L, metrics.get("opens"));
+    assertEquals(2L, metrics.get("rejected"));
+  }
+
+  /**
+   * Tests that a call that started before the breaker opened neither closes it by succeeding nor
+   * opens it again by failing, and that only the trial call closes it.
+   */
+  @Test
+  public void testStaleOutcomesAreIgnored() {
+    CircuitBreaker breaker = new CircuitBreaker(2, 10_000, this.now::get);
+    long slow = breaker.tryAcquire();
+    long late = breaker.tryAcquire();
+    breaker.onFailure(breaker.tryAcquire());
+    breaker.onFailure(breaker.tryAcquire());
+    assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    breaker.onSuccess(slow);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    assertEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+
+    this.now.addAndGet(10_000);
+    long trial = breaker.tryAcquire();
+    assertEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+    breaker.onFailure(late);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    breaker.onSuccess(trial);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    assertEquals("closed", breaker.metrics().get("state"));
+    assertEquals(1L, breaker.metrics().get("opens"));
+  }
+
+  /**
+   * Tests that with hedging, requests that land in the stub's slow tail are answered by their
+   * second attempt in about the time of a fast request, and that without it they are not.
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testHedgedRequestsCutTail() throws Exception {
+    NWSClient hedged = this.client(Duration.ofSeconds(5), new CircuitBreaker(5, 30_000), true);
+    NWSClient plain = this.client(Duration.ofSeconds(5), new CircuitBreaker(5, 30_000), false);
+    this.stub.delayMillis = 20;
+    for (int i = 0; i < 30; i++) {
+      hedged.get("points/41.8,-71.4");
+    }
+    // from now on every other request takes a second
+    this.stub.slowMillis = 1_000;
+    this.stub.slowEvery = 2;
+    long slowest = 0;
+    for (int i = 0; i < 6; i++) {
+      long start = System.nanoTime();
+      assertEquals(200, hedged.get("points/41.8,-71.4").statusCode());
+      slowest = Math.max(slowest, System.nanoTime() - start);
+    }
+    assertTrue(slowest < 500_000_000L, "slowest hedged request took " + slowest / 1_000_000 + "ms");
+    Map<String, Object> metrics = hedged.metrics();
+    assertTrue((long) metrics.get("hedges") > 0);
+    assertTrue((long) metrics.get("hedgeWins") > 0);
+
+    slowest = 0;
+    for (int i = 0; i < 2; i++) {
+      long start = System.nanoTime();
+      plain.get("points/41.8,-71.4");
+      slowest = Math.max(slowest, System.nanoTime() - start);
+    }
+    assertTrue(slowest >= 1_000_000_000L);
+    assertEquals(0L, plain.metrics().get("hedges"));
+  }
+}
@@ -0,0 +1,183 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import weather.NWSClient;
+import weather.cache.CountMinSketch;
+import weather.cache.ForecastCache;
+import weather.cache.RefreshScheduler;
+
+/**
+ * Testing suite for tracking how popular forecasts are and refreshing the popular ones before they
+ * expire, against a local stub of the NWS API.
+ */
+public class TestRefreshScheduler {
+
+  private NWSStub stub;
+  private NWSClient nws;
+  private ForecastCache cache;
+
+  /**
+   * Before each test runs, start the stub, whose forecasts stay fresh for a second.
+   * @throws Exception if the stub cannot start
+   */
+  @BeforeEach
+  public void setup() throws Exception {
+    this.stub = new NWSStub();
+    this.stub.forecastCacheControl = "max-age=1";
+    this.nws = new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 4),
+        this.stub.baseUri(), Duration.ofSeconds(5));
+    this.cache = new ForecastCache(100);
+  }
+
+  /**
+   * After each test runs, stop the stub.
+   */
+  @AfterEach
+  public void teardown() {
+    this.stub.close();
+  }
+
+  private static String path(int cell) {
+    return "gridpoints/STB/" + cell + "," + cell + "/forecast";
+  }
+
+  private static void awaitRefreshes(RefreshScheduler scheduler, long count)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    while ((long) scheduler.metrics().get("refreshes") < count && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Tests that the sketch never counts a key less than it was seen, tells popular keys from rare
+   * ones among many, and halves its counts once it has taken its sample.
+   */
+  @Test
+  public void testCountMinSketch() {
+    CountMinSketch sketch = new CountMinSketch(4096, 1_000_000);
+    for (int i = 0; i < 5000; i++) {
+      sketch.increment("cold" + i);
+      if (i % 10 == 0) {
+        sketch.increment("hot");
+      }
+    }
+    assertTrue(sketch.estimate("hot") >= 500);
+    int overcounted = 0;
+    for (int i = 0; i < 5000; i++) {
+      int estimate = sketch.estimate("cold" + i);
+      assertTrue(estimate >= 1);
+      if (estimate > 3) {
+        overcounted++;
+      }
+    }
+    assertTrue(overcounted < 50, overcounted + " rare keys counted as popular");
+
+    CountMinSketch aging = new CountMinSketch(64, 100);
+    for (int i = 0; i < 99; i++) {
+      aging.increment("key");
+    }
+    assertEquals(99, aging.estimate("key"));
+    aging.increment("key");
+    assertEquals(50, aging.estimate("key"));
+    assertEquals(1, aging.resets());
+  }
+
+  /**
+   * Tests that the popular forecast is refreshed before it expires, so asking for it after its
+   * original expiry is still a hit, while the rare one expires and is fetched again.
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testHotForecastStaysCached() throws Exception {
+    this.stub.forecastCacheControl = "max-age=2";
+    try (RefreshScheduler scheduler = new RefreshScheduler(this.cache, this.nws, 1, 1500, 10)) {
+      for (int i = 0; i < 5; i++) {
+        this.cache.get(path(1), this.nws);
+      }
+      this.cache.get(path(2), this.nws);
+      long fetched = System.currentTimeMillis();
+      assertEquals(0, scheduler.tick());
+
+      Thread.sleep(700);
+      List<ForecastCache.Expiring> hottest =
+          this.cache.hottestExpiring(1, System.currentTimeMillis() + 1500);
+      assertEquals(path(1), hottest.get(0).path());
+      assertEquals(1, scheduler.tick());
+      assertEquals(0, scheduler.tick());
+      awaitRefreshes(scheduler, 1);
+      assertEquals(1L, scheduler.metrics().get("refreshes"));
+
+      Thread.sleep(Math.max(0, fetched + 2200 - System.currentTimeMillis()));
+      long hits = (long) this.cache.metrics().get("hits");
+      this.cache.get(path(1), this.nws);
+      assertEquals(hits + 1, this.cache.metrics().get("hits"));
+      this.cache.get(path(2), this.nws);
+      assertEquals(hits + 1, this.cache.metrics().get("hits"));
+      // the two first fetches, the refresh and the rare forecast's revalidation
+      assertEquals(4, this.stub.forecastRequests.get());
+      assertEquals(1L, this.cache.metrics().get("refreshes"));
+    }
+  }
+
+  /**
+   * Tests that refreshes that come due together are spaced out by the rate limit.
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testRefreshesAreRateLimited() throws Exception {
+    // a lead of four lifetimes makes every refresh due at the tick, and the five permits, 200ms
+    // apart, all come well before the forecasts expire two seconds from now
+    this.stub.forecastCacheControl = "max-age=2";
+    try (RefreshScheduler scheduler = new RefreshScheduler(this.cache, this.nws, 10, 8000, 5)) {
+      for (int cell = 0; cell < 5; cell++) {
+        this.cache.get(path(cell), this.nws);
+      }
+      long start = System.nanoTime();
+      assertEquals(5, scheduler.tick());
+      Thread.sleep(300);
+      assertTrue((long) scheduler.metrics().get("refreshes") <= 2);
+      awaitRefreshes(scheduler, 5);
+      assertEquals(5L, scheduler.metrics().get("refreshes"));
+      assertTrue(System.nanoTime() - start >= 800_000_000L);
+      // of five refreshes due together, those that run within 200ms of another wait for a permit
+      assertTrue((long) scheduler.metrics().get("throttled") >= 2);
+      assertEquals(0L, scheduler.metrics().get("skipped"));
+    }
+  }
+
+  /**
+   * Tests that a refresh whose permit would only come after its forecast expires is skipped rather
+   * than sent late, with a clock that stands still so the permits never come due.
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testLateRefreshesAreSkipped() throws Exception {
+    long now = System.currentTimeMillis();
+    ForecastCache cache = new ForecastCache(100, () -> now);
+    try (RefreshScheduler scheduler = new RefreshScheduler(cache, this.nws, 10, 1000, 0.5,
+        Executors.newScheduledThreadPool(2), () -> now)) {
+      for (int cell = 0; cell < 3; cell++) {
+        cache.get(path(cell), this.nws);
+      }
+      assertEquals(3, scheduler.tick());
+      long deadline = System.nanoTime() + 5_000_000_000L;
+      while ((long) scheduler.metrics().get("refreshes")
+          + (long) scheduler.metrics().get("skipped") < 3 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      // the first permit is due at once, and the next only in two seconds, after every expiry
+      assertEquals(1L, scheduler.metrics().get("refreshes"));
+      assertEquals(2L, scheduler.metrics().get("skipped"));
+      assertEquals(0L, scheduler.metrics().get("throttled"));
+    }
+  }
+}
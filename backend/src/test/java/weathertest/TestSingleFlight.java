@@ -0,0 +1,184 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import weather.NWSClient;
+import weather.TempData;
+import weather.WeatherHandler;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
+import weather.cache.SingleFlight;
+import weather.exceptions.DatasourceException;
+
+/**
+ * Testing suite for coalescing concurrent loads of one key, on its own and in the weather caches.
+ */
+public class TestSingleFlight {
+
+  private static final int CALLERS = 32;
+
+  /**
+   * Tests that callers arriving while a key loads share that load's value, and that the key is
+   * loaded again once the load is over.
+   * @throws Exception if a load fails
+   */
+  @Test
+  public void testConcurrentCallersShareLoad() throws Exception {
+    SingleFlight<String, Object> flights = new SingleFlight<>();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      for (int i = 0; i < CALLERS; i++) {
+        results.add(executor.submit(() -> flights.get("key", () -> {
+          loads.incrementAndGet();
+          release.await();
+          return new Object();
+        })));
+      }
+      // hold the load open until every caller has joined it
+      while (flights.loads() + flights.coalesced() < CALLERS) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      Object first = results.get(0).get();
+      for (Future<Object> result : results) {
+        assertSame(first, result.get());
+      }
+      assertEquals(1, loads.get());
+      assertEquals(CALLERS - 1, flights.coalesced());
+      assertEquals(0, flights.inFlight());
+
+      flights.get("key", () -> loads.incrementAndGet());
+      assertEquals(2, loads.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Tests that a failed load's exception is thrown to every caller that waited on it.
+   * @throws Exception if the executor is interrupted
+   */
+  @Test
+  public void testFailureIsShared() throws Exception {
+    SingleFlight<String, Object> flights = new SingleFlight<>();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> leader = executor.submit(() -> flights.get("key", () -> {
+        release.await();
+        throw new DatasourceException("API error");
+      }));
+      while (flights.inFlight() == 0) {
+        Thread.sleep(1);
+      }
+      Future<Object> follower = executor.submit(() -> flights.get("key", Object::new));
+      while (flights.coalesced() == 0) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      ExecutionException leaderError = assertThrows(ExecutionException.class, leader::get);
+      ExecutionException followerError = assertThrows(ExecutionException.class, follower::get);
+      assertEquals(DatasourceException.class, followerError.getCause().getClass());
+      assertSame(leaderError.getCause(), followerError.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Tests that a caller waiting on a load whose caller was interrupted is not handed that
+   * interruption, but loads the key itself.
+   * @throws Exception if the executor is interrupted
+   */
+  @Test
+  public void testLeaderInterruptionIsNotShared() throws Exception {
+    SingleFlight<String, Object> flights = new SingleFlight<>();
+    Object value = new Object();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> leader = executor.submit(() -> flights.get("key", () -> {
+        Thread.sleep(60_000);
+        return new Object();
+      }));
+      while (flights.inFlight() == 0) {
+        Thread.sleep(1);
+      }
+      Future<Object> follower = executor.submit(() -> flights.get("key", () -> value));
+      while (flights.coalesced() == 0) {
+        Thread.sleep(1);
+      }
+      leader.cancel(true);
+      assertSame(value, follower.get(10, TimeUnit.SECONDS));
+      assertEquals(2, flights.loads());
+      assertEquals(0, flights.coalesced());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Tests that a burst of concurrent weather lookups for two locations sends one /points and one
+   * /forecast request per location to a slow NWS stub, and that the rest count as hits.
+   * @throws Exception if a lookup fails
+   */
+  @Test
+  public void testBurstCostsOneRequestPerLocation() throws Exception {
+    try (NWSStub stub = new NWSStub()) {
+      stub.delayMillis = 200;
+      NWSClient nws = new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 4),
+          stub.baseUri(), Duration.ofSeconds(5));
+      GridCache gridCache = new GridCache(0.01, 60_000, 100);
+      ForecastCache forecastCache = new ForecastCache(100);
+      WeatherHandler handler = new WeatherHandler(nws, gridCache, forecastCache);
+      String[][] locations = {{"41.8268", "-71.4029"}, {"40.7128", "-74.0060"}};
+
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+      try {
+        List<Future<TempData>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+          String lat = locations[i % 2][0];
+          String lon = locations[i % 2][1];
+          results.add(executor.submit(() -> {
+            start.await();
+            // the same steps as the /weather endpoint takes
+            return handler.handleTempRequest(gridCache.get(Double.parseDouble(lat),
+                Double.parseDouble(lon), () -> handler.handleGridRequest(lon, lat)));
+          }));
+        }
+        start.countDown();
+        for (int i = 0; i < CALLERS; i++) {
+          double lat = Double.parseDouble(locations[i % 2][0]);
+          double lon = Double.parseDouble(locations[i % 2][1]);
+          assertEquals((double) NWSStub.temperature(lat, lon),
+              results.get(i).get(10, TimeUnit.SECONDS).getPeriods().get(0)
+                  .get("temperature"));
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      assertEquals(2, stub.pointRequests.get());
+      assertEquals(2, stub.forecastRequests.get());
+      // callers that waited on a lookup count towards the hit rate, as they did not ask the NWS
+      assertEquals((CALLERS - 2.0) / CALLERS, (double) gridCache.metrics().get("hitRate"), 1e-9);
+      assertEquals((CALLERS - 2.0) / CALLERS, (double) forecastCache.metrics().get("hitRate"),
+          1e-9);
+    }
+  }
+}
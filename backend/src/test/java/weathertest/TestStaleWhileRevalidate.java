@@ -0,0 +1,133 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Spark;
+import weather.NWSClient;
+import weather.WeatherHandler;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
+
+/**
+ * Testing suite for serving stale forecasts from the weather endpoint while they are revalidated in
+ * the background, against a local stub of the NWS API.
+ */
+public class TestStaleWhileRevalidate {
+
+  private static final String LOOKUP = "weather?lat=41.8268&lon=-71.4029";
+
+  private final AtomicLong now = new AtomicLong(1_000);
+  // the background revalidations, which the tests run when they choose to
+  private final List<Runnable> pending = new ArrayList<>();
+  private NWSStub stub;
+  private ForecastCache forecastCache;
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  /**
+   * Before each test runs, start the stub and a weather endpoint whose forecasts may be served for
+   * up to a minute after they expire.
+   * @throws IOException if the stub cannot start
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    this.stub = new NWSStub();
+    this.stub.forecastCacheControl = "max-age=60";
+    this.forecastCache = new ForecastCache(100, 60_000, this.pending::add, this.now::get);
+    NWSClient nws = new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 2),
+        this.stub.baseUri(), Duration.ofSeconds(5));
+    Spark.get("/weather", new WeatherHandler(nws,
+        new GridCache(0.01, Duration.ofDays(7).toMillis(), 100, this.now::get),
+        this.forecastCache));
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint, and stop the stub.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/weather");
+    Spark.awaitStop();
+    this.stub.close();
+  }
+
+  /**
+   * Tests that an expired forecast is answered at once with its age while the NWS is slow, that
+   * only one revalidation is started for it, and that once that revalidation is done the forecast
+   * is fresh again.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testStaleServedWhileRevalidating() throws IOException {
+    Map<String, Object> body = TestWeatherStubAPIHandler.request(LOOKUP);
+    assertFalse(body.containsKey("stale"));
+    this.now.addAndGet(90_000);
+    this.stub.delayMillis = 2_000;
+
+    long start = System.nanoTime();
+    body = TestWeatherStubAPIHandler.request(LOOKUP);
+    assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    assertEquals(NWSStub.temperature(41.8268, -71.4029) + ".0 F", body.get("temperature"));
+    assertEquals(true, body.get("stale"));
+    assertEquals(90.0, body.get("ageSeconds"));
+    TestWeatherStubAPIHandler.request(LOOKUP);
+    assertEquals(1, this.pending.size());
+    assertEquals(1, this.stub.forecastRequests.get());
+
+    this.stub.delayMillis = 0;
+    this.pending.remove(0).run();
+    assertEquals(1, this.stub.notModified.get());
+    body = TestWeatherStubAPIHandler.request(LOOKUP);
+    assertFalse(body.containsKey("stale"));
+    assertEquals(2, this.stub.forecastRequests.get());
+    assertEquals(2L, this.forecastCache.metrics().get("staleHits"));
+    assertEquals(1L, this.forecastCache.metrics().get("refreshes"));
+  }
+
+  /**
+   * Tests that a forecast stale by more than the maximum is revalidated before it is answered, and
+   * that one that had to be revalidated before every use is never served stale.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testTooStaleOrNoCacheBlocks() throws IOException {
+    TestWeatherStubAPIHandler.request(LOOKUP);
+    this.now.addAndGet(60_000 + 60_001);
+    Map<String, Object> body = TestWeatherStubAPIHandler.request(LOOKUP);
+    assertFalse(body.containsKey("stale"));
+    assertEquals(1, this.stub.notModified.get());
+    assertEquals(0, this.pending.size());
+
+    this.stub.forecastCacheControl = "no-cache";
+    TestWeatherStubAPIHandler.request("weather?lat=40.7128&lon=-74.0060");
+    this.now.addAndGet(1_000);
+    body = TestWeatherStubAPIHandler.request("weather?lat=40.7128&lon=-74.0060");
+    assertFalse(body.containsKey("stale"));
+    assertEquals(2, this.stub.notModified.get());
+    assertEquals(0, this.pending.size());
+    assertEquals(0L, this.forecastCache.metrics().get("staleHits"));
+  }
+}
@@ -0,0 +1,170 @@
+package weathertest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Spark;
+import weather.NWSClient;
+import weather.WeatherHandler;
+import weather.cache.ForecastCache;
+import weather.cache.GridCache;
+import weather.upstream.CircuitBreaker;
+
+/**
+ * Testing suite for the Weather API handler against a local stub of the NWS API.
+ */
+public class TestWeatherStubAPIHandler {
+
+  private NWSStub stub;
+  private GridCache gridCache;
+  private ForecastCache forecastCache;
+
+  /**
+   * Before any tests run, set up the Spark port and set Logger level.
+   */
+  @BeforeAll
+  public static void setupBeforeEverything() {
+    Spark.port(0);
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  /**
+   * Before each test runs, start the stub and restart Spark server for the weather endpoint.
+   * @throws IOException if the stub cannot start
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    this.stub = new NWSStub();
+    this.gridCache = new GridCache(0.01, 60_000, 100);
+    this.forecastCache = new ForecastCache(100);
+    NWSClient nws = new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 2),
+        this.stub.baseUri(), Duration.ofSeconds(5));
+    Spark.get("/weather", new WeatherHandler(nws, this.gridCache, this.forecastCache));
+    Spark.init();
+    Spark.awaitInitialization();
+  }
+
+  /**
+   * After each test runs, gracefully stop Spark listening on the endpoint, and stop the stub.
+   */
+  @AfterEach
+  public void teardown() {
+    Spark.unmap("/weather");
+    Spark.awaitStop();
+    this.stub.close();
+  }
+
+  /**
+   * Helper method to request an API call and read its JSON body into a Map.
+   * @param apiCall the call string, including endpoint
+   * @return the response body
+   * @throws IOException if the connection fails
+   */
+  static Map<String, Object> request(String apiCall) throws IOException {
+    URL requestURL = new URL("http://localhost:" + Spark.port() + "/" + apiCall);
+    HttpURLConnection clientConnection = (HttpURLConnection) requestURL.openConnection();
+    clientConnection.connect();
+    assertEquals(200, clientConnection.getResponseCode());
+    Moshi moshi = new Moshi.Builder().build();
+    Type mapType = Types.newParameterizedType(Map.class, String.class, Object.class);
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapType);
+    Map<String, Object> body =
+        adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    return body;
+  }
+
+  /**
+   * Tests that a nearby point reuses the cached grid cell and only asks for the forecast.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testNearbyPointsShareGridLookup() throws IOException {
+    Map<String, Object> body = request("weather?lat=41.8268&lon=-71.4029");
+    assertEquals("success", body.get("result"));
+    assertEquals(NWSStub.temperature(41.8268, -71.4029) + ".0 F", body.get("temperature"));
+    body = request("weather?lat=41.8262&lon=-71.4025");
+    assertEquals(NWSStub.temperature(41.8262, -71.4025) + ".0 F", body.get("temperature"));
+    assertEquals(1, this.stub.pointRequests.get());
+    assertEquals(2, this.stub.forecastRequests.get());
+
+    request("weather?lat=40.7128&lon=-74.0060");
+    assertEquals(2, this.stub.pointRequests.get());
+    assertEquals(1L, this.gridCache.metrics().get("hits"));
+  }
+
+  /**
+   * Tests that a point the API does not know is a datasource error and is not cached.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testUnknownPoint() throws IOException {
+    assertEquals("error_datasource", request("weather?lat=north&lon=-71").get("errorMessage"));
+    assertEquals(0, this.gridCache.size());
+  }
+
+  /**
+   * Tests that a request that times out, and the requests the circuit breaker then refuses, are
+   * datasource errors rather than server errors, and that refused requests never reach the API.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testOpenBreakerIsDatasourceError() throws IOException {
+    CircuitBreaker breaker = new CircuitBreaker(1, 60_000);
+    NWSClient nws = new NWSClient(NWSClient.newHttpClient(Duration.ofSeconds(2), 2),
+        this.stub.baseUri(), Duration.ofMillis(100), breaker, false);
+    Spark.get("/guardedweather", new WeatherHandler(nws, this.gridCache, this.forecastCache));
+    try {
+      this.stub.delayMillis = 1_000;
+      assertEquals("error_datasource",
+          request("guardedweather?lat=41.8268&lon=-71.4029").get("errorMessage"));
+      assertEquals("error_datasource",
+          request("guardedweather?lat=40.7128&lon=-74.0060").get("errorMessage"));
+      assertEquals(1, this.stub.pointRequests.get());
+      assertEquals(1L, breaker.metrics().get("rejected"));
+    } finally {
+      Spark.unmap("/guardedweather");
+    }
+  }
+
+  /**
+   * Tests that a forecast is reused while its Cache-Control allows, then revalidated, and fetched
+   * again once the NWS publishes a new one.
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testForecastCacheFollowsHeaders() throws IOException {
+    this.stub.forecastCacheControl = "public, max-age=3600";
+    for (int i = 0; i < 5; i++) {
+      request("weather?lat=41.8268&lon=-71.4029");
+    }
+    assertEquals(1, this.stub.forecastRequests.get());
+    assertEquals(4L, this.forecastCache.metrics().get("hits"));
+
+    // a response that must be revalidated is renewed by a 304 until its ETag changes
+    this.stub.forecastCacheControl = "no-cache";
+    request("weather?lat=41.5&lon=-71.5");
+    request("weather?lat=41.5&lon=-71.5");
+    assertEquals(1, this.stub.notModified.get());
+    this.stub.version++;
+    request("weather?lat=41.5&lon=-71.5");
+    assertEquals(1, this.stub.notModified.get());
+    assertEquals(4, this.stub.forecastRequests.get());
+    assertEquals(1L, this.forecastCache.metrics().get("revalidations"));
+  }
+}